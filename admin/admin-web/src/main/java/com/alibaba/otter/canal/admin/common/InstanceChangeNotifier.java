@@ -0,0 +1,147 @@
+package com.alibaba.otter.canal.admin.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.alibaba.otter.canal.admin.model.BaseModel;
+import com.alibaba.otter.canal.admin.model.InstancesChange;
+
+/**
+ * 按集群/单机维护instance配置的版本号，server通过长轮询等待变化
+ *
+ * <pre>
+ * 1. 每次变化分配一个递增的版本号，记录到instance所属的scope(cluster:id / server:id)下
+ * 2. server带着上一次的版本号来watch，有更新的版本直接返回变化的instance，否则挂起直到有变化或者超时
+ * 3. 版本号以启动时间为起点，admin重启或者节点归属发生变化时，之前的版本一律要求全量加载
+ * </pre>
+ */
+public class InstanceChangeNotifier {
+
+    private long                                       version;
+    private long                                       fullVersion;
+    // scope -> instance -> 最近一次变化的版本
+    private final Map<String, Map<String, Long>>       changes  = new HashMap<>();
+    private final Map<String, Set<Watcher>>            watchers = new ConcurrentHashMap<>();
+
+    public InstanceChangeNotifier(){
+        this.version = System.currentTimeMillis();
+        this.fullVersion = version;
+    }
+
+    public static String scope(Long clusterId, Long serverId) {
+        if (clusterId != null) {
+            return "cluster:" + clusterId;
+        } else if (serverId != null) {
+            return "server:" + serverId;
+        }
+        return null;
+    }
+
+    /**
+     * instance配置发生变化，通知新旧两个scope
+     */
+    public void notifyChanged(String instance, String... scopes) {
+        List<String> notifies = new ArrayList<>();
+        synchronized (this) {
+            long current = ++version;
+            for (String scope : scopes) {
+                if (scope != null) {
+                    changes.computeIfAbsent(scope, key -> new HashMap<>()).put(instance, current);
+                    notifies.add(scope);
+                }
+            }
+        }
+
+        notifies.forEach(this::wakeUp);
+    }
+
+    /**
+     * 节点和集群的归属关系发生变化，所有server都需要全量加载
+     */
+    public void notifyReset() {
+        synchronized (this) {
+            fullVersion = ++version;
+            changes.clear();
+        }
+
+        watchers.keySet().forEach(this::wakeUp);
+    }
+
+    public DeferredResult<BaseModel<InstancesChange>> watch(String scope, long clientVersion, long timeout) {
+        // 超时代表没有变化，版本号不变
+        DeferredResult<BaseModel<InstancesChange>> result = new DeferredResult<>(timeout,
+            BaseModel.getInstance(new InstancesChange(clientVersion, false, Collections.emptyList())));
+        InstancesChange change = changedSince(scope, clientVersion);
+        if (change != null) {
+            result.setResult(BaseModel.getInstance(change));
+            return result;
+        }
+
+        Watcher watcher = new Watcher(clientVersion, result);
+        watchers.computeIfAbsent(scope, key -> ConcurrentHashMap.newKeySet()).add(watcher);
+        result.onCompletion(() -> {
+            Set<Watcher> scopeWatchers = watchers.get(scope);
+            if (scopeWatchers != null) {
+                scopeWatchers.remove(watcher);
+            }
+        });
+
+        // 注册之后再检查一次，避免丢失注册过程中的变化
+        change = changedSince(scope, clientVersion);
+        if (change != null) {
+            result.setResult(BaseModel.getInstance(change));
+        }
+        return result;
+    }
+
+    public synchronized InstancesChange changedSince(String scope, long clientVersion) {
+        if (clientVersion < fullVersion || clientVersion > version) {
+            return new InstancesChange(version, true, Collections.emptyList());
+        }
+
+        Map<String, Long> scopeChanges = changes.get(scope);
+        if (scopeChanges == null) {
+            return null;
+        }
+
+        List<String> instances = new ArrayList<>();
+        scopeChanges.forEach((instance, changeVersion) -> {
+            if (changeVersion > clientVersion) {
+                instances.add(instance);
+            }
+        });
+        return instances.isEmpty() ? null : new InstancesChange(version, false, instances);
+    }
+
+    private void wakeUp(String scope) {
+        Set<Watcher> scopeWatchers = watchers.get(scope);
+        if (scopeWatchers == null) {
+            return;
+        }
+
+        for (Watcher watcher : scopeWatchers) {
+            InstancesChange change = changedSince(scope, watcher.version);
+            if (change != null) {
+                watcher.result.setResult(BaseModel.getInstance(change));
+            }
+        }
+    }
+
+    private static class Watcher {
+
+        private final long                                       version;
+        private final DeferredResult<BaseModel<InstancesChange>> result;
+
+        Watcher(long version, DeferredResult<BaseModel<InstancesChange>> result){
+            this.version = version;
+            this.result = result;
+        }
+    }
+}
@@ -100,6 +100,14 @@ public interface AdminConnector {
      */
     boolean restartInstance(String destination);
 
+    /**
+     * 获取实例最近一个统计窗口内的热点表
+     *
+     * @param destination 实例名
+     * @return json格式的热点表信息
+     */
+    String hotTables(String destination);
+
     /**
      * 获取Canal Server日志列表
      *
@@ -184,6 +184,11 @@ public class SimpleAdminConnector implements AdminConnector {
         return BooleanUtils.toBoolean(Integer.parseInt(doInstanceAdmin(destination, "restart")));
     }
 
+    @Override
+    public String hotTables(String destination) {
+        return doInstanceAdmin(destination, "hotTables");
+    }
+
     @Override
     public String listCanalLog() {
         return doLogAdmin("server", "list", null, null, 0);
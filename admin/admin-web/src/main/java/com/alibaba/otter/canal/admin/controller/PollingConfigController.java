@@ -11,10 +11,12 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import com.alibaba.otter.canal.admin.model.BaseModel;
 import com.alibaba.otter.canal.admin.model.CanalConfig;
 import com.alibaba.otter.canal.admin.model.CanalInstanceConfig;
+import com.alibaba.otter.canal.admin.model.InstancesChange;
 import com.alibaba.otter.canal.admin.service.PollingConfigService;
 import com.alibaba.otter.canal.protocol.SecurityUtil;
 
@@ -28,7 +30,8 @@ import com.alibaba.otter.canal.protocol.SecurityUtil;
 @RequestMapping("/api/{env}/config")
 public class PollingConfigController {
 
-    private static final byte[] seeds = "canal is best!".getBytes();
+    private static final byte[] seeds             = "canal is best!".getBytes();
+    private static final int    MAX_WATCH_TIMEOUT = 60;
 
     @Value(value = "${canal.adminUser}")
     String                      user;
@@ -91,6 +94,25 @@ public class PollingConfigController {
         return BaseModel.getInstance(canalInstanceConfig);
     }
 
+    /**
+     * 长轮询对应server(ip+port)的instance变化，有变化立即返回变化的instance列表，否则等待timeout秒
+     */
+    @GetMapping(value = "/instances_watch")
+    public DeferredResult<BaseModel<InstancesChange>> instancesWatch(@RequestHeader String user,
+                                                                     @RequestHeader String passwd,
+                                                                     @RequestParam String ip,
+                                                                     @RequestParam Integer port,
+                                                                     @RequestParam long version,
+                                                                     @RequestParam(defaultValue = "30") int timeout,
+                                                                     @PathVariable String env) {
+        if (!auth(user, passwd)) {
+            throw new RuntimeException("auth :" + user + " is failed");
+        }
+
+        timeout = Math.max(1, Math.min(timeout, MAX_WATCH_TIMEOUT));
+        return pollingConfigService.watchInstances(ip, port, version, timeout * 1000L);
+    }
+
     private boolean auth(String user, String passwd) {
         // 如果user/passwd密码为空,则任何用户账户都能登录
         if ((StringUtils.isEmpty(this.user) || StringUtils.equals(this.user, user))) {
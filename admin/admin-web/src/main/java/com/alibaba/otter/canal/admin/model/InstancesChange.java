@@ -0,0 +1,47 @@
+package com.alibaba.otter.canal.admin.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * server长轮询instance配置变化的返回结果
+ */
+public class InstancesChange {
+
+    private long         version;
+    private boolean      full;     // true代表需要全量加载instance配置
+    private List<String> instances = Collections.emptyList(); // 发生变化的instance
+
+    public InstancesChange(){
+    }
+
+    public InstancesChange(long version, boolean full, List<String> instances){
+        this.version = version;
+        this.full = full;
+        this.instances = instances;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public void setFull(boolean full) {
+        this.full = full;
+    }
+
+    public List<String> getInstances() {
+        return instances;
+    }
+
+    public void setInstances(List<String> instances) {
+        this.instances = instances;
+    }
+}
@@ -1,7 +1,11 @@
 package com.alibaba.otter.canal.admin.service;
 
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.alibaba.otter.canal.admin.model.BaseModel;
 import com.alibaba.otter.canal.admin.model.CanalConfig;
 import com.alibaba.otter.canal.admin.model.CanalInstanceConfig;
+import com.alibaba.otter.canal.admin.model.InstancesChange;
 
 public interface PollingConfigService {
 
@@ -12,4 +16,6 @@ public interface PollingConfigService {
     CanalInstanceConfig getInstancesConfig(String ip, Integer port, String md5);
 
     CanalInstanceConfig getInstanceConfig(String destination, String md5);
+
+    DeferredResult<BaseModel<InstancesChange>> watchInstances(String ip, Integer port, long version, long timeout);
 }
@@ -1,18 +1,37 @@
 package com.alibaba.otter.canal.admin.service.impl;
 
 import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import com.alibaba.otter.canal.admin.common.DaemonThreadFactory;
+import com.alibaba.otter.canal.admin.common.InstanceChangeNotifier;
 import com.alibaba.otter.canal.admin.common.exception.ServiceException;
+import com.alibaba.otter.canal.admin.model.BaseModel;
 import com.alibaba.otter.canal.admin.model.CanalCluster;
 import com.alibaba.otter.canal.admin.model.CanalConfig;
 import com.alibaba.otter.canal.admin.model.CanalInstanceConfig;
+import com.alibaba.otter.canal.admin.model.InstancesChange;
 import com.alibaba.otter.canal.admin.model.NodeServer;
 import com.alibaba.otter.canal.admin.service.CanalClusterService;
 import com.alibaba.otter.canal.admin.service.NodeServerService;
@@ -23,11 +42,47 @@ import com.google.common.base.Joiner;
 @Service
 public class PollingConfigServiceImpl implements PollingConfigService {
 
+    private static final Logger                 logger           = LoggerFactory.getLogger(PollingConfigServiceImpl.class);
+    // 扫描变化时向前多看一段时间，兼容多个admin之间以及数据库的时钟误差
+    private static final long                   SCAN_WINDOW      = 60 * 1000L;
+    // 每隔一段时间做一次全量比对，兜底同一秒内删除+新增这类数量不变的变化
+    private static final int                    FULL_SCAN_ROUNDS = 60;
+
     @Autowired
-    NodeServerService   nodeServerService;
+    NodeServerService                           nodeServerService;
 
     @Autowired
-    CanalClusterService canalClusterService;
+    CanalClusterService                         canalClusterService;
+
+    private final InstanceChangeNotifier        notifier         = new InstanceChangeNotifier();
+    private final Map<String, InstanceState>    instanceStates   = new HashMap<>();
+    // ip:port -> server所属的scope
+    private final Map<String, String>           serverScopes     = new ConcurrentHashMap<>();
+    private ScheduledExecutorService            scanExecutor;
+    private long                                lastModifiedTime = -1;
+    private int                                 lastCount        = -1;
+    private int                                 scanRounds       = 0;
+    private String                              lastServers;
+
+    @PostConstruct
+    public void start() {
+        scanExecutor = Executors.newSingleThreadScheduledExecutor(DaemonThreadFactory.daemonThreadFactory);
+        scanExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                scanServers();
+                scanInstances();
+            } catch (Throwable e) {
+                logger.warn("scan instance config changes failed", e);
+            }
+        }, 0, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scanExecutor != null) {
+            scanExecutor.shutdownNow();
+        }
+    }
 
     public boolean autoRegister(String ip, Integer adminPort, String cluster, String name) {
         NodeServer server = NodeServer.find.query().where().eq("ip", ip).eq("adminPort", adminPort).findOne();
@@ -81,12 +136,14 @@ public class PollingConfigServiceImpl implements PollingConfigService {
         List<CanalInstanceConfig> canalInstanceConfigs;
         if (server.getClusterId() != null) { // 集群模式
             canalInstanceConfigs = CanalInstanceConfig.find.query()
+                .select("name")
                 .where()
                 .eq("status", "1")
                 .eq("clusterId", server.getClusterId())
                 .findList(); // 取属于该集群的所有instance config
         } else { // 单机模式
             canalInstanceConfigs = CanalInstanceConfig.find.query()
+                .select("name")
                 .where()
                 .eq("status", "1")
                 .eq("serverId", server.getId())
@@ -120,16 +177,122 @@ public class PollingConfigServiceImpl implements PollingConfigService {
         if (StringUtils.isEmpty(md5)) {
             return instanceConfig;
         } else {
-            try {
-                String newMd5 = SecurityUtil.md5String(instanceConfig.getContent());
-                if (StringUtils.equals(md5, newMd5)) {
-                    instanceConfig.setContent(null);
+            // 保存时已经计算过md5，一致时不用再对content计算一次
+            if (StringUtils.equals(md5, instanceConfig.getContentMd5())) {
+                instanceConfig.setContent(null);
+            } else {
+                try {
+                    String newMd5 = SecurityUtil.md5String(instanceConfig.getContent());
+                    if (StringUtils.equals(md5, newMd5)) {
+                        instanceConfig.setContent(null);
+                    }
+                } catch (NoSuchAlgorithmException e) {
+                    // ignore
                 }
-            } catch (NoSuchAlgorithmException e) {
-                // ignore
             }
 
             return instanceConfig;
         }
     }
+
+    public DeferredResult<BaseModel<InstancesChange>> watchInstances(String ip, Integer port, long version,
+                                                                     long timeout) {
+        String key = ip + ":" + port;
+        String scope = serverScopes.computeIfAbsent(key, k -> {
+            NodeServer server = NodeServer.find.query()
+                .select("id, clusterId")
+                .where()
+                .eq("ip", ip)
+                .eq("adminPort", port)
+                .findOne();
+            if (server == null) {
+                // 还未注册的server，等注册后节点变化的通知
+                return "node:" + key;
+            }
+            return InstanceChangeNotifier.scope(server.getClusterId(), server.getId());
+        });
+        return notifier.watch(scope, version, timeout);
+    }
+
+    /**
+     * server的新增/删除以及集群归属变化，都会影响server运行的instance列表，直接要求所有server全量加载
+     */
+    private void scanServers() {
+        List<NodeServer> servers = NodeServer.find.query().select("id, clusterId").orderBy().asc("id").findList();
+        String current = servers.stream()
+            .map(server -> server.getId() + ":" + server.getClusterId())
+            .collect(Collectors.joining(","));
+        if (lastServers != null && !StringUtils.equals(lastServers, current)) {
+            serverScopes.clear();
+            notifier.notifyReset();
+        }
+        lastServers = current;
+    }
+
+    /**
+     * 基于modifiedTime增量扫描instance配置的变化，覆盖多个admin以及直接修改数据库的场景
+     */
+    private void scanInstances() {
+        int count = CanalInstanceConfig.find.query().findCount();
+        boolean full = lastModifiedTime < 0 || count != lastCount || ++scanRounds >= FULL_SCAN_ROUNDS;
+        List<CanalInstanceConfig> configs;
+        if (full) {
+            scanRounds = 0;
+            configs = CanalInstanceConfig.find.query()
+                .select("name, clusterId, serverId, status, modifiedTime")
+                .findList();
+        } else {
+            configs = CanalInstanceConfig.find.query()
+                .select("name, clusterId, serverId, status, modifiedTime")
+                .where()
+                .ge("modifiedTime", new Date(lastModifiedTime - SCAN_WINDOW))
+                .findList();
+        }
+
+        // 首次扫描只建立基线，之前的版本在notifier里都会要求全量加载
+        boolean init = lastModifiedTime < 0;
+        Set<String> names = new HashSet<>();
+        for (CanalInstanceConfig config : configs) {
+            names.add(config.getName());
+            long modifiedTime = config.getModifiedTime() != null ? config.getModifiedTime().getTime() : 0;
+            lastModifiedTime = Math.max(lastModifiedTime, modifiedTime);
+            String scope = InstanceChangeNotifier.scope(config.getClusterId(), config.getServerId());
+            InstanceState state = instanceStates.get(config.getName());
+            if (state != null && state.modifiedTime == modifiedTime && StringUtils.equals(state.scope, scope)
+                && StringUtils.equals(state.status, config.getStatus())) {
+                continue;
+            }
+
+            instanceStates.put(config.getName(), new InstanceState(modifiedTime, scope, config.getStatus()));
+            if (!init) {
+                // instance可能从一个集群/单机迁移到另一个，新旧两边都需要通知
+                notifier.notifyChanged(config.getName(), scope, state != null ? state.scope : null);
+            }
+        }
+
+        if (full) {
+            instanceStates.entrySet().removeIf(entry -> {
+                if (names.contains(entry.getKey())) {
+                    return false;
+                }
+                notifier.notifyChanged(entry.getKey(), entry.getValue().scope);
+                return true;
+            });
+        }
+        lastModifiedTime = Math.max(lastModifiedTime, 0);
+        lastCount = count;
+    }
+
+    private static class InstanceState {
+
+        private final long   modifiedTime;
+        private final String scope;
+        private final String status;
+
+        InstanceState(long modifiedTime, String scope, String status){
+            this.modifiedTime = modifiedTime;
+            this.scope = scope;
+            this.status = status;
+        }
+    }
 }
@@ -42,6 +42,8 @@ public abstract class AbstractEtlService {
             DruidDataSource dataSource = DatasourceConfig.DATA_SOURCES.get(config.getDataSourceKey());
 
             List<Object> values = new ArrayList<>();
+            // 同一个数据源和sql的导入使用同一份进度，条件参数不同时重新开始
+            String job = type + "|" + config.getDataSourceKey() + "|" + sql;
             // 拼接条件
             if (config.getMapping().getEtlCondition() != null && params != null) {
                 String etlCondition = config.getMapping().getEtlCondition();
@@ -57,52 +59,22 @@ public abstract class AbstractEtlService {
                 logger.debug("etl sql : {}", sql);
             }
 
-            // 获取总数
-            String countSql = "SELECT COUNT(1) FROM ( " + sql + ") _CNT ";
-            long cnt = (Long) Util.sqlRS(dataSource, countSql, values, rs -> {
-                Long count = null;
-                try {
-                    if (rs.next()) {
-                        count = ((Number) rs.getObject(1)).longValue();
-                    }
-                } catch (Exception e) {
-                    logger.error(e.getMessage(), e);
-                }
-                return count == null ? 0L : count;
-            });
-
-            // 当大于1万条记录时开启多线程
-            if (cnt >= 10000) {
-                int threadCount = Runtime.getRuntime().availableProcessors();
-
-                long offset;
-                long size = CNT_PER_TASK;
-                long workerCnt = cnt / size + (cnt % size == 0 ? 0 : 1);
-
-                if (logger.isDebugEnabled()) {
-                    logger.debug("workerCnt {} for cnt {} threadCount {}", workerCnt, cnt, threadCount);
-                }
-
-                ExecutorService executor = Util.newFixedThreadPool(threadCount, 5000L);
-                List<Future<Boolean>> futures = new ArrayList<>();
-                for (long i = 0; i < workerCnt; i++) {
-                    offset = size * i;
-                    String sqlFinal = sql + " LIMIT " + offset + "," + size;
-                    Future<Boolean> future = executor.submit(() -> executeSqlImport(dataSource,
-                        sqlFinal,
-                        values,
-                        config.getMapping(),
-                        impCount,
-                        errMsg));
-                    futures.add(future);
-                }
-
-                for (Future<Boolean> future : futures) {
-                    future.get();
-                }
-                executor.shutdown();
-            } else {
-                executeSqlImport(dataSource, sql, values, config.getMapping(), impCount, errMsg);
+            // 有单列主键时按主键范围拆分并分页导入，否则按LIMIT offset分页导入
+            String splitKey = getEtlSplitKey();
+            boolean imported = false;
+            if (splitKey != null) {
+                EtlRangeSplitter splitter = new EtlRangeSplitter(dataSource, job, sql, values, splitKey);
+                splitter.setPageSize(CNT_PER_TASK);
+                imported = splitter.execute((pageSql, pageValues, pageCount, pageErrMsg) -> executeSqlImport(dataSource,
+                    pageSql,
+                    pageValues,
+                    config.getMapping(),
+                    pageCount,
+                    pageErrMsg), impCount, errMsg);
+                etlResult.setWorkerThroughput(splitter.getWorkerThroughput());
+            }
+            if (!imported) {
+                importByOffset(dataSource, sql, values, impCount, errMsg);
             }
 
             logger.info("数据全量导入完成, 一共导入 {} 条数据, 耗时: {}", impCount.get(), System.currentTimeMillis() - start);
@@ -119,6 +91,64 @@ public abstract class AbstractEtlService {
         return etlResult;
     }
 
+    private void importByOffset(DataSource dataSource, String sql, List<Object> values, AtomicLong impCount,
+                                List<String> errMsg) throws Exception {
+        // 获取总数
+        String countSql = "SELECT COUNT(1) FROM ( " + sql + ") _CNT ";
+        long cnt = (Long) Util.sqlRS(dataSource, countSql, values, rs -> {
+            Long count = null;
+            try {
+                if (rs.next()) {
+                    count = ((Number) rs.getObject(1)).longValue();
+                }
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+            }
+            return count == null ? 0L : count;
+        });
+
+        // 当大于1万条记录时开启多线程
+        if (cnt >= 10000) {
+            int threadCount = Runtime.getRuntime().availableProcessors();
+
+            long offset;
+            long size = CNT_PER_TASK;
+            long workerCnt = cnt / size + (cnt % size == 0 ? 0 : 1);
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("workerCnt {} for cnt {} threadCount {}", workerCnt, cnt, threadCount);
+            }
+
+            ExecutorService executor = Util.newFixedThreadPool(threadCount, 5000L);
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (long i = 0; i < workerCnt; i++) {
+                offset = size * i;
+                String sqlFinal = sql + " LIMIT " + offset + "," + size;
+                Future<Boolean> future = executor.submit(() -> executeSqlImport(dataSource,
+                    sqlFinal,
+                    values,
+                    config.getMapping(),
+                    impCount,
+                    errMsg));
+                futures.add(future);
+            }
+
+            for (Future<Boolean> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+        } else {
+            executeSqlImport(dataSource, sql, values, config.getMapping(), impCount, errMsg);
+        }
+    }
+
+    /**
+     * 按主键范围拆分导入时使用的列，需要是sql结果中的单个列，返回null时使用LIMIT offset分页导入
+     */
+    protected String getEtlSplitKey() {
+        return null;
+    }
+
     protected abstract boolean executeSqlImport(DataSource ds, String sql, List<Object> values,
                                                 AdapterConfig.AdapterMapping mapping, AtomicLong impCount,
                                                 List<String> errMsg);
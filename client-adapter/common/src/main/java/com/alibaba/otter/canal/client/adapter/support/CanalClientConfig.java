@@ -25,6 +25,10 @@ public class CanalClientConfig {
     private Integer            batchSize;
     // 同步分批提交大小
     private Integer            syncBatchSize = 1000;
+    // 是否按主键合并同一批次内的DML
+    private Boolean            dmlCompaction = false;
+    // 增量快照使用的水位表 db.table, 需要在canal实例的订阅范围内, 为空则不开启
+    private String             snapshotWatermarkTable;
     // 重试次数
     private Integer            retries;
     // 消费超时时间
@@ -108,6 +112,22 @@ public class CanalClientConfig {
         this.syncBatchSize = syncBatchSize;
     }
 
+    public Boolean getDmlCompaction() {
+        return dmlCompaction;
+    }
+
+    public void setDmlCompaction(Boolean dmlCompaction) {
+        this.dmlCompaction = dmlCompaction;
+    }
+
+    public String getSnapshotWatermarkTable() {
+        return snapshotWatermarkTable;
+    }
+
+    public void setSnapshotWatermarkTable(String snapshotWatermarkTable) {
+        this.snapshotWatermarkTable = snapshotWatermarkTable;
+    }
+
     public void setRetries(Integer retries) {
         this.retries = retries;
     }
@@ -0,0 +1,296 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.connector.core.consumer.CommonMessage;
+
+/**
+ * 按主键合并同一批次内的DML (last-write-wins)
+ *
+ * <pre>
+ * 1. 同一个(表, 主键)的INSERT/UPDATE/DELETE序列合并为一个净变更:
+ *    a. INSERT ... DELETE => 丢弃
+ *    b. INSERT ... UPDATE => INSERT最后的数据
+ *    c. UPDATE/DELETE ... UPDATE/INSERT => UPDATE最后的数据，old为批次开始前的值中有变化的字段，没有变化则丢弃
+ *    d. UPDATE/DELETE ... DELETE => DELETE
+ * 2. 净变更按每个主键第一次出现的顺序输出，连续的同表同类型变更合并为一个Dml
+ * 3. DDL、没有主键、修改了主键的DML作为屏障，屏障之前的变更先全部输出，屏障本身原样输出，保证跨主键的先后顺序
+ * 4. 不修改传入的Dml以及其中的数据，多个适配器可以共享同一份数据
+ * 5. 增量快照插入的DELETE+INSERT也作为屏障原样输出，否则会被合并成没有变化的UPDATE而丢弃
+ * </pre>
+ *
+ * @version 1.1.6
+ */
+public class DmlCompactor {
+
+    private static final Logger logger     = LoggerFactory.getLogger(DmlCompactor.class);
+
+    private static final String INSERT     = "INSERT";
+    private static final String UPDATE     = "UPDATE";
+    private static final String DELETE     = "DELETE";
+
+    private final AtomicLong    inputRows  = new AtomicLong(0);
+    private final AtomicLong    outputRows = new AtomicLong(0);
+
+    public List<Dml> compact(List<Dml> dmls) {
+        if (dmls == null || dmls.isEmpty()) {
+            return dmls;
+        }
+
+        List<Dml> result = new ArrayList<>(dmls.size());
+        Map<RowKey, NetChange> pending = new LinkedHashMap<>();
+        long input = 0;
+        for (Dml dml : dmls) {
+            input += rows(dml);
+            if (!isCompactable(dml)) {
+                flush(pending, result);
+                result.add(dml);
+                continue;
+            }
+
+            List<Map<String, Object>> data = dml.getData();
+            for (int i = 0; i < data.size(); i++) {
+                Map<String, Object> row = data.get(i);
+                Map<String, Object> old = dml.getOld() == null ? null : dml.getOld().get(i);
+                RowKey key = new RowKey(dml, row);
+                NetChange change = pending.get(key);
+                if (change == null) {
+                    pending.put(key, new NetChange(dml, row, old));
+                } else {
+                    change.apply(dml, row);
+                }
+            }
+        }
+        flush(pending, result);
+
+        long output = 0;
+        for (Dml dml : result) {
+            output += rows(dml);
+        }
+        inputRows.addAndGet(input);
+        outputRows.addAndGet(output);
+        if (logger.isDebugEnabled()) {
+            logger.debug("compact dml rows {} -> {}", input, output);
+        }
+        return result;
+    }
+
+    /**
+     * 转换并合并一批消息，增量快照插入的消息原样输出
+     */
+    public List<Dml> compact(String destination, String groupId, List<CommonMessage> messages) {
+        if (messages == null) {
+            return new ArrayList<>();
+        }
+
+        List<Dml> result = new ArrayList<>(messages.size());
+        List<Dml> segment = new ArrayList<>();
+        for (CommonMessage message : messages) {
+            Dml dml = MessageUtil.flatMessage2Dml(destination, groupId, message);
+            if (dml == null) {
+                continue;
+            }
+            if (IncrementalSnapshot.isSnapshotMessage(message)) {
+                result.addAll(compact(segment));
+                segment.clear();
+                result.add(dml);
+            } else {
+                segment.add(dml);
+            }
+        }
+        result.addAll(compact(segment));
+        return result;
+    }
+
+    /**
+     * 累计的压缩比例: 1 - 输出行数 / 输入行数
+     */
+    public double getCompactionRatio() {
+        long input = inputRows.get();
+        return input == 0 ? 0 : 1 - (double) outputRows.get() / input;
+    }
+
+    public long getInputRows() {
+        return inputRows.get();
+    }
+
+    public long getOutputRows() {
+        return outputRows.get();
+    }
+
+    private static boolean isCompactable(Dml dml) {
+        if (Boolean.TRUE.equals(dml.getIsDdl()) || dml.getPkNames() == null || dml.getPkNames().isEmpty()
+            || dml.getData() == null || dml.getData().isEmpty()) {
+            return false;
+        }
+
+        String type = dml.getType();
+        if (!INSERT.equalsIgnoreCase(type) && !UPDATE.equalsIgnoreCase(type) && !DELETE.equalsIgnoreCase(type)) {
+            return false;
+        }
+
+        boolean update = UPDATE.equalsIgnoreCase(type);
+        if (update && dml.getOld() != null && dml.getOld().size() != dml.getData().size()) {
+            return false;
+        }
+        for (int i = 0; i < dml.getData().size(); i++) {
+            Map<String, Object> row = dml.getData().get(i);
+            Map<String, Object> old = update && dml.getOld() != null ? dml.getOld().get(i) : null;
+            for (String pkName : dml.getPkNames()) {
+                if (row == null || !row.containsKey(pkName)) {
+                    return false;
+                }
+                if (old != null && old.containsKey(pkName)) {
+                    // 修改了主键，前后两个主键的变更顺序不能打乱
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int rows(Dml dml) {
+        return dml.getData() == null || dml.getData().isEmpty() ? 1 : dml.getData().size();
+    }
+
+    private static void flush(Map<RowKey, NetChange> pending, List<Dml> result) {
+        Dml current = null;
+        for (NetChange change : pending.values()) {
+            String type = change.type();
+            if (type == null) {
+                continue;
+            }
+
+            Dml last = change.last;
+            if (current == null || !type.equals(current.getType())
+                || !Objects.equals(current.getDestination(), last.getDestination())
+                || !Objects.equals(current.getDatabase(), last.getDatabase())
+                || !Objects.equals(current.getTable(), last.getTable())) {
+                current = new Dml();
+                current.setDestination(last.getDestination());
+                current.setGroupId(last.getGroupId());
+                current.setDatabase(last.getDatabase());
+                current.setTable(last.getTable());
+                current.setPkNames(last.getPkNames());
+                current.setIsDdl(false);
+                current.setType(type);
+                current.setData(new ArrayList<>());
+                if (UPDATE.equals(type)) {
+                    current.setOld(new ArrayList<>());
+                }
+                result.add(current);
+            }
+
+            current.setEs(last.getEs());
+            current.setTs(last.getTs());
+            current.getData().add(change.row);
+            if (UPDATE.equals(type)) {
+                current.getOld().add(change.diff());
+            }
+        }
+        pending.clear();
+    }
+
+    private static class RowKey {
+
+        private final String   database;
+        private final String   table;
+        private final Object[] pks;
+        private final int      hashCode;
+
+        RowKey(Dml dml, Map<String, Object> row){
+            this.database = dml.getDatabase();
+            this.table = dml.getTable();
+            this.pks = new Object[dml.getPkNames().size()];
+            for (int i = 0; i < pks.length; i++) {
+                pks[i] = row.get(dml.getPkNames().get(i));
+            }
+            this.hashCode = Objects.hash(database, table, Arrays.hashCode(pks));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RowKey)) return false;
+            RowKey that = (RowKey) o;
+            return Objects.equals(database, that.database) && Objects.equals(table, that.table)
+                   && Arrays.equals(pks, that.pks);
+        }
+    }
+
+    private static class NetChange {
+
+        private final boolean             existed;  // 批次开始之前该行是否存在
+        private final Map<String, Object> original; // 批次开始之前的完整行
+        private boolean                   exists;   // 当前是否存在
+        private Map<String, Object>       row;      // 最后一次变更的数据
+        private Dml                       last;     // 最后一次变更所属的Dml
+
+        NetChange(Dml dml, Map<String, Object> row, Map<String, Object> old){
+            String type = dml.getType();
+            if (INSERT.equalsIgnoreCase(type)) {
+                existed = false;
+                original = null;
+                exists = true;
+            } else if (UPDATE.equalsIgnoreCase(type)) {
+                existed = true;
+                original = new LinkedHashMap<>(row);
+                if (old != null) {
+                    original.putAll(old);
+                }
+                exists = true;
+            } else {
+                existed = true;
+                original = row;
+                exists = false;
+            }
+            this.row = row;
+            this.last = dml;
+        }
+
+        void apply(Dml dml, Map<String, Object> row) {
+            // INSERT/UPDATE之后该行存在，DELETE之后不存在，以最后一次为准
+            exists = !DELETE.equalsIgnoreCase(dml.getType());
+            this.row = row;
+            this.last = dml;
+        }
+
+        /**
+         * 净变更的类型，null代表没有变更
+         */
+        String type() {
+            if (!existed) {
+                return exists ? INSERT : null;
+            } else if (!exists) {
+                return DELETE;
+            } else {
+                return diff().isEmpty() ? null : UPDATE;
+            }
+        }
+
+        Map<String, Object> diff() {
+            Map<String, Object> old = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                String column = entry.getKey();
+                if (original.containsKey(column) && !Objects.equals(original.get(column), entry.getValue())) {
+                    old.put(column, original.get(column));
+                }
+            }
+            return old;
+        }
+    }
+}
@@ -0,0 +1,518 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按主键范围拆分的并行ETL
+ *
+ * <pre>
+ * 1. 通过MIN/MAX找到主键的范围，整数主键按等宽拆分为多个range交给线程池，非整数主键作为一个range
+ * 2. 每个range内按主键分页: 先用 WHERE pk > last ORDER BY pk LIMIT size-1,1 找到这一页的上界，再导入 (last, upper] 的数据，
+ *    避免 LIMIT offset,size 在深分页时越来越慢
+ * 3. 主键条件直接拼接到原sql顶层的WHERE中，使其可以走主键索引；sql带有GROUP BY、DISTINCT等无法拼接，
+ *    或者拆分列不是表中的列(如别名)时，才把原sql作为子查询
+ * 4. 每个range记录已经导入的最后一个主键，每导入一页都写入任务的进度文件，任务失败或者进程重启后，
+ *    相同的sql和参数再次执行时从上次的位置继续，全部完成后删除进度文件
+ * 5. 每个worker线程统计导入的行数和耗时，通过 getWorkerStats 提供给 EtlResult
+ * </pre>
+ *
+ * @version 1.1.6
+ */
+public class EtlRangeSplitter {
+
+    private static final Logger           logger          = LoggerFactory.getLogger(EtlRangeSplitter.class);
+    // 出现在sql顶层时无法直接拼接主键条件的关键字
+    private static final String[]         UNSUPPORTED     = { "GROUP", "HAVING", "ORDER", "LIMIT", "UNION",
+                                                              "DISTINCT" };
+
+    private final DataSource              dataSource;
+    private final String                  sql;
+    private final List<Object>            values;
+    private final String                  splitKey;
+    private final String                  progressKey;
+    private final File                    progressFile;
+    // 拆开的select、from、where，为null时把sql作为子查询
+    private String[]                      parts;
+    private List<EtlRange>                ranges;
+    private int                           threads         = Runtime.getRuntime().availableProcessors();
+    private int                           rangesPerThread = 4;
+    private long                          pageSize        = 10000L;
+    private final Map<String, WorkerStat> workerStats     = new ConcurrentHashMap<>();
+
+    /**
+     * 导入一页数据
+     */
+    public interface PageImporter {
+
+        boolean importPage(String pageSql, List<Object> pageValues, AtomicLong impCount, List<String> errMsg);
+    }
+
+    /**
+     * @param job 任务的标识，同一个任务的进度文件只保留一份
+     */
+    public EtlRangeSplitter(DataSource dataSource, String job, String sql, List<Object> values, String splitKey){
+        this.dataSource = dataSource;
+        this.sql = sql;
+        this.values = values == null ? new ArrayList<>() : values;
+        this.splitKey = splitKey;
+        this.progressKey = sql + "|" + this.values;
+        this.progressFile = new File(progressDir(), "etl-" + md5(job) + ".progress");
+        this.parts = parseSelect(sql);
+    }
+
+    /**
+     * 执行按主键拆分的导入
+     *
+     * @return false代表无法按主键拆分，由调用方使用原有的方式导入
+     */
+    public boolean execute(PageImporter importer, AtomicLong impCount, List<String> errMsg) throws Exception {
+        Object[] bounds = queryBounds();
+        if (bounds == null) {
+            return false;
+        }
+
+        ranges = loadProgress();
+        if (ranges != null) {
+            logger.info("resume etl from {} unfinished ranges, split key: {}", ranges.size(), splitKey);
+        } else if (bounds[0] == null || bounds[1] == null) {
+            return true;
+        } else {
+            ranges = splitRange(bounds[0], bounds[1], Math.max(1, threads * rangesPerThread));
+            if (logger.isDebugEnabled()) {
+                logger.debug("split etl by key: {} from {} to {} into {} ranges",
+                    splitKey,
+                    bounds[0],
+                    bounds[1],
+                    ranges.size());
+            }
+            saveProgress();
+        }
+
+        List<EtlRange> pending = new ArrayList<>();
+        for (EtlRange range : ranges) {
+            if (!range.finished) {
+                pending.add(range);
+            }
+        }
+        if (!pending.isEmpty()) {
+            ExecutorService executor = Util.newFixedThreadPool(Math.min(threads, pending.size()), 5000L);
+            try {
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (EtlRange range : pending) {
+                    futures.add(executor.submit(() -> importRange(range, importer, impCount, errMsg)));
+                }
+                for (Future<Boolean> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        for (Map.Entry<String, WorkerStat> entry : workerStats.entrySet()) {
+            WorkerStat stat = entry.getValue();
+            logger.info("etl worker {} imported {} rows in {}ms, {} rows/s",
+                entry.getKey(),
+                stat.getRows(),
+                stat.getElapsed(),
+                stat.getRowsPerSecond());
+        }
+
+        int unfinished = 0;
+        for (EtlRange range : ranges) {
+            if (!range.finished) {
+                unfinished++;
+            }
+        }
+        if (unfinished > 0) {
+            logger.warn("{} etl ranges are unfinished, will resume from the last imported key next time, progress: {}",
+                unfinished,
+                progressFile);
+        } else {
+            clearProgress();
+        }
+        return true;
+    }
+
+    /**
+     * 查询拆分列的MIN/MAX，先尝试把sql拆开直接查询，失败时改为子查询，都失败时返回null
+     */
+    private Object[] queryBounds() {
+        if (parts != null) {
+            try {
+                return queryBounds(query("MIN(" + splitKey + "), MAX(" + splitKey + ")", null));
+            } catch (Exception e) {
+                logger.info("can't restrict etl sql by key: {} directly, use it as a subquery", splitKey);
+                parts = null;
+            }
+        }
+        String boundSql = query("MIN(" + splitKey + "), MAX(" + splitKey + ")", null);
+        try {
+            return queryBounds(boundSql);
+        } catch (Exception e) {
+            logger.warn("can't split etl by key: {}, fallback to limit offset, sql: {}", splitKey, boundSql, e);
+            return null;
+        }
+    }
+
+    private Object[] queryBounds(String boundSql) {
+        Object[] bounds = (Object[]) Util.sqlRS(dataSource, boundSql, values, rs -> {
+            try {
+                if (rs.next()) {
+                    return new Object[] { rs.getObject(1), rs.getObject(2) };
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return null;
+        });
+        return bounds == null ? new Object[2] : bounds;
+    }
+
+    /**
+     * 拼接查询语句，select为null时查询原sql的列；能拆开原sql时把condition和原有的WHERE条件用AND连接，否则把原sql作为子查询
+     */
+    private String query(String select, String condition) {
+        if (parts == null) {
+            return "SELECT " + (select == null ? "*" : select) + " FROM ( " + sql + ") _ETL"
+                   + (condition == null ? "" : " WHERE " + condition);
+        }
+        StringBuilder query = new StringBuilder("SELECT ").append(select == null ? parts[0] : select)
+            .append(" FROM ")
+            .append(parts[1]);
+        if (parts[2] != null && condition != null) {
+            query.append(" WHERE (").append(parts[2]).append(") AND ").append(condition);
+        } else if (parts[2] != null) {
+            query.append(" WHERE ").append(parts[2]);
+        } else if (condition != null) {
+            query.append(" WHERE ").append(condition);
+        }
+        return query.toString();
+    }
+
+    /**
+     * 按主键分页导入一个range，返回是否全部完成
+     */
+    private boolean importRange(EtlRange range, PageImporter importer, AtomicLong impCount, List<String> errMsg) {
+        WorkerStat stat = workerStats.computeIfAbsent(Thread.currentThread().getName(), k -> new WorkerStat());
+        while (true) {
+            boolean first = range.last == null;
+            Object lower = first ? range.start : range.last;
+            String condition = splitKey + (first ? " >= ?" : " > ?") + " AND " + splitKey + " <= ?";
+            String boundarySql = query(splitKey, condition) + " ORDER BY " + splitKey + " LIMIT " + (pageSize - 1)
+                                 + ",1";
+            List<Object> pageValues = new ArrayList<>(values);
+            pageValues.add(lower);
+            pageValues.add(range.end);
+
+            long begin = System.currentTimeMillis();
+            List<String> pageErrMsg = new ArrayList<>();
+            try {
+                Object upper = Util.sqlRS(dataSource, boundarySql, pageValues, rs -> {
+                    try {
+                        return rs.next() ? rs.getObject(1) : null;
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                boolean last = upper == null;
+                if (last) {
+                    upper = range.end;
+                }
+
+                pageValues.set(pageValues.size() - 1, upper);
+                AtomicLong pageCount = new AtomicLong();
+                boolean success = importer.importPage(query(null, condition),
+                    pageValues,
+                    pageCount,
+                    pageErrMsg);
+                impCount.addAndGet(pageCount.get());
+                stat.rows.addAndGet(pageCount.get());
+                if (!success || !pageErrMsg.isEmpty()) {
+                    throw new RuntimeException("import etl page (" + lower + ", " + upper + "] failed");
+                }
+
+                range.last = upper;
+                range.finished = last;
+                saveProgress();
+                if (last) {
+                    return true;
+                }
+            } catch (Exception e) {
+                logger.error("etl range [{}, {}] failed after key {}", range.start, range.end, range.last, e);
+                synchronized (errMsg) {
+                    errMsg.addAll(pageErrMsg);
+                    errMsg.add("etl range [" + range.start + ", " + range.end + "] failed ==>" + e.getMessage());
+                }
+                return false;
+            } finally {
+                stat.elapsed.addAndGet(System.currentTimeMillis() - begin);
+            }
+        }
+    }
+
+    /**
+     * 把 SELECT ... FROM ... [WHERE ...] 拆成select列、FROM部分和WHERE条件，顶层带有UNSUPPORTED中的关键字时返回null
+     */
+    static String[] parseSelect(String sql) {
+        String trimmed = sql.trim();
+        if (!trimmed.regionMatches(true, 0, "SELECT", 0, 6) || isIdentifierPart(trimmed, 6)) {
+            return null;
+        }
+        for (String keyword : UNSUPPORTED) {
+            if (indexOfKeyword(trimmed, keyword, 0) >= 0) {
+                return null;
+            }
+        }
+        int from = indexOfKeyword(trimmed, "FROM", 6);
+        if (from < 0) {
+            return null;
+        }
+        int where = indexOfKeyword(trimmed, "WHERE", from);
+        String select = trimmed.substring(6, from).trim();
+        String table = (where < 0 ? trimmed.substring(from + 4) : trimmed.substring(from + 4, where)).trim();
+        String condition = where < 0 ? null : trimmed.substring(where + 5).trim();
+        return new String[] { select, table, condition };
+    }
+
+    /**
+     * 不在括号和引号内的关键字的位置，找不到时返回-1
+     */
+    private static int indexOfKeyword(String sql, String keyword, int fromIndex) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = fromIndex; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && sql.regionMatches(true, i, keyword, 0, keyword.length())
+                       && !isIdentifierPart(sql, i - 1) && !isIdentifierPart(sql, i + keyword.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isIdentifierPart(String sql, int index) {
+        if (index < 0 || index >= sql.length()) {
+            return false;
+        }
+        char c = sql.charAt(index);
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+    }
+
+    /**
+     * 读取任务的进度，sql或参数与上次不同时丢弃
+     */
+    @SuppressWarnings("unchecked")
+    private List<EtlRange> loadProgress() {
+        if (!progressFile.exists()) {
+            return null;
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new FileInputStream(progressFile))) {
+            if (progressKey.equals(input.readObject())) {
+                return (List<EtlRange>) input.readObject();
+            }
+            logger.info("etl sql or params changed, discard progress: {}", progressFile);
+        } catch (Exception e) {
+            logger.warn("read etl progress {} failed, start from the beginning", progressFile, e);
+        }
+        return null;
+    }
+
+    /**
+     * 先写临时文件再替换，避免进程在写入过程中退出时留下不完整的进度
+     */
+    private synchronized void saveProgress() {
+        File tmp = new File(progressFile.getPath() + ".tmp");
+        try {
+            try (ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(tmp))) {
+                output.writeObject(progressKey);
+                output.writeObject(new ArrayList<>(ranges));
+            }
+            if (!tmp.renameTo(progressFile) && !(progressFile.delete() && tmp.renameTo(progressFile))) {
+                throw new IOException("rename " + tmp + " to " + progressFile + " failed");
+            }
+        } catch (IOException e) {
+            logger.warn("save etl progress {} failed", progressFile, e);
+        }
+    }
+
+    /**
+     * 删除任务的进度，下次执行时重新拆分
+     */
+    public synchronized void clearProgress() {
+        if (progressFile.exists() && !progressFile.delete()) {
+            logger.warn("delete etl progress {} failed", progressFile);
+        }
+    }
+
+    private static File progressDir() {
+        File dir;
+        try {
+            dir = new File(Util.getConfDirPath().getParentFile(), "etl");
+        } catch (RuntimeException e) {
+            dir = new File(System.getProperty("java.io.tmpdir"), "canal-etl");
+        }
+        if (!dir.exists() && !dir.mkdirs()) {
+            dir = new File(System.getProperty("java.io.tmpdir"));
+        }
+        return dir;
+    }
+
+    private static String md5(String job) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("MD5").digest(job.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b & 0xff));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 整数主键按等宽拆分为最多rangeCount个range，其他类型作为一个range
+     */
+    static List<EtlRange> splitRange(Object min, Object max, int rangeCount) {
+        List<EtlRange> ranges = new ArrayList<>();
+        if (isIntegral(min) && isIntegral(max) && rangeCount > 1) {
+            BigInteger lower = toBigInteger(min);
+            BigInteger upper = toBigInteger(max);
+            BigInteger span = upper.subtract(lower).add(BigInteger.ONE);
+            BigInteger width = span.add(BigInteger.valueOf(rangeCount - 1)).divide(BigInteger.valueOf(rangeCount));
+            BigInteger start = lower;
+            while (start.compareTo(upper) <= 0) {
+                BigInteger end = start.add(width).subtract(BigInteger.ONE).min(upper);
+                ranges.add(new EtlRange(toKey(start), toKey(end)));
+                start = end.add(BigInteger.ONE);
+            }
+        } else {
+            ranges.add(new EtlRange(min, max));
+        }
+        return ranges;
+    }
+
+    private static boolean isIntegral(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte
+            || value instanceof BigInteger) {
+            return true;
+        }
+        return value instanceof BigDecimal && ((BigDecimal) value).stripTrailingZeros().scale() <= 0;
+    }
+
+    private static BigInteger toBigInteger(Object value) {
+        if (value instanceof BigInteger) {
+            return (BigInteger) value;
+        } else if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toBigIntegerExact();
+        } else {
+            return BigInteger.valueOf(((Number) value).longValue());
+        }
+    }
+
+    private static Object toKey(BigInteger value) {
+        return value.bitLength() < 64 ? (Object) value.longValue() : new BigDecimal(value);
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setRangesPerThread(int rangesPerThread) {
+        this.rangesPerThread = rangesPerThread;
+    }
+
+    public void setPageSize(long pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public Map<String, WorkerStat> getWorkerStats() {
+        return workerStats;
+    }
+
+    /**
+     * 各worker线程的吞吐，行/秒
+     */
+    public Map<String, Long> getWorkerThroughput() {
+        Map<String, Long> throughput = new LinkedHashMap<>();
+        for (Map.Entry<String, WorkerStat> entry : workerStats.entrySet()) {
+            throughput.put(entry.getKey(), entry.getValue().getRowsPerSecond());
+        }
+        return throughput;
+    }
+
+    static class EtlRange implements Serializable {
+
+        private static final long serialVersionUID = -2843524312373458815L;
+
+        private final Object      start;
+        private final Object      end;
+        private volatile Object   last; // 已经导入的最后一个主键
+        private volatile boolean  finished;
+
+        EtlRange(Object start, Object end){
+            this.start = start;
+            this.end = end;
+        }
+
+        Object getStart() {
+            return start;
+        }
+
+        Object getEnd() {
+            return end;
+        }
+    }
+
+    public static class WorkerStat {
+
+        private final AtomicLong rows    = new AtomicLong();
+        private final AtomicLong elapsed = new AtomicLong();
+
+        public long getRows() {
+            return rows.get();
+        }
+
+        public long getElapsed() {
+            return elapsed.get();
+        }
+
+        public long getRowsPerSecond() {
+            long millis = elapsed.get();
+            return millis == 0 ? rows.get() : rows.get() * 1000 / millis;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.alibaba.otter.canal.client.adapter.support;
 
 import java.io.Serializable;
+import java.util.Map;
 
 /**
  * ETL的结果对象
@@ -18,6 +19,9 @@ public class EtlResult implements Serializable {
 
     private String            errorMessage;
 
+    // 按主键拆分导入时各worker线程的吞吐，行/秒
+    private Map<String, Long> workerThroughput;
+
     public boolean getSucceeded() {
         return succeeded;
     }
@@ -41,4 +45,12 @@ public class EtlResult implements Serializable {
     public void setErrorMessage(String errorMessage) {
         this.errorMessage = errorMessage;
     }
+
+    public Map<String, Long> getWorkerThroughput() {
+        return workerThroughput;
+    }
+
+    public void setWorkerThroughput(Map<String, Long> workerThroughput) {
+        this.workerThroughput = workerThroughput;
+    }
 }
@@ -0,0 +1,454 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.connector.core.consumer.CommonMessage;
+
+/**
+ * 基于水位的增量快照，在不停止增量同步的情况下按主键分块回灌整张表
+ *
+ * <pre>
+ * 每个chunk的处理过程:
+ * 1. 快照线程向水位表写入低水位，按主键读取一个chunk，再写入高水位
+ * 2. 增量线程在binlog中看到低水位之后，记录这张表发生变更的主键
+ * 3. 增量线程看到高水位时，chunk中去掉低高水位之间变更过的行，剩余的行以DELETE+INSERT的形式插入到高水位的位置交给适配器，
+ *    这些行在高水位处的值和chunk中读到的值一致，之后的变更继续按binlog顺序覆盖。插入的消息不参与DmlCompactor的合并
+ * 4. 这一批消息ack之后快照线程继续下一个chunk，rollback时恢复到这一批消息处理之前的状态
+ * </pre>
+ *
+ * 水位表需要在canal实例的订阅范围内:
+ *
+ * <pre>
+ * CREATE TABLE canal_snapshot_watermark (
+ *     id    VARCHAR(128) NOT NULL PRIMARY KEY,
+ *     value VARCHAR(64)  NOT NULL
+ * );
+ * </pre>
+ *
+ * @version 1.1.6
+ */
+public class IncrementalSnapshot {
+
+    private static final Logger                           logger           = LoggerFactory.getLogger(IncrementalSnapshot.class);
+
+    private static final Map<String, IncrementalSnapshot> SNAPSHOTS        = new ConcurrentHashMap<>();
+
+    private static final String                           INSERT           = "INSERT";
+    private static final String                           DELETE           = "DELETE";
+    private static final Pattern                          IDENTIFIER       = Pattern.compile("[A-Za-z0-9_$]+");
+
+    private final String                                  destination;
+    private final String                                  watermarkId;                                           // 水位表中的行id
+    private final String                                  watermarkDatabase;
+    private final String                                  watermarkTable;
+    private long                                          watermarkTimeout = 10 * 60 * 1000L;
+    private final ExecutorService                         executor;
+    private final Map<String, Map<String, Object>>        tasks            = new ConcurrentHashMap<>();
+    private volatile boolean                              running          = true;
+    private volatile Window                               window;                                                // 当前chunk的窗口
+
+    // 当前批次开始前的窗口状态，用于rollback
+    private Window                                        batchWindow;
+    private int                                           batchState;
+    private final List<String>                            batchChanged     = new ArrayList<>();
+
+    /**
+     * @param watermarkTable 水位表 db.table
+     */
+    public IncrementalSnapshot(String destination, String groupId, String watermarkTable){
+        this.destination = destination;
+        this.watermarkId = key(destination, groupId);
+        int idx = watermarkTable.indexOf('.');
+        if (idx <= 0) {
+            throw new IllegalArgumentException("snapshot watermark table should be db.table: " + watermarkTable);
+        }
+        this.watermarkDatabase = watermarkTable.substring(0, idx).trim();
+        this.watermarkTable = watermarkTable.substring(idx + 1).trim();
+        quote(this.watermarkDatabase);
+        quote(this.watermarkTable);
+        this.executor = Util.newSingleDaemonThreadExecutor(5000L);
+    }
+
+    public static void register(IncrementalSnapshot snapshot) {
+        SNAPSHOTS.put(snapshot.watermarkId, snapshot);
+    }
+
+    public static IncrementalSnapshot get(String destination, String groupId) {
+        return SNAPSHOTS.get(key(destination, groupId));
+    }
+
+    private static String key(String destination, String groupId) {
+        return destination + "|" + StringUtils.trimToEmpty(groupId);
+    }
+
+    public void setWatermarkTimeout(long watermarkTimeout) {
+        this.watermarkTimeout = watermarkTimeout;
+    }
+
+    /**
+     * 增量快照插入到高水位处的消息
+     */
+    public static boolean isSnapshotMessage(CommonMessage message) {
+        return message instanceof SnapshotMessage;
+    }
+
+    /**
+     * 提交一个快照任务，同一时间只执行一个任务，后提交的任务排队执行
+     *
+     * @param dataSource 源库数据源，需要和canal实例是同一个库
+     * @param pk 单列主键
+     * @return 任务id
+     * @throws IllegalArgumentException 库表名不合法、表不存在或者pk不是表的单列主键
+     */
+    public String submit(DataSource dataSource, String database, String table, String pk, int chunkSize) {
+        if (!running) {
+            throw new IllegalStateException("incremental snapshot of " + watermarkId + " is stopped");
+        }
+        checkTable(dataSource, database, table, pk);
+        String taskId = database + "." + table + "-" + System.currentTimeMillis();
+        Map<String, Object> status = new ConcurrentHashMap<>();
+        status.put("task", taskId);
+        status.put("state", "WAITING");
+        status.put("chunks", 0);
+        status.put("rows", 0L);
+        tasks.put(taskId, status);
+        executor.execute(() -> {
+            status.put("state", "RUNNING");
+            try {
+                snapshot(dataSource, database, table, pk, chunkSize, status);
+                status.put("state", running ? "FINISHED" : "STOPPED");
+            } catch (Throwable e) {
+                logger.error("incremental snapshot {} failed", taskId, e);
+                status.put("state", "FAILED");
+                status.put("error", String.valueOf(e.getMessage()));
+            } finally {
+                window = null;
+            }
+        });
+        return taskId;
+    }
+
+    public Map<String, Map<String, Object>> getTasks() {
+        return Collections.unmodifiableMap(tasks);
+    }
+
+    /**
+     * 库表名以及主键只能是普通的标识符，并且pk必须是表的单列主键
+     */
+    private static void checkTable(DataSource dataSource, String database, String table, String pk) {
+        quote(database);
+        quote(table);
+        quote(pk);
+        List<String> pkColumns = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection()) {
+            DatabaseMetaData metaData = conn.getMetaData();
+            try (ResultSet rs = metaData.getPrimaryKeys(database, null, table)) {
+                while (rs.next()) {
+                    pkColumns.add(rs.getString("COLUMN_NAME"));
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("load primary key of " + database + "." + table + " failed", e);
+        }
+        if (pkColumns.size() != 1 || !pkColumns.get(0).equalsIgnoreCase(pk)) {
+            throw new IllegalArgumentException(pk + " is not the single column primary key of " + database + "."
+                                               + table + ", primary key: " + pkColumns);
+        }
+    }
+
+    private static String quote(String name) {
+        if (name == null || !IDENTIFIER.matcher(name).matches()) {
+            throw new IllegalArgumentException("illegal identifier: " + name);
+        }
+        return "`" + name + "`";
+    }
+
+    private void snapshot(DataSource dataSource, String database, String table, String pk, int chunkSize,
+                          Map<String, Object> status) throws Exception {
+        logger.info("incremental snapshot of {}.{} by {} started, destination: {}", database, table, pk, destination);
+        String chunkSql = "SELECT * FROM " + quote(database) + "." + quote(table) + " WHERE " + quote(pk)
+                          + " > ? ORDER BY " + quote(pk) + " LIMIT " + chunkSize;
+        String firstChunkSql = "SELECT * FROM " + quote(database) + "." + quote(table) + " ORDER BY " + quote(pk)
+                               + " LIMIT " + chunkSize;
+        Object last = null;
+        long rows = 0;
+        int chunks = 0;
+        while (running) {
+            Window w = openWindow(database, table, pk);
+            writeWatermark(dataSource, w.low);
+            List<Map<String, Object>> chunk = readChunk(dataSource, last == null ? firstChunkSql : chunkSql, last);
+            w.setChunk(chunk);
+            writeWatermark(dataSource, w.high);
+
+            if (!w.done.await(watermarkTimeout, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("watermark is not received in " + watermarkTimeout
+                                           + "ms, check the canal filter includes " + watermarkDatabase + "."
+                                           + watermarkTable);
+            }
+
+            chunks++;
+            rows += chunk.size();
+            status.put("chunks", chunks);
+            status.put("rows", rows);
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+            last = chunk.get(chunk.size() - 1).get(w.pkColumn(chunk.get(0)));
+            status.put("last", String.valueOf(last));
+        }
+        logger.info("incremental snapshot of {}.{} finished, {} rows in {} chunks", database, table, rows, chunks);
+    }
+
+    /**
+     * 发布一个新的窗口，等待增量线程看到它的低水位
+     */
+    Window openWindow(String database, String table, String pk) {
+        Window w = new Window(database, table, pk, UUID.randomUUID().toString());
+        window = w;
+        return w;
+    }
+
+    private void writeWatermark(DataSource dataSource, String value) throws Exception {
+        String sql = "INSERT INTO " + quote(watermarkDatabase) + "." + quote(watermarkTable)
+                     + " (id, value) VALUES (?, ?) ON DUPLICATE KEY UPDATE value = VALUES(value)";
+        try (Connection conn = dataSource.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, watermarkId);
+            pstmt.setString(2, value);
+            pstmt.executeUpdate();
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+        }
+    }
+
+    private List<Map<String, Object>> readChunk(DataSource dataSource, String sql, Object last) throws Exception {
+        List<Map<String, Object>> chunk = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            if (last != null) {
+                pstmt.setObject(1, last);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columnCount = metaData.getColumnCount();
+                while (rs.next()) {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (int i = 1; i <= columnCount; i++) {
+                        row.put(metaData.getColumnLabel(i), rs.getObject(i));
+                    }
+                    chunk.add(row);
+                }
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * 在增量线程中处理一批消息: 丢弃水位消息，记录窗口内变更的主键，在高水位处插入chunk中剩余的行
+     */
+    public List<CommonMessage> process(List<CommonMessage> messages) {
+        Window w = window;
+        batchWindow = w;
+        batchChanged.clear();
+        if (w == null || messages == null) {
+            return messages;
+        }
+
+        batchState = w.state;
+        List<CommonMessage> result = new ArrayList<>(messages.size() + 2);
+        for (CommonMessage message : messages) {
+            if (isWatermark(message)) {
+                for (Map<String, Object> row : message.getData()) {
+                    if (!watermarkId.equals(String.valueOf(row.get("id")))) {
+                        continue;
+                    }
+                    String value = String.valueOf(row.get("value"));
+                    if (w.state == Window.WAITING_LOW && w.low.equals(value)) {
+                        w.state = Window.OPEN;
+                    } else if (w.state == Window.OPEN && w.high.equals(value)) {
+                        w.emit(result);
+                        w.state = Window.EMITTED;
+                    }
+                }
+                continue;
+            }
+
+            if (w.state == Window.OPEN && w.matches(message)) {
+                collectChanged(w, message.getData());
+                collectChanged(w, message.getOld());
+            }
+            result.add(message);
+        }
+        return result;
+    }
+
+    private void collectChanged(Window w, List<Map<String, Object>> rows) {
+        if (rows == null) {
+            return;
+        }
+        for (Map<String, Object> row : rows) {
+            String pkColumn = row == null ? null : w.pkColumn(row);
+            if (pkColumn != null && row.containsKey(pkColumn)) {
+                String pkValue = String.valueOf(row.get(pkColumn));
+                if (w.changed.add(pkValue)) {
+                    batchChanged.add(pkValue);
+                }
+            }
+        }
+    }
+
+    private boolean isWatermark(CommonMessage message) {
+        return message.getData() != null && !Boolean.TRUE.equals(message.getIsDdl())
+               && watermarkTable.equalsIgnoreCase(message.getTable())
+               && watermarkDatabase.equalsIgnoreCase(message.getDatabase());
+    }
+
+    /**
+     * 这一批消息已经写入适配器，完成已经输出的chunk
+     */
+    public void ack() {
+        Window w = batchWindow;
+        batchWindow = null;
+        batchChanged.clear();
+        if (w != null && w.state == Window.EMITTED) {
+            if (window == w) {
+                window = null;
+            }
+            w.done.countDown();
+        }
+    }
+
+    /**
+     * 这一批消息会重新投递，恢复到处理之前的状态
+     */
+    public void rollback() {
+        Window w = batchWindow;
+        batchWindow = null;
+        if (w != null) {
+            w.state = batchState;
+            w.changed.removeAll(batchChanged);
+        }
+        batchChanged.clear();
+    }
+
+    public void stop() {
+        running = false;
+        SNAPSHOTS.remove(watermarkId, this);
+        Window w = window;
+        if (w != null) {
+            w.done.countDown();
+        }
+        executor.shutdownNow();
+    }
+
+    static class Window {
+
+        static final int                           WAITING_LOW = 0;
+        static final int                           OPEN        = 1;
+        static final int                           EMITTED     = 2;
+
+        final String                               database;
+        final String                               table;
+        final String                               pk;
+        final String                               low;
+        final String                               high;
+        final Set<String>                          changed     = new HashSet<>();
+        final CountDownLatch                       done        = new CountDownLatch(1);
+        volatile int                               state       = WAITING_LOW;
+        private volatile List<Map<String, Object>> chunk       = Collections.emptyList();
+
+        Window(String database, String table, String pk, String id){
+            this.database = database;
+            this.table = table;
+            this.pk = pk;
+            this.low = "low-" + id;
+            this.high = "high-" + id;
+        }
+
+        void setChunk(List<Map<String, Object>> chunk) {
+            this.chunk = chunk;
+        }
+
+        boolean matches(CommonMessage message) {
+            return !Boolean.TRUE.equals(message.getIsDdl()) && table.equalsIgnoreCase(message.getTable())
+                   && database.equalsIgnoreCase(message.getDatabase());
+        }
+
+        /**
+         * 结果集中的列名大小写可能和配置的主键不一致
+         */
+        String pkColumn(Map<String, Object> row) {
+            if (row.containsKey(pk)) {
+                return pk;
+            }
+            for (String column : row.keySet()) {
+                if (column.equalsIgnoreCase(pk)) {
+                    return column;
+                }
+            }
+            return pk;
+        }
+
+        void emit(List<CommonMessage> result) {
+            List<Map<String, Object>> rows = new ArrayList<>(chunk.size());
+            for (Map<String, Object> row : chunk) {
+                if (!changed.contains(String.valueOf(row.get(pkColumn(row))))) {
+                    rows.add(row);
+                }
+            }
+            if (rows.isEmpty()) {
+                return;
+            }
+
+            // 先删除再插入，适配器按覆盖写处理
+            String pkName = pkColumn(rows.get(0));
+            result.add(message(DELETE, pkName, rows));
+            result.add(message(INSERT, pkName, rows));
+        }
+
+        private CommonMessage message(String type, String pkName, List<Map<String, Object>> rows) {
+            CommonMessage message = new SnapshotMessage();
+            message.setDatabase(database);
+            message.setTable(table);
+            message.setPkNames(Collections.singletonList(pkName));
+            message.setIsDdl(false);
+            message.setType(type);
+            long now = System.currentTimeMillis();
+            message.setEs(now);
+            message.setTs(now);
+            List<Map<String, Object>> data = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                data.add(new LinkedHashMap<>(row));
+            }
+            message.setData(data);
+            return message;
+        }
+    }
+
+    private static class SnapshotMessage extends CommonMessage {
+
+        private static final long serialVersionUID = -3960325462394812740L;
+    }
+}
@@ -0,0 +1,105 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DmlCompactorTest {
+
+    @Test
+    public void testMergeUpdates() {
+        List<Dml> dmls = new ArrayList<>();
+        dmls.add(dml("UPDATE", row(1, 1), old(0)));
+        dmls.add(dml("UPDATE", row(2, 1), old(0)));
+        dmls.add(dml("UPDATE", row(1, 2), old(1)));
+        dmls.add(dml("UPDATE", row(1, 3), old(2)));
+
+        DmlCompactor compactor = new DmlCompactor();
+        List<Dml> result = compactor.compact(dmls);
+        Assert.assertEquals(1, result.size());
+        Dml dml = result.get(0);
+        Assert.assertEquals("UPDATE", dml.getType());
+        Assert.assertEquals(Arrays.asList(row(1, 3), row(2, 1)), dml.getData());
+        Assert.assertEquals(Arrays.asList(Collections.singletonMap("cnt", 0), Collections.singletonMap("cnt", 0)),
+            dml.getOld());
+        Assert.assertEquals(0.5, compactor.getCompactionRatio(), 0.0001);
+    }
+
+    @Test
+    public void testInsertAndDelete() {
+        List<Dml> dmls = new ArrayList<>();
+        dmls.add(dml("INSERT", row(1, 1), null));
+        dmls.add(dml("UPDATE", row(1, 2), old(1)));
+        dmls.add(dml("INSERT", row(2, 1), null));
+        dmls.add(dml("DELETE", row(2, 1), null));
+        dmls.add(dml("DELETE", row(3, 5), null));
+        dmls.add(dml("INSERT", row(3, 5), null));
+        dmls.add(dml("UPDATE", row(4, 5), old(4)));
+        dmls.add(dml("DELETE", row(4, 5), null));
+
+        List<Dml> result = new DmlCompactor().compact(dmls);
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals("INSERT", result.get(0).getType());
+        Assert.assertEquals(Collections.singletonList(row(1, 2)), result.get(0).getData());
+        // 3先删除再插入相同的数据，没有净变更
+        Assert.assertEquals("DELETE", result.get(1).getType());
+        Assert.assertEquals(Collections.singletonList(row(4, 5)), result.get(1).getData());
+    }
+
+    @Test
+    public void testBarrier() {
+        Dml ddl = new Dml();
+        ddl.setDatabase("test");
+        ddl.setTable("t1");
+        ddl.setIsDdl(true);
+        ddl.setType("ALTER");
+        ddl.setSql("alter table t1 add column c int");
+
+        List<Dml> dmls = new ArrayList<>();
+        dmls.add(dml("UPDATE", row(1, 1), old(0)));
+        dmls.add(ddl);
+        dmls.add(dml("UPDATE", row(1, 2), old(1)));
+        // 修改主键
+        Map<String, Object> old = new LinkedHashMap<>();
+        old.put("id", 1);
+        dmls.add(dml("UPDATE", row(5, 2), old));
+        dmls.add(dml("UPDATE", row(5, 3), old(2)));
+
+        List<Dml> result = new DmlCompactor().compact(dmls);
+        Assert.assertEquals(5, result.size());
+        Assert.assertSame(ddl, result.get(1));
+        Assert.assertSame(dmls.get(3), result.get(3));
+    }
+
+    private static Dml dml(String type, Map<String, Object> data, Map<String, Object> old) {
+        Dml dml = new Dml();
+        dml.setDestination("example");
+        dml.setDatabase("test");
+        dml.setTable("t1");
+        dml.setIsDdl(false);
+        dml.setPkNames(Collections.singletonList("id"));
+        dml.setType(type);
+        dml.setData(Collections.singletonList(data));
+        if (old != null) {
+            dml.setOld(Collections.singletonList(old));
+        }
+        return dml;
+    }
+
+    private static Map<String, Object> old(int cnt) {
+        return Collections.singletonMap("cnt", cnt);
+    }
+
+    private static Map<String, Object> row(int id, int cnt) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", id);
+        row.put("cnt", cnt);
+        return row;
+    }
+}
@@ -0,0 +1,66 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EtlRangeSplitterTest {
+
+    @Test
+    public void testSplitIntegral() {
+        List<EtlRangeSplitter.EtlRange> ranges = EtlRangeSplitter.splitRange(1L, 100L, 8);
+        Assert.assertEquals(8, ranges.size());
+        Assert.assertEquals(1L, ranges.get(0).getStart());
+        Assert.assertEquals(13L, ranges.get(0).getEnd());
+        Assert.assertEquals(100L, ranges.get(ranges.size() - 1).getEnd());
+        // range之间首尾相接，没有空隙和重叠
+        for (int i = 1; i < ranges.size(); i++) {
+            Assert.assertEquals((Long) ranges.get(i - 1).getEnd() + 1, ranges.get(i).getStart());
+        }
+
+        // 数据量小于range数时不产生空range
+        ranges = EtlRangeSplitter.splitRange(5, 7, 16);
+        Assert.assertEquals(3, ranges.size());
+        Assert.assertEquals(7L, ranges.get(2).getEnd());
+
+        ranges = EtlRangeSplitter.splitRange(new BigDecimal("10"), new BigDecimal("29"), 2);
+        Assert.assertEquals(2, ranges.size());
+        Assert.assertEquals(19L, ranges.get(0).getEnd());
+        Assert.assertEquals(20L, ranges.get(1).getStart());
+    }
+
+    @Test
+    public void testSplitNonIntegral() {
+        List<EtlRangeSplitter.EtlRange> ranges = EtlRangeSplitter.splitRange("a", "z", 8);
+        Assert.assertEquals(1, ranges.size());
+        Assert.assertEquals("a", ranges.get(0).getStart());
+        Assert.assertEquals("z", ranges.get(0).getEnd());
+
+        ranges = EtlRangeSplitter.splitRange(new BigDecimal("1.5"), new BigDecimal("9"), 8);
+        Assert.assertEquals(1, ranges.size());
+    }
+
+    @Test
+    public void testParseSelect() {
+        String[] parts = EtlRangeSplitter.parseSelect("SELECT * FROM mytest.user");
+        Assert.assertArrayEquals(new String[] { "*", "mytest.user", null }, parts);
+
+        // 原有的WHERE条件单独拆出，子查询和引号内的关键字不影响拆分
+        parts = EtlRangeSplitter.parseSelect(
+            "select a.id, (select max(b.id) from role b where b.uid = a.id) as rid from user a "
+                                             + "where a.name <> 'order by' and a.c_time >= ?");
+        Assert.assertNotNull(parts);
+        Assert.assertEquals("a.id, (select max(b.id) from role b where b.uid = a.id) as rid", parts[0]);
+        Assert.assertEquals("user a", parts[1]);
+        Assert.assertEquals("a.name <> 'order by' and a.c_time >= ?", parts[2]);
+
+        // 顶层的分组、排序、去重等无法直接拼接条件
+        Assert.assertNull(EtlRangeSplitter.parseSelect("SELECT uid, count(1) FROM t GROUP BY uid"));
+        Assert.assertNull(EtlRangeSplitter.parseSelect("SELECT DISTINCT uid FROM t"));
+        Assert.assertNull(EtlRangeSplitter.parseSelect("SELECT * FROM t WHERE id > 1 LIMIT 10"));
+        Assert.assertNull(EtlRangeSplitter.parseSelect("SELECT id FROM a UNION SELECT id FROM b"));
+        Assert.assertNotNull(EtlRangeSplitter.parseSelect("SELECT t.`order` FROM t"));
+    }
+}
@@ -0,0 +1,141 @@
+package com.alibaba.otter.canal.client.adapter.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.connector.core.consumer.CommonMessage;
+
+public class IncrementalSnapshotTest {
+
+    @Test
+    public void testDeduplicateWithinWindow() {
+        IncrementalSnapshot snapshot = new IncrementalSnapshot("example", null, "mytest.canal_snapshot_watermark");
+        IncrementalSnapshot.Window window = snapshot.openWindow("mytest", "user", "id");
+        window.setChunk(Arrays.asList(row(1, "a"), row(2, "b"), row(3, "c")));
+
+        List<CommonMessage> messages = new ArrayList<>();
+        messages.add(watermark(window.low));
+        messages.add(message("UPDATE", row(2, "b2")));
+        messages.add(watermark(window.high));
+        messages.add(message("UPDATE", row(3, "c2")));
+
+        List<CommonMessage> result = snapshot.process(messages);
+        Assert.assertEquals(4, result.size());
+        Assert.assertEquals("UPDATE", result.get(0).getType());
+        // 窗口内变更过的2号不再输出，1号和3号在高水位处覆盖写
+        Assert.assertEquals("DELETE", result.get(1).getType());
+        Assert.assertEquals("INSERT", result.get(2).getType());
+        Assert.assertEquals(Arrays.asList(row(1, "a"), row(3, "c")), result.get(2).getData());
+        Assert.assertEquals(Collections.singletonList("id"), result.get(2).getPkNames());
+        // 高水位之后的变更保持原来的顺序
+        Assert.assertEquals(row(3, "c2"), result.get(3).getData().get(0));
+
+        Assert.assertEquals(1, window.done.getCount());
+        snapshot.ack();
+        Assert.assertEquals(0, window.done.getCount());
+        snapshot.stop();
+    }
+
+    @Test
+    public void testRollback() {
+        IncrementalSnapshot snapshot = new IncrementalSnapshot("example", null, "mytest.canal_snapshot_watermark");
+        IncrementalSnapshot.Window window = snapshot.openWindow("mytest", "user", "id");
+        window.setChunk(Arrays.asList(row(1, "a"), row(2, "b")));
+
+        List<CommonMessage> messages = new ArrayList<>();
+        messages.add(watermark(window.low));
+        messages.add(message("DELETE", row(1, "a")));
+        messages.add(watermark(window.high));
+
+        Assert.assertEquals(3, snapshot.process(messages).size());
+        snapshot.rollback();
+        Assert.assertEquals(1, window.done.getCount());
+
+        // 重新投递后结果一致
+        List<CommonMessage> result = snapshot.process(messages);
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(Collections.singletonList(row(2, "b")), result.get(2).getData());
+        snapshot.ack();
+        Assert.assertEquals(0, window.done.getCount());
+        snapshot.stop();
+    }
+
+    @Test
+    public void testCompaction() {
+        IncrementalSnapshot snapshot = new IncrementalSnapshot("example", null, "mytest.canal_snapshot_watermark");
+        IncrementalSnapshot.Window window = snapshot.openWindow("mytest", "user", "id");
+        window.setChunk(Arrays.asList(row(1, "a"), row(2, "b")));
+
+        List<CommonMessage> messages = new ArrayList<>();
+        messages.add(message("INSERT", row(3, "c")));
+        messages.add(watermark(window.low));
+        messages.add(message("UPDATE", row(3, "c2")));
+        messages.add(watermark(window.high));
+        messages.add(message("DELETE", row(2, "b")));
+
+        // 快照插入的DELETE+INSERT数据一致，参与合并会被当成没有变化丢弃
+        List<Dml> dmls = new DmlCompactor().compact("example", null, snapshot.process(messages));
+        Assert.assertEquals(4, dmls.size());
+        Assert.assertEquals("INSERT", dmls.get(0).getType());
+        Assert.assertEquals(row(3, "c2"), dmls.get(0).getData().get(0));
+        Assert.assertEquals("DELETE", dmls.get(1).getType());
+        Assert.assertEquals(Arrays.asList(row(1, "a"), row(2, "b")), dmls.get(1).getData());
+        Assert.assertEquals("INSERT", dmls.get(2).getType());
+        Assert.assertEquals(Arrays.asList(row(1, "a"), row(2, "b")), dmls.get(2).getData());
+        // 高水位之后的变更在快照之后输出
+        Assert.assertEquals("DELETE", dmls.get(3).getType());
+        Assert.assertEquals(row(2, "b"), dmls.get(3).getData().get(0));
+        snapshot.stop();
+    }
+
+    @Test
+    public void testIllegalIdentifier() {
+        IncrementalSnapshot snapshot = new IncrementalSnapshot("example", null, "mytest.canal_snapshot_watermark");
+        try {
+            snapshot.submit(null, "mytest", "user", "id; drop table user", 1024);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Assert.assertTrue(snapshot.getTasks().isEmpty());
+        snapshot.stop();
+    }
+
+    private static Map<String, Object> row(long id, String name) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", id);
+        row.put("name", name);
+        return row;
+    }
+
+    private static CommonMessage message(String type, Map<String, Object> row) {
+        CommonMessage message = new CommonMessage();
+        message.setDatabase("mytest");
+        message.setTable("user");
+        message.setPkNames(Collections.singletonList("id"));
+        message.setIsDdl(false);
+        message.setType(type);
+        message.setData(Collections.singletonList(row));
+        return message;
+    }
+
+    private static CommonMessage watermark(String value) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", "example|");
+        row.put("value", value);
+        CommonMessage message = new CommonMessage();
+        message.setDatabase("mytest");
+        message.setTable("canal_snapshot_watermark");
+        message.setIsDdl(false);
+        message.setType("UPDATE");
+        message.setData(Collections.singletonList(row));
+        return message;
+    }
+}
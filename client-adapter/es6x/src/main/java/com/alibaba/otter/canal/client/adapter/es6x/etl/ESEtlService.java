@@ -56,6 +56,15 @@ public class ESEtlService extends AbstractEtlService {
         return importData(sql, params);
     }
 
+    /**
+     * 按_id或pk对应的字段拆分
+     */
+    @Override
+    protected String getEtlSplitKey() {
+        ESMapping mapping = config.getEsMapping();
+        return mapping.get_id() != null ? mapping.get_id() : mapping.getPk();
+    }
+
     protected boolean executeSqlImport(DataSource ds, String sql, List<Object> values,
                                        AdapterConfig.AdapterMapping adapterMapping, AtomicLong impCount,
                                        List<String> errMsg) {
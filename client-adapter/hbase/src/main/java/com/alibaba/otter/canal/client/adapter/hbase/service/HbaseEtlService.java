@@ -96,6 +96,22 @@ public class HbaseEtlService extends AbstractEtlService {
         return etlResult;
     }
 
+    /**
+     * 单列rowKey时按该列拆分
+     */
+    @Override
+    protected String getEtlSplitKey() {
+        MappingConfig.HbaseMapping hbaseMapping = config.getHbaseMapping();
+        if (hbaseMapping.getRowKey() != null) {
+            String rowKey = hbaseMapping.getRowKey().trim();
+            return rowKey.contains(",") ? null : "`" + rowKey + "`";
+        }
+        if (hbaseMapping.getRowKeyColumn() != null) {
+            return "`" + hbaseMapping.getRowKeyColumn().getColumn() + "`";
+        }
+        return null;
+    }
+
     /**
      * 执行导入
      */
@@ -9,6 +9,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,6 +18,8 @@ import com.alibaba.otter.canal.adapter.launcher.config.SpringContext;
 import com.alibaba.otter.canal.client.adapter.OuterAdapter;
 import com.alibaba.otter.canal.client.adapter.support.CanalClientConfig;
 import com.alibaba.otter.canal.client.adapter.support.Dml;
+import com.alibaba.otter.canal.client.adapter.support.DmlCompactor;
+import com.alibaba.otter.canal.client.adapter.support.IncrementalSnapshot;
 import com.alibaba.otter.canal.client.adapter.support.MessageUtil;
 import com.alibaba.otter.canal.client.adapter.support.Util;
 import com.alibaba.otter.canal.connector.core.config.CanalConstants;
@@ -44,6 +47,8 @@ public class AdapterProcessor {
     private List<List<OuterAdapter>>        canalOuterAdapters;                                                         // 外部适配器
     private CanalClientConfig               canalClientConfig;                                                          // 配置
     private ExecutorService                 groupInnerExecutorService;                                                  // 组内工作线程池
+    private DmlCompactor                    dmlCompactor;                                                               // 按主键合并DML
+    private IncrementalSnapshot             incrementalSnapshot;                                                        // 基于水位的增量快照
     private volatile boolean                running                   = false;                                          // 是否运行中
     private Thread                          thread                    = null;
     private Thread.UncaughtExceptionHandler handler                   = (t, e) -> logger
@@ -59,6 +64,15 @@ public class AdapterProcessor {
         this.canalOuterAdapters = canalOuterAdapters;
 
         this.groupInnerExecutorService = Util.newFixedThreadPool(canalOuterAdapters.size(), 5000L);
+        if (Boolean.TRUE.equals(canalClientConfig.getDmlCompaction())) {
+            this.dmlCompactor = new DmlCompactor();
+        }
+        if (StringUtils.isNotBlank(canalClientConfig.getSnapshotWatermarkTable())) {
+            this.incrementalSnapshot = new IncrementalSnapshot(destination,
+                groupId,
+                canalClientConfig.getSnapshotWatermarkTable());
+            IncrementalSnapshot.register(incrementalSnapshot);
+        }
         syncSwitch = (SyncSwitch) SpringContext.getBean(SyncSwitch.class);
 
         // load connector consumer
@@ -85,16 +99,27 @@ public class AdapterProcessor {
         }
     }
 
-    public void writeOut(final List<CommonMessage> commonMessages) {
+    public void writeOut(List<CommonMessage> commonMessages) {
+        if (incrementalSnapshot != null) {
+            // 在所有适配器之前处理一次水位，快照的数据按binlog中高水位的位置插入
+            commonMessages = incrementalSnapshot.process(commonMessages);
+        }
+        final List<CommonMessage> messages = commonMessages;
         List<Future<Boolean>> futures = new ArrayList<>();
         // 组间适配器并行运行
         canalOuterAdapters.forEach(outerAdapters -> {
             futures.add(groupInnerExecutorService.submit(() -> {
                 try {
+                    // 合并后的Dml不会被修改，组内的适配器共用一份，只合并一次
+                    List<Dml> dmls;
+                    if (dmlCompactor != null) {
+                        dmls = dmlCompactor.compact(canalDestination, groupId, messages);
+                    } else {
+                        dmls = MessageUtil.flatMessage2Dml(canalDestination, groupId, messages);
+                    }
                     // 组内适配器穿行运行，尽量不要配置组内适配器
                     outerAdapters.forEach(adapter -> {
                         long begin = System.currentTimeMillis();
-                        List<Dml> dmls = MessageUtil.flatMessage2Dml(canalDestination, groupId, commonMessages);
                         batchSync(dmls, adapter);
 
                         if (logger.isDebugEnabled()) {
@@ -206,7 +231,7 @@ public class AdapterProcessor {
                             List<CommonMessage> commonMessages = canalMsgConsumer
                                 .getMessage(this.canalClientConfig.getTimeout(), TimeUnit.MILLISECONDS);
                             writeOut(commonMessages);
-                            canalMsgConsumer.ack();
+                            ack();
                             if (logger.isDebugEnabled()) {
                                 logger.debug("destination: {} elapsed time: {} ms",
                                     canalDestination,
@@ -215,16 +240,16 @@ public class AdapterProcessor {
                             break;
                         } catch (Exception e) {
                             if (i != retry - 1) {
-                                canalMsgConsumer.rollback(); // 处理失败, 回滚数据
+                                rollback(); // 处理失败, 回滚数据
                                 logger.error(e.getMessage() + " Error sync and rollback, execute times: " + (i + 1));
                             } else {
                                 if (canalClientConfig.getTerminateOnException()) {
-                                    canalMsgConsumer.rollback();
+                                    rollback();
                                     logger.error("Retry fail, turn switch off and abort data transfer.");
                                     syncSwitch.off(canalDestination);
                                     logger.error("finish turn off switch of destination:" + canalDestination);
                                 } else {
-                                    canalMsgConsumer.ack();
+                                    ack();
                                     logger.error(e.getMessage() + " Error sync but ACK!");
                                 }
                             }
@@ -248,6 +273,20 @@ public class AdapterProcessor {
         }
     }
 
+    private void ack() {
+        canalMsgConsumer.ack();
+        if (incrementalSnapshot != null) {
+            incrementalSnapshot.ack();
+        }
+    }
+
+    private void rollback() {
+        canalMsgConsumer.rollback();
+        if (incrementalSnapshot != null) {
+            incrementalSnapshot.rollback();
+        }
+    }
+
     public void stop() {
         try {
             if (!running) {
@@ -267,7 +306,17 @@ public class AdapterProcessor {
                 }
             }
             groupInnerExecutorService.shutdown();
+            if (incrementalSnapshot != null) {
+                incrementalSnapshot.stop();
+            }
             logger.info("destination {} adapters worker thread dead!", canalDestination);
+            if (dmlCompactor != null) {
+                logger.info("destination {} dml compaction rows: {} -> {}, ratio: {}",
+                    canalDestination,
+                    dmlCompactor.getInputRows(),
+                    dmlCompactor.getOutputRows(),
+                    String.format("%.4f", dmlCompactor.getCompactionRatio()));
+            }
             canalOuterAdapters.forEach(outerAdapters -> outerAdapters.forEach(OuterAdapter::destroy));
             logger.info("destination {} all adapters destroyed!", canalDestination);
         } catch (Exception e) {
@@ -9,6 +9,7 @@ import java.util.Set;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
+import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,8 +24,10 @@ import com.alibaba.otter.canal.adapter.launcher.common.EtlLock;
 import com.alibaba.otter.canal.adapter.launcher.common.SyncSwitch;
 import com.alibaba.otter.canal.adapter.launcher.config.AdapterCanalConfig;
 import com.alibaba.otter.canal.client.adapter.OuterAdapter;
+import com.alibaba.otter.canal.client.adapter.support.DatasourceConfig;
 import com.alibaba.otter.canal.client.adapter.support.EtlResult;
 import com.alibaba.otter.canal.client.adapter.support.ExtensionLoader;
+import com.alibaba.otter.canal.client.adapter.support.IncrementalSnapshot;
 import com.alibaba.otter.canal.client.adapter.support.Result;
 
 /**
@@ -149,6 +152,58 @@ public class CommonRest {
         return count(type, null, task);
     }
 
+    /**
+     * 增量快照, 不停止增量同步回灌整张表 curl
+     * http://127.0.0.1:8081/snapshot/example/defaultDS/mytest/user?pk=id -X POST
+     *
+     * @param destination 实例名称
+     * @param key 源库数据源 srcDataSources 中的key
+     * @param database 源库名
+     * @param table 源表名
+     * @param pk 单列主键
+     * @param chunkSize 每个chunk的行数
+     * @param groupId mq模式下的groupId
+     */
+    @PostMapping("/snapshot/{destination}/{key}/{database}/{table}")
+    public Result snapshot(@PathVariable String destination, @PathVariable String key, @PathVariable String database,
+                           @PathVariable String table, @RequestParam(name = "pk") String pk,
+                           @RequestParam(name = "chunkSize", defaultValue = "1024") int chunkSize,
+                           @RequestParam(name = "groupId", required = false) String groupId) {
+        Result result = new Result();
+        IncrementalSnapshot snapshot = IncrementalSnapshot.get(destination, groupId);
+        DataSource dataSource = DatasourceConfig.DATA_SOURCES.get(key);
+        if (snapshot == null || dataSource == null) {
+            result.setCode(50000);
+            result.setMessage(snapshot == null ? "实例: " + destination + " 未开启增量快照" : "数据源: " + key + " 不存在");
+            return result;
+        }
+        String taskId;
+        try {
+            taskId = snapshot.submit(dataSource, database, table, pk, chunkSize);
+        } catch (IllegalArgumentException e) {
+            result.setCode(50000);
+            result.setMessage(e.getMessage());
+            return result;
+        }
+        logger.info("#Destination: {} incremental snapshot {} submitted", destination, taskId);
+        result.setData(taskId);
+        result.setMessage("实例: " + destination + " 增量快照任务已提交");
+        return result;
+    }
+
+    /**
+     * 增量快照任务状态 curl http://127.0.0.1:8081/snapshot/example
+     *
+     * @param destination 实例名称
+     * @param groupId mq模式下的groupId
+     */
+    @GetMapping("/snapshot/{destination}")
+    public Map<String, Map<String, Object>> snapshot(@PathVariable String destination,
+                                                     @RequestParam(name = "groupId", required = false) String groupId) {
+        IncrementalSnapshot snapshot = IncrementalSnapshot.get(destination, groupId);
+        return snapshot == null ? new LinkedHashMap<>() : snapshot.getTasks();
+    }
+
     /**
      * 返回所有实例 curl http://127.0.0.1:8081/destinations
      */
@@ -7,6 +7,7 @@ import com.alibaba.otter.canal.client.adapter.phoenix.support.PhoenixSupportUtil
 import com.alibaba.otter.canal.client.adapter.phoenix.support.SyncUtil;
 import com.alibaba.otter.canal.client.adapter.phoenix.support.TypeUtil;
 import com.alibaba.otter.canal.client.adapter.support.DatasourceConfig;
+import com.alibaba.otter.canal.client.adapter.support.EtlRangeSplitter;
 import com.alibaba.otter.canal.client.adapter.support.EtlResult;
 import com.alibaba.otter.canal.client.adapter.support.Util;
 import com.google.common.base.Joiner;
@@ -171,46 +172,20 @@ public class PhoenixEtlService {
             // 拼接条件
             appendCondition(params, dbMapping, srcDS, sql);
 
-            // 获取总数
-            String countSql = "SELECT COUNT(1) FROM ( " + sql + ") _CNT ";
-            long cnt = (Long) Util.sqlRS(srcDS, countSql, rs -> {
-                Long count = null;
-                try {
-                    if (rs.next()) {
-                        count = ((Number) rs.getObject(1)).longValue();
-                    }
-                } catch (Exception e) {
-                    logger.error(e.getMessage(), e);
-                }
-                return count == null ? 0 : count;
-            });
-
-            // 当大于1万条记录时开启多线程
-            if (cnt >= 10000) {
-                int threadCount = 3;
-                long perThreadCnt = cnt / threadCount;
-                ExecutorService executor = Util.newFixedThreadPool(threadCount, 5000L);
-                for (int i = 0; i < threadCount; i++) {
-                    long offset = i * perThreadCnt;
-                    Long size = null;
-                    if (i != threadCount - 1) {
-                        size = perThreadCnt;
-                    }
-                    String sqlFinal;
-                    if (size != null) {
-                        sqlFinal = sql + " LIMIT " + offset + "," + size;
-                    } else {
-                        sqlFinal = sql + " LIMIT " + offset + "," + cnt;
-                    }
-                    executor
-                            .execute(() -> executeSqlImport(srcDS, targetDSConnection, sqlFinal, dbMapping, successCount, errMsg, debug));
-                }
-
-                executor.shutdown();
-                //noinspection StatementWithEmptyBody
-                while (!executor.awaitTermination(3, TimeUnit.SECONDS)) ;
-            } else {
-                executeSqlImport(srcDS, targetDSConnection, sql.toString(), dbMapping, successCount, errMsg, debug);
+            // 单列主键时按主键范围拆分并分页导入，否则按LIMIT offset分页导入
+            String splitKey = getEtlSplitKey(dbMapping);
+            boolean imported = false;
+            if (splitKey != null) {
+                String job = "Phoenix|" + config.getDataSourceKey() + "|" + dbMapping.getDatabase() + "."
+                        + dbMapping.getTable();
+                EtlRangeSplitter splitter = new EtlRangeSplitter(srcDS, job, sql.toString(), null, splitKey);
+                splitter.setThreads(3);
+                imported = splitter.execute((pageSql, pageValues, pageCount, pageErrMsg) -> executeSqlImport(srcDS,
+                        targetDSConnection, pageSql, pageValues, dbMapping, pageCount, pageErrMsg, debug), successCount, errMsg);
+                etlResult.setWorkerThroughput(splitter.getWorkerThroughput());
+            }
+            if (!imported) {
+                importByOffset(srcDS, targetDSConnection, sql, dbMapping, successCount, errMsg, debug);
             }
 
             logger.info(
@@ -231,6 +206,64 @@ public class PhoenixEtlService {
         return etlResult;
     }
 
+    private static void importByOffset(DataSource srcDS, Connection targetDSConnection, StringBuilder sql,
+                                       DbMapping dbMapping, AtomicLong successCount, List<String> errMsg,
+                                       boolean debug) throws InterruptedException {
+        // 获取总数
+        String countSql = "SELECT COUNT(1) FROM ( " + sql + ") _CNT ";
+        long cnt = (Long) Util.sqlRS(srcDS, countSql, rs -> {
+            Long count = null;
+            try {
+                if (rs.next()) {
+                    count = ((Number) rs.getObject(1)).longValue();
+                }
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+            }
+            return count == null ? 0 : count;
+        });
+
+        // 当大于1万条记录时开启多线程
+        if (cnt >= 10000) {
+            int threadCount = 3;
+            long perThreadCnt = cnt / threadCount;
+            ExecutorService executor = Util.newFixedThreadPool(threadCount, 5000L);
+            for (int i = 0; i < threadCount; i++) {
+                long offset = i * perThreadCnt;
+                Long size = null;
+                if (i != threadCount - 1) {
+                    size = perThreadCnt;
+                }
+                String sqlFinal;
+                if (size != null) {
+                    sqlFinal = sql + " LIMIT " + offset + "," + size;
+                } else {
+                    sqlFinal = sql + " LIMIT " + offset + "," + cnt;
+                }
+                executor
+                        .execute(() -> executeSqlImport(srcDS, targetDSConnection, sqlFinal, null, dbMapping, successCount, errMsg, debug));
+            }
+
+            executor.shutdown();
+            //noinspection StatementWithEmptyBody
+            while (!executor.awaitTermination(3, TimeUnit.SECONDS)) ;
+        } else {
+            executeSqlImport(srcDS, targetDSConnection, sql.toString(), null, dbMapping, successCount, errMsg, debug);
+        }
+    }
+
+    /**
+     * 单列主键时按源表主键拆分
+     */
+    private static String getEtlSplitKey(DbMapping dbMapping) {
+        Map<String, String> targetPk = dbMapping.getTargetPk();
+        if (targetPk == null || targetPk.size() != 1) {
+            return null;
+        }
+        Map.Entry<String, String> entry = targetPk.entrySet().iterator().next();
+        return Util.cleanColumn(entry.getValue() == null ? entry.getKey() : entry.getValue());
+    }
+
     private static void appendCondition(List<String> params, DbMapping dbMapping, DataSource ds,
                                         StringBuilder sql) {
         if (params != null && params.size() == 1 && dbMapping.getEtlCondition() == null) {
@@ -269,8 +302,9 @@ public class PhoenixEtlService {
     /**
      * 执行导入
      */
-    private static boolean executeSqlImport(DataSource srcDS, Connection targetDSConnection, String sql, DbMapping dbMapping,
-                                            AtomicLong successCount, List<String> errMsg, boolean debug) {
+    private static boolean executeSqlImport(DataSource srcDS, Connection targetDSConnection, String sql,
+                                            List<Object> sqlValues, DbMapping dbMapping, AtomicLong successCount,
+                                            List<String> errMsg, boolean debug) {
         try {
             Map<String, String> columnsMap = new LinkedHashMap<>();
             Map<String, Integer> columnType = new LinkedHashMap<>();
@@ -297,7 +331,7 @@ public class PhoenixEtlService {
                     return false;
                 }
             });
-            Util.sqlRS(srcDS, sql, rs -> {
+            Util.sqlRS(srcDS, sql, sqlValues, rs -> {
                 int idx = 1;
 
                 try {
@@ -47,6 +47,19 @@ public class RdbEtlService extends AbstractEtlService {
         return importData(sql, params);
     }
 
+    /**
+     * 单列主键时按源表主键拆分
+     */
+    @Override
+    protected String getEtlSplitKey() {
+        Map<String, String> targetPk = config.getDbMapping().getTargetPk();
+        if (targetPk == null || targetPk.size() != 1) {
+            return null;
+        }
+        Map.Entry<String, String> entry = targetPk.entrySet().iterator().next();
+        return Util.cleanColumn(entry.getValue() == null ? entry.getKey() : entry.getValue());
+    }
+
     /**
      * 执行导入
      */
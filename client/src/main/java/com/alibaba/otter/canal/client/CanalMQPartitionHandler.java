@@ -0,0 +1,27 @@
+package com.alibaba.otter.canal.client;
+
+import java.util.List;
+
+/**
+ * canal MQ按分区并行消费的回调
+ *
+ * <pre>
+ * 1. canal server按pk hash写入MQ的分区，同一个分区内的消息是有序的，不同分区之间可以并行处理
+ * 2. 同一个分区的消息总是在同一个worker线程中按顺序回调，不同分区在不同的worker线程中并行回调
+ * 3. 正常返回即代表这批消息处理成功，只提交该分区的位点；抛出异常则该分区从这批消息的起点重新消费，不影响其他分区
+ * </pre>
+ *
+ * @param <T> flatMessage模式下为{@linkplain com.alibaba.otter.canal.protocol.FlatMessage}，否则为
+ *     {@linkplain com.alibaba.otter.canal.protocol.Message}
+ * @since 1.1.6
+ */
+public interface CanalMQPartitionHandler<T> {
+
+    /**
+     * 处理同一个分区的一批消息
+     *
+     * @param partition kafka的partition / rocketmq的queueId / pulsar的分区下标
+     * @param messages 已经在worker线程中完成反序列化的消息
+     */
+    void handle(int partition, List<T> messages) throws Exception;
+}
@@ -0,0 +1,80 @@
+package com.alibaba.otter.canal.client.impl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.otter.canal.client.CanalMessageDeserializer;
+import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
+import com.alibaba.otter.canal.protocol.FlatMessage;
+
+/**
+ * 按分区并行消费的worker线程组
+ *
+ * <pre>
+ * 1. 每个worker都是单线程的executor，同一个分区固定提交到同一个worker，保证分区内的顺序
+ * 2. worker数不小于分区数时，每个worker只负责一个分区
+ * 3. 拉取线程只搬运byte[]，反序列化在worker线程中完成
+ * </pre>
+ *
+ * @since 1.1.6
+ */
+public class PartitionWorkerGroup {
+
+    private final ExecutorService[] workers;
+
+    public PartitionWorkerGroup(String name, int size){
+        if (size <= 0) {
+            throw new IllegalArgumentException("worker size must be positive : " + size);
+        }
+
+        workers = new ExecutorService[size];
+        for (int i = 0; i < size; i++) {
+            workers[i] = Executors.newSingleThreadExecutor(new NamedThreadFactory(name + "-" + i, true));
+        }
+    }
+
+    public void execute(int partition, Runnable task) {
+        workers[(partition & Integer.MAX_VALUE) % workers.length].execute(task);
+    }
+
+    /**
+     * 不再接收新的任务，等待已经提交的任务处理完成
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean terminated = true;
+        for (ExecutorService worker : workers) {
+            terminated &= worker.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        return terminated;
+    }
+
+    public void shutdownNow() {
+        for (ExecutorService worker : workers) {
+            worker.shutdownNow();
+        }
+    }
+
+    public int size() {
+        return workers.length;
+    }
+
+    /**
+     * 反序列化单条MQ消息
+     *
+     * @return flatMessage模式下为FlatMessage，否则为Message
+     */
+    public static Object deserialize(byte[] data, boolean flatMessage) {
+        if (flatMessage) {
+            return JSON.parseObject(data, FlatMessage.class);
+        } else {
+            return CanalMessageDeserializer.deserializer(data);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.alibaba.otter.canal.client.kafka;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.client.CanalMQPartitionHandler;
+import com.alibaba.otter.canal.client.impl.PartitionWorkerGroup;
+import com.alibaba.otter.canal.protocol.FlatMessage;
+import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.exception.CanalClientException;
+
+/**
+ * kafka按分区并行消费的连接器
+ *
+ * <pre>
+ * 1. 单个拉取线程独占KafkaConsumer，按partition把byte[]分发给{@linkplain PartitionWorkerGroup}，反序列化和业务处理都在worker中完成
+ * 2. 分区交给worker之后pause，处理完成后只提交该分区的offset再resume，分区之间互不阻塞
+ * 3. 处理失败的分区seek回这批消息的起点，等待retryInterval后重新消费，其他分区正常推进
+ * 4. rebalance回收分区之前，等待这些分区正在处理的批次完成并提交
+ * 5. 不支持get/ack的调用方式，通过subscribe()启动，unsubscribe()/disconnect()停止
+ * </pre>
+ *
+ * @since 1.1.6
+ */
+public class KafkaParallelCanalConnector extends KafkaCanalConnector {
+
+    private static final Logger                    logger        = LoggerFactory.getLogger(KafkaParallelCanalConnector.class);
+
+    private CanalMQPartitionHandler<Object>        handler;
+    private int                                    workers       = Runtime.getRuntime().availableProcessors();
+    private long                                   pollTimeout   = 100;
+    private long                                   retryInterval = 1000;
+    private long                                   stopTimeout   = 30 * 1000;
+    private volatile KafkaConsumer<String, byte[]> consumer;
+    private PartitionWorkerGroup                   workerGroup;
+    private Thread                                 pollThread;
+    private final Map<TopicPartition, Long>        inflight      = new HashMap<>(); // 拉取线程私有，正在处理的分区
+    private final Map<TopicPartition, Long>        suspended     = new HashMap<>(); // 拉取线程私有，失败等待重试的分区
+    private final Queue<BatchResult>               results       = new ConcurrentLinkedQueue<>();
+
+    public KafkaParallelCanalConnector(String servers, String topic, String groupId, Integer batchSize,
+                                       boolean flatMessage){
+        super(servers, topic, null, groupId, batchSize, flatMessage);
+        properties.put("value.deserializer", ByteArrayDeserializer.class.getName());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void setHandler(CanalMQPartitionHandler<?> handler) {
+        this.handler = (CanalMQPartitionHandler<Object>) handler;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public void setPollTimeout(long pollTimeout) {
+        this.pollTimeout = pollTimeout;
+    }
+
+    public void setRetryInterval(long retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+
+    public void setStopTimeout(long stopTimeout) {
+        this.stopTimeout = stopTimeout;
+    }
+
+    @Override
+    public void connect() {
+        // consumer由拉取线程在subscribe时创建
+        connected = true;
+    }
+
+    @Override
+    public void disconnect() {
+        stop();
+        connected = false;
+    }
+
+    @Override
+    public synchronized void subscribe() {
+        if (pollThread != null) {
+            return;
+        }
+        if (handler == null) {
+            throw new CanalClientException("partition handler is required");
+        }
+
+        waitClientRunning();
+        workerGroup = new PartitionWorkerGroup("canal-kafka-" + topic, workers);
+        pollThread = new Thread(this::process, "canal-kafka-poll-" + topic);
+        pollThread.setDaemon(true);
+        pollThread.start();
+    }
+
+    @Override
+    public void unsubscribe() {
+        stop();
+    }
+
+    private synchronized void stop() {
+        if (pollThread == null) {
+            return;
+        }
+
+        running = false;
+        KafkaConsumer<String, byte[]> current = consumer;
+        if (current != null) {
+            current.wakeup();
+        }
+        try {
+            pollThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pollThread = null;
+    }
+
+    private void process() {
+        consumer = new KafkaConsumer<>(properties);
+        try {
+            consumer.subscribe(Collections.singletonList(topic), new ConsumerRebalanceListener() {
+
+                @Override
+                public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                    awaitInflight(partitions);
+                }
+
+                @Override
+                public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                    // 新分配的分区从已提交的offset开始即可
+                }
+            });
+
+            while (running) {
+                completeBatches();
+                resumeSuspended();
+                ConsumerRecords<String, byte[]> records = consumer.poll(pollTimeout);
+                for (TopicPartition topicPartition : records.partitions()) {
+                    dispatch(topicPartition, records.records(topicPartition));
+                }
+            }
+        } catch (WakeupException e) {
+            if (running) {
+                logger.error("kafka consumer is wakeup unexpectedly", e);
+            }
+        } catch (Throwable e) {
+            logger.error("kafka partition parallel consume failed", e);
+        } finally {
+            running = false;
+            try {
+                // 等待已经分发的批次处理完成，提交最后的offset
+                if (!workerGroup.shutdown(stopTimeout, TimeUnit.MILLISECONDS)) {
+                    logger.warn("kafka partition workers are not terminated after {}ms", stopTimeout);
+                    workerGroup.shutdownNow();
+                }
+                completeBatches();
+            } catch (Throwable e) {
+                logger.warn("commit kafka offsets failed when stopping", e);
+            } finally {
+                inflight.clear();
+                suspended.clear();
+                results.clear();
+                consumer.close();
+                consumer = null;
+            }
+        }
+    }
+
+    private void dispatch(TopicPartition topicPartition, List<ConsumerRecord<String, byte[]>> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        long firstOffset = records.get(0).offset();
+        long nextOffset = records.get(records.size() - 1).offset() + 1;
+        // 同一个分区同时只有一个批次在处理，保证分区内有序
+        consumer.pause(Collections.singletonList(topicPartition));
+        inflight.put(topicPartition, firstOffset);
+        workerGroup.execute(topicPartition.partition(), () -> {
+            boolean success = false;
+            try {
+                List<Object> messages = new ArrayList<>(records.size());
+                for (ConsumerRecord<String, byte[]> record : records) {
+                    if (record.value() != null) {
+                        messages.add(PartitionWorkerGroup.deserialize(record.value(), flatMessage));
+                    } else {
+                        logger.warn("Received message data is null");
+                    }
+                }
+                handler.handle(topicPartition.partition(), messages);
+                success = true;
+            } catch (Throwable e) {
+                logger.error("handle kafka partition {} from offset {} failed", topicPartition, firstOffset, e);
+            } finally {
+                results.add(new BatchResult(topicPartition, firstOffset, nextOffset, success));
+            }
+        });
+    }
+
+    /**
+     * 在拉取线程中处理worker的结果，成功的分区提交offset并resume，失败的分区seek回起点并延迟重试
+     */
+    private void completeBatches() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        BatchResult result;
+        while ((result = results.poll()) != null) {
+            if (inflight.remove(result.topicPartition) == null) {
+                // 已经被rebalance回收
+                continue;
+            }
+
+            if (result.success) {
+                offsets.put(result.topicPartition, new OffsetAndMetadata(result.nextOffset));
+                if (running) {
+                    consumer.resume(Collections.singletonList(result.topicPartition));
+                }
+            } else {
+                consumer.seek(result.topicPartition, result.firstOffset);
+                suspended.put(result.topicPartition, System.currentTimeMillis() + retryInterval);
+            }
+        }
+
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+        }
+    }
+
+    private void resumeSuspended() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<TopicPartition, Long>> it = suspended.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<TopicPartition, Long> entry = it.next();
+            if (entry.getValue() <= now) {
+                consumer.resume(Collections.singletonList(entry.getKey()));
+                it.remove();
+            }
+        }
+    }
+
+    private void awaitInflight(Collection<TopicPartition> partitions) {
+        while (running && !Collections.disjoint(inflight.keySet(), partitions)) {
+            completeBatches();
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        completeBatches();
+
+        for (TopicPartition topicPartition : partitions) {
+            inflight.remove(topicPartition);
+            suspended.remove(topicPartition);
+        }
+    }
+
+    @Override
+    public List<Message> getListWithoutAck(Long timeout, TimeUnit unit) throws CanalClientException {
+        throw new CanalClientException("mq not support this method in partition parallel mode");
+    }
+
+    @Override
+    public List<FlatMessage> getFlatListWithoutAck(Long timeout, TimeUnit unit) throws CanalClientException {
+        throw new CanalClientException("mq not support this method in partition parallel mode");
+    }
+
+    @Override
+    public void ack() {
+        throw new CanalClientException("mq not support this method in partition parallel mode");
+    }
+
+    @Override
+    public void rollback() {
+        throw new CanalClientException("mq not support this method in partition parallel mode");
+    }
+
+    private static class BatchResult {
+
+        private final TopicPartition topicPartition;
+        private final long           firstOffset;
+        private final long           nextOffset;
+        private final boolean        success;
+
+        BatchResult(TopicPartition topicPartition, long firstOffset, long nextOffset, boolean success){
+            this.topicPartition = topicPartition;
+            this.firstOffset = firstOffset;
+            this.nextOffset = nextOffset;
+            this.success = success;
+        }
+    }
+}
@@ -41,15 +41,15 @@ public class PulsarMQCanalConnector implements CanalMQConnector {
     /**
      * 消费者
      */
-    private Consumer<byte[]> consumer;
+    protected Consumer<byte[]> consumer;
     /**
      * 是否扁平化Canal消息内容
      */
-    private boolean isFlatMessage = false;
+    protected boolean isFlatMessage = false;
     /**
      * 主题名称
      */
-    private String topic;
+    protected String topic;
     /**
      * 环境连接URL
      */
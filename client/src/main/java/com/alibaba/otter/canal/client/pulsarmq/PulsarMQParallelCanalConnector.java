@@ -0,0 +1,243 @@
+package com.alibaba.otter.canal.client.pulsarmq;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Messages;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.client.CanalMQPartitionHandler;
+import com.alibaba.otter.canal.client.impl.PartitionWorkerGroup;
+import com.alibaba.otter.canal.protocol.FlatMessage;
+import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.exception.CanalClientException;
+
+/**
+ * PulsarMQ按分区并行消费的连接器
+ *
+ * <pre>
+ * 1. 单个接收线程batchReceive，按消息所属的分区topic拆分后交给{@linkplain PartitionWorkerGroup}，反序列化和业务处理都在worker中完成
+ * 2. 每个分区的消息处理成功后单独ack，失败只对这个分区的消息negativeAck，不再因为一条消息失败重试整批
+ * 3. 同时处理中的批次数不超过maxInflight，避免接收线程远远超前于worker
+ * 4. 不支持get/ack的调用方式，通过subscribe()启动，unsubscribe()/disconnect()停止
+ * </pre>
+ *
+ * 注意：negativeAck的消息会在redeliveryDelaySeconds之后重新投递，这期间同一个分区后续的消息仍然会继续处理，和单线程模式下rollback的语义一致
+ *
+ * @since 1.1.6
+ */
+public class PulsarMQParallelCanalConnector extends PulsarMQCanalConnector {
+
+    private static final Logger             logger             = LoggerFactory.getLogger(PulsarMQParallelCanalConnector.class);
+    private static final String             PARTITION_SUFFIX   = "-partition-";
+
+    private CanalMQPartitionHandler<Object> handler;
+    private int                             workers            = Runtime.getRuntime().availableProcessors();
+    private int                             maxInflight        = 0;
+    private long                            stopTimeoutSeconds = 30;
+    private volatile boolean                running            = false;
+    private PartitionWorkerGroup            workerGroup;
+    private Semaphore                       inflight;
+    private Thread                          receiveThread;
+
+    public PulsarMQParallelCanalConnector(boolean isFlatMessage, String serviceUrl, String roleToken, String topic,
+                                          String subscriptName){
+        super(isFlatMessage, serviceUrl, roleToken, topic, subscriptName);
+    }
+
+    public PulsarMQParallelCanalConnector(boolean isFlatMessage, String serviceUrl, String roleToken, String topic,
+                                          String subscriptName, int batchSize, int getBatchTimeoutSeconds,
+                                          int batchProcessTimeoutSeconds, int redeliveryDelaySeconds,
+                                          int ackTimeoutSeconds, boolean isRetry, boolean isRetryDLQUpperCase,
+                                          int maxRedeliveryCount){
+        super(isFlatMessage,
+            serviceUrl,
+            roleToken,
+            topic,
+            subscriptName,
+            batchSize,
+            getBatchTimeoutSeconds,
+            batchProcessTimeoutSeconds,
+            redeliveryDelaySeconds,
+            ackTimeoutSeconds,
+            isRetry,
+            isRetryDLQUpperCase,
+            maxRedeliveryCount);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void setHandler(CanalMQPartitionHandler<?> handler) {
+        this.handler = (CanalMQPartitionHandler<Object>) handler;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * 同时处理中的分区批次数，默认为workers * 2
+     */
+    public void setMaxInflight(int maxInflight) {
+        this.maxInflight = maxInflight;
+    }
+
+    public void setStopTimeoutSeconds(long stopTimeoutSeconds) {
+        this.stopTimeoutSeconds = stopTimeoutSeconds;
+    }
+
+    @Override
+    public synchronized void subscribe(String filter) throws CanalClientException {
+        if (receiveThread != null) {
+            return;
+        }
+        if (handler == null) {
+            throw new CanalClientException("partition handler is required");
+        }
+
+        super.subscribe(filter);
+        running = true;
+        workerGroup = new PartitionWorkerGroup("canal-pulsar-" + topic, workers);
+        inflight = new Semaphore(maxInflight > 0 ? maxInflight : workers * 2);
+        receiveThread = new Thread(this::process, "canal-pulsar-receive-" + topic);
+        receiveThread.setDaemon(true);
+        receiveThread.start();
+    }
+
+    @Override
+    public void unsubscribe() throws CanalClientException {
+        stop();
+        super.unsubscribe();
+    }
+
+    @Override
+    public void disconnect() throws CanalClientException {
+        stop();
+        super.disconnect();
+    }
+
+    private synchronized void stop() {
+        if (receiveThread == null) {
+            return;
+        }
+
+        running = false;
+        receiveThread.interrupt();
+        try {
+            receiveThread.join();
+            // 等待已经分发的批次处理完成并ack
+            if (!workerGroup.shutdown(stopTimeoutSeconds, TimeUnit.SECONDS)) {
+                logger.warn("pulsar partition workers are not terminated after {}s", stopTimeoutSeconds);
+                workerGroup.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workerGroup.shutdownNow();
+        }
+        receiveThread = null;
+    }
+
+    private void process() {
+        while (running) {
+            Messages<byte[]> batch;
+            try {
+                batch = consumer.batchReceive();
+            } catch (PulsarClientException e) {
+                if (running) {
+                    logger.error("Receiver Pulsar MQ message error", e);
+                }
+                continue;
+            }
+            if (batch == null || batch.size() < 1) {
+                continue;
+            }
+
+            Map<Integer, List<org.apache.pulsar.client.api.Message<byte[]>>> partitions = new LinkedHashMap<>();
+            for (org.apache.pulsar.client.api.Message<byte[]> message : batch) {
+                partitions.computeIfAbsent(getPartition(message.getTopicName()), k -> new ArrayList<>()).add(message);
+            }
+
+            for (Map.Entry<Integer, List<org.apache.pulsar.client.api.Message<byte[]>>> entry : partitions.entrySet()) {
+                try {
+                    inflight.acquire();
+                } catch (InterruptedException e) {
+                    // 停止时没有分发的消息等待ack超时后重新投递
+                    return;
+                }
+                dispatch(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void dispatch(int partition, List<org.apache.pulsar.client.api.Message<byte[]>> pulsarMessages) {
+        workerGroup.execute(partition, () -> {
+            try {
+                List<Object> messages = new ArrayList<>(pulsarMessages.size());
+                List<MessageId> messageIds = new ArrayList<>(pulsarMessages.size());
+                for (org.apache.pulsar.client.api.Message<byte[]> pulsarMessage : pulsarMessages) {
+                    messageIds.add(pulsarMessage.getMessageId());
+                    byte[] data = pulsarMessage.getData();
+                    if (data != null) {
+                        messages.add(PartitionWorkerGroup.deserialize(data, isFlatMessage));
+                    } else {
+                        logger.warn("Received message data is null");
+                    }
+                }
+                handler.handle(partition, messages);
+                consumer.acknowledge(messageIds);
+            } catch (Throwable e) {
+                logger.error("handle Pulsar MQ partition {} failed", partition, e);
+                for (org.apache.pulsar.client.api.Message<byte[]> pulsarMessage : pulsarMessages) {
+                    consumer.negativeAcknowledge(pulsarMessage);
+                }
+            } finally {
+                inflight.release();
+            }
+        });
+    }
+
+    /**
+     * 分区topic的格式为 persistent://tenant/namespace/topic-partition-3，非分区topic返回0
+     */
+    static int getPartition(String topicName) {
+        if (topicName == null) {
+            return 0;
+        }
+
+        int index = topicName.lastIndexOf(PARTITION_SUFFIX);
+        if (index < 0) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(topicName.substring(index + PARTITION_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public List<Message> getListWithoutAck(Long timeout, TimeUnit unit) throws CanalClientException {
+        throw new CanalClientException("mq not support this method in partition parallel mode");
+    }
+
+    @Override
+    public List<FlatMessage> getFlatListWithoutAck(Long timeout, TimeUnit unit) throws CanalClientException {
+        throw new CanalClientException("mq not support this method in partition parallel mode");
+    }
+
+    @Override
+    public void ack() throws CanalClientException {
+        throw new CanalClientException("mq not support this method in partition parallel mode");
+    }
+
+    @Override
+    public void rollback() throws CanalClientException {
+        throw new CanalClientException("mq not support this method in partition parallel mode");
+    }
+}
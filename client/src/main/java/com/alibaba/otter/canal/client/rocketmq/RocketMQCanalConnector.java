@@ -47,14 +47,14 @@ public class RocketMQCanalConnector implements CanalMQConnector {
     private static final String                 CLOUD_ACCESS_CHANNEL = "cloud";
 
     private String                              nameServer;
-    private String                              topic;
+    protected String                            topic;
     private String                              groupName;
-    private volatile boolean                    connected           = false;
-    private DefaultMQPushConsumer               rocketMQConsumer;
+    protected volatile boolean                  connected           = false;
+    protected DefaultMQPushConsumer             rocketMQConsumer;
     private BlockingQueue<ConsumerBatchMessage> messageBlockingQueue;
     private int                                 batchSize           = -1;
     private long                                batchProcessTimeout = 60 * 1000;
-    private boolean                             flatMessage;
+    protected boolean                           flatMessage;
     private volatile ConsumerBatchMessage       lastGetBatchMessage = null;
     private String                              accessKey;
     private String                              secretKey;
@@ -0,0 +1,132 @@
+package com.alibaba.otter.canal.client.rocketmq;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyContext;
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerOrderly;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.client.CanalMQPartitionHandler;
+import com.alibaba.otter.canal.client.impl.PartitionWorkerGroup;
+import com.alibaba.otter.canal.protocol.FlatMessage;
+import com.alibaba.otter.canal.protocol.Message;
+import com.alibaba.otter.canal.protocol.exception.CanalClientException;
+
+/**
+ * RocketMQ按queue并行消费的连接器
+ *
+ * <pre>
+ * 1. 直接在RocketMQ的顺序消费线程中反序列化并回调handler，不再经过单个阻塞队列交给get/ack线程
+ * 2. MessageListenerOrderly对每个queue加锁，同一个queue的消息按顺序回调，不同queue在workers个线程中并行回调
+ * 3. offset由RocketMQ按queue独立提交，处理失败只挂起对应的queue稍后重试
+ * 4. 不支持get/ack的调用方式，通过subscribe()启动，unsubscribe()/disconnect()停止
+ * </pre>
+ *
+ * @since 1.1.6
+ */
+public class RocketMQParallelCanalConnector extends RocketMQCanalConnector {
+
+    private static final Logger             logger  = LoggerFactory.getLogger(RocketMQParallelCanalConnector.class);
+
+    private CanalMQPartitionHandler<Object> handler;
+    private int                             workers = Runtime.getRuntime().availableProcessors();
+
+    public RocketMQParallelCanalConnector(String nameServer, String topic, String groupName, Integer batchSize,
+                                          boolean flatMessage){
+        super(nameServer, topic, groupName, batchSize, flatMessage);
+    }
+
+    public RocketMQParallelCanalConnector(String nameServer, String topic, String groupName, String accessKey,
+                                          String secretKey, Integer batchSize, boolean flatMessage){
+        super(nameServer, topic, groupName, accessKey, secretKey, batchSize, flatMessage);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void setHandler(CanalMQPartitionHandler<?> handler) {
+        this.handler = (CanalMQPartitionHandler<Object>) handler;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    @Override
+    public synchronized void subscribe(String filter) throws CanalClientException {
+        if (connected) {
+            return;
+        }
+        if (handler == null) {
+            throw new CanalClientException("partition handler is required");
+        }
+        try {
+            if (rocketMQConsumer == null) {
+                this.connect();
+            }
+            rocketMQConsumer.setConsumeThreadMin(workers);
+            rocketMQConsumer.setConsumeThreadMax(workers);
+            rocketMQConsumer.subscribe(this.topic, "*");
+            rocketMQConsumer.registerMessageListener(new MessageListenerOrderly() {
+
+                @Override
+                public ConsumeOrderlyStatus consumeMessage(List<MessageExt> messageExts, ConsumeOrderlyContext context) {
+                    context.setAutoCommit(true);
+                    if (process(context.getMessageQueue().getQueueId(), messageExts)) {
+                        return ConsumeOrderlyStatus.SUCCESS;
+                    } else {
+                        return ConsumeOrderlyStatus.SUSPEND_CURRENT_QUEUE_A_MOMENT;
+                    }
+                }
+            });
+            rocketMQConsumer.start();
+        } catch (MQClientException ex) {
+            connected = false;
+            logger.error("Start RocketMQ consumer error", ex);
+        }
+        connected = true;
+    }
+
+    private boolean process(int queueId, List<MessageExt> messageExts) {
+        try {
+            List<Object> messages = new ArrayList<>(messageExts.size());
+            for (MessageExt messageExt : messageExts) {
+                byte[] data = messageExt.getBody();
+                if (data != null) {
+                    messages.add(PartitionWorkerGroup.deserialize(data, flatMessage));
+                } else {
+                    logger.warn("Received message data is null");
+                }
+            }
+            handler.handle(queueId, messages);
+            return true;
+        } catch (Throwable e) {
+            logger.error("handle RocketMQ queue {} failed", queueId, e);
+            return false;
+        }
+    }
+
+    @Override
+    public List<Message> getListWithoutAck(Long timeout, TimeUnit unit) throws CanalClientException {
+        throw new CanalClientException("mq not support this method in partition parallel mode");
+    }
+
+    @Override
+    public List<FlatMessage> getFlatListWithoutAck(Long timeout, TimeUnit unit) throws CanalClientException {
+        throw new CanalClientException("mq not support this method in partition parallel mode");
+    }
+
+    @Override
+    public void ack() throws CanalClientException {
+        throw new CanalClientException("mq not support this method in partition parallel mode");
+    }
+
+    @Override
+    public void rollback() throws CanalClientException {
+        throw new CanalClientException("mq not support this method in partition parallel mode");
+    }
+}
@@ -0,0 +1,57 @@
+package com.alibaba.otter.canal.client.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.otter.canal.protocol.FlatMessage;
+
+/**
+ * 测试下同一个分区的任务按顺序执行，以及flatMessage的反序列化
+ */
+public class PartitionWorkerGroupTest {
+
+    @Test
+    public void testPartitionOrder() throws Exception {
+        PartitionWorkerGroup workerGroup = new PartitionWorkerGroup("test", 3);
+        Map<Integer, List<Integer>> results = new ConcurrentHashMap<>();
+        for (int partition = 0; partition < 8; partition++) {
+            results.put(partition, Collections.synchronizedList(new ArrayList<>()));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            int partition = i % 8;
+            int sequence = i;
+            workerGroup.execute(partition, () -> results.get(partition).add(sequence));
+        }
+        Assert.assertTrue(workerGroup.shutdown(10, TimeUnit.SECONDS));
+
+        for (Map.Entry<Integer, List<Integer>> entry : results.entrySet()) {
+            List<Integer> sequences = entry.getValue();
+            Assert.assertEquals(125, sequences.size());
+            for (int i = 0; i < sequences.size(); i++) {
+                Assert.assertEquals(entry.getKey() + i * 8, (int) sequences.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testDeserializeFlatMessage() {
+        FlatMessage flatMessage = new FlatMessage(1L);
+        flatMessage.setDatabase("test");
+        flatMessage.setTable("t1");
+        flatMessage.setType("INSERT");
+
+        Object result = PartitionWorkerGroup.deserialize(JSON.toJSONBytes(flatMessage), true);
+        Assert.assertTrue(result instanceof FlatMessage);
+        Assert.assertEquals("t1", ((FlatMessage) result).getTable());
+        Assert.assertEquals("INSERT", ((FlatMessage) result).getType());
+    }
+}
@@ -0,0 +1,85 @@
+package com.alibaba.otter.canal.common.utils;
+
+/**
+ * getWithoutAck的自适应batchSize，在[minSize, maxSize]之间按每批的耗时、字节数和是否取满调整下一次请求的batchSize
+ *
+ * <pre>
+ * 1. 一批的耗时(get + 下游处理)超过targetLatency，或者字节数超过maxBytes，batchSize减半(字节超限时按比例缩到maxBytes以内)
+ * 2. 取满了batchSize说明有积压，耗时和字节数都在范围内时batchSize增加1/4，减少请求往返
+ * 3. 没有取满说明流量较小，batchSize向实际大小收敛，避免阻塞get为了凑满大batch等到超时
+ * 4. store为MEMSIZE模式时batchSize代表memUnit的个数，需要设置memUnit，是否取满和实际大小都按字节数/memUnit计算
+ * </pre>
+ *
+ * 非线程安全，每个消费线程使用自己的实例
+ */
+public class AdaptiveBatchSizer {
+
+    private final int  minSize;
+    private final int  maxSize;
+    private final long targetLatency; // 毫秒
+    private final long maxBytes;
+    private long       memUnit;       // MEMSIZE模式下batchSize的单位(字节)，0代表batchSize为条数
+    private int        batchSize;
+
+    public AdaptiveBatchSizer(int initSize, int minSize, int maxSize, long targetLatency, long maxBytes){
+        if (minSize <= 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("invalid adaptive batch size range [" + minSize + ", " + maxSize + "]");
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetLatency = targetLatency;
+        this.maxBytes = maxBytes;
+        this.batchSize = bound(initSize);
+    }
+
+    /**
+     * 下一次请求的batchSize
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 记录一批的结果
+     *
+     * @param requested 请求的batchSize
+     * @param size 实际返回的条数
+     * @param bytes 实际返回的字节数
+     * @param getLatency get的耗时，毫秒
+     * @param sendLatency 下游处理的耗时，毫秒
+     */
+    public void record(int requested, int size, long bytes, long getLatency, long sendLatency) {
+        long latency = getLatency + sendLatency;
+        // 和batchSize同一口径的实际大小
+        long actual = memUnit > 0 ? bytes / memUnit : size;
+        if (maxBytes > 0 && bytes > maxBytes) {
+            // 按字节数等比缩小，保证下一批不超过maxBytes
+            batchSize = bound(Math.min(batchSize / 2, actual * maxBytes / bytes));
+        } else if (targetLatency > 0 && latency > targetLatency) {
+            batchSize = bound(batchSize / 2);
+        } else if (actual >= requested) {
+            batchSize = bound(batchSize + Math.max(1, batchSize / 4));
+        } else {
+            batchSize = bound((batchSize + actual) / 2);
+        }
+    }
+
+    private int bound(long size) {
+        return (int) Math.max(minSize, Math.min(maxSize, size));
+    }
+
+    /**
+     * store为MEMSIZE模式时设置为bufferMemUnit
+     */
+    public void setMemUnit(long memUnit) {
+        this.memUnit = memUnit;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+}
@@ -0,0 +1,75 @@
+package com.alibaba.otter.canal.common.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定bucket的轻量级耗时分布统计，observe只做一次有界的线性查找和一次原子累加，不产生对象分配
+ *
+ * <pre>
+ * 1. buckets为毫秒单位的上界，需要升序，最后隐含一个+Inf的bucket
+ * 2. counts中记录的是非累积的每个bucket计数，由metrics导出方自行做累积
+ * </pre>
+ */
+public class LatencyHistogram {
+
+    public static final double[] DEFAULT_BUCKETS = { 1, 5, 10, 50, 100, 500, 1000, 5000, 10000, 60000 };
+    private static final double  NANO_PER_MILLI  = 1000 * 1000d;
+
+    private final double[]       buckets;
+    private final AtomicLongArray counts;
+    private final LongAdder      sumNanos        = new LongAdder();
+
+    public LatencyHistogram(){
+        this(DEFAULT_BUCKETS);
+    }
+
+    public LatencyHistogram(double[] buckets){
+        for (int i = 1; i < buckets.length; i++) {
+            if (buckets[i] <= buckets[i - 1]) {
+                throw new IllegalArgumentException("buckets must be in increasing order");
+            }
+        }
+        this.buckets = buckets.clone();
+        this.counts = new AtomicLongArray(buckets.length + 1);
+    }
+
+    public void observeMillis(long millis) {
+        observeNanos(millis * 1000 * 1000L);
+    }
+
+    public void observeNanos(long nanos) {
+        if (nanos < 0) {
+            // 时钟回拨或者上游时间不准，按0处理
+            nanos = 0;
+        }
+        double millis = nanos / NANO_PER_MILLI;
+        int i = 0;
+        for (; i < buckets.length; i++) {
+            if (millis <= buckets[i]) {
+                break;
+            }
+        }
+        counts.incrementAndGet(i);
+        sumNanos.add(nanos);
+    }
+
+    public double[] getBuckets() {
+        return buckets.clone();
+    }
+
+    /**
+     * 返回每个bucket(含最后的+Inf)的计数快照，非累积
+     */
+    public long[] getCounts() {
+        long[] result = new long[counts.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    public double getSumMillis() {
+        return sumNanos.sum() / NANO_PER_MILLI;
+    }
+}
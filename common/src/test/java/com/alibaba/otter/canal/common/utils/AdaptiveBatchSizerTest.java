@@ -0,0 +1,46 @@
+package com.alibaba.otter.canal.common.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveBatchSizerTest {
+
+    @Test
+    public void testGrowOnBacklog() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(50, 10, 200, 100, 0);
+        for (int i = 0; i < 100; i++) {
+            int requested = sizer.getBatchSize();
+            sizer.record(requested, requested, requested * 100L, 1, 5);
+        }
+        Assert.assertEquals(200, sizer.getBatchSize());
+    }
+
+    @Test
+    public void testShrink() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(200, 10, 200, 100, 1024 * 1024);
+        // 超过目标耗时减半
+        sizer.record(200, 200, 1024, 10, 200);
+        Assert.assertEquals(100, sizer.getBatchSize());
+        // 超过字节上限按比例缩小
+        sizer.record(100, 100, 4 * 1024 * 1024, 10, 10);
+        Assert.assertEquals(25, sizer.getBatchSize());
+        // 流量小时向实际大小收敛，不低于下限
+        for (int i = 0; i < 10; i++) {
+            sizer.record(sizer.getBatchSize(), 0, 0, 100, 0);
+        }
+        Assert.assertEquals(10, sizer.getBatchSize());
+    }
+
+    @Test
+    public void testMemSize() {
+        // batchSize为1kb的个数，条数和batchSize不可比
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 10, 200, 100, 0);
+        sizer.setMemUnit(1024);
+        // 100kb只有20条，按字节数已经取满，说明有积压
+        sizer.record(100, 20, 100 * 1024, 1, 5);
+        Assert.assertEquals(125, sizer.getBatchSize());
+        // 没有取满时向实际的kb数收敛
+        sizer.record(125, 500, 25 * 1024, 1, 5);
+        Assert.assertEquals(75, sizer.getBatchSize());
+    }
+}
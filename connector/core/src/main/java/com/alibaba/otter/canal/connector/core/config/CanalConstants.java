@@ -17,6 +17,12 @@ public class CanalConstants {
     public static final String CANAL_MQ_CANAL_GET_TIMEOUT     = ROOT + "." + "mq.canalGetTimeout";
     public static final String CANAL_MQ_FLAT_MESSAGE          = ROOT + "." + "mq.flatMessage";
 
+    public static final String CANAL_MQ_ADAPTIVE_BATCH        = ROOT + "." + "mq.adaptiveBatch.enable";
+    public static final String CANAL_MQ_ADAPTIVE_MIN_SIZE     = ROOT + "." + "mq.adaptiveBatch.minSize";
+    public static final String CANAL_MQ_ADAPTIVE_MAX_SIZE     = ROOT + "." + "mq.adaptiveBatch.maxSize";
+    public static final String CANAL_MQ_ADAPTIVE_LATENCY      = ROOT + "." + "mq.adaptiveBatch.targetLatency";
+    public static final String CANAL_MQ_ADAPTIVE_MAX_BYTES    = ROOT + "." + "mq.adaptiveBatch.maxBytes";
+
     public static final String CANAL_MQ_DATABASE_HASH         = ROOT + "." + "mq.database.hash";
     public static final String CANAL_MQ_BUILD_THREAD_SIZE     = ROOT + "." + "mq.build.thread.size";
     public static final String CANAL_MQ_SEND_THREAD_SIZE      = ROOT + "." + "mq.send.thread.size";
@@ -15,6 +15,11 @@ public class MQProperties {
     private Integer parallelSendThreadSize  = 30;
     private Integer fetchTimeout            = 100;
     private Integer batchSize               = 50;
+    private boolean adaptiveBatch           = false;
+    private Integer adaptiveMinBatchSize    = 10;
+    private Integer adaptiveMaxBatchSize    = 1000;
+    private Long    adaptiveTargetLatency   = 200L;             // 毫秒
+    private Long    adaptiveMaxBatchBytes   = 8 * 1024 * 1024L;
     private String  accessChannel           = "local";
 
     private String  aliyunAccessKey         = "";
@@ -77,6 +82,46 @@ public class MQProperties {
         this.batchSize = batchSize;
     }
 
+    public boolean isAdaptiveBatch() {
+        return adaptiveBatch;
+    }
+
+    public void setAdaptiveBatch(boolean adaptiveBatch) {
+        this.adaptiveBatch = adaptiveBatch;
+    }
+
+    public Integer getAdaptiveMinBatchSize() {
+        return adaptiveMinBatchSize;
+    }
+
+    public void setAdaptiveMinBatchSize(Integer adaptiveMinBatchSize) {
+        this.adaptiveMinBatchSize = adaptiveMinBatchSize;
+    }
+
+    public Integer getAdaptiveMaxBatchSize() {
+        return adaptiveMaxBatchSize;
+    }
+
+    public void setAdaptiveMaxBatchSize(Integer adaptiveMaxBatchSize) {
+        this.adaptiveMaxBatchSize = adaptiveMaxBatchSize;
+    }
+
+    public Long getAdaptiveTargetLatency() {
+        return adaptiveTargetLatency;
+    }
+
+    public void setAdaptiveTargetLatency(Long adaptiveTargetLatency) {
+        this.adaptiveTargetLatency = adaptiveTargetLatency;
+    }
+
+    public Long getAdaptiveMaxBatchBytes() {
+        return adaptiveMaxBatchBytes;
+    }
+
+    public void setAdaptiveMaxBatchBytes(Long adaptiveMaxBatchBytes) {
+        this.adaptiveMaxBatchBytes = adaptiveMaxBatchBytes;
+    }
+
     public String getAccessChannel() {
         return accessChannel;
     }
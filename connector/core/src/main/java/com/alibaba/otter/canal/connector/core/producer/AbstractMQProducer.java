@@ -106,6 +106,26 @@ public abstract class AbstractMQProducer implements CanalMQProducer {
         if (!StringUtils.isEmpty(batchSize)) {
             mqProperties.setBatchSize(Integer.parseInt(batchSize));
         }
+        String adaptiveBatch = PropertiesUtils.getProperty(properties, CanalConstants.CANAL_MQ_ADAPTIVE_BATCH);
+        if (!StringUtils.isEmpty(adaptiveBatch)) {
+            mqProperties.setAdaptiveBatch(Boolean.parseBoolean(adaptiveBatch));
+        }
+        String adaptiveMinSize = PropertiesUtils.getProperty(properties, CanalConstants.CANAL_MQ_ADAPTIVE_MIN_SIZE);
+        if (!StringUtils.isEmpty(adaptiveMinSize)) {
+            mqProperties.setAdaptiveMinBatchSize(Integer.parseInt(adaptiveMinSize));
+        }
+        String adaptiveMaxSize = PropertiesUtils.getProperty(properties, CanalConstants.CANAL_MQ_ADAPTIVE_MAX_SIZE);
+        if (!StringUtils.isEmpty(adaptiveMaxSize)) {
+            mqProperties.setAdaptiveMaxBatchSize(Integer.parseInt(adaptiveMaxSize));
+        }
+        String adaptiveLatency = PropertiesUtils.getProperty(properties, CanalConstants.CANAL_MQ_ADAPTIVE_LATENCY);
+        if (!StringUtils.isEmpty(adaptiveLatency)) {
+            mqProperties.setAdaptiveTargetLatency(Long.parseLong(adaptiveLatency));
+        }
+        String adaptiveMaxBytes = PropertiesUtils.getProperty(properties, CanalConstants.CANAL_MQ_ADAPTIVE_MAX_BYTES);
+        if (!StringUtils.isEmpty(adaptiveMaxBytes)) {
+            mqProperties.setAdaptiveMaxBatchBytes(Long.parseLong(adaptiveMaxBytes));
+        }
         String timeOut = PropertiesUtils.getProperty(properties, CanalConstants.CANAL_MQ_CANAL_GET_TIMEOUT);
         if (!StringUtils.isEmpty(timeOut)) {
             mqProperties.setFetchTimeout(Integer.parseInt(timeOut));
@@ -8,6 +8,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.commons.lang.StringUtils;
@@ -128,6 +129,20 @@ public class MQMessageUtils {
                                                                                     return datas;
                                                                                 });
 
+    /**
+     * 按配置缓存每个schema/schema.table匹配到的topic，未匹配时为空集合，避免每个entry都重新解析配置和遍历正则
+     */
+    private static Map<String, Map<String, Set<String>>>    topicRoutes     = MigrateMap.makeComputingMap(CacheBuilder.newBuilder()
+                                                                                .softValues(),
+                                                                                dynamicTopicConfigs -> new ConcurrentHashMap<>());
+
+    /**
+     * 按配置缓存每个schema.table的分区路由
+     */
+    private static Map<String, Map<String, PartitionRoute>> partitionRoutes = MigrateMap.makeComputingMap(CacheBuilder.newBuilder()
+                                                                                .softValues(),
+                                                                                pkHashConfigs -> new ConcurrentHashMap<>());
+
     /**
      * 按 schema 或者 schema+table 将 message 分配到对应topic
      *
@@ -167,13 +182,13 @@ public class MQMessageUtils {
             if (StringUtils.isEmpty(schemaName) || StringUtils.isEmpty(tableName)) {
                 put2MapMessage(messages, message.getId(), defaultTopic, entry);
             } else {
-                Set<String> topics = matchTopics(schemaName + "." + tableName, dynamicTopicConfigs);
+                Set<String> topics = getTopics(schemaName + "." + tableName, dynamicTopicConfigs);
                 if (topics != null) {
                     for (String topic : topics) {
                         put2MapMessage(messages, message.getId(), topic, entry);
                     }
                 } else {
-                    topics = matchTopics(schemaName, dynamicTopicConfigs);
+                    topics = getTopics(schemaName, dynamicTopicConfigs);
                     if (topics != null) {
                         for (String topic : topics) {
                             put2MapMessage(messages, message.getId(), topic, entry);
@@ -271,12 +286,16 @@ public class MQMessageUtils {
             }
 
             if (rowChange.getIsDdl()) {
+                // 表结构变化，丢弃按原表结构解析的hash列
+                invalidatePartitionRoute(entry.getHeader().getSchemaName() + "." + entry.getHeader().getTableName(),
+                    pkHashConfigs);
                 partitionEntries[0].add(entry);
             } else {
                 if (rowChange.getRowDatasList() != null && !rowChange.getRowDatasList().isEmpty()) {
                     String database = entry.getHeader().getSchemaName();
                     String table = entry.getHeader().getTableName();
-                    HashMode hashMode = getPartitionHashColumns(database + "." + table, pkHashConfigs);
+                    PartitionRoute route = getPartitionRoute(database + "." + table, pkHashConfigs);
+                    HashMode hashMode = route == null ? null : route.hashMode;
                     if (hashMode == null) {
                         // 如果都没有匹配，发送到第一个分区
                         partitionEntries[0].add(entry);
@@ -304,20 +323,7 @@ public class MQMessageUtils {
                                 columns = rowData.getAfterColumnsList();
                             }
 
-                            if (hashMode.autoPkHash) {
-                                // isEmpty use default pkNames
-                                for (CanalEntry.Column column : columns) {
-                                    if (column.getIsKey()) {
-                                        hashCode = hashCode ^ column.getValue().hashCode();
-                                    }
-                                }
-                            } else {
-                                for (CanalEntry.Column column : columns) {
-                                    if (checkPkNamesHasContain(hashMode.pkNames, column.getName())) {
-                                        hashCode = hashCode ^ column.getValue().hashCode();
-                                    }
-                                }
-                            }
+                            hashCode = route.hash(columns, hashCode);
 
                             int pkHash = Math.abs(hashCode) % partitionsNum;
                             pkHash = Math.abs(pkHash);
@@ -476,7 +482,8 @@ public class MQMessageUtils {
             if (flatMessage.getData() != null && !flatMessage.getData().isEmpty()) {
                 String database = flatMessage.getDatabase();
                 String table = flatMessage.getTable();
-                HashMode hashMode = getPartitionHashColumns(database + "." + table, pkHashConfigs);
+                PartitionRoute route = getPartitionRoute(database + "." + table, pkHashConfigs);
+                HashMode hashMode = route == null ? null : route.hashMode;
                 if (hashMode == null) {
                     // 如果都没有匹配，发送到第一个分区
                     partitionMessages[0] = flatMessage;
@@ -576,6 +583,104 @@ public class MQMessageUtils {
         return null;
     }
 
+    /**
+     * 取schema.table对应的分区路由，没有配置分区hash时返回null
+     */
+    public static PartitionRoute getPartitionRoute(String name, String pkHashConfigs) {
+        if (StringUtils.isEmpty(pkHashConfigs)) {
+            return null;
+        }
+
+        Map<String, PartitionRoute> routes = partitionRoutes.get(pkHashConfigs);
+        PartitionRoute route = routes.get(name);
+        if (route == null) {
+            route = routes.computeIfAbsent(name,
+                key -> new PartitionRoute(getPartitionHashColumns(key, pkHashConfigs)));
+        }
+        return route;
+    }
+
+    /**
+     * 表结构变化时调用，下次路由时按新的表结构重新解析hash列
+     */
+    public static void invalidatePartitionRoute(String name, String pkHashConfigs) {
+        if (!StringUtils.isEmpty(pkHashConfigs)) {
+            partitionRoutes.get(pkHashConfigs).remove(name);
+        }
+    }
+
+    private static Set<String> getTopics(String name, String dynamicTopicConfigs) {
+        Map<String, Set<String>> routes = topicRoutes.get(dynamicTopicConfigs);
+        Set<String> topics = routes.get(name);
+        if (topics == null) {
+            topics = routes.computeIfAbsent(name, key -> {
+                Set<String> matched = matchTopics(key, dynamicTopicConfigs);
+                return matched == null ? Collections.emptySet() : Collections.unmodifiableSet(matched);
+            });
+        }
+        return topics.isEmpty() ? null : topics;
+    }
+
+    /**
+     * 计算column值的hash，结果与column.getValue().hashCode()一致。
+     * 直接按utf8解码value的字节计算String的hash，不再为每个值构造String，非法的utf8编码退回到String的hash
+     */
+    static int hashValue(CanalEntry.Column column) {
+        ByteString bytes = column.getValueBytes();
+        int size = bytes.size();
+        int h = 0;
+        int i = 0;
+        while (i < size) {
+            int b = bytes.byteAt(i++) & 0xff;
+            if (b < 0x80) {
+                h = 31 * h + b;
+                continue;
+            }
+
+            int cp;
+            int n;
+            int min;
+            if (b >= 0xc2 && b <= 0xdf) {
+                cp = b & 0x1f;
+                n = 1;
+                min = 0x80;
+            } else if (b >= 0xe0 && b <= 0xef) {
+                cp = b & 0x0f;
+                n = 2;
+                min = 0x800;
+            } else if (b >= 0xf0 && b <= 0xf4) {
+                cp = b & 0x07;
+                n = 3;
+                min = 0x10000;
+            } else {
+                return column.getValue().hashCode();
+            }
+
+            if (i + n > size) {
+                return column.getValue().hashCode();
+            }
+            for (int j = 0; j < n; j++) {
+                int c = bytes.byteAt(i++) & 0xff;
+                if ((c & 0xc0) != 0x80) {
+                    return column.getValue().hashCode();
+                }
+                cp = (cp << 6) | (c & 0x3f);
+            }
+
+            if (cp < min || cp > Character.MAX_CODE_POINT
+                || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+                return column.getValue().hashCode();
+            }
+            if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                h = 31 * h + Character.highSurrogate(cp);
+                h = 31 * h + Character.lowSurrogate(cp);
+            } else {
+                h = 31 * h + cp;
+            }
+        }
+        return h;
+    }
+
     private static Set<String> matchTopics(String name, String dynamicTopicConfigs) {
         String[] router = StringUtils.split(StringUtils.replace(dynamicTopicConfigs, ",", ";"), ";");
         Set<String> topics = new HashSet<>();
@@ -701,6 +806,78 @@ public class MQMessageUtils {
         public List<String> pkNames    = new ArrayList<>();
     }
 
+    /**
+     * schema.table的分区路由，缓存匹配到的hash模式，以及按表结构解析出来的hash列下标。
+     * 每行只校验列数和hash列的列名是否和解析时一致，不一致(表结构变化、minimal row image)时重新解析
+     */
+    public static class PartitionRoute {
+
+        /**
+         * 匹配到的hash模式，没有匹配时为null
+         */
+        public final HashMode        hashMode;
+        private volatile HashColumns hashColumns;
+
+        public PartitionRoute(HashMode hashMode){
+            this.hashMode = hashMode;
+        }
+
+        /**
+         * 在hashCode基础上异或hash列的值，结果与按列名逐个匹配的方式一致
+         */
+        public int hash(List<CanalEntry.Column> columns, int hashCode) {
+            HashColumns current = hashColumns;
+            if (current == null || !current.match(columns, hashMode.autoPkHash)) {
+                current = new HashColumns(columns, hashMode);
+                hashColumns = current;
+            }
+
+            for (int index : current.indexes) {
+                hashCode = hashCode ^ hashValue(columns.get(index));
+            }
+            return hashCode;
+        }
+    }
+
+    private static class HashColumns {
+
+        private final int          columnCount;
+        private final int[]        indexes;
+        private final ByteString[] names;
+
+        HashColumns(List<CanalEntry.Column> columns, HashMode hashMode){
+            List<Integer> matched = new ArrayList<>();
+            for (int i = 0; i < columns.size(); i++) {
+                CanalEntry.Column column = columns.get(i);
+                if (hashMode.autoPkHash ? column.getIsKey() : checkPkNamesHasContain(hashMode.pkNames,
+                    column.getName())) {
+                    matched.add(i);
+                }
+            }
+
+            this.columnCount = columns.size();
+            this.indexes = new int[matched.size()];
+            this.names = new ByteString[matched.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = matched.get(i);
+                names[i] = columns.get(indexes[i]).getNameBytes();
+            }
+        }
+
+        boolean match(List<CanalEntry.Column> columns, boolean checkKey) {
+            if (columns.size() != columnCount) {
+                return false;
+            }
+            for (int i = 0; i < indexes.length; i++) {
+                CanalEntry.Column column = columns.get(indexes[i]);
+                if (!column.getNameBytes().equals(names[i]) || (checkKey && !column.getIsKey())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     public static class DynamicTopicData {
 
         public String             simpleName;
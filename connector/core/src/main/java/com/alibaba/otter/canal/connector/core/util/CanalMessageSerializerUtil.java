@@ -1,5 +1,7 @@
 package com.alibaba.otter.canal.connector.core.util;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.util.CollectionUtils;
@@ -10,6 +12,7 @@ import com.alibaba.otter.canal.protocol.CanalPacket.PacketType;
 import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.protocol.exception.CanalClientException;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.WireFormat;
 
@@ -21,37 +24,34 @@ import com.google.protobuf.WireFormat;
  */
 public class CanalMessageSerializerUtil {
 
-    @SuppressWarnings("deprecation")
+    private static final int ENTRY_TYPE_TAG = WireFormat.makeTag(CanalEntry.Entry.ENTRYTYPE_FIELD_NUMBER,
+                                                WireFormat.WIRETYPE_VARINT);
+
     public static byte[] serializer(Message data, boolean filterTransactionEntry) {
         try {
             if (data != null) {
                 if (data.getId() != -1) {
                     if (data.isRaw() && !CollectionUtils.isEmpty(data.getRawEntries())) {
-                        // for performance
+                        // for performance, store里的rawEntry已经是最终的序列化结果，直接拷贝到packet里
                         List<ByteString> rowEntries = data.getRawEntries();
-                        // message size
-                        int messageSize = 0;
-                        messageSize += CodedOutputStream.computeInt64Size(1, data.getId());
+                        if (filterTransactionEntry) {
+                            List<ByteString> filtered = new ArrayList<>(rowEntries.size());
+                            for (ByteString rowEntry : rowEntries) {
+                                if (!isTransactionEntry(rowEntry)) {
+                                    filtered.add(rowEntry);
+                                }
+                            }
+                            rowEntries = filtered;
+                        }
 
-                        int dataSize = 0;
+                        int messageSize = CodedOutputStream.computeInt64Size(1, data.getId());
                         for (ByteString rowEntry : rowEntries) {
-                            dataSize += CodedOutputStream.computeBytesSizeNoTag(rowEntry);
+                            messageSize += CodedOutputStream.computeBytesSize(2, rowEntry);
                         }
-                        messageSize += dataSize;
-                        messageSize += 1 * rowEntries.size();
-                        // packet size
-                        int size = 0;
-                        size += CodedOutputStream.computeEnumSize(3, PacketType.MESSAGES.getNumber());
-                        size += CodedOutputStream.computeTagSize(5)
-                                + CodedOutputStream.computeRawVarint32Size(messageSize) + messageSize;
-                        // build data
-                        byte[] body = new byte[size];
-                        CodedOutputStream output = CodedOutputStream.newInstance(body);
-                        output.writeEnum(3, PacketType.MESSAGES.getNumber());
 
-                        output.writeTag(5, WireFormat.WIRETYPE_LENGTH_DELIMITED);
-                        output.writeRawVarint32(messageSize);
-                        // message
+                        byte[] body = new byte[computePacketSize(messageSize)];
+                        CodedOutputStream output = CodedOutputStream.newInstance(body);
+                        writePacketHeader(output, messageSize);
                         output.writeInt64(1, data.getId());
                         for (ByteString rowEntry : rowEntries) {
                             output.writeBytes(2, rowEntry);
@@ -60,21 +60,33 @@ public class CanalMessageSerializerUtil {
                         return body;
                     } else if (!CollectionUtils.isEmpty(data.getEntries())) {
                         // mq模式只会走到非rawEntry模式
-                        CanalPacket.Messages.Builder messageBuilder = CanalPacket.Messages.newBuilder();
-                        for (CanalEntry.Entry entry : data.getEntries()) {
-                            if (filterTransactionEntry
-                                && (entry.getEntryType() == CanalEntry.EntryType.TRANSACTIONBEGIN || entry.getEntryType() == CanalEntry.EntryType.TRANSACTIONEND)) {
-                                continue;
+                        List<CanalEntry.Entry> entries = data.getEntries();
+                        if (filterTransactionEntry) {
+                            List<CanalEntry.Entry> filtered = new ArrayList<>(entries.size());
+                            for (CanalEntry.Entry entry : entries) {
+                                if (entry.getEntryType() != CanalEntry.EntryType.TRANSACTIONBEGIN
+                                    && entry.getEntryType() != CanalEntry.EntryType.TRANSACTIONEND) {
+                                    filtered.add(entry);
+                                }
                             }
+                            entries = filtered;
+                        }
 
-                            messageBuilder.addMessages(entry.toByteString());
+                        // entry直接写入预分配好大小的packet，避免逐层toByteString的拷贝
+                        int messageSize = CodedOutputStream.computeInt64Size(1, data.getId());
+                        for (CanalEntry.Entry entry : entries) {
+                            messageSize += CodedOutputStream.computeMessageSize(2, entry);
                         }
 
-                        CanalPacket.Packet.Builder packetBuilder = CanalPacket.Packet.newBuilder();
-                        packetBuilder.setType(PacketType.MESSAGES);
-                        packetBuilder.setVersion(1);
-                        packetBuilder.setBody(messageBuilder.build().toByteString());
-                        return packetBuilder.build().toByteArray();
+                        byte[] body = new byte[computePacketSize(messageSize)];
+                        CodedOutputStream output = CodedOutputStream.newInstance(body);
+                        writePacketHeader(output, messageSize);
+                        output.writeInt64(1, data.getId());
+                        for (CanalEntry.Entry entry : entries) {
+                            output.writeMessage(2, entry);
+                        }
+                        output.checkNoSpaceLeft();
+                        return body;
                     }
                 }
             }
@@ -84,6 +96,45 @@ public class CanalMessageSerializerUtil {
         return null;
     }
 
+    /**
+     * 只读取entry的entryType字段判断是否为事务头/尾，不反序列化整个entry
+     */
+    public static boolean isTransactionEntry(ByteString rawEntry) throws IOException {
+        CodedInputStream input = rawEntry.newCodedInput();
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag == ENTRY_TYPE_TAG) {
+                int entryType = input.readEnum();
+                return entryType == CanalEntry.EntryType.TRANSACTIONBEGIN_VALUE
+                       || entryType == CanalEntry.EntryType.TRANSACTIONEND_VALUE;
+            } else if (!input.skipField(tag)) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * packet按version、type、body(Messages)的顺序写出，和CanalPacket.Packet的序列化结果一致
+     */
+    @SuppressWarnings("deprecation")
+    private static int computePacketSize(int messageSize) {
+        int size = 0;
+        size += CodedOutputStream.computeInt32Size(2, 1);
+        size += CodedOutputStream.computeEnumSize(3, PacketType.MESSAGES.getNumber());
+        size += CodedOutputStream.computeTagSize(5) + CodedOutputStream.computeRawVarint32Size(messageSize)
+                + messageSize;
+        return size;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void writePacketHeader(CodedOutputStream output, int messageSize) throws IOException {
+        output.writeInt32(2, 1);
+        output.writeEnum(3, PacketType.MESSAGES.getNumber());
+        output.writeTag(5, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeRawVarint32(messageSize);
+    }
+
     public static Message deserializer(byte[] data) {
         return deserializer(data, false);
     }
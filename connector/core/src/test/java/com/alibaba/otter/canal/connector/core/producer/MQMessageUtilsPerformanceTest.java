@@ -0,0 +1,82 @@
+package com.alibaba.otter.canal.connector.core.producer;
+
+import java.util.List;
+
+import org.junit.Ignore;
+
+import com.alibaba.otter.canal.connector.core.producer.MQMessageUtils.HashMode;
+import com.alibaba.otter.canal.connector.core.producer.MQMessageUtils.PartitionRoute;
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * 对比分区路由的开销，legacy为原先每个entry匹配一遍分区规则、每行按列名查找hash列并构造String的实现
+ */
+@Ignore
+public class MQMessageUtilsPerformanceTest {
+
+    private static final int TABLES  = 200;
+    private static final int COLUMNS = 30;
+    private static final int COUNT   = 2000000;
+
+    public static void main(String args[]) throws InvalidProtocolBufferException {
+        StringBuilder config = new StringBuilder();
+        for (int i = 0; i < TABLES; i++) {
+            config.append("mytest\\.table_").append(i).append("_.*:id^code,");
+        }
+        String pkHashConfigs = config.toString();
+
+        byte[][] rows = new byte[TABLES][];
+        for (int i = 0; i < TABLES; i++) {
+            RowData.Builder rowData = RowData.newBuilder();
+            rowData.addAfterColumns(Column.newBuilder().setName("id").setValue(String.valueOf(i * 1000)));
+            for (int j = 1; j < COLUMNS; j++) {
+                rowData.addAfterColumns(Column.newBuilder().setName("column_" + j).setValue("中文value_" + j));
+            }
+            rowData.addAfterColumns(Column.newBuilder().setName("code").setValue("编码" + i));
+            rows[i] = rowData.build().toByteArray();
+        }
+
+        for (int i = 0; i < 5; i++) {
+            legacy(pkHashConfigs, rows);
+            plan(pkHashConfigs, rows);
+        }
+    }
+
+    private static void legacy(String pkHashConfigs, byte[][] rows) throws InvalidProtocolBufferException {
+        long start = System.currentTimeMillis();
+        long sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            int table = i % TABLES;
+            // 每次从protobuf解析，和MQ发送时的状态一致
+            List<Column> columns = RowData.parseFrom(rows[table]).getAfterColumnsList();
+            HashMode hashMode = MQMessageUtils.getPartitionHashColumns("mytest.table_" + table + "_0", pkHashConfigs);
+            int hashCode = 0;
+            for (Column column : columns) {
+                if (MQMessageUtils.checkPkNamesHasContain(hashMode.pkNames, column.getName())) {
+                    hashCode = hashCode ^ column.getValue().hashCode();
+                }
+            }
+            sum += Math.abs(Math.abs(hashCode) % 16);
+        }
+        long end = System.currentTimeMillis();
+        System.out.println("legacy : " + (end - start) + "ms , tps : " + (COUNT * 1000L / Math.max(1, end - start))
+                           + " , " + sum);
+    }
+
+    private static void plan(String pkHashConfigs, byte[][] rows) throws InvalidProtocolBufferException {
+        long start = System.currentTimeMillis();
+        long sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            int table = i % TABLES;
+            List<Column> columns = RowData.parseFrom(rows[table]).getAfterColumnsList();
+            PartitionRoute route = MQMessageUtils.getPartitionRoute("mytest.table_" + table + "_0", pkHashConfigs);
+            int hashCode = route.hash(columns, 0);
+            sum += Math.abs(Math.abs(hashCode) % 16);
+        }
+        long end = System.currentTimeMillis();
+        System.out.println("plan : " + (end - start) + "ms , tps : " + (COUNT * 1000L / Math.max(1, end - start))
+                           + " , " + sum);
+    }
+}
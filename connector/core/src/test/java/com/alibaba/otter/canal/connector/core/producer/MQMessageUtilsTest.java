@@ -0,0 +1,120 @@
+package com.alibaba.otter.canal.connector.core.producer;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.connector.core.producer.MQMessageUtils.EntryRowData;
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+import com.alibaba.otter.canal.protocol.Message;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+public class MQMessageUtilsTest {
+
+    @Test
+    public void testHashValue() {
+        String[] values = { "", "12345", "中文", "\u00df\u20ac", "emoji\ud83d\ude00", "\u00ff\u07ff\u0800\uffff" };
+        for (String value : values) {
+            Column column = Column.newBuilder().setName("id").setValue(value).build();
+            Assert.assertEquals(value.hashCode(), MQMessageUtils.hashValue(column));
+        }
+
+        // 非法utf8退回到String的hash
+        Column column = Column.newBuilder()
+            .setName("id")
+            .setValueBytes(ByteString.copyFrom(new byte[] { 'a', (byte) 0xc0, (byte) 0x80 }))
+            .build();
+        Assert.assertEquals(column.getValue().hashCode(), MQMessageUtils.hashValue(column));
+    }
+
+    @Test
+    public void testPartitionByPk() throws InvalidProtocolBufferException {
+        String config = "mytest.user:id^name";
+        for (int i = 0; i < 100; i++) {
+            Entry entry = buildEntry("mytest", "user", String.valueOf(i), "name" + i, "age", "pk");
+            assertPartition(entry, 7, config, Integer.toString(i), "name" + i);
+        }
+
+        // 表结构变化后hash列下标重新解析
+        for (int i = 0; i < 100; i++) {
+            Entry entry = buildEntry("mytest", "user", String.valueOf(i), "name" + i, "pk", "age", "ext");
+            assertPartition(entry, 7, config, Integer.toString(i), "name" + i);
+        }
+    }
+
+    @Test
+    public void testPartitionByAutoPk() throws InvalidProtocolBufferException {
+        for (int i = 0; i < 100; i++) {
+            Entry entry = buildEntry("mytest", "user", "编号" + i, "name" + i, "pk");
+            assertPartition(entry, 5, "mytest\\..*:$pk$", "编号" + i);
+        }
+    }
+
+    @Test
+    public void testTopicRoute() {
+        String config = "topic_user:mytest\\.user.*,topic_db:mytest,otherdb";
+        Map<String, Message> messages = MQMessageUtils.messageTopics(new Message(1L,
+            Arrays.asList(buildEntry("mytest", "user_1", "1", "a", "id"),
+                buildEntry("mytest", "order", "1", "a", "id"),
+                buildEntry("otherdb", "order", "1", "a", "id"),
+                buildEntry("unknown", "order", "1", "a", "id"))), "default", config);
+        Assert.assertEquals(1, messages.get("topic_user").getEntries().size());
+        Assert.assertEquals(1, messages.get("topic_db").getEntries().size());
+        Assert.assertEquals(1, messages.get("otherdb").getEntries().size());
+        Assert.assertEquals(1, messages.get("default").getEntries().size());
+    }
+
+    private static void assertPartition(Entry entry, int partitionsNum, String config, String... values)
+                                                                                                         throws InvalidProtocolBufferException {
+        EntryRowData data = new EntryRowData();
+        data.entry = entry;
+        data.rowChange = RowChange.parseFrom(entry.getStoreValue());
+        Message[] messages = MQMessageUtils.messagePartition(new EntryRowData[] { data },
+            1L,
+            partitionsNum,
+            config,
+            false);
+
+        int hashCode = 0;
+        for (String value : values) {
+            hashCode = hashCode ^ value.hashCode();
+        }
+        int expect = Math.abs(Math.abs(hashCode) % partitionsNum);
+        for (int i = 0; i < partitionsNum; i++) {
+            Assert.assertEquals(i == expect, messages[i] != null);
+        }
+    }
+
+    /**
+     * 构造一行数据，列依次为id、name和指定的额外列，其中名为pk的列和id列标记为主键
+     */
+    private static Entry buildEntry(String schema, String table, String id, String name, String... others) {
+        RowData.Builder rowData = RowData.newBuilder();
+        rowData.addAfterColumns(Column.newBuilder().setName("id").setValue(id).setIsKey(true));
+        rowData.addAfterColumns(Column.newBuilder().setName("name").setValue(name));
+        for (String other : others) {
+            rowData.addAfterColumns(Column.newBuilder()
+                .setName(other)
+                .setValue("pk".equals(other) ? "" : other)
+                .setIsKey("pk".equals(other)));
+        }
+
+        RowChange rowChange = RowChange.newBuilder()
+            .setEventType(CanalEntry.EventType.INSERT)
+            .setIsDdl(false)
+            .addRowDatas(rowData)
+            .build();
+        return Entry.newBuilder()
+            .setEntryType(CanalEntry.EntryType.ROWDATA)
+            .setHeader(CanalEntry.Header.newBuilder().setSchemaName(schema).setTableName(table))
+            .setStoreValue(rowChange.toByteString())
+            .build();
+    }
+}
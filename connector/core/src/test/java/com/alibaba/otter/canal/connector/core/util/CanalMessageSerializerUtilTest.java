@@ -0,0 +1,76 @@
+package com.alibaba.otter.canal.connector.core.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalPacket;
+import com.alibaba.otter.canal.protocol.Message;
+import com.google.protobuf.ByteString;
+
+public class CanalMessageSerializerUtilTest {
+
+    @Test
+    public void testRawEntries() throws Exception {
+        List<Entry> entries = buildEntries();
+        List<ByteString> rawEntries = new ArrayList<>();
+        for (Entry entry : entries) {
+            rawEntries.add(entry.toByteString());
+        }
+        Message raw = new Message(10L, true, rawEntries);
+
+        Message result = CanalMessageSerializerUtil.deserializer(CanalMessageSerializerUtil.serializer(raw, false));
+        Assert.assertEquals(10L, result.getId());
+        Assert.assertEquals(entries, result.getEntries());
+
+        result = CanalMessageSerializerUtil.deserializer(CanalMessageSerializerUtil.serializer(raw, true));
+        Assert.assertEquals(1, result.getEntries().size());
+        Assert.assertEquals(entries.get(1), result.getEntries().get(0));
+    }
+
+    @Test
+    public void testEntries() throws Exception {
+        List<Entry> entries = buildEntries();
+        Message message = new Message(10L, entries);
+
+        byte[] bytes = CanalMessageSerializerUtil.serializer(message, true);
+        CanalPacket.Packet packet = CanalPacket.Packet.parseFrom(bytes);
+        Assert.assertEquals(1, packet.getVersion());
+        Assert.assertEquals(CanalPacket.PacketType.MESSAGES, packet.getType());
+
+        Message result = CanalMessageSerializerUtil.deserializer(bytes);
+        Assert.assertEquals(10L, result.getId());
+        Assert.assertEquals(1, result.getEntries().size());
+        Assert.assertEquals(entries.get(1), result.getEntries().get(0));
+    }
+
+    @Test
+    public void testIsTransactionEntry() throws Exception {
+        List<Entry> entries = buildEntries();
+        Assert.assertTrue(CanalMessageSerializerUtil.isTransactionEntry(entries.get(0).toByteString()));
+        Assert.assertFalse(CanalMessageSerializerUtil.isTransactionEntry(entries.get(1).toByteString()));
+        Assert.assertTrue(CanalMessageSerializerUtil.isTransactionEntry(entries.get(2).toByteString()));
+    }
+
+    private static List<Entry> buildEntries() {
+        CanalEntry.Header header = CanalEntry.Header.newBuilder()
+            .setLogfileName("mysql-bin.000001")
+            .setLogfileOffset(4L)
+            .setSchemaName("mytest")
+            .setTableName("user")
+            .build();
+        List<Entry> entries = new ArrayList<>();
+        entries.add(Entry.newBuilder().setHeader(header).setEntryType(CanalEntry.EntryType.TRANSACTIONBEGIN).build());
+        entries.add(Entry.newBuilder()
+            .setHeader(header)
+            .setEntryType(CanalEntry.EntryType.ROWDATA)
+            .setStoreValue(ByteString.copyFromUtf8("row"))
+            .build());
+        entries.add(Entry.newBuilder().setHeader(header).setEntryType(CanalEntry.EntryType.TRANSACTIONEND).build());
+        return entries;
+    }
+}
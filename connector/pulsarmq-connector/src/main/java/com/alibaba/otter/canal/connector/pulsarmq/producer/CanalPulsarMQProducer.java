@@ -183,11 +183,11 @@ public class CanalPulsarMQProducer extends AbstractMQProducer implements CanalMQ
             partitionNum = destination.getPartitionsNum();
         }
         ExecutorTemplate template = new ExecutorTemplate(sendPartitionExecutor);
-        // 并发构造
-        MQMessageUtils.EntryRowData[] datas = MQMessageUtils.buildMessageData(message, buildExecutor);
         if (!mqProperties.isFlatMessage()) {
             // 动态计算目标分区
             if (destination.getPartitionHash() != null && !destination.getPartitionHash().isEmpty()) {
+                // 并发构造
+                MQMessageUtils.EntryRowData[] datas = MQMessageUtils.buildMessageData(message, buildExecutor);
                 for (MQMessageUtils.EntryRowData r : datas) {
                     CanalEntry.Entry entry = r.entry;
                     if (null == entry) {
@@ -210,11 +210,13 @@ public class CanalPulsarMQProducer extends AbstractMQProducer implements CanalMQ
                     }
                 }
             } else {
-                // 默认分区
+                // 默认分区，不需要重新分区，直接转发原始的entry
                 final int partition = destination.getPartition() != null ? destination.getPartition() : 0;
                 sendMessage(topicName, partition, message);
             }
         } else {
+            // 并发构造
+            MQMessageUtils.EntryRowData[] datas = MQMessageUtils.buildMessageData(message, buildExecutor);
             // 串行分区
             List<FlatMessage> flatMessages = MQMessageUtils.messageConverter(datas, message.getId());
 
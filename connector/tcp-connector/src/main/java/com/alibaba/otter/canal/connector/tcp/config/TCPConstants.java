@@ -9,4 +9,11 @@ public class TCPConstants {
     public static final String CANAL_TCP_USERNAME   = ROOT + "." + "tcp.username";
     public static final String CANAL_TCP_PASSWORD   = ROOT + "." + "tcp.password";
     public static final String CANAL_TCP_BATCH_SIZE = ROOT + "." + "tcp.batch.size";
+
+    public static final String CANAL_TCP_ADAPTIVE_BATCH     = ROOT + "." + "tcp.adaptiveBatch.enable";
+    public static final String CANAL_TCP_ADAPTIVE_MIN_SIZE  = ROOT + "." + "tcp.adaptiveBatch.minSize";
+    public static final String CANAL_TCP_ADAPTIVE_MAX_SIZE  = ROOT + "." + "tcp.adaptiveBatch.maxSize";
+    public static final String CANAL_TCP_ADAPTIVE_LATENCY   = ROOT + "." + "tcp.adaptiveBatch.targetLatency";
+    public static final String CANAL_TCP_ADAPTIVE_MAX_BYTES = ROOT + "." + "tcp.adaptiveBatch.maxBytes";
+    public static final String CANAL_TCP_ADAPTIVE_MEM_UNIT  = ROOT + "." + "tcp.adaptiveBatch.memUnit";
 }
@@ -4,12 +4,14 @@ import com.alibaba.otter.canal.client.CanalConnector;
 import com.alibaba.otter.canal.client.impl.ClusterCanalConnector;
 import com.alibaba.otter.canal.client.impl.ClusterNodeAccessStrategy;
 import com.alibaba.otter.canal.client.impl.SimpleCanalConnector;
+import com.alibaba.otter.canal.common.utils.AdaptiveBatchSizer;
 import com.alibaba.otter.canal.common.zookeeper.ZkClientx;
 import com.alibaba.otter.canal.connector.core.consumer.CommonMessage;
 import com.alibaba.otter.canal.connector.core.spi.CanalMsgConsumer;
 import com.alibaba.otter.canal.connector.core.spi.SPI;
 import com.alibaba.otter.canal.connector.core.util.MessageUtil;
 import com.alibaba.otter.canal.connector.tcp.config.TCPConstants;
+import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.Message;
 
 import org.apache.commons.lang.StringUtils;
@@ -31,9 +33,15 @@ import java.util.concurrent.TimeUnit;
 @SPI("tcp")
 public class CanalTCPConsumer implements CanalMsgConsumer {
 
-    private Long           currentBatchId = null;
-    private CanalConnector canalConnector;
-    private int            batchSize      = 500;
+    private Long               currentBatchId = null;
+    private CanalConnector     canalConnector;
+    private int                batchSize      = 500;
+    private AdaptiveBatchSizer batchSizer;
+    private int                requestedSize;
+    private long               getLatency;
+    private long               processBegin;
+    private int                receivedSize;
+    private long               receivedBytes;
 
     @Override
     public void init(Properties properties, String destination, String groupId) {
@@ -46,6 +54,15 @@ public class CanalTCPConsumer implements CanalMsgConsumer {
         if (batchSizePro != null) {
             batchSize = Integer.parseInt(batchSizePro);
         }
+        if (Boolean.parseBoolean(properties.getProperty(TCPConstants.CANAL_TCP_ADAPTIVE_BATCH))) {
+            batchSizer = new AdaptiveBatchSizer(batchSize,
+                Integer.parseInt(properties.getProperty(TCPConstants.CANAL_TCP_ADAPTIVE_MIN_SIZE, "10")),
+                Integer.parseInt(properties.getProperty(TCPConstants.CANAL_TCP_ADAPTIVE_MAX_SIZE, "2000")),
+                Long.parseLong(properties.getProperty(TCPConstants.CANAL_TCP_ADAPTIVE_LATENCY, "500")),
+                Long.parseLong(properties.getProperty(TCPConstants.CANAL_TCP_ADAPTIVE_MAX_BYTES, "8388608")));
+            // 服务端store为MEMSIZE模式时需要配置为canal.instance.memory.buffer.memunit
+            batchSizer.setMemUnit(Long.parseLong(properties.getProperty(TCPConstants.CANAL_TCP_ADAPTIVE_MEM_UNIT, "0")));
+        }
         if (StringUtils.isNotBlank(host)) {
             String[] ipPort = host.split(":");
             SocketAddress sa = new InetSocketAddress(ipPort[0], Integer.parseInt(ipPort[1]));
@@ -67,10 +84,24 @@ public class CanalTCPConsumer implements CanalMsgConsumer {
     @Override
     public List<CommonMessage> getMessage(Long timeout, TimeUnit unit) {
         try {
-            Message message = canalConnector.getWithoutAck(batchSize, timeout, unit);
+            requestedSize = batchSizer != null ? batchSizer.getBatchSize() : batchSize;
+            long begin = System.currentTimeMillis();
+            Message message = canalConnector.getWithoutAck(requestedSize, timeout, unit);
+            processBegin = System.currentTimeMillis();
+            getLatency = processBegin - begin;
             long batchId = message.getId();
             currentBatchId = batchId;
             int size = message.getEntries().size();
+            if (batchSizer != null) {
+                receivedSize = size;
+                receivedBytes = 0;
+                for (CanalEntry.Entry entry : message.getEntries()) {
+                    receivedBytes += entry.getSerializedSize();
+                }
+                if (batchId == -1 || size == 0) {
+                    batchSizer.record(requestedSize, 0, 0, getLatency, 0);
+                }
+            }
             if (batchId == -1 || size == 0) {
                 return null;
             } else {
@@ -93,6 +124,14 @@ public class CanalTCPConsumer implements CanalMsgConsumer {
     public void ack() {
         if (currentBatchId != null) {
             canalConnector.ack(currentBatchId);
+            if (batchSizer != null && currentBatchId != -1 && receivedSize > 0) {
+                // 下游适配器的处理耗时为get返回到ack之间
+                batchSizer.record(requestedSize,
+                    receivedSize,
+                    receivedBytes,
+                    getLatency,
+                    System.currentTimeMillis() - processBegin);
+            }
             currentBatchId = null;
         }
     }
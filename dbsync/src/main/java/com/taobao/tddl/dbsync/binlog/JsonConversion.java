@@ -1,5 +1,7 @@
 package com.taobao.tddl.dbsync.binlog;
 
+import java.io.UnsupportedEncodingException;
+
 import static com.taobao.tddl.dbsync.binlog.event.RowsLogBuffer.appendNumber2;
 import static com.taobao.tddl.dbsync.binlog.event.RowsLogBuffer.appendNumber4;
 import static com.taobao.tddl.dbsync.binlog.event.RowsLogBuffer.usecondsToStr;
@@ -56,6 +58,8 @@ public class JsonConversion {
     public static final int  VALUE_ENTRY_SIZE_SMALL  = (1 + SMALL_OFFSET_SIZE);
     public static final int  VALUE_ENTRY_SIZE_LARGE  = (1 + LARGE_OFFSET_SIZE);
 
+    private static final char[] HEX_DIGITS    = "0123456789abcdef".toCharArray();
+
     public static Json_Value parse_value(int type, LogBuffer buffer, long len, String charsetName) {
         buffer = buffer.duplicate(buffer.position(), (int) len);
         switch (type) {
@@ -72,6 +76,311 @@ public class JsonConversion {
         }
     }
 
+    /**
+     * 单次遍历把json二进制直接输出到buf，不构造中间的Json_Value和String，输出和{@link Json_Value#toJsonString}一致
+     * 
+     * @param type json值的类型
+     * @param pos json值在buffer里的位置(type之后)
+     * @param len json值的长度(不包含type)
+     */
+    public static StringBuilder print_json(StringBuilder buf, int type, LogBuffer buffer, int pos, int len,
+                                           String charsetName) {
+        switch (type) {
+            case JSONB_TYPE_SMALL_OBJECT:
+                print_array_or_object(buf, true, buffer, pos, len, false, charsetName);
+                break;
+            case JSONB_TYPE_LARGE_OBJECT:
+                print_array_or_object(buf, true, buffer, pos, len, true, charsetName);
+                break;
+            case JSONB_TYPE_SMALL_ARRAY:
+                print_array_or_object(buf, false, buffer, pos, len, false, charsetName);
+                break;
+            case JSONB_TYPE_LARGE_ARRAY:
+                print_array_or_object(buf, false, buffer, pos, len, true, charsetName);
+                break;
+            default:
+                print_scalar(buf, type, buffer, pos, len, charsetName);
+        }
+        return buf;
+    }
+
+    private static void print_array_or_object(StringBuilder buf, boolean object, LogBuffer buffer, int pos, int len,
+                                              boolean large, String charsetName) {
+        int offset_size = large ? LARGE_OFFSET_SIZE : SMALL_OFFSET_SIZE;
+        if (len < 2 * offset_size) {
+            throw new IllegalArgumentException("illegal json data");
+        }
+        long element_count = read_offset_or_size(buffer, pos, large);
+        long bytes = read_offset_or_size(buffer, pos + offset_size, large);
+        if (bytes > len) {
+            throw new IllegalArgumentException("illegal json data");
+        }
+
+        int key_entry_size = large ? KEY_ENTRY_SIZE_LARGE : KEY_ENTRY_SIZE_SMALL;
+        int value_entry_size = large ? VALUE_ENTRY_SIZE_LARGE : VALUE_ENTRY_SIZE_SMALL;
+        long first_value_entry = 2 * offset_size;
+        if (object) {
+            first_value_entry += element_count * key_entry_size;
+        }
+        if (first_value_entry + element_count * value_entry_size > bytes) {
+            throw new IllegalArgumentException("illegal json data");
+        }
+
+        buf.append(object ? '{' : '[');
+        for (int i = 0; i < element_count; ++i) {
+            if (i > 0) {
+                buf.append(", ");
+            }
+
+            if (object) {
+                int key_entry = pos + 2 * offset_size + key_entry_size * i;
+                long key_offset = read_offset_or_size(buffer, key_entry, large);
+                int key_length = buffer.getUint16(key_entry + offset_size);
+                if (key_offset + key_length > bytes) {
+                    throw new IllegalArgumentException("illegal json data");
+                }
+                // key和Json_Value.toJsonString保持一致，不做转义
+                buf.append('"');
+                append_string(buf, buffer, pos + (int) key_offset, key_length, charsetName, false);
+                buf.append("\": ");
+            }
+
+            int value_entry = pos + (int) first_value_entry + value_entry_size * i;
+            int value_type = buffer.getUint8(value_entry);
+            if (value_type == JSONB_TYPE_INT16 || value_type == JSONB_TYPE_UINT16 || value_type == JSONB_TYPE_LITERAL
+                || (large && (value_type == JSONB_TYPE_INT32 || value_type == JSONB_TYPE_UINT32))) {
+                // 内联在value entry里的值
+                print_scalar(buf, value_type, buffer, value_entry + 1, value_entry_size - 1, charsetName);
+            } else {
+                long value_offset = read_offset_or_size(buffer, value_entry + 1, large);
+                if (value_offset >= bytes) {
+                    throw new IllegalArgumentException("illegal json data");
+                }
+                print_json(buf,
+                    value_type,
+                    buffer,
+                    pos + (int) value_offset,
+                    (int) (bytes - value_offset),
+                    charsetName);
+            }
+        }
+        buf.append(object ? '}' : ']');
+    }
+
+    private static void print_scalar(StringBuilder buf, int type, LogBuffer buffer, int pos, int len,
+                                     String charsetName) {
+        switch (type) {
+            case JSONB_TYPE_LITERAL:
+                switch (buffer.getUint8(pos)) {
+                    case JSONB_NULL_LITERAL:
+                        buf.append("null");
+                        break;
+                    case JSONB_TRUE_LITERAL:
+                        buf.append("true");
+                        break;
+                    case JSONB_FALSE_LITERAL:
+                        buf.append("false");
+                        break;
+                    default:
+                        throw new IllegalArgumentException("illegal json data");
+                }
+                break;
+            case JSONB_TYPE_INT16:
+                buf.append(buffer.getInt16(pos));
+                break;
+            case JSONB_TYPE_INT32:
+                buf.append(buffer.getInt32(pos));
+                break;
+            case JSONB_TYPE_INT64:
+                buf.append(buffer.getLong64(pos));
+                break;
+            case JSONB_TYPE_UINT16:
+                buf.append(buffer.getUint16(pos));
+                break;
+            case JSONB_TYPE_UINT32:
+                buf.append(buffer.getUint32(pos));
+                break;
+            case JSONB_TYPE_UINT64:
+                long value = buffer.getLong64(pos);
+                if (value >= 0) {
+                    buf.append(value);
+                } else {
+                    buf.append(buffer.getUlong64(pos));
+                }
+                break;
+            case JSONB_TYPE_DOUBLE:
+                buf.append(buffer.getDouble64(pos));
+                break;
+            case JSONB_TYPE_STRING:
+                long str = read_variable_length(buffer, pos, Math.min(len, 5));
+                int n = (int) (str >>> 32);
+                long str_len = str & 0xFFFFFFFFL;
+                if (len < n + str_len) {
+                    throw new IllegalArgumentException("illegal json data");
+                }
+                buf.append('"');
+                append_string(buf, buffer, pos + n, (int) str_len, charsetName, true);
+                buf.append('"');
+                break;
+            case JSONB_TYPE_OPAQUE:
+                // The type is encoded as a uint8 that maps to an
+                // enum_field_types.
+                int field_type = buffer.getUint8(pos);
+                long q_str = read_variable_length(buffer, pos + 1, Math.min(len - 1, 5));
+                int q_n = (int) (q_str >>> 32);
+                long q_str_len = q_str & 0xFFFFFFFFL;
+                if (q_str_len == 0 || len < q_n + q_str_len) {
+                    throw new IllegalArgumentException("illegal json data");
+                }
+                print_opaque(buf, field_type, buffer, pos + 1 + q_n, (int) q_str_len, charsetName);
+                break;
+            default:
+                throw new IllegalArgumentException("illegal json data");
+        }
+    }
+
+    private static void print_opaque(StringBuilder buf, int field_type, LogBuffer buffer, int pos, int len,
+                                     String charsetName) {
+        if (field_type == LogEvent.MYSQL_TYPE_NEWDECIMAL) {
+            int precision = buffer.getInt8(pos);
+            int scale = buffer.getInt8(pos + 1);
+            buf.append(buffer.getDecimal(pos + 2, precision, scale).toPlainString());
+        } else if (field_type == LogEvent.MYSQL_TYPE_TIME) {
+            long packed_value = buffer.getLong64(pos);
+            buf.append('"');
+            if (packed_value == 0) {
+                buf.append("00:00:00");
+            } else {
+                long ultime = Math.abs(packed_value);
+                long intpart = ultime >> 24;
+                int frac = (int) (ultime % (1L << 24));
+                if (packed_value < 0) {
+                    buf.append('-');
+                }
+
+                int d = (int) ((intpart >> 12) % (1 << 10));
+                if (d > 100) {
+                    buf.append(d);
+                } else {
+                    appendNumber2(buf, d);
+                }
+                buf.append(':');
+                appendNumber2(buf, (int) ((intpart >> 6) % (1 << 6)));
+                buf.append(':');
+                appendNumber2(buf, (int) (intpart % (1 << 6)));
+                buf.append('.').append(usecondsToStr(frac, 6));
+            }
+            buf.append('"');
+        } else if (field_type == LogEvent.MYSQL_TYPE_DATE || field_type == LogEvent.MYSQL_TYPE_DATETIME
+                   || field_type == LogEvent.MYSQL_TYPE_TIMESTAMP) {
+            long packed_value = buffer.getLong64(pos);
+            buf.append('"');
+            if (packed_value == 0) {
+                buf.append("0000-00-00 00:00:00");
+            } else {
+                long ultime = Math.abs(packed_value);
+                long intpart = ultime >> 24;
+                int frac = (int) (ultime % (1L << 24));
+                long ymd = intpart >> 17;
+                long ym = ymd >> 5;
+                long hms = intpart % (1 << 17);
+                appendNumber4(buf, (int) (ym / 13));
+                buf.append('-');
+                appendNumber2(buf, (int) (ym % 13));
+                buf.append('-');
+                appendNumber2(buf, (int) (ymd % (1 << 5)));
+                buf.append(' ');
+                appendNumber2(buf, (int) (hms >> 12));
+                buf.append(':');
+                appendNumber2(buf, (int) ((hms >> 6) % (1 << 6)));
+                buf.append(':');
+                appendNumber2(buf, (int) (hms % (1 << 6)));
+                buf.append('.').append(usecondsToStr(frac, 6));
+            }
+            buf.append('"');
+        } else {
+            buf.append('"');
+            append_string(buf, buffer, pos, len, charsetName, true);
+            buf.append('"');
+        }
+    }
+
+    /**
+     * 读取变长的长度，返回值高32位为长度本身占用的字节数，低32位为长度。没有读到结束字节时按0处理
+     */
+    private static long read_variable_length(LogBuffer buffer, int pos, int max_bytes) {
+        long len = 0;
+        for (int i = 0; i < max_bytes; i++) {
+            // Get the next 7 bits of the length.
+            int data = buffer.getUint8(pos + i);
+            len |= (long) (data & 0x7f) << (7 * i);
+            if ((data & 0x80) == 0) {
+                // The length shouldn't exceed 32 bits.
+                if (len > 0xFFFFFFFFL) {
+                    throw new IllegalArgumentException("illegal json data");
+                }
+                return ((long) (i + 1) << 32) | len;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 和{@link LogBuffer#getFixString(int, int, String)}一致，遇到'\0'截断。ascii字符直接输出，其余部分再按字符集解码
+     */
+    private static void append_string(StringBuilder buf, LogBuffer buffer, int pos, int len, String charsetName,
+                                      boolean escape) {
+        if (pos + len > buffer.limit() || pos < 0) {
+            throw new IllegalArgumentException("limit excceed: " + (pos < 0 ? pos : (pos + len)));
+        }
+
+        final byte[] data = buffer.buffer;
+        final int end = buffer.origin + pos + len;
+        int from = buffer.origin + pos;
+        if (isAsciiCompatible(charsetName)) {
+            for (; from < end; from++) {
+                byte b = data[from];
+                if (b == 0) {
+                    return;
+                } else if (b < 0) {
+                    break;
+                }
+                append_char(buf, (char) b, escape);
+            }
+            if (from == end) {
+                return;
+            }
+        }
+
+        int found = from;
+        for (; found < end && data[found] != 0; found++)
+            /* empty loop */;
+
+        String text;
+        try {
+            text = new String(data, from, found - from, charsetName);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalArgumentException("Unsupported encoding: " + charsetName, e);
+        }
+        if (escape) {
+            for (int i = 0; i < text.length(); i++) {
+                append_char(buf, text.charAt(i), true);
+            }
+        } else {
+            buf.append(text);
+        }
+    }
+
+    private static boolean isAsciiCompatible(String charsetName) {
+        // ascii字符在这些字符集里都是单字节编码，多字节字符的首字节都不在ascii范围内
+        return "UTF-8".equalsIgnoreCase(charsetName) || "UTF8".equalsIgnoreCase(charsetName)
+               || "ISO-8859-1".equalsIgnoreCase(charsetName) || "GBK".equalsIgnoreCase(charsetName);
+    }
+
+    private static long read_offset_or_size(LogBuffer buffer, int pos, boolean large) {
+        return large ? buffer.getUint32(pos) : buffer.getUint16(pos);
+    }
+
     private static Json_Value parse_array_or_object(Json_enum_type type, LogBuffer buffer, long len, boolean large,
                                                     String charsetName) {
         long offset_size = large ? LARGE_OFFSET_SIZE : SMALL_OFFSET_SIZE;
@@ -418,33 +727,31 @@ public class JsonConversion {
         StringBuilder sb = new StringBuilder(data.length());
         int endIndex = data.length();
         for (int i = 0; i < endIndex; ++i) {
-            char c = data.charAt(i);
-            if (c == '"') {
-                sb.append("\\\"");
-            } else if (c == '\n') {
-                sb.append("\\n");
-            } else if (c == '\r') {
-                sb.append("\\r");
-            } else if (c == '\\') {
-                sb.append("\\\\");
-            } else if (c == '\t') {
-                sb.append("\\t");
-            } else if (c < 16) {
-                sb.append("\\u000");
-                sb.append(Integer.toHexString(c));
-            } else if (c < 32) {
-                sb.append("\\u00");
-                sb.append(Integer.toHexString(c));
-            } else if (c >= 0x7f && c <= 0xA0) {
-                sb.append("\\u00");
-                sb.append(Integer.toHexString(c));
-            } else {
-                sb.append(c);
-            }
+            append_char(sb, data.charAt(i), true);
         }
         return sb;
     }
 
+    private static void append_char(StringBuilder sb, char c, boolean escape) {
+        if (!escape) {
+            sb.append(c);
+        } else if (c == '"') {
+            sb.append("\\\"");
+        } else if (c == '\n') {
+            sb.append("\\n");
+        } else if (c == '\r') {
+            sb.append("\\r");
+        } else if (c == '\\') {
+            sb.append("\\\\");
+        } else if (c == '\t') {
+            sb.append("\\t");
+        } else if (c < 32 || (c >= 0x7f && c <= 0xA0)) {
+            sb.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+        } else {
+            sb.append(c);
+        }
+    }
+
     public static enum Json_enum_type {
         OBJECT, ARRAY, STRING, INT, UINT, DOUBLE, LITERAL_NULL, LITERAL_TRUE, LITERAL_FALSE, OPAQUE, ERROR
     }
@@ -3,9 +3,6 @@ package com.taobao.tddl.dbsync.binlog;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.taobao.tddl.dbsync.binlog.JsonConversion.Json_Value;
-import com.taobao.tddl.dbsync.binlog.JsonConversion.Json_enum_type;
-
 /**
  * 处理mysql8.0 parital json diff解析
  * 
@@ -36,6 +33,14 @@ public class JsonDiffConversion {
 
     public static StringBuilder print_json_diff(LogBuffer buffer, long len, String columnName, int columnIndex,
                                                 String charsetName) {
+        return print_json_diff(new StringBuilder(), buffer, len, columnName, columnIndex, charsetName);
+    }
+
+    /**
+     * 直接输出到调用方复用的builder里
+     */
+    public static StringBuilder print_json_diff(StringBuilder builder, LogBuffer buffer, long len, String columnName,
+                                                int columnIndex, String charsetName) {
         int position = buffer.position();
         List<String> operation_names = new ArrayList<>();
         while (buffer.hasRemaining()) {
@@ -68,7 +73,6 @@ public class JsonDiffConversion {
         }
 
         // Print function names in reverse order.
-        StringBuilder builder = new StringBuilder();
         for (int i = operation_names.size() - 1; i >= 0; i--) {
             if (i == 0 || operation_names.get(i - 1) != operation_names.get(i)) {
                 builder.append(operation_names.get(i)).append("(");
@@ -108,18 +112,15 @@ public class JsonDiffConversion {
                 // Read value length
                 long value_length = buffer.getPackedLong();
 
-                Json_Value jsonValue = JsonConversion.parse_value(buffer.getUint8(),
+                // Read value
+                int value_position = buffer.position();
+                JsonConversion.print_json(builder,
+                    buffer.getUint8(value_position),
                     buffer,
-                    value_length - 1,
+                    value_position + 1,
+                    (int) value_length - 1,
                     charsetName);
-                buffer.forward((int) value_length - 1);
-                // Read value
-                if (jsonValue.m_type == Json_enum_type.ERROR) {
-                    throw new IllegalArgumentException("parsing json value");
-                }
-                StringBuilder jsonBuilder = new StringBuilder();
-                jsonValue.toJsonString(jsonBuilder, charsetName);
-                builder.append(jsonBuilder);
+                buffer.forward((int) value_length);
             }
 
             // Print closing parenthesis
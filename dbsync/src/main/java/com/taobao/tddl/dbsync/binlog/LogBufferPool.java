@@ -0,0 +1,121 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按2的幂次分级复用的LogBuffer池，用于网络接收到的event在解析流水线里的拷贝。
+ *
+ * <pre>
+ * 1. copyOf从池里取一个不小于event大小的buffer，拷贝一次event数据，池里没有时新分配
+ * 2. event处理完之后release归还，池里保留的总字节数超过上限时直接丢弃交给gc
+ * 3. 超过最大分级的大event不走池，退化为普通的duplicate
+ * </pre>
+ */
+public class LogBufferPool {
+
+    public static final int                          MIN_SEGMENT_SIZE  = 512;
+    private static final int                         MIN_SEGMENT_SHIFT = Integer.numberOfTrailingZeros(MIN_SEGMENT_SIZE);
+
+    private final int                                maxSegmentSize;
+    private final long                               maxRetainedBytes;
+    private final ArrayBlockingQueue<PooledLogBuffer>[] segments;
+    private final AtomicLong                         retainedBytes     = new AtomicLong(0);
+
+    /**
+     * @param capacity 每个分级最多缓存的buffer数
+     * @param maxSegmentSize 最大分级的大小，向上取整到2的幂次
+     * @param maxRetainedBytes 池里最多保留的总字节数
+     */
+    @SuppressWarnings("unchecked")
+    public LogBufferPool(int capacity, int maxSegmentSize, long maxRetainedBytes){
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+
+        int classes = sizeClass(Math.max(maxSegmentSize, MIN_SEGMENT_SIZE)) + 1;
+        this.maxSegmentSize = MIN_SEGMENT_SIZE << (classes - 1);
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.segments = new ArrayBlockingQueue[classes];
+        for (int i = 0; i < classes; i++) {
+            segments[i] = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    /**
+     * 拷贝source的[origin, origin + limit)数据，和{@link LogBuffer#duplicate()}语义一致
+     */
+    public LogBuffer copyOf(LogBuffer source) {
+        final int len = source.limit;
+        if (len > maxSegmentSize) {
+            return source.duplicate();
+        }
+
+        final int sizeClass = sizeClass(len);
+        PooledLogBuffer buffer = segments[sizeClass].poll();
+        if (buffer == null) {
+            buffer = new PooledLogBuffer(this, sizeClass, new byte[MIN_SEGMENT_SIZE << sizeClass]);
+        } else {
+            retainedBytes.addAndGet(-buffer.buffer.length);
+        }
+
+        System.arraycopy(source.buffer, source.origin, buffer.buffer, 0, len);
+        buffer.reset(len);
+        return buffer;
+    }
+
+    /**
+     * 归还copyOf得到的buffer，非本池分配的buffer直接忽略，归还之后不能再访问该buffer
+     */
+    public void release(LogBuffer buffer) {
+        if (!(buffer instanceof PooledLogBuffer)) {
+            return;
+        }
+
+        PooledLogBuffer pooled = (PooledLogBuffer) buffer;
+        if (pooled.pool != this || pooled.released) {
+            return;
+        }
+
+        pooled.released = true;
+        final int length = pooled.buffer.length;
+        if (retainedBytes.addAndGet(length) > maxRetainedBytes || !segments[pooled.sizeClass].offer(pooled)) {
+            // 超过上限，交给gc
+            retainedBytes.addAndGet(-length);
+        }
+    }
+
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    private static int sizeClass(int len) {
+        if (len <= MIN_SEGMENT_SIZE) {
+            return 0;
+        }
+
+        // 向上取整到2的幂次
+        return 32 - Integer.numberOfLeadingZeros(len - 1) - MIN_SEGMENT_SHIFT;
+    }
+
+    static final class PooledLogBuffer extends LogBuffer {
+
+        private final LogBufferPool pool;
+        private final int           sizeClass;
+        private volatile boolean    released;
+
+        PooledLogBuffer(LogBufferPool pool, int sizeClass, byte[] buffer){
+            super(buffer, 0, 0);
+            this.pool = pool;
+            this.sizeClass = sizeClass;
+        }
+
+        void reset(int len) {
+            this.origin = 0;
+            this.position = 0;
+            this.limit = len;
+            this.semival = 0;
+            this.released = false;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.alibaba.otter.canal.parse.driver.mysql.packets.GTIDSet;
+import com.alibaba.otter.canal.parse.driver.mysql.packets.MysqlGTIDSet;
 import com.taobao.tddl.dbsync.binlog.event.AppendBlockLogEvent;
 import com.taobao.tddl.dbsync.binlog.event.BeginLoadQueryLogEvent;
 import com.taobao.tddl.dbsync.binlog.event.CreateFileLogEvent;
@@ -365,7 +366,11 @@ public final class LogDecoder {
                 GtidLogEvent event = new GtidLogEvent(header, buffer, descriptionEvent);
                 /* updating position in context */
                 logPosition.position = header.getLogPos();
-                if (gtidSet != null) {
+                if (gtidSet instanceof MysqlGTIDSet) {
+                    ((MysqlGTIDSet) gtidSet).update(event.getSid(), event.getGno());
+                    // update latest gtid
+                    header.putGtid(gtidSet, event);
+                } else if (gtidSet != null) {
                     gtidSet.update(event.getGtidStr());
                     // update latest gtid
                     header.putGtid(gtidSet, event);
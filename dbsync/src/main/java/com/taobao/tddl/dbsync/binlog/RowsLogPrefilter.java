@@ -0,0 +1,201 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.taobao.tddl.dbsync.binlog.event.FormatDescriptionLogEvent;
+
+/**
+ * 在网络接收之后、解析之前，按表名裁剪不需要的rows event。
+ *
+ * <pre>
+ * 1. 记录TABLE_MAP_EVENT里table_id对应的schema.table，每个table_id只做一次过滤判断
+ * 2. 被过滤表的rows event只保留event header/post-header(位点、flags)，列数改为0，丢弃所有row数据
+ * 3. 裁剪后的event依旧按原流程解析，位点、事务边界、table map的清理逻辑都不变，只是不再拷贝和解析row数据
+ * </pre>
+ *
+ * 只处理v4格式(5.1.4之后)的binlog，不认识的格式直接放过
+ */
+public class RowsLogPrefilter {
+
+    private static final int          HEADER_LEN     = FormatDescriptionLogEvent.LOG_EVENT_HEADER_LEN;
+    private static final int          TABLE_ID_LEN   = 6;
+    // table_id + flags
+    private static final int          POST_HEADER_V1 = FormatDescriptionLogEvent.ROWS_HEADER_LEN_V1;
+    private static final int          MAX_TABLES     = 65536;
+
+    private final Charset             charset;
+    private final int                 checksumLen;
+    private final TableFilter         tableFilter;
+    private final Map<Long, TableRef> tables         = new HashMap<>();
+    private int                       version;
+    private long                      filteredEvents;
+    private long                      filteredBytes;
+
+    public RowsLogPrefilter(Charset charset, int checksumAlg, TableFilter tableFilter){
+        this.charset = charset;
+        this.checksumLen = (checksumAlg != LogEvent.BINLOG_CHECKSUM_ALG_OFF
+                            && checksumAlg != LogEvent.BINLOG_CHECKSUM_ALG_UNDEF) ? LogEvent.BINLOG_CHECKSUM_LEN : 0;
+        this.tableFilter = tableFilter;
+        this.version = tableFilter.getVersion();
+    }
+
+    /**
+     * 处理buffer里当前的一个完整event，被过滤表的rows event会被原地裁剪并修改limit
+     *
+     * @return 是否发生了裁剪
+     */
+    public boolean filter(LogBuffer buffer) {
+        final int len = buffer.limit;
+        if (len < HEADER_LEN + POST_HEADER_V1 || buffer.getUint32(LogEvent.EVENT_LEN_OFFSET) != len) {
+            return false;
+        }
+
+        int currentVersion = tableFilter.getVersion();
+        if (currentVersion != version) {
+            // 过滤规则发生变化
+            tables.clear();
+            version = currentVersion;
+        }
+
+        switch (buffer.getUint8(LogEvent.EVENT_TYPE_OFFSET)) {
+            case LogEvent.TABLE_MAP_EVENT:
+                putTable(buffer, len);
+                return false;
+            case LogEvent.WRITE_ROWS_EVENT_V1:
+            case LogEvent.UPDATE_ROWS_EVENT_V1:
+            case LogEvent.DELETE_ROWS_EVENT_V1:
+                return strip(buffer, len, HEADER_LEN + POST_HEADER_V1);
+            case LogEvent.WRITE_ROWS_EVENT:
+            case LogEvent.UPDATE_ROWS_EVENT:
+            case LogEvent.DELETE_ROWS_EVENT:
+            case LogEvent.PARTIAL_UPDATE_ROWS_EVENT:
+                // v2在flags之后还有2字节的extra data长度，长度包含自身
+                int extraLen = buffer.getUint16(HEADER_LEN + POST_HEADER_V1);
+                if (extraLen < 2) {
+                    return false;
+                }
+                return strip(buffer, len, HEADER_LEN + POST_HEADER_V1 + extraLen);
+            default:
+                return false;
+        }
+    }
+
+    private void putTable(LogBuffer buffer, int len) {
+        final int end = len - checksumLen;
+        final long tableId = buffer.getUlong48(HEADER_LEN);
+        int pos = HEADER_LEN + POST_HEADER_V1;
+        final int schemaLen = buffer.getUint8(pos);
+        final int schemaPos = pos + 1;
+        pos = schemaPos + schemaLen + 1;
+        if (pos >= end) {
+            tables.remove(tableId);
+            return;
+        }
+        final int tableLen = buffer.getUint8(pos);
+        final int tablePos = pos + 1;
+        if (tablePos + tableLen > end) {
+            tables.remove(tableId);
+            return;
+        }
+
+        TableRef table = tables.get(tableId);
+        if (table != null && table.matches(buffer, schemaPos, schemaLen, tablePos, tableLen)) {
+            return;
+        }
+
+        if (tables.size() >= MAX_TABLES) {
+            tables.clear();
+        }
+        byte[] schema = new byte[schemaLen];
+        byte[] name = new byte[tableLen];
+        System.arraycopy(buffer.buffer, buffer.origin + schemaPos, schema, 0, schemaLen);
+        System.arraycopy(buffer.buffer, buffer.origin + tablePos, name, 0, tableLen);
+        boolean filtered = tableFilter.isFiltered(new String(schema, charset), new String(name, charset));
+        tables.put(tableId, new TableRef(schema, name, filtered));
+    }
+
+    private boolean strip(LogBuffer buffer, int len, int columnsOffset) {
+        if (columnsOffset + checksumLen >= len) {
+            return false;
+        }
+
+        TableRef table = tables.get(buffer.getUlong48(HEADER_LEN));
+        if (table == null || !table.filtered) {
+            return false;
+        }
+
+        // 列数写为0(packed long)，紧接着保留checksum，rows数据全部丢弃
+        final byte[] data = buffer.buffer;
+        final int origin = buffer.origin;
+        data[origin + columnsOffset] = 0;
+        System.arraycopy(data, origin + len - checksumLen, data, origin + columnsOffset + 1, checksumLen);
+        final int newLen = columnsOffset + 1 + checksumLen;
+        final int lenPos = origin + LogEvent.EVENT_LEN_OFFSET;
+        data[lenPos] = (byte) newLen;
+        data[lenPos + 1] = (byte) (newLen >>> 8);
+        data[lenPos + 2] = (byte) (newLen >>> 16);
+        data[lenPos + 3] = (byte) (newLen >>> 24);
+        buffer.limit = newLen;
+
+        filteredEvents++;
+        filteredBytes += len - newLen;
+        return true;
+    }
+
+    public long getFilteredEvents() {
+        return filteredEvents;
+    }
+
+    public long getFilteredBytes() {
+        return filteredBytes;
+    }
+
+    /**
+     * 表过滤规则
+     */
+    public interface TableFilter {
+
+        /**
+         * 过滤规则变化时返回不同的值，已缓存的判断结果会被清空
+         */
+        int getVersion();
+
+        /**
+         * @return true表示该表的数据不需要
+         */
+        boolean isFiltered(String schema, String table);
+    }
+
+    private static class TableRef {
+
+        private final byte[]  schema;
+        private final byte[]  table;
+        private final boolean filtered;
+
+        TableRef(byte[] schema, byte[] table, boolean filtered){
+            this.schema = schema;
+            this.table = table;
+            this.filtered = filtered;
+        }
+
+        boolean matches(LogBuffer buffer, int schemaPos, int schemaLen, int tablePos, int tableLen) {
+            return equals(schema, buffer, schemaPos, schemaLen) && equals(table, buffer, tablePos, tableLen);
+        }
+
+        private static boolean equals(byte[] value, LogBuffer buffer, int pos, int len) {
+            if (value.length != len) {
+                return false;
+            }
+            final byte[] data = buffer.buffer;
+            final int off = buffer.origin + pos;
+            for (int i = 0; i < len; i++) {
+                if (value[i] != data[off + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
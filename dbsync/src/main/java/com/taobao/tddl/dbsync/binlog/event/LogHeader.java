@@ -1,11 +1,13 @@
 package com.taobao.tddl.dbsync.binlog.event;
 
 import com.alibaba.otter.canal.parse.driver.mysql.packets.GTIDSet;
+import com.alibaba.otter.canal.parse.driver.mysql.packets.MysqlGTIDSet;
 import com.taobao.tddl.dbsync.binlog.LogBuffer;
 import com.taobao.tddl.dbsync.binlog.LogEvent;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * The Common-Header, documented in the table @ref Table_common_header "below",
@@ -131,6 +133,9 @@ public final class LogHeader {
     private static final String CURRENT_GTID_LAST_COMMIT = "curt_gtid_lct";
     private static final String GTID_SET_STRING = "gtid_str";
 
+    // MysqlGTIDSet的只读视图，读取时才生成字符串
+    private Supplier<String> gtidSetSupplier;
+
     /* for Start_event_v3 */
     public LogHeader(final int type){
         this.type = type;
@@ -301,6 +306,9 @@ public final class LogHeader {
     }
 
     public String getGtidSetStr() {
+        if (gtidSetSupplier != null) {
+            return gtidSetSupplier.get();
+        }
         return gtidMap.get(GTID_SET_STRING);
     }
 
@@ -318,7 +326,11 @@ public final class LogHeader {
 
     public void putGtid(GTIDSet gtidSet, LogEvent gtidEvent) {
         if (gtidSet != null) {
-            gtidMap.put(GTID_SET_STRING, gtidSet.toString());
+            if (gtidSet instanceof MysqlGTIDSet) {
+                gtidSetSupplier = ((MysqlGTIDSet) gtidSet).snapshot();
+            } else {
+                gtidMap.put(GTID_SET_STRING, gtidSet.toString());
+            }
             if (gtidEvent != null && gtidEvent instanceof GtidLogEvent) {
                 GtidLogEvent event = (GtidLogEvent)gtidEvent;
                 gtidMap.put(CURRENT_GTID_STRING, event.getGtidStr());
@@ -9,7 +9,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.taobao.tddl.dbsync.binlog.JsonConversion;
-import com.taobao.tddl.dbsync.binlog.JsonConversion.Json_Value;
 import com.taobao.tddl.dbsync.binlog.JsonDiffConversion;
 import com.taobao.tddl.dbsync.binlog.LogBuffer;
 import com.taobao.tddl.dbsync.binlog.LogEvent;
@@ -46,6 +45,8 @@ public final class RowsLogBuffer {
     private int                javaType;
     private int                length;
     private Serializable       value;
+    // json列解析复用的builder
+    private StringBuilder      jsonBuilder;
 
     public RowsLogBuffer(LogBuffer buffer, final int columnLen, String charsetName, int jsonColumnCount, boolean partial){
         this.buffer = buffer;
@@ -1070,7 +1071,8 @@ public final class RowsLogBuffer {
                 if (partialBits.get(1)) {
                     // print_json_diff
                     int position = buffer.position();
-                    StringBuilder builder = JsonDiffConversion.print_json_diff(buffer,
+                    StringBuilder builder = JsonDiffConversion.print_json_diff(jsonBuilder(len),
+                        buffer,
                         len,
                         columnName,
                         columnIndex,
@@ -1085,12 +1087,12 @@ public final class RowsLogBuffer {
                         value = "";
                     } else {
                         int position = buffer.position();
-                        Json_Value jsonValue = JsonConversion.parse_value(buffer.getUint8(),
+                        StringBuilder builder = JsonConversion.print_json(jsonBuilder(len),
+                            buffer.getUint8(position),
                             buffer,
+                            position + 1,
                             len - 1,
                             charsetName);
-                        StringBuilder builder = new StringBuilder();
-                        jsonValue.toJsonString(builder, charsetName);
                         value = builder.toString();
                         buffer.position(position + len);
                     }
@@ -1162,6 +1164,16 @@ public final class RowsLogBuffer {
         return length;
     }
 
+    private StringBuilder jsonBuilder(int len) {
+        if (jsonBuilder == null) {
+            jsonBuilder = new StringBuilder(len);
+        } else {
+            jsonBuilder.setLength(0);
+            jsonBuilder.ensureCapacity(len);
+        }
+        return jsonBuilder;
+    }
+
     public static String usecondsToStr(int frac, int meta) {
         String sec = String.valueOf(frac);
         if (meta > 6) {
@@ -0,0 +1,134 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 测试用的mysql json二进制编码，返回的第一个字节为type
+ */
+class JsonBinaryEncoder {
+
+    static byte[] encode(Object value) {
+        if (value instanceof Map) {
+            return container(((Map<?, ?>) value).entrySet().toArray(), true);
+        } else if (value instanceof List) {
+            return container(((List<?>) value).toArray(), false);
+        } else if (value == null || value instanceof Boolean) {
+            int literal = JsonConversion.JSONB_NULL_LITERAL;
+            if (value != null) {
+                literal = (Boolean) value ? JsonConversion.JSONB_TRUE_LITERAL : JsonConversion.JSONB_FALSE_LITERAL;
+            }
+            return new byte[] { JsonConversion.JSONB_TYPE_LITERAL, (byte) literal };
+        } else if (value instanceof Short) {
+            return scalar(JsonConversion.JSONB_TYPE_INT16, (Short) value, 2);
+        } else if (value instanceof Integer) {
+            return scalar(JsonConversion.JSONB_TYPE_INT32, (Integer) value, 4);
+        } else if (value instanceof Long) {
+            return scalar(JsonConversion.JSONB_TYPE_INT64, (Long) value, 8);
+        } else if (value instanceof BigInteger) {
+            return scalar(JsonConversion.JSONB_TYPE_UINT64, ((BigInteger) value).longValue(), 8);
+        } else if (value instanceof Double) {
+            return scalar(JsonConversion.JSONB_TYPE_DOUBLE, Double.doubleToLongBits((Double) value), 8);
+        } else {
+            byte[] data = value.toString().getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(JsonConversion.JSONB_TYPE_STRING);
+            writeVariableLength(out, data.length);
+            out.write(data, 0, data.length);
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] container(Object[] elements, boolean object) {
+        byte[] small = container(elements, object, false);
+        return small != null ? small : container(elements, object, true);
+    }
+
+    private static byte[] container(Object[] elements, boolean object, boolean large) {
+        final int n = elements.length;
+        final int offsetSize = large ? JsonConversion.LARGE_OFFSET_SIZE : JsonConversion.SMALL_OFFSET_SIZE;
+        final int keyEntrySize = large ? JsonConversion.KEY_ENTRY_SIZE_LARGE : JsonConversion.KEY_ENTRY_SIZE_SMALL;
+        final int valueEntrySize = large ? JsonConversion.VALUE_ENTRY_SIZE_LARGE
+            : JsonConversion.VALUE_ENTRY_SIZE_SMALL;
+        int headerSize = 2 * offsetSize + (object ? n * keyEntrySize : 0) + n * valueEntrySize;
+
+        byte[][] keys = new byte[n][];
+        byte[][] values = new byte[n][];
+        int size = headerSize;
+        for (int i = 0; i < n; i++) {
+            Object value = elements[i];
+            if (object) {
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) value;
+                keys[i] = entry.getKey().toString().getBytes(StandardCharsets.UTF_8);
+                size += keys[i].length;
+                value = entry.getValue();
+            }
+            values[i] = encode(value);
+            if (!isInlined(values[i][0], large)) {
+                size += values[i].length - 1;
+            }
+        }
+        if (!large && size > 0xFFFF) {
+            return null;
+        }
+
+        byte[] data = new byte[size + 1];
+        if (object) {
+            data[0] = (byte) (large ? JsonConversion.JSONB_TYPE_LARGE_OBJECT : JsonConversion.JSONB_TYPE_SMALL_OBJECT);
+        } else {
+            data[0] = (byte) (large ? JsonConversion.JSONB_TYPE_LARGE_ARRAY : JsonConversion.JSONB_TYPE_SMALL_ARRAY);
+        }
+        put(data, 1, n, offsetSize);
+        put(data, 1 + offsetSize, size, offsetSize);
+        int offset = headerSize;
+        for (int i = 0; object && i < n; i++) {
+            int entry = 1 + 2 * offsetSize + i * keyEntrySize;
+            put(data, entry, offset, offsetSize);
+            put(data, entry + offsetSize, keys[i].length, 2);
+            System.arraycopy(keys[i], 0, data, 1 + offset, keys[i].length);
+            offset += keys[i].length;
+        }
+        int firstValueEntry = 1 + 2 * offsetSize + (object ? n * keyEntrySize : 0);
+        for (int i = 0; i < n; i++) {
+            int entry = firstValueEntry + i * valueEntrySize;
+            data[entry] = values[i][0];
+            if (isInlined(values[i][0], large)) {
+                System.arraycopy(values[i], 1, data, entry + 1, values[i].length - 1);
+            } else {
+                put(data, entry + 1, offset, offsetSize);
+                System.arraycopy(values[i], 1, data, 1 + offset, values[i].length - 1);
+                offset += values[i].length - 1;
+            }
+        }
+        return data;
+    }
+
+    private static boolean isInlined(int type, boolean large) {
+        return type == JsonConversion.JSONB_TYPE_INT16 || type == JsonConversion.JSONB_TYPE_LITERAL
+               || (large && type == JsonConversion.JSONB_TYPE_INT32);
+    }
+
+    private static byte[] scalar(int type, long value, int size) {
+        byte[] data = new byte[size + 1];
+        data[0] = (byte) type;
+        put(data, 1, value, size);
+        return data;
+    }
+
+    private static void put(byte[] data, int pos, long value, int size) {
+        for (int i = 0; i < size; i++) {
+            data[pos + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private static void writeVariableLength(ByteArrayOutputStream out, int len) {
+        while (len >= 0x80) {
+            out.write((len & 0x7f) | 0x80);
+            len >>>= 7;
+        }
+        out.write(len);
+    }
+}
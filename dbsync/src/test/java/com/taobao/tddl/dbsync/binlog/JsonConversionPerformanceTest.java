@@ -0,0 +1,90 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Ignore;
+
+import com.taobao.tddl.dbsync.binlog.JsonConversion.Json_Value;
+
+/**
+ * 对比json二进制解析的开销，value为原先构造Json_Value再递归toJsonString的实现，stream为单次遍历直接输出的实现
+ */
+@Ignore
+public class JsonConversionPerformanceTest {
+
+    private static final int COUNT = 200;
+
+    public static void main(String args[]) {
+        byte[] nested = JsonBinaryEncoder.encode(nested(8));
+        byte[] large = JsonBinaryEncoder.encode(large(5000));
+        System.out.println("nested : " + nested.length + " bytes , large : " + large.length + " bytes");
+
+        for (int i = 0; i < 5; i++) {
+            value("nested", nested, COUNT * 10);
+            stream("nested", nested, COUNT * 10);
+            value("large", large, COUNT / 10);
+            stream("large", large, COUNT / 10);
+        }
+    }
+
+    private static void value(String name, byte[] data, int count) {
+        long start = System.currentTimeMillis();
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            LogBuffer buffer = new LogBuffer(data, 0, data.length);
+            Json_Value value = JsonConversion.parse_value(buffer.getUint8(), buffer, data.length - 1, "UTF-8");
+            StringBuilder builder = new StringBuilder();
+            value.toJsonString(builder, "UTF-8");
+            sum += builder.toString().length();
+        }
+        long end = System.currentTimeMillis();
+        System.out.println(name + " value : " + (end - start) + "ms , tps : "
+                           + (count * 1000L / Math.max(1, end - start)) + " , " + sum);
+    }
+
+    private static void stream(String name, byte[] data, int count) {
+        long start = System.currentTimeMillis();
+        long sum = 0;
+        // 和RowsLogBuffer一样复用builder
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            LogBuffer buffer = new LogBuffer(data, 0, data.length);
+            builder.setLength(0);
+            builder.ensureCapacity(data.length);
+            JsonConversion.print_json(builder, data[0], buffer, 1, data.length - 1, "UTF-8");
+            sum += builder.toString().length();
+        }
+        long end = System.currentTimeMillis();
+        System.out.println(name + " stream : " + (end - start) + "ms , tps : "
+                           + (count * 1000L / Math.max(1, end - start)) + " , " + sum);
+    }
+
+    private static Object nested(int depth) {
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("depth", (short) depth);
+        node.put("name", "node-" + depth);
+        node.put("values", Arrays.asList(1.5D, 123456789L, true, null));
+        if (depth > 0) {
+            node.put("left", nested(depth - 1));
+            node.put("right", Arrays.asList(nested(depth - 1)));
+        }
+        return node;
+    }
+
+    private static Object large(int rows) {
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", i);
+            row.put("title", "title \"" + i + "\" 中文描述");
+            row.put("price", i * 0.01D);
+            row.put("tags", Arrays.asList("tag-a", "tag-b", (short) (i % 100)));
+            list.add(row);
+        }
+        return list;
+    }
+}
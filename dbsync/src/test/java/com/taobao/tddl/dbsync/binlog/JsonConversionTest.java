@@ -0,0 +1,103 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.taobao.tddl.dbsync.binlog.JsonConversion.Json_Value;
+
+public class JsonConversionTest {
+
+    @Test
+    public void testScalarAndNested() {
+        Map<String, Object> doc = new LinkedHashMap<>();
+        doc.put("id", (short) -3);
+        doc.put("int", 123456);
+        doc.put("long", -1234567890123L);
+        doc.put("ulong", new BigInteger("18446744073709551615"));
+        doc.put("double", 3.25D);
+        doc.put("flags", Arrays.asList(true, false, null));
+        doc.put("text", "a\"b\\c\n\t\u0001\u007f中文");
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("k", Arrays.asList((short) 1, "x", new LinkedHashMap<String, Object>()));
+        doc.put("nested", nested);
+
+        byte[] data = JsonBinaryEncoder.encode(doc);
+        String json = print(data);
+        Assert.assertEquals(printByValue(data), json);
+        Assert.assertEquals("{\"id\": -3, \"int\": 123456, \"long\": -1234567890123, "
+                            + "\"ulong\": 18446744073709551615, \"double\": 3.25, \"flags\": [true, false, null], "
+                            + "\"text\": \"a\\\"b\\\\c\\n\\t\\u0001\\u007f中文\", \"nested\": {\"k\": [1, \"x\", {}]}}",
+            json);
+    }
+
+    @Test
+    public void testLargeDocument() {
+        List<Object> rows = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", i);
+            row.put("name", "name-" + i);
+            row.put("tags", Arrays.asList("a", "b", (short) i));
+            rows.add(row);
+        }
+
+        byte[] data = JsonBinaryEncoder.encode(rows);
+        Assert.assertEquals(JsonConversion.JSONB_TYPE_LARGE_ARRAY, data[0]);
+        Assert.assertEquals(printByValue(data), print(data));
+    }
+
+    @Test
+    public void testJsonDiff() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeDiff(out, JsonDiffConversion.DIFF_OPERATION_REPLACE, "$.a", JsonBinaryEncoder.encode("x"));
+        writeDiff(out, JsonDiffConversion.DIFF_OPERATION_REPLACE, "$.b", JsonBinaryEncoder.encode(Arrays.asList(1, 2)));
+        writeDiff(out, JsonDiffConversion.DIFF_OPERATION_INSERT, "$.c[0]", JsonBinaryEncoder.encode(true));
+        writeDiff(out, JsonDiffConversion.DIFF_OPERATION_REMOVE, "$.d", null);
+        byte[] data = out.toByteArray();
+
+        LogBuffer buffer = new LogBuffer(data, 0, data.length);
+        StringBuilder builder = new StringBuilder("reused");
+        builder.setLength(0);
+        String diff = JsonDiffConversion.print_json_diff(builder, buffer, data.length, "col", 0, "UTF-8")
+            .toString();
+        Assert.assertEquals("JSON_REMOVE(JSON_ARRAY_INSERT(JSON_REPLACE(col, '$.a', \"x\", '$.b', [1, 2]), "
+                            + "'$.c[0]', true), '$.d')",
+            diff);
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    private static String print(byte[] data) {
+        // 前后补上其他数据，验证按位置读取
+        byte[] padded = new byte[data.length + 7];
+        System.arraycopy(data, 0, padded, 3, data.length);
+        LogBuffer buffer = new LogBuffer(padded, 2, data.length + 4);
+        return JsonConversion.print_json(new StringBuilder(data.length), data[0], buffer, 2, data.length - 1, "UTF-8")
+            .toString();
+    }
+
+    private static String printByValue(byte[] data) {
+        LogBuffer buffer = new LogBuffer(data, 0, data.length);
+        Json_Value value = JsonConversion.parse_value(buffer.getUint8(), buffer, data.length - 1, "UTF-8");
+        return value.toJsonString(new StringBuilder(), "UTF-8").toString();
+    }
+
+    private static void writeDiff(ByteArrayOutputStream out, int operation, String path, byte[] value) {
+        out.write(operation);
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        out.write(pathBytes.length);
+        out.write(pathBytes, 0, pathBytes.length);
+        if (value != null) {
+            out.write(value.length);
+            out.write(value, 0, value.length);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LogBufferPoolTest {
+
+    @Test
+    public void testCopyAndReuse() {
+        LogBufferPool pool = new LogBufferPool(4, 4096, 1024 * 1024);
+        LogBuffer source = new LogBuffer(new byte[] { 9, 9, 1, 2, 3, 9 }, 2, 3);
+
+        LogBuffer copy = pool.copyOf(source);
+        Assert.assertEquals(3, copy.limit());
+        Assert.assertEquals(0, copy.position());
+        Assert.assertEquals(LogBufferPool.MIN_SEGMENT_SIZE, copy.capacity());
+        Assert.assertEquals(1, copy.getUint8());
+        Assert.assertEquals(2, copy.getUint8());
+        Assert.assertEquals(3, copy.getUint8());
+
+        pool.release(copy);
+        Assert.assertEquals(LogBufferPool.MIN_SEGMENT_SIZE, pool.getRetainedBytes());
+        // 重复归还被忽略
+        pool.release(copy);
+        Assert.assertEquals(LogBufferPool.MIN_SEGMENT_SIZE, pool.getRetainedBytes());
+
+        LogBuffer reused = pool.copyOf(new LogBuffer(new byte[] { 7, 8 }, 0, 2));
+        Assert.assertSame(copy, reused);
+        Assert.assertEquals(0, pool.getRetainedBytes());
+        Assert.assertEquals(2, reused.limit());
+        Assert.assertEquals(7, reused.getUint8());
+        Assert.assertEquals(8, reused.getUint8());
+    }
+
+    @Test
+    public void testSizeClass() {
+        LogBufferPool pool = new LogBufferPool(4, 4000, 1024 * 1024);
+        Assert.assertEquals(1024, pool.copyOf(new LogBuffer(new byte[513], 0, 513)).capacity());
+        Assert.assertEquals(4096, pool.copyOf(new LogBuffer(new byte[4096], 0, 4096)).capacity());
+
+        // 超过最大分级的event退化为普通拷贝，归还时忽略
+        LogBuffer large = pool.copyOf(new LogBuffer(new byte[5000], 0, 5000));
+        Assert.assertEquals(5000, large.capacity());
+        pool.release(large);
+        Assert.assertEquals(0, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void testRetainedLimit() {
+        LogBufferPool pool = new LogBufferPool(4, 4096, 1024);
+        LogBuffer first = pool.copyOf(new LogBuffer(new byte[600], 0, 600));
+        LogBuffer second = pool.copyOf(new LogBuffer(new byte[600], 0, 600));
+        pool.release(first);
+        pool.release(second);
+        Assert.assertEquals(1024, pool.getRetainedBytes());
+        Assert.assertSame(first, pool.copyOf(new LogBuffer(new byte[600], 0, 600)));
+        Assert.assertNotSame(second, pool.copyOf(new LogBuffer(new byte[600], 0, 600)));
+    }
+}
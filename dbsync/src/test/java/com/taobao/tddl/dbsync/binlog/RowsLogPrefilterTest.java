@@ -0,0 +1,142 @@
+package com.taobao.tddl.dbsync.binlog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.taobao.tddl.dbsync.binlog.event.FormatDescriptionLogEvent;
+import com.taobao.tddl.dbsync.binlog.event.RowsLogEvent;
+import com.taobao.tddl.dbsync.binlog.event.TableMapLogEvent;
+
+public class RowsLogPrefilterTest {
+
+    @Test
+    public void testStripFilteredRows() throws IOException {
+        AtomicInteger checks = new AtomicInteger();
+        RowsLogPrefilter prefilter = buildPrefilter(true, checks);
+        LogContext context = buildContext();
+        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+
+        byte[] tableMap = buildTableMapEvent();
+        byte[] rows = buildWriteRowsEvent();
+        for (int i = 0; i < 2; i++) {
+            LogBuffer buffer = new LogBuffer(tableMap.clone(), 0, tableMap.length);
+            Assert.assertFalse(prefilter.filter(buffer));
+            Assert.assertTrue(decoder.decode(buffer, context) instanceof TableMapLogEvent);
+
+            buffer = new LogBuffer(rows.clone(), 0, rows.length);
+            Assert.assertTrue(prefilter.filter(buffer));
+            int stripped = buffer.limit();
+            Assert.assertTrue(stripped < rows.length);
+            RowsLogEvent event = (RowsLogEvent) decoder.decode(buffer, context);
+            // 位点、flags、checksum都保留，只丢弃row数据
+            Assert.assertEquals(stripped, event.getHeader().getEventLen());
+            Assert.assertEquals(200, event.getHeader().getLogPos());
+            Assert.assertEquals(0x04030201L, event.getHeader().getCrc());
+            Assert.assertEquals(7, event.getTableId());
+            Assert.assertEquals("t", event.getTable().getTableName());
+            Assert.assertEquals(0, event.getColumns().length());
+        }
+
+        // 同一个table_id只判断一次
+        Assert.assertEquals(1, checks.get());
+        Assert.assertEquals(2, prefilter.getFilteredEvents());
+    }
+
+    @Test
+    public void testKeepAcceptedRows() throws IOException {
+        RowsLogPrefilter prefilter = buildPrefilter(false, new AtomicInteger());
+        LogContext context = buildContext();
+        LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+
+        byte[] tableMap = buildTableMapEvent();
+        LogBuffer buffer = new LogBuffer(tableMap, 0, tableMap.length);
+        prefilter.filter(buffer);
+        decoder.decode(buffer, context);
+
+        byte[] rows = buildWriteRowsEvent();
+        buffer = new LogBuffer(rows, 0, rows.length);
+        Assert.assertFalse(prefilter.filter(buffer));
+        Assert.assertEquals(rows.length, buffer.limit());
+        RowsLogEvent event = (RowsLogEvent) decoder.decode(buffer, context);
+        Assert.assertEquals(1, event.getColumns().length());
+        Assert.assertEquals(0, prefilter.getFilteredEvents());
+    }
+
+    private static RowsLogPrefilter buildPrefilter(final boolean filtered, final AtomicInteger checks) {
+        return new RowsLogPrefilter(StandardCharsets.UTF_8,
+            LogEvent.BINLOG_CHECKSUM_ALG_CRC32,
+            new RowsLogPrefilter.TableFilter() {
+
+                @Override
+                public int getVersion() {
+                    return 0;
+                }
+
+                @Override
+                public boolean isFiltered(String schema, String table) {
+                    checks.incrementAndGet();
+                    Assert.assertEquals("db", schema);
+                    Assert.assertEquals("t", table);
+                    return filtered;
+                }
+            });
+    }
+
+    private static LogContext buildContext() {
+        LogContext context = new LogContext();
+        context.setLogPosition(new LogPosition("mysql-bin.000001", 4L));
+        context.setFormatDescription(new FormatDescriptionLogEvent(4, LogEvent.BINLOG_CHECKSUM_ALG_CRC32));
+        return context;
+    }
+
+    private static byte[] buildTableMapEvent() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(new byte[] { 7, 0, 0, 0, 0, 0, 0, 0 }); // table_id + flags
+        body.write(2);
+        body.write("db".getBytes(StandardCharsets.UTF_8));
+        body.write(0);
+        body.write(1);
+        body.write("t".getBytes(StandardCharsets.UTF_8));
+        body.write(0);
+        body.write(1); // column count
+        body.write(LogEvent.MYSQL_TYPE_LONG);
+        body.write(0); // metadata length
+        body.write(0); // null bits
+        return buildEvent(LogEvent.TABLE_MAP_EVENT, 100, body.toByteArray());
+    }
+
+    private static byte[] buildWriteRowsEvent() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(new byte[] { 7, 0, 0, 0, 0, 0, 1, 0, 2, 0 }); // table_id + flags(STMT_END) + extra len
+        body.write(1); // column count
+        body.write(1); // columns bitmap
+        for (int i = 0; i < 50; i++) {
+            body.write(0); // null bits
+            body.write(new byte[] { (byte) i, 0, 0, 0 });
+        }
+        return buildEvent(LogEvent.WRITE_ROWS_EVENT, 200, body.toByteArray());
+    }
+
+    private static byte[] buildEvent(int type, long logPos, byte[] body) {
+        int len = FormatDescriptionLogEvent.LOG_EVENT_HEADER_LEN + body.length + LogEvent.BINLOG_CHECKSUM_LEN;
+        byte[] event = new byte[len];
+        event[LogEvent.EVENT_TYPE_OFFSET] = (byte) type;
+        putUint32(event, LogEvent.SERVER_ID_OFFSET, 1);
+        putUint32(event, LogEvent.EVENT_LEN_OFFSET, len);
+        putUint32(event, LogEvent.LOG_POS_OFFSET, logPos);
+        System.arraycopy(body, 0, event, FormatDescriptionLogEvent.LOG_EVENT_HEADER_LEN, body.length);
+        putUint32(event, len - LogEvent.BINLOG_CHECKSUM_LEN, 0x04030201L);
+        return event;
+    }
+
+    private static void putUint32(byte[] data, int pos, long value) {
+        for (int i = 0; i < 4; i++) {
+            data[pos + i] = (byte) (value >>> (8 * i));
+        }
+    }
+}
@@ -28,12 +28,17 @@ public class CanalConstants {
     public static final String CANAL_ADMIN_REGISTER_NAME            = ROOT + "." + "admin.register.name";
     public static final String CANAL_ZKSERVERS                      = ROOT + "." + "zkServers";
     public static final String CANAL_WITHOUT_NETTY                  = ROOT + "." + "withoutNetty";
+    public static final String CANAL_LONG_POLL_THREADS              = ROOT + "." + "longPoll.threads";
 
     public static final String CANAL_DESTINATIONS                   = ROOT + "." + "destinations";
     public static final String CANAL_AUTO_SCAN                      = ROOT + "." + "auto.scan";
     public static final String CANAL_AUTO_SCAN_INTERVAL             = ROOT + "." + "auto.scan.interval";
+    public static final String CANAL_AUTO_SCAN_WATCH                = ROOT + "." + "auto.scan.watch";
+    public static final String CANAL_AUTO_SCAN_WATCH_TIMEOUT        = ROOT + "." + "auto.scan.watch.timeout";
     public static final String CANAL_CONF_DIR                       = ROOT + "." + "conf.dir";
     public static final String CANAL_SERVER_MODE                    = ROOT + "." + "serverMode";
+    public static final String CANAL_INSTANCE_STARTUP_PARALLELISM   = ROOT + "." + "instance.startup.parallelism";
+    public static final String CANAL_PARSER_PARALLEL_BUDGET         = ROOT + "." + "instance.parser.parallelBudget";
 
     public static final String CANAL_DESTINATION_SPLIT              = ",";
     public static final String GLOBAL_NAME                          = "global";
@@ -42,6 +47,7 @@ public class CanalConstants {
     public static final String INSTANCE_LAZY_TEMPLATE               = ROOT + "." + "instance.{0}.lazy";
     public static final String INSTANCE_MANAGER_ADDRESS_TEMPLATE    = ROOT + "." + "instance.{0}.manager.address";
     public static final String INSTANCE_SPRING_XML_TEMPLATE         = ROOT + "." + "instance.{0}.spring.xml";
+    public static final String INSTANCE_STARTUP_WEIGHT_TEMPLATE     = ROOT + "." + "instance.{0}.startup.weight";
 
     public static final String CANAL_DESTINATION_PROPERTY           = ROOT + ".instance.destination";
 
@@ -94,4 +100,8 @@ public class CanalConstants {
     public static String getInstancLazyKey(String destination) {
         return MessageFormat.format(INSTANCE_LAZY_TEMPLATE, destination);
     }
+
+    public static String getInstanceStartupWeightKey(String destination) {
+        return MessageFormat.format(INSTANCE_STARTUP_WEIGHT_TEMPLATE, destination);
+    }
 }
@@ -1,7 +1,14 @@
 package com.alibaba.otter.canal.deployer;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.I0Itec.zkclient.IZkStateListener;
 import org.I0Itec.zkclient.exception.ZkNoNodeException;
@@ -14,6 +21,7 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
 import com.alibaba.otter.canal.common.utils.AddressUtils;
+import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
 import com.alibaba.otter.canal.common.zookeeper.ZkClientx;
 import com.alibaba.otter.canal.common.zookeeper.ZookeeperPathUtils;
 import com.alibaba.otter.canal.common.zookeeper.running.ServerRunningData;
@@ -29,14 +37,18 @@ import com.alibaba.otter.canal.instance.core.CanalInstanceGenerator;
 import com.alibaba.otter.canal.instance.manager.PlainCanalInstanceGenerator;
 import com.alibaba.otter.canal.instance.manager.plain.PlainCanalConfigClient;
 import com.alibaba.otter.canal.instance.spring.SpringCanalInstanceGenerator;
+import com.alibaba.otter.canal.parse.inbound.mysql.AdaptiveWorkerPool;
 import com.alibaba.otter.canal.server.CanalMQStarter;
 import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
+import com.alibaba.otter.canal.server.embedded.InstanceStartupProfiler.StartupPhase;
 import com.alibaba.otter.canal.server.exception.CanalServerException;
 import com.alibaba.otter.canal.server.netty.CanalServerWithNetty;
 import com.google.common.base.Function;
 import com.google.common.collect.MapMaker;
 import com.google.common.collect.MigrateMap;
 
+import static com.alibaba.otter.canal.server.embedded.CanalServerWithEmbeddedProfiler.profiler;
+
 /**
  * canal调度控制器
  *
@@ -67,6 +79,7 @@ public class CanalController {
     private CanalMQStarter                           canalMQStarter;
     private String                                   adminUser;
     private String                                   adminPasswd;
+    private int                                      startupParallelism = 1; // 启动时并行拉起instance的线程数，1表示串行
 
     public CanalController(){
         this(System.getProperties());
@@ -102,6 +115,12 @@ public class CanalController {
         registerIp = getProperty(properties, CanalConstants.CANAL_REGISTER_IP);
         port = Integer.valueOf(getProperty(properties, CanalConstants.CANAL_PORT, "11111"));
         adminPort = Integer.valueOf(getProperty(properties, CanalConstants.CANAL_ADMIN_PORT, "11110"));
+        startupParallelism = Math.max(1,
+            Integer.valueOf(getProperty(properties, CanalConstants.CANAL_INSTANCE_STARTUP_PARALLELISM, "1")));
+        String parallelBudget = getProperty(properties, CanalConstants.CANAL_PARSER_PARALLEL_BUDGET);
+        if (StringUtils.isNotEmpty(parallelBudget)) {
+            AdaptiveWorkerPool.setBudget(Integer.valueOf(parallelBudget));
+        }
         embededCanalServer = CanalServerWithEmbedded.instance();
         embededCanalServer.setCanalInstanceGenerator(instanceGenerator);// 给 embededCanalServer 设置自定义的 instanceGenerator
         int metricsPort = Integer.valueOf(getProperty(properties, CanalConstants.CANAL_METRICS_PULL_PORT, "11112"));
@@ -117,6 +136,10 @@ public class CanalController {
             canalServer = CanalServerWithNetty.instance();
             canalServer.setIp(ip);
             canalServer.setPort(port);
+            String longPollThreads = getProperty(properties, CanalConstants.CANAL_LONG_POLL_THREADS);
+            if (StringUtils.isNotEmpty(longPollThreads)) {
+                canalServer.setLongPollThreads(Integer.parseInt(longPollThreads));
+            }
         }
         // 3.初始化zk相关代码
         // 处理下ip为空，默认使用hostIp暴露到zk中
@@ -153,7 +176,9 @@ public class CanalController {
                         MDC.put(CanalConstants.MDC_DESTINATION, String.valueOf(destination));
                         embededCanalServer.start(destination);
                         if (canalMQStarter != null) {
+                            long start = System.nanoTime();
                             canalMQStarter.startDestination(destination);
+                            profiler().profiling(destination, StartupPhase.MQ, System.nanoTime() - start);
                         }
                     } finally {
                         MDC.remove(CanalConstants.MDC_DESTINATION);
@@ -324,6 +349,12 @@ public class CanalController {
                 } else if (mode.isManager()) { // 如果加载方式是 manager，返回 ManagerInstanceConfigMonitor
                     ManagerInstanceConfigMonitor monitor = new ManagerInstanceConfigMonitor();
                     monitor.setScanIntervalInSecond(scanInterval);
+                    monitor.setWatch(BooleanUtils.toBoolean(getProperty(properties,
+                        CanalConstants.CANAL_AUTO_SCAN_WATCH,
+                        "true")));
+                    monitor.setWatchTimeoutInSecond(Integer.valueOf(getProperty(properties,
+                        CanalConstants.CANAL_AUTO_SCAN_WATCH_TIMEOUT,
+                        "30")));
                     monitor.setDefaultAction(defaultAction);
                     String managerAddress = getProperty(properties, CanalConstants.CANAL_ADMIN_MANAGER);
                     monitor.setConfigClient(getManagerClient(managerAddress));
@@ -365,6 +396,10 @@ public class CanalController {
         if (StringUtils.isNotEmpty(springXml)) {
             globalConfig.setSpringXml(springXml);
         }
+        // 读取 canal.instance.global.startup.weight
+        String weightStr = getProperty(properties,
+            CanalConstants.getInstanceStartupWeightKey(CanalConstants.GLOBAL_NAME));
+        globalConfig.setStartupWeight(StringUtils.isNotEmpty(weightStr) ? Integer.valueOf(weightStr) : 0);
         // 初始化匿名内部类 instanceGenerator
         instanceGenerator = destination -> {
             InstanceConfig config = instanceConfigs.get(destination); // 1.根据 destination从instanceConfigs 获取对应的 InstanceConfig 对象
@@ -439,6 +474,11 @@ public class CanalController {
             config.setSpringXml(springXml);
         }
 
+        String weightStr = getProperty(properties, CanalConstants.getInstanceStartupWeightKey(destination));
+        if (StringUtils.isNotEmpty(weightStr)) {
+            config.setStartupWeight(Integer.valueOf(weightStr));
+        }
+
         return config;
     }
 
@@ -491,6 +531,7 @@ public class CanalController {
         // 优先启动embeded服务
         embededCanalServer.start();
         // 尝试启动一下非lazy状态的通道，启动不是 lazy 模式的 CanalInstance，通过迭代 instanceConfigs，根据 destination 获取对应的 ServerRunningMonitor，然后逐一启动
+        List<String> parallelDestinations = new ArrayList<>();
         for (Map.Entry<String, InstanceConfig> entry : instanceConfigs.entrySet()) {
             final String destination = entry.getKey();
             InstanceConfig config = entry.getValue();
@@ -499,7 +540,11 @@ public class CanalController {
                 // HA机制启动
                 ServerRunningMonitor runningMonitor = ServerRunningMonitors.getRunningMonitor(destination);
                 if (!config.getLazy() && !runningMonitor.isStart()) { // 如果不是 lazy，lazy 模式需要等到第一次有客户端请求才会启动
-                    runningMonitor.start();
+                    if (startupParallelism > 1) {
+                        parallelDestinations.add(destination);
+                    } else {
+                        runningMonitor.start();
+                    }
                 }
             }
 
@@ -507,6 +552,8 @@ public class CanalController {
                 instanceConfigMonitors.get(config.getMode()).register(destination, defaultAction);
             }
         }
+        // 并行模式下，按权重优先级有界并行启动，仍然走 ServerRunningMonitor 的HA抢占
+        startRunningMonitors(parallelDestinations);
 
         if (autoScan) {  // 启动配置文件自动检测机制
             instanceConfigMonitors.get(globalInstanceConfig.getMode()).start();
@@ -523,6 +570,64 @@ public class CanalController {
         }
     }
 
+    /**
+     * 按照 startup.weight 从高到低，使用有界线程池并行启动各个destination的 ServerRunningMonitor，等待全部完成后返回
+     */
+    private void startRunningMonitors(List<String> destinations) throws Throwable {
+        if (destinations.isEmpty()) {
+            return;
+        }
+
+        // 权重相同的保持配置顺序(sort是稳定排序)
+        destinations.sort((d1, d2) -> Integer.compare(getStartupWeight(d2), getStartupWeight(d1)));
+        int threads = Math.min(startupParallelism, destinations.size());
+        logger.info("## start {} instances with parallelism {}, order : {}", destinations.size(), threads, destinations);
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+            new NamedThreadFactory("canal-instance-startup"));
+        try {
+            Map<String, Future<?>> futures = new LinkedHashMap<>();
+            for (final String destination : destinations) {
+                final long submitTime = System.nanoTime();
+                futures.put(destination, executor.submit(() -> {
+                    long start = System.nanoTime();
+                    profiler().profiling(destination, StartupPhase.QUEUE, start - submitTime);
+                    ServerRunningMonitor runningMonitor = ServerRunningMonitors.getRunningMonitor(destination);
+                    if (!runningMonitor.isStart()) {
+                        runningMonitor.start();
+                    }
+                    // 只有抢占成功的节点才真正启动了instance
+                    if (embededCanalServer.isStart(destination)) {
+                        profiler().profiling(destination, StartupPhase.TOTAL, System.nanoTime() - submitTime);
+                    }
+                }));
+            }
+
+            Throwable failure = null;
+            for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (ExecutionException e) {
+                    logger.error("## start the instance [{}] failed", entry.getKey(), e.getCause());
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int getStartupWeight(String destination) {
+        InstanceConfig config = instanceConfigs.get(destination);
+        Integer weight = config != null ? config.getStartupWeight() : null;
+        return weight != null ? weight : 0;
+    }
+
     public void stop() throws Throwable {
 
         if (canalServer != null) {
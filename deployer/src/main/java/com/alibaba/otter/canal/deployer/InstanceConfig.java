@@ -17,6 +17,7 @@ public class InstanceConfig {
     private Boolean        lazy;
     private String         managerAddress;
     private String         springXml;
+    private Integer        startupWeight; // 并行启动时的优先级，值越大越先启动
 
     public InstanceConfig(){
 
@@ -86,6 +87,18 @@ public class InstanceConfig {
         this.springXml = springXml;
     }
 
+    public Integer getStartupWeight() {
+        if (startupWeight == null && globalConfig != null) {
+            return globalConfig.getStartupWeight();
+        } else {
+            return startupWeight;
+        }
+    }
+
+    public void setStartupWeight(Integer startupWeight) {
+        this.startupWeight = startupWeight;
+    }
+
     public String toString() {
         return ToStringBuilder.reflectionToString(this, CanalToStringStyle.DEFAULT_STYLE);
     }
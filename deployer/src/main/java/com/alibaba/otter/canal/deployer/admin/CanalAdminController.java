@@ -15,6 +15,7 @@ import org.slf4j.LoggerFactory;
 
 import com.alibaba.otter.canal.admin.CanalAdmin;
 import com.alibaba.otter.canal.common.utils.FileUtils;
+import com.alibaba.otter.canal.common.utils.JsonUtils;
 import com.alibaba.otter.canal.deployer.CanalStarter;
 import com.alibaba.otter.canal.deployer.InstanceConfig;
 import com.alibaba.otter.canal.deployer.monitor.InstanceAction;
@@ -24,6 +25,8 @@ import com.alibaba.otter.canal.deployer.monitor.SpringInstanceConfigMonitor;
 import com.alibaba.otter.canal.instance.core.CanalInstance;
 import com.alibaba.otter.canal.protocol.SecurityUtil;
 import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
+import com.alibaba.otter.canal.sink.entry.EntryEventSink;
+import com.alibaba.otter.canal.sink.entry.HotTableTracker;
 import com.google.common.base.Joiner;
 
 /**
@@ -187,6 +190,23 @@ public class CanalAdminController implements CanalAdmin {
         return false;
     }
 
+    @Override
+    public String hotTables(String destination) {
+        try {
+            Map<String, CanalInstance> instances = CanalServerWithEmbedded.instance().getCanalInstances();
+            CanalInstance instance = instances == null ? null : instances.get(destination);
+            if (instance != null && instance.getEventSink() instanceof EntryEventSink) {
+                HotTableTracker tracker = ((EntryEventSink) instance.getEventSink()).getHotTableTracker();
+                if (tracker != null) {
+                    return JsonUtils.marshalToString(tracker.getSnapshot());
+                }
+            }
+        } catch (Throwable e) {
+            logger.error(e.getMessage(), e);
+        }
+        return "";
+    }
+
     @Override
     public String listCanalLog() {
         Collection<File> files = org.apache.commons.io.FileUtils.listFiles(new File("../logs/canal/"),
@@ -1,8 +1,10 @@
 package com.alibaba.otter.canal.deployer.monitor;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -16,6 +18,7 @@ import com.alibaba.otter.canal.common.CanalLifeCycle;
 import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
 import com.alibaba.otter.canal.instance.manager.plain.PlainCanal;
 import com.alibaba.otter.canal.instance.manager.plain.PlainCanalConfigClient;
+import com.alibaba.otter.canal.instance.manager.plain.PlainCanalConfigClient.InstancesChange;
 import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
 import com.google.common.collect.MigrateMap;
@@ -38,19 +41,26 @@ public class ManagerInstanceConfigMonitor extends AbstractCanalLifeCycle impleme
 
     private volatile boolean            isFirst              = true;
     private PlainCanalConfigClient      configClient;
+    private boolean                     watch                = true;
+    private int                         watchTimeoutInSecond = 30;
+    private long                        version              = 0;
 
     public void start() {
         super.start();
-        executor.scheduleWithFixedDelay(() -> {
-            try {
-                scan();
-                if (isFirst) {
-                    isFirst = false;
+        if (watch) {
+            executor.submit(this::watchLoop);
+        } else {
+            executor.scheduleWithFixedDelay(() -> {
+                try {
+                    scan(null);
+                    if (isFirst) {
+                        isFirst = false;
+                    }
+                } catch (Throwable e) {
+                    logger.error("scan failed", e);
                 }
-            } catch (Throwable e) {
-                logger.error("scan failed", e);
-            }
-        }, 0, scanIntervalInSecond, TimeUnit.SECONDS);
+            }, 0, scanIntervalInSecond, TimeUnit.SECONDS);
+        }
     }
 
     public void stop() {
@@ -71,7 +81,51 @@ public class ManagerInstanceConfigMonitor extends AbstractCanalLifeCycle impleme
         actions.remove(destination);
     }
 
-    private void scan() {
+    /**
+     * 通过admin长轮询获取instance变化，只加载发生变化的instance配置；admin不支持或者异常时退化为定时全量扫描
+     */
+    private void watchLoop() {
+        boolean failed = false;
+        while (isStart() && !Thread.currentThread().isInterrupted()) {
+            try {
+                InstancesChange change = configClient.watchInstances(version, watchTimeoutInSecond);
+                if (change != null) {
+                    if (isFirst || change.full) {
+                        scan(null);
+                        isFirst = false;
+                    } else if (change.instances != null && !change.instances.isEmpty()) {
+                        scan(new HashSet<>(change.instances));
+                    }
+                    // 扫描成功之后才推进版本，失败时下一次会重新拿到这批变化
+                    version = change.version;
+                }
+                failed = false;
+            } catch (Throwable e) {
+                if (!failed) {
+                    logger.warn("watch instances failed, fallback to scan every " + scanIntervalInSecond + "s", e);
+                    failed = true;
+                }
+
+                try {
+                    scan(null);
+                    isFirst = false;
+                } catch (Throwable ex) {
+                    logger.error("scan failed", ex);
+                }
+
+                try {
+                    TimeUnit.SECONDS.sleep(scanIntervalInSecond);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param changed 发生变化的instance，null代表需要检查所有instance的配置
+     */
+    private void scan(Set<String> changed) {
         String instances = configClient.findInstances(null);
         if (instances == null) {
             return;
@@ -88,7 +142,7 @@ public class ManagerInstanceConfigMonitor extends AbstractCanalLifeCycle impleme
                     configs.put(instance, newPlainCanal);
                     start.add(instance);
                 }
-            } else {
+            } else if (changed == null || changed.contains(instance)) {
                 PlainCanal plainCanal = configs.get(instance);
                 PlainCanal newPlainCanal = configClient.findInstance(instance, plainCanal.getMd5());
                 if (newPlainCanal != null) {
@@ -173,6 +227,14 @@ public class ManagerInstanceConfigMonitor extends AbstractCanalLifeCycle impleme
         this.scanIntervalInSecond = scanIntervalInSecond;
     }
 
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    public void setWatchTimeoutInSecond(int watchTimeoutInSecond) {
+        this.watchTimeoutInSecond = watchTimeoutInSecond;
+    }
+
     public void setConfigClient(PlainCanalConfigClient configClient) {
         this.configClient = configClient;
     }
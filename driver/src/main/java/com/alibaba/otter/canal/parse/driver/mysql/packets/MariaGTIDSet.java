@@ -15,6 +15,8 @@ import java.util.Map;
 public class MariaGTIDSet implements GTIDSet {
     //MariaDB 10.0.2+ representation of Gtid
     Map<Long, MariaGtid> gtidMap = new HashMap<>();
+    // toString的结果缓存到下一次update，LogHeader每个event都会读取一次
+    private String       cachedString;
 
     @Override
     public byte[] encode() throws IOException {
@@ -25,10 +27,12 @@ public class MariaGTIDSet implements GTIDSet {
     public void update(String str) {
         MariaGtid mariaGtid = MariaGtid.parse(str);
         gtidMap.put(mariaGtid.getDomainId(), mariaGtid);
+        cachedString = null;
     }
 
     public void add(MariaGtid mariaGtid) {
         gtidMap.put(mariaGtid.getDomainId(), mariaGtid);
+        cachedString = null;
     }
 
     public static MariaGTIDSet parse(String gtidData) {
@@ -48,14 +52,19 @@ public class MariaGTIDSet implements GTIDSet {
 
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        for (MariaGtid gtid : gtidMap.values()) {
-            if (sb.length() > 0) {
-                sb.append(",");
+        String str = cachedString;
+        if (str == null) {
+            StringBuilder sb = new StringBuilder();
+            for (MariaGtid gtid : gtidMap.values()) {
+                if (sb.length() > 0) {
+                    sb.append(",");
+                }
+                sb.append(gtid.toString());
             }
-            sb.append(gtid.toString());
+            str = sb.toString();
+            cachedString = str;
         }
-        return sb.toString();
+        return str;
     }
 }
 
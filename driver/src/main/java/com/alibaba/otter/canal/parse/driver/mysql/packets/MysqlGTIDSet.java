@@ -2,25 +2,47 @@ package com.alibaba.otter.canal.parse.driver.mysql.packets;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
 
 import com.alibaba.otter.canal.parse.driver.mysql.utils.ByteHelper;
 
 /**
  * Created by hiwjd on 2018/4/23. hiwjd0@gmail.com
+ *
+ * <pre>
+ * 解析binlog时每个事务都会update一次，绝大部分情况都是同一个server_uuid的gno连续递增，所以:
+ * 1. sets按UUID作为key，记住最近一次更新的UUIDSet，按UUID的128位直接比较，不需要toString
+ * 2. gno == 最后一个Interval的stop时直接stop++，O(1)完成，不再parse字符串以及combine整个Interval列表
+ * 3. toString的结果缓存到下一次update，同一个事务内的多个event共享同一个字符串
+ * 4. LogHeader通过{@linkplain #snapshot()}拿到当前版本的只读视图，读取时才生成字符串，每个版本只格式化一次。
+ *    update时如果当前版本的视图还没有被读取，视图只保留各个UUIDSet的引用，
+ *    之后被修改的UUIDSet先复制一份再修改(copy-on-write)，没有变化的UUIDSet继续共享
+ * </pre>
  */
 public class MysqlGTIDSet implements GTIDSet {
 
-    public Map<String, UUIDSet> sets;
+    public Map<UUID, UUIDSet>  sets;
+    private UUIDSet            lastSet;      // 最近一次update的UUIDSet
+    private String             cachedString;
+    private Snapshot           snapshot;     // 当前版本对外的视图
+    // 没有被任何视图引用，可以直接修改的UUIDSet
+    private final Set<UUIDSet> owned = Collections.newSetFromMap(new IdentityHashMap<>());
 
     @Override
     public byte[] encode() throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         ByteHelper.writeUnsignedInt64LittleEndian(sets.size(), out);
 
-        for (Map.Entry<String, UUIDSet> entry : sets.entrySet()) {
-            out.write(entry.getValue().encode());
+        for (UUIDSet us : sets.values()) {
+            out.write(us.encode());
         }
 
         return out.toByteArray();
@@ -28,16 +50,118 @@ public class MysqlGTIDSet implements GTIDSet {
 
     @Override
     public void update(String str) {
+        int index = str.indexOf(':');
+        if (index > 0 && str.indexOf(':', index + 1) < 0 && str.indexOf('-', index + 1) < 0) {
+            // 单个gtid，比如 726757ad-4455-11e8-ae04-0242ac110002:1
+            update(UUID.fromString(str.substring(0, index)), Long.parseLong(str.substring(index + 1)));
+            return;
+        }
+
+        beforeUpdate();
         UUIDSet us = UUIDSet.parse(str);
-        String sid = us.SID.toString();
-        if (sets.containsKey(sid)) {
-            sets.get(sid).intervals.addAll(us.intervals);
-            sets.get(sid).intervals = UUIDSet.combine(sets.get(sid).intervals);
+        UUIDSet exist = sets.get(us.SID);
+        if (exist != null) {
+            exist = writable(exist);
+            exist.intervals.addAll(us.intervals);
+            exist.intervals = UUIDSet.combine(exist.intervals);
         } else {
-            sets.put(sid, us);
+            sets.put(us.SID, us);
+            owned.add(us);
+        }
+    }
+
+    /**
+     * 追加单个gtid，避免拼装字符串后再parse
+     */
+    public void update(UUID sid, long gno) {
+        beforeUpdate();
+        UUIDSet us = lastSet;
+        if (us == null || !sid.equals(us.SID)) {
+            us = sets.get(sid);
+            if (us == null) {
+                us = new UUIDSet();
+                us.SID = sid;
+                us.intervals = new ArrayList<>();
+                sets.put(sid, us);
+                owned.add(us);
+            }
+            lastSet = us;
+        }
+        us = writable(us);
+
+        List<UUIDSet.Interval> intervals = us.intervals;
+        int size = intervals.size();
+        UUIDSet.Interval last = size > 0 ? intervals.get(size - 1) : null;
+        if (last != null) {
+            if (last.stop == gno) {
+                // 连续追加
+                last.stop = gno + 1;
+                return;
+            } else if (last.start <= gno && gno < last.stop) {
+                // 已经包含
+                return;
+            }
+        }
+
+        UUIDSet.Interval interval = new UUIDSet.Interval();
+        interval.start = gno;
+        interval.stop = gno + 1;
+        intervals.add(interval);
+        if (last != null && gno < last.start) {
+            // 乱序的gno，重新排序合并
+            us.intervals = UUIDSet.combine(intervals);
         }
     }
 
+    /**
+     * 当前版本的只读视图，同一个版本共享一个，第一次读取时才生成字符串
+     */
+    public Supplier<String> snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            current = new Snapshot(this);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    private void beforeUpdate() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            if (current.freeze()) {
+                // 视图引用了当前所有的UUIDSet，之后的修改都需要先复制
+                owned.clear();
+            }
+            snapshot = null;
+        }
+        cachedString = null;
+    }
+
+    /**
+     * 被视图引用的UUIDSet先复制一份区间再修改，只复制本次变化的这一个UUIDSet，遍历顺序不变
+     */
+    private UUIDSet writable(UUIDSet source) {
+        if (owned.contains(source)) {
+            return source;
+        }
+
+        UUIDSet us = new UUIDSet();
+        us.SID = source.SID;
+        us.intervals = new ArrayList<>(source.intervals.size() + 1);
+        for (UUIDSet.Interval interval : source.intervals) {
+            UUIDSet.Interval copy = new UUIDSet.Interval();
+            copy.start = interval.start;
+            copy.stop = interval.stop;
+            us.intervals.add(copy);
+        }
+        sets.put(us.SID, us);
+        owned.add(us);
+        if (lastSet == source) {
+            lastSet = us;
+        }
+        return us;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null) return false;
@@ -46,7 +170,7 @@ public class MysqlGTIDSet implements GTIDSet {
         MysqlGTIDSet gs = (MysqlGTIDSet) o;
         if (gs.sets == null) return false;
 
-        for (Map.Entry<String, UUIDSet> entry : sets.entrySet()) {
+        for (Map.Entry<UUID, UUIDSet> entry : sets.entrySet()) {
             if (!entry.getValue().equals(gs.sets.get(entry.getKey()))) {
                 return false;
             }
@@ -81,17 +205,17 @@ public class MysqlGTIDSet implements GTIDSet {
      * @return
      */
     public static MysqlGTIDSet parse(String gtidData) {
-        Map<String, UUIDSet> m;
+        Map<UUID, UUIDSet> m;
 
         if (gtidData == null || gtidData.length() < 1) {
-            m = new HashMap<>();
+            m = new LinkedHashMap<>();
         } else {
             // 存在多个GTID时会有回车符
             String[] uuidStrs = gtidData.replaceAll("\n", "").split(",");
-            m = new HashMap<>(uuidStrs.length);
+            m = new LinkedHashMap<>(uuidStrs.length);
             for (String uuidStr : uuidStrs) {
                 UUIDSet uuidSet = UUIDSet.parse(uuidStr);
-                m.put(uuidSet.SID.toString(), uuidSet);
+                m.put(uuidSet.SID, uuidSet);
             }
         }
 
@@ -103,15 +227,64 @@ public class MysqlGTIDSet implements GTIDSet {
 
     @Override
     public String toString() {
+        String str = cachedString;
+        if (str == null) {
+            str = buildString();
+            cachedString = str;
+        }
+        return str;
+    }
+
+    private String buildString() {
+        return join(sets.values());
+    }
+
+    private static String join(Iterable<UUIDSet> uuidSets) {
         StringBuilder sb = new StringBuilder();
 
-        for (Map.Entry<String, UUIDSet> entry : sets.entrySet()) {
+        for (UUIDSet us : uuidSets) {
             if (sb.length() > 0) {
                 sb.append(",");
             }
-            sb.append(entry.getValue().toString());
+            sb.append(us.toString());
         }
 
         return sb.toString();
     }
+
+    /**
+     * 版本未变化时基于原始的gtidSet生成字符串，update之前被freeze为当前各个UUIDSet的引用
+     */
+    private static final class Snapshot implements Supplier<String> {
+
+        private MysqlGTIDSet  source;
+        private List<UUIDSet> frozen;
+        private String        value;
+
+        Snapshot(MysqlGTIDSet source){
+            this.source = source;
+        }
+
+        @Override
+        public synchronized String get() {
+            if (value == null) {
+                value = source != null ? source.toString() : join(frozen);
+                source = null;
+                frozen = null;
+            }
+            return value;
+        }
+
+        /**
+         * @return 是否引用了source当前的UUIDSet
+         */
+        synchronized boolean freeze() {
+            if (value != null) {
+                return false;
+            }
+            frozen = new ArrayList<>(source.sets.values());
+            source = null;
+            return true;
+        }
+    }
 }
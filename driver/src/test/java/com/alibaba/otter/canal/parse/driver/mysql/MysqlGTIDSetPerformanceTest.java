@@ -0,0 +1,67 @@
+package com.alibaba.otter.canal.parse.driver.mysql;
+
+import java.util.UUID;
+
+import org.junit.Ignore;
+
+import com.alibaba.otter.canal.parse.driver.mysql.packets.MysqlGTIDSet;
+import com.alibaba.otter.canal.parse.driver.mysql.packets.UUIDSet;
+
+/**
+ * 对比每个事务update一次gtid的开销，legacy为原先拼装字符串、parse再combine的实现
+ */
+@Ignore
+public class MysqlGTIDSetPerformanceTest {
+
+    private static final String SID   = "726757ad-4455-11e8-ae04-0242ac110002";
+    private static final int    COUNT = 1000000;
+
+    public static void main(String args[]) {
+        for (int i = 0; i < 5; i++) {
+            legacy();
+            append();
+        }
+    }
+
+    private static void legacy() {
+        MysqlGTIDSet gtidSet = MysqlGTIDSet.parse(SID + ":1");
+        UUID sid = UUID.fromString(SID);
+        long start = System.currentTimeMillis();
+        int length = 0;
+        for (long gno = 2; gno < COUNT; gno++) {
+            UUIDSet us = UUIDSet.parse(sid.toString() + ":" + gno);
+            UUIDSet exist = gtidSet.sets.get(us.SID);
+            exist.intervals.addAll(us.intervals);
+            exist.intervals = UUIDSet.combine(exist.intervals);
+            length += buildString(gtidSet).length();
+        }
+        long end = System.currentTimeMillis();
+        System.out.println("legacy : " + (end - start) + "ms , tps : " + (COUNT * 1000L / (end - start)) + " , "
+                           + length);
+    }
+
+    private static void append() {
+        MysqlGTIDSet gtidSet = MysqlGTIDSet.parse(SID + ":1");
+        UUID sid = UUID.fromString(SID);
+        long start = System.currentTimeMillis();
+        int length = 0;
+        for (long gno = 2; gno < COUNT; gno++) {
+            gtidSet.update(sid, gno);
+            length += gtidSet.toString().length();
+        }
+        long end = System.currentTimeMillis();
+        System.out.println("append : " + (end - start) + "ms , tps : " + (COUNT * 1000L / Math.max(1, end - start))
+                           + " , " + length);
+    }
+
+    private static String buildString(MysqlGTIDSet gtidSet) {
+        StringBuilder sb = new StringBuilder();
+        for (UUIDSet us : gtidSet.sets.values()) {
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(us.toString());
+        }
+        return sb.toString();
+    }
+}
@@ -1,6 +1,7 @@
 package com.alibaba.otter.canal.parse.driver.mysql;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -9,6 +10,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import org.junit.Test;
 
@@ -48,6 +50,29 @@ public class MysqlGTIDSetTest {
         assertEquals("726757ad-4455-11e8-ae04-0242ac110002:1-25536412", mysqlGTIDSet1.toString());
     }
 
+    @Test
+    public void testAppend() {
+        MysqlGTIDSet gtidSet = MysqlGTIDSet.parse("726757ad-4455-11e8-ae04-0242ac110002:1-3");
+        UUID sid = UUID.fromString("726757ad-4455-11e8-ae04-0242ac110002");
+        gtidSet.update(sid, 4);
+        gtidSet.update("726757ad-4455-11e8-ae04-0242ac110002:5");
+        assertEquals("726757ad-4455-11e8-ae04-0242ac110002:1-5", gtidSet.toString());
+
+        // 有空洞以及重复的gno
+        gtidSet.update(sid, 8);
+        gtidSet.update(sid, 8);
+        assertEquals("726757ad-4455-11e8-ae04-0242ac110002:1-5:8", gtidSet.toString());
+        gtidSet.update(sid, 6);
+        gtidSet.update(sid, 7);
+        assertEquals("726757ad-4455-11e8-ae04-0242ac110002:1-8", gtidSet.toString());
+
+        // 新的server_uuid
+        gtidSet.update(UUID.fromString("726757ad-4455-11e8-ae04-0242ac110003"), 1);
+        gtidSet.update(sid, 9);
+        assertEquals(MysqlGTIDSet.parse("726757ad-4455-11e8-ae04-0242ac110002:1-9,726757ad-4455-11e8-ae04-0242ac110003:1"),
+            gtidSet);
+    }
+
     @Test
     public void testParse() {
         Map<String, MysqlGTIDSet> cases = new HashMap<>(5);
@@ -96,12 +121,47 @@ public class MysqlGTIDSetTest {
         public long   stop1;
     }
 
+    @Test
+    public void testSnapshot() {
+        String uuid = "726757ad-4455-11e8-ae04-0242ac110002";
+        MysqlGTIDSet gtidSet = MysqlGTIDSet.parse(uuid + ":1-3");
+        Supplier<String> first = gtidSet.snapshot();
+        assertSame(first, gtidSet.snapshot());
+
+        // 没有读取过的视图在update之后仍然是旧版本
+        gtidSet.update(UUID.fromString(uuid), 4);
+        Supplier<String> second = gtidSet.snapshot();
+        gtidSet.update(UUID.fromString(uuid), 6);
+        assertEquals(uuid + ":1-3", first.get());
+        assertEquals(uuid + ":1-4", second.get());
+        assertEquals(uuid + ":1-4:6", gtidSet.snapshot().get());
+    }
+
+    @Test
+    public void testSnapshotCopyOnWrite() {
+        String uuid1 = "726757ad-4455-11e8-ae04-0242ac110002";
+        String uuid2 = "726757ad-4455-11e8-ae04-0242ac110003";
+        MysqlGTIDSet gtidSet = MysqlGTIDSet.parse(uuid1 + ":1-3," + uuid2 + ":1-5");
+        Supplier<String> first = gtidSet.snapshot();
+
+        // 每个版本只修改其中一个server_uuid
+        gtidSet.update(UUID.fromString(uuid2), 6);
+        Supplier<String> second = gtidSet.snapshot();
+        gtidSet.update(UUID.fromString(uuid1), 4);
+        gtidSet.update(UUID.fromString(uuid1), 5);
+        gtidSet.update(uuid2 + ":8-9");
+
+        assertEquals(uuid1 + ":1-3," + uuid2 + ":1-5", first.get());
+        assertEquals(uuid1 + ":1-3," + uuid2 + ":1-6", second.get());
+        assertEquals(uuid1 + ":1-5," + uuid2 + ":1-6:8-9", gtidSet.toString());
+    }
+
     private MysqlGTIDSet buildForTest(Material material) {
         return buildForTest(Arrays.asList(material));
     }
 
     private MysqlGTIDSet buildForTest(List<Material> materials) {
-        Map<String, UUIDSet> sets = new HashMap<>();
+        Map<UUID, UUIDSet> sets = new HashMap<>();
         for (Material a : materials) {
             UUIDSet.Interval interval = new UUIDSet.Interval();
             interval.start = a.start;
@@ -120,7 +180,7 @@ public class MysqlGTIDSetTest {
             us.SID = UUID.fromString(a.uuid);
             us.intervals = intervals;
 
-            sets.put(a.uuid, us);
+            sets.put(us.SID, us);
         }
 
         MysqlGTIDSet gs = new MysqlGTIDSet();
@@ -21,6 +21,7 @@ import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.ClientIdentity;
 import com.alibaba.otter.canal.sink.CanalEventSink;
 import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
 import com.alibaba.otter.canal.store.model.Event;
 
 /**
@@ -44,6 +45,13 @@ public class AbstractCanalInstance extends AbstractCanalLifeCycle implements Can
     // 主要是更新一下 eventParser 中的 filter
     @Override
     public boolean subscribeChange(ClientIdentity identity) {
+        if (eventStore instanceof MemoryEventStoreWithBuffer
+            && ((MemoryEventStoreWithBuffer) eventStore).isMultiSubscriber()) {
+            // 多订阅者共享同一份parse数据，client的filter在store get时生效，parser仍使用instance的filter
+            ((MemoryEventStoreWithBuffer) eventStore).subscribe(identity);
+            return true;
+        }
+
         if (StringUtils.isNotEmpty(identity.getFilter())) { // 如果设置了 filter
             logger.info("subscribe filter change to " + identity.getFilter());
             AviaterRegexFilter aviaterFilter = new AviaterRegexFilter(identity.getFilter());
@@ -68,7 +76,7 @@ public class AbstractCanalInstance extends AbstractCanalLifeCycle implements Can
         // filter的处理规则
         // a. parser处理数据过滤处理
         // b. sink处理数据的路由&分发,一份parse数据经过sink后可以分发为多份，每份的数据可以根据自己的过滤规则不同而有不同的数据
-        // 后续内存版的一对多分发，可以考虑
+        // 内存版的一对多分发，见MemoryEventStoreWithBuffer的multiSubscriber模式
         return true;
     }
     // 启动顺序为：metaManager —> eventStore —> eventSink —> eventParser
@@ -59,6 +59,7 @@ import com.alibaba.otter.canal.sink.entry.group.GroupEventSink;
 import com.alibaba.otter.canal.store.AbstractCanalStoreScavenge;
 import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
 import com.alibaba.otter.canal.store.model.BatchMode;
+import com.alibaba.otter.canal.store.model.SlowSubscriberPolicy;
 
 /**
  * 单个canal实例，比如一个destination会独立一个实例
@@ -181,6 +182,9 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
             memoryEventStore.setBatchMode(BatchMode.valueOf(parameters.getStorageBatchMode().name()));
             memoryEventStore.setDdlIsolation(parameters.getDdlIsolation());
             memoryEventStore.setRaw(parameters.getMemoryStorageRawEntry());
+            memoryEventStore.setMultiSubscriber(parameters.getMemoryStorageMultiSubscriber());
+            memoryEventStore.setSlowSubscriberPolicy(SlowSubscriberPolicy.valueOf(parameters.getMemoryStorageSlowSubscriberPolicy()));
+            memoryEventStore.setSpillBufferSize(parameters.getMemoryStorageSpillBufferSize());
             eventStore = memoryEventStore;
         } else if (mode.isFile()) {
             // 后续版本支持
@@ -336,6 +340,9 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
             if (parameters.getTsdbSnapshotExpire() != null) {
                 mysqlEventParser.setTsdbSnapshotExpire(parameters.getTsdbSnapshotExpire());
             }
+            if (parameters.getTsdbSnapshotDeltaInterval() != null) {
+                mysqlEventParser.setTsdbSnapshotDeltaInterval(parameters.getTsdbSnapshotDeltaInterval());
+            }
             boolean tsdbEnable = BooleanUtils.toBoolean(parameters.getTsdbEnable());
             if (tsdbEnable) {
                 mysqlEventParser.setTableMetaTSDBFactory(new DefaultTableMetaTSDBFactory() {
@@ -40,6 +40,9 @@ public class CanalParameter implements Serializable {
     private Integer                  memoryStorageBufferSize            = 16 * 1024;                 // 内存存储的buffer大小
     private Integer                  memoryStorageBufferMemUnit         = 1024;                      // 内存存储的buffer内存占用单位，默认为1kb
     private Boolean                  memoryStorageRawEntry              = Boolean.TRUE;              // 内存存储的对象是否启用raw的ByteString模式
+    private Boolean                  memoryStorageMultiSubscriber       = Boolean.FALSE;             // 多个client共享内存存储，各自维护消费位点
+    private String                   memoryStorageSlowSubscriberPolicy  = "BLOCK";                   // 慢订阅者策略: BLOCK/SPILL/EVICT
+    private Integer                  memoryStorageSpillBufferSize       = 64 * 1024;                 // SPILL策略下单个订阅者最多转移的event数量
     private String                   fileStorageDirectory;                                           // 文件存储的目录位置
     private Integer                  fileStorageStoreCount;                                          // 每个文件store存储的记录数
     private Integer                  fileStorageRollverCount;                                        // store文件的个数
@@ -100,6 +103,7 @@ public class CanalParameter implements Serializable {
     private String                   tsdbJdbcPassword;
     private Integer                  tsdbSnapshotInterval               = 24;
     private Integer                  tsdbSnapshotExpire                 = 360;
+    private Integer                  tsdbSnapshotDeltaInterval          = 60;
     private String                   rdsAccesskey;
     private String                   rdsSecretkey;
     private String                   rdsInstanceId;
@@ -972,6 +976,30 @@ public class CanalParameter implements Serializable {
         this.memoryStorageRawEntry = memoryStorageRawEntry;
     }
 
+    public Boolean getMemoryStorageMultiSubscriber() {
+        return memoryStorageMultiSubscriber;
+    }
+
+    public void setMemoryStorageMultiSubscriber(Boolean memoryStorageMultiSubscriber) {
+        this.memoryStorageMultiSubscriber = memoryStorageMultiSubscriber;
+    }
+
+    public String getMemoryStorageSlowSubscriberPolicy() {
+        return memoryStorageSlowSubscriberPolicy;
+    }
+
+    public void setMemoryStorageSlowSubscriberPolicy(String memoryStorageSlowSubscriberPolicy) {
+        this.memoryStorageSlowSubscriberPolicy = memoryStorageSlowSubscriberPolicy;
+    }
+
+    public Integer getMemoryStorageSpillBufferSize() {
+        return memoryStorageSpillBufferSize;
+    }
+
+    public void setMemoryStorageSpillBufferSize(Integer memoryStorageSpillBufferSize) {
+        this.memoryStorageSpillBufferSize = memoryStorageSpillBufferSize;
+    }
+
     public Integer getTsdbSnapshotInterval() {
         return tsdbSnapshotInterval;
     }
@@ -988,6 +1016,14 @@ public class CanalParameter implements Serializable {
         this.tsdbSnapshotExpire = tsdbSnapshotExpire;
     }
 
+    public Integer getTsdbSnapshotDeltaInterval() {
+        return tsdbSnapshotDeltaInterval;
+    }
+
+    public void setTsdbSnapshotDeltaInterval(Integer tsdbSnapshotDeltaInterval) {
+        this.tsdbSnapshotDeltaInterval = tsdbSnapshotDeltaInterval;
+    }
+
     public Boolean getParallel() {
         return parallel;
     }
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -105,6 +106,21 @@ public class PlainCanalConfigClient extends AbstractCanalLifeCycle implements Ca
         }
     }
 
+    /**
+     * 长轮询等待instance配置变化，没有变化时admin会挂起请求直到timeout秒
+     *
+     * @param version 上一次返回的版本号，首次为0
+     */
+    public InstancesChange watchInstances(long version, int timeout) {
+        String url = configURL + "/api/v1/config/instances_watch?ip=" + localIp + "&port=" + adminPort
+                     + "&version=" + version + "&timeout=" + timeout;
+        ResponseModel<InstancesChange> resp = doQuery(url,
+            timeout * 1000 + REQUEST_TIMEOUT,
+            new TypeReference<ResponseModel<InstancesChange>>() {
+            });
+        return resp.data;
+    }
+
     private PlainCanal queryConfig(String url) {
         try {
             ResponseModel<CanalConfig> config = doQuery(url);
@@ -115,13 +131,16 @@ public class PlainCanalConfigClient extends AbstractCanalLifeCycle implements Ca
     }
 
     private ResponseModel<CanalConfig> doQuery(String url) {
+        return doQuery(url, REQUEST_TIMEOUT, new TypeReference<ResponseModel<CanalConfig>>() {
+        });
+    }
+
+    private <T> ResponseModel<T> doQuery(String url, int timeout, TypeReference<ResponseModel<T>> type) {
         Map<String, String> heads = new HashMap<>();
         heads.put("user", user);
         heads.put("passwd", passwd);
-        String response = httpHelper.get(url, heads, REQUEST_TIMEOUT);
-        ResponseModel<CanalConfig> resp = JSONObject.parseObject(response,
-            new TypeReference<ResponseModel<CanalConfig>>() {
-            });
+        String response = httpHelper.get(url, heads, timeout);
+        ResponseModel<T> resp = JSONObject.parseObject(response, type);
 
         if (!HttpHelper.REST_STATE_OK.equals(resp.code)) {
             throw new CanalException("requestGet for canal config error: " + resp.message);
@@ -159,4 +178,11 @@ public class PlainCanalConfigClient extends AbstractCanalLifeCycle implements Ca
         public String status;
 
     }
+
+    public static class InstancesChange {
+
+        public long         version;
+        public boolean      full;     // true代表需要全量加载
+        public List<String> instances; // 发生变化的instance
+    }
 }
@@ -37,6 +37,7 @@ import com.alibaba.otter.canal.protocol.position.EntryPosition;
 import com.alibaba.otter.canal.protocol.position.LogIdentity;
 import com.alibaba.otter.canal.protocol.position.LogPosition;
 import com.alibaba.otter.canal.sink.CanalEventSink;
+import com.alibaba.otter.canal.sink.entry.EntryEventSink;
 import com.alibaba.otter.canal.sink.exception.CanalSinkException;
 
 import static com.alibaba.otter.canal.parse.driver.mysql.utils.GtidUtil.parseGtidSet;
@@ -86,6 +87,8 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
 
     protected EventTransactionBuffer                 transactionBuffer;
     protected int                                    transactionSize            = 1024;
+    protected int                                    largeTransactionSize       = 0;                                       // 超过该数量的事务落盘后再输出，0代表关闭
+    protected String                                 largeTransactionSpoolDir;
     protected AtomicBoolean                          needTransactionPosition    = new AtomicBoolean(false);
     protected long                                   lastEntryTime              = 0L;
     protected volatile boolean                       detectingEnable            = true;                                    // 是否开启心跳检查
@@ -99,6 +102,8 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
     protected Integer                                parallelThreadSize         = Runtime.getRuntime()
                                                                                     .availableProcessors() * 60 / 100;     // 60%的能力跑解析,剩余部分处理网络
     protected int                                    parallelBufferSize         = 256;                                     // 必须为2的幂
+    protected boolean                                parallelAdaptive           = false;                                   // dml解析线程数在min和parallelThreadSize之间自适应
+    protected int                                    parallelMinThreadSize      = 1;
     protected MultiStageCoprocessor                  multiStageCoprocessor;
     protected ParserExceptionHandler                 parserExceptionHandler;
     protected long                                   serverId;
@@ -130,6 +135,8 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
     public AbstractEventParser(){
         // 初始化一下
         transactionBuffer = new EventTransactionBuffer(transaction -> {
+            // 每次flush都重新设置，标记只作用于本次输出的event，并行解析时flush和reset可能不在同一个线程
+            markLargeTransaction(transactionBuffer.isLargeTransaction());
             boolean successed = consumeTheEventAndProfilingIfNecessary(transaction);
             if (!running) {
                 return;
@@ -152,6 +159,10 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
         // 配置transaction buffer
         // 初始化缓冲队列
         transactionBuffer.setBufferSize(transactionSize);// 设置buffer大小
+        transactionBuffer.setLargeTransactionSize(largeTransactionSize);
+        if (StringUtils.isNotEmpty(largeTransactionSpoolDir)) {
+            transactionBuffer.setSpoolDir(largeTransactionSpoolDir);
+        }
         transactionBuffer.start();
         // 构造bin log parser
         binlogParser = buildParser();// 初始化一下BinLogParser
@@ -426,6 +437,12 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
         return profilingEnabled.get();
     }
 
+    private void markLargeTransaction(boolean largeTransaction) {
+        if (eventSink instanceof EntryEventSink) {
+            ((EntryEventSink) eventSink).setLargeTransaction(largeTransaction);
+        }
+    }
+
     protected LogPosition buildLastTransactionPosition(List<CanalEntry.Entry> entries) { // 初始化一下
         for (int i = entries.size() - 1; i > 0; i--) {
             CanalEntry.Entry entry = entries.get(i);
@@ -619,6 +636,14 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
         this.transactionSize = transactionSize;
     }
 
+    public void setLargeTransactionSize(int largeTransactionSize) {
+        this.largeTransactionSize = largeTransactionSize;
+    }
+
+    public void setLargeTransactionSpoolDir(String largeTransactionSpoolDir) {
+        this.largeTransactionSpoolDir = largeTransactionSpoolDir;
+    }
+
     public CanalLogPositionManager getLogPositionManager() {
         return logPositionManager;
     }
@@ -669,6 +694,22 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
         this.parallelBufferSize = parallelBufferSize;
     }
 
+    public boolean isParallelAdaptive() {
+        return parallelAdaptive;
+    }
+
+    public void setParallelAdaptive(boolean parallelAdaptive) {
+        this.parallelAdaptive = parallelAdaptive;
+    }
+
+    public int getParallelMinThreadSize() {
+        return parallelMinThreadSize;
+    }
+
+    public void setParallelMinThreadSize(int parallelMinThreadSize) {
+        this.parallelMinThreadSize = parallelMinThreadSize;
+    }
+
     public ParserExceptionHandler getParserExceptionHandler() {
         return parserExceptionHandler;
     }
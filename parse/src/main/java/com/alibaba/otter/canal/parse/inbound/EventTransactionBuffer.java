@@ -1,12 +1,30 @@
 package com.alibaba.otter.canal.parse.inbound;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 
 import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
+import com.alibaba.otter.canal.parse.exception.CanalParseException;
 import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
 import com.alibaba.otter.canal.store.CanalStoreException;
@@ -14,12 +32,26 @@ import com.alibaba.otter.canal.store.CanalStoreException;
 /**
  * 缓冲event队列，提供按事务刷新数据的机制
  * 
+ * <pre>
+ * 大事务模式(largeTransactionSize > 0)：
+ * 1. 事务超过bufferSize时，默认会拆成多次flush，每次都要等store有空位才能继续解析
+ * 2. 事务内的entry数超过largeTransactionSize之后，buffer写满时不再flush，而是追加到本地的落盘文件
+ * 3. 事务结束时再把落盘的数据按bufferSize分批回放给flushCallback，内存中最多只有一个buffer大小的数据
+ * 4. 落盘文件在删除之前一直持有文件锁，启动时清理没有被锁住的文件，即进程异常退出时遗留的文件。
+ *    当前进程内其他parser的落盘文件记录在SPOOL_FILES中，清理时直接跳过，不会打开这些文件，
+ *    避免关闭channel时把同一进程持有的文件锁一起释放掉
+ * </pre>
+ * 
  * @author jianghang 2012-12-6 上午11:05:12
  * @version 1.0.0
  */
 public class EventTransactionBuffer extends AbstractCanalLifeCycle {
 
+    private static final Logger      logger        = LoggerFactory.getLogger(EventTransactionBuffer.class);
     private static final long        INIT_SQEUENCE = -1;
+    private static final String      SPOOL_PREFIX  = "canal_large_transaction_";
+    private static final String      SPOOL_SUFFIX  = ".spool";
+    private static final Set<File>   SPOOL_FILES   = new HashSet<>();                   // 当前进程正在使用的落盘文件
     private int                      bufferSize    = 1024;
     private int                      indexMask;
     private CanalEntry.Entry[]       entries;
@@ -29,6 +61,14 @@ public class EventTransactionBuffer extends AbstractCanalLifeCycle {
 
     private TransactionFlushCallback flushCallback;
 
+    private int                      largeTransactionSize = 0;                          // 事务超过该数量的entry后落盘，0代表关闭
+    private String                   spoolDir             = System.getProperty("java.io.tmpdir");
+    private File                     spoolFile;
+    private OutputStream             spoolOutput;
+    private boolean                  inTransaction        = false;
+    private long                     transactionCount     = 0;                          // 当前事务已经写入的entry数
+    private volatile boolean         largeTransaction     = false;
+
     public EventTransactionBuffer(){
 
     }
@@ -46,11 +86,15 @@ public class EventTransactionBuffer extends AbstractCanalLifeCycle {
         Assert.notNull(flushCallback, "flush callback is null!");
         indexMask = bufferSize - 1;
         entries = new CanalEntry.Entry[bufferSize];
+        cleanStaleSpool();
     }
 
     public void stop() throws CanalStoreException {
         putSequence.set(INIT_SQEUENCE);
         flushSequence.set(INIT_SQEUENCE);
+        discardSpool();
+        inTransaction = false;
+        largeTransaction = false;
 
         entries = null;
         super.stop();
@@ -66,11 +110,15 @@ public class EventTransactionBuffer extends AbstractCanalLifeCycle {
         switch (entry.getEntryType()) {
             case TRANSACTIONBEGIN:
                 flush();// 刷新上一次的数据
+                inTransaction = true;
+                transactionCount = 0;
                 put(entry);
                 break;
             case TRANSACTIONEND:
                 put(entry);
                 flush();
+                inTransaction = false;
+                largeTransaction = false;
                 break;
             case ROWDATA:
                 put(entry);
@@ -93,9 +141,13 @@ public class EventTransactionBuffer extends AbstractCanalLifeCycle {
     public void reset() {
         putSequence.set(INIT_SQEUENCE);
         flushSequence.set(INIT_SQEUENCE);
+        discardSpool();
+        inTransaction = false;
+        largeTransaction = false;
     }
 
     private void put(CanalEntry.Entry data) throws InterruptedException {
+        transactionCount++;
         // 首先检查是否有空位
         if (checkFreeSlotAt(putSequence.get() + 1)) {
             long current = putSequence.get();
@@ -105,12 +157,25 @@ public class EventTransactionBuffer extends AbstractCanalLifeCycle {
             entries[getIndex(next)] = data;
             putSequence.set(next);
         } else {
-            flush();// buffer区满了，刷新一下
+            if (largeTransactionSize > 0 && inTransaction && transactionCount > largeTransactionSize) {
+                largeTransaction = true;
+                spill();// 大事务，先落盘等事务结束
+            } else {
+                flush();// buffer区满了，刷新一下
+            }
+            transactionCount--;
             put(data);// 继续加一下新数据
         }
     }
 
     private void flush() throws InterruptedException {
+        if (spoolOutput != null) {
+            // 存在落盘的数据，需要先把buffer中剩余的数据追加到文件，保证顺序
+            spill();
+            replay();
+            return;
+        }
+
         long start = this.flushSequence.get() + 1;
         long end = this.putSequence.get();
 
@@ -125,6 +190,116 @@ public class EventTransactionBuffer extends AbstractCanalLifeCycle {
         }
     }
 
+    /**
+     * 将buffer中未flush的数据追加到落盘文件
+     */
+    private void spill() {
+        long start = this.flushSequence.get() + 1;
+        long end = this.putSequence.get();
+        try {
+            if (spoolOutput == null) {
+                File dir = new File(spoolDir);
+                if (!dir.exists()) {
+                    dir.mkdirs();
+                }
+                synchronized (SPOOL_FILES) {
+                    // 和清理互斥，保证文件在被其他parser看到之前已经登记
+                    spoolFile = File.createTempFile(SPOOL_PREFIX, SPOOL_SUFFIX, dir);
+                    SPOOL_FILES.add(spoolFile.getAbsoluteFile());
+                }
+                FileOutputStream fileOutput = new FileOutputStream(spoolFile);
+                spoolOutput = new BufferedOutputStream(fileOutput, 64 * 1024);
+                // 锁随文件流关闭释放，用于启动清理时区分其他进程遗留的文件
+                if (fileOutput.getChannel().tryLock() == null) {
+                    throw new IOException("lock spool file failed");
+                }
+            }
+
+            for (long next = start; next <= end; next++) {
+                this.entries[getIndex(next)].writeDelimitedTo(spoolOutput);
+                this.entries[getIndex(next)] = null;
+            }
+        } catch (IOException e) {
+            throw new CanalParseException("spill large transaction to " + spoolFile + " failed", e);
+        }
+        flushSequence.set(end);
+    }
+
+    /**
+     * 按bufferSize分批回放落盘的数据，回放完成后清理文件
+     */
+    private void replay() throws InterruptedException {
+        InputStream input = null;
+        try {
+            spoolOutput.flush();// 回放完成前不关闭，继续持有文件锁
+            input = new BufferedInputStream(new FileInputStream(spoolFile), 64 * 1024);
+            List<CanalEntry.Entry> transaction = new ArrayList<>(bufferSize);
+            CanalEntry.Entry entry;
+            while ((entry = CanalEntry.Entry.parseDelimitedFrom(input)) != null) {
+                transaction.add(entry);
+                if (transaction.size() >= bufferSize) {
+                    flushCallback.flush(transaction);
+                    transaction = new ArrayList<>(bufferSize);
+                }
+            }
+
+            if (!transaction.isEmpty()) {
+                flushCallback.flush(transaction);
+            }
+        } catch (IOException e) {
+            throw new CanalParseException("replay large transaction from " + spoolFile + " failed", e);
+        } finally {
+            IOUtils.closeQuietly(input);
+            discardSpool();
+        }
+    }
+
+    private void discardSpool() {
+        IOUtils.closeQuietly(spoolOutput);
+        spoolOutput = null;
+        if (spoolFile != null) {
+            spoolFile.delete();
+            synchronized (SPOOL_FILES) {
+                SPOOL_FILES.remove(spoolFile.getAbsoluteFile());
+            }
+            spoolFile = null;
+        }
+    }
+
+    /**
+     * 清理进程异常退出时遗留的落盘文件，当前进程登记过的文件直接跳过，被其他进程锁住的文件正在使用，也跳过
+     */
+    private void cleanStaleSpool() {
+        File[] files = new File(spoolDir).listFiles((dir, name) -> name.startsWith(SPOOL_PREFIX)
+                                                                   && name.endsWith(SPOOL_SUFFIX));
+        if (files == null) {
+            return;
+        }
+
+        synchronized (SPOOL_FILES) {
+            for (File file : files) {
+                if (SPOOL_FILES.contains(file.getAbsoluteFile())) {
+                    continue;
+                }
+
+                boolean stale = false;
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    FileLock lock = channel.tryLock();
+                    if (lock != null) {
+                        stale = true;
+                        lock.release();
+                    }
+                } catch (OverlappingFileLockException | IOException e) {
+                    // 已经被删除
+                }
+
+                if (stale && file.delete()) {
+                    logger.warn("delete stale large transaction spool file: {}", file);
+                }
+            }
+        }
+    }
+
     /**
      * 查询是否有空位
      */
@@ -155,6 +330,21 @@ public class EventTransactionBuffer extends AbstractCanalLifeCycle {
         this.flushCallback = flushCallback;
     }
 
+    public void setLargeTransactionSize(int largeTransactionSize) {
+        this.largeTransactionSize = largeTransactionSize;
+    }
+
+    public void setSpoolDir(String spoolDir) {
+        this.spoolDir = spoolDir;
+    }
+
+    /**
+     * 当前是否处于大事务中，即事务超过了largeTransactionSize并已经落盘
+     */
+    public boolean isLargeTransaction() {
+        return largeTransaction;
+    }
+
     /**
      * 事务刷新机制
      * 
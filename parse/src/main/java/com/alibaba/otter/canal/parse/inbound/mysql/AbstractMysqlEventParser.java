@@ -2,7 +2,9 @@ package com.alibaba.otter.canal.parse.inbound.mysql;
 
 import java.nio.charset.Charset;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import com.alibaba.otter.canal.common.utils.LatencyHistogram;
 import com.alibaba.otter.canal.filter.CanalEventFilter;
 import com.alibaba.otter.canal.filter.aviater.AviaterRegexFilter;
 import com.alibaba.otter.canal.parse.CanalEventParser;
@@ -26,6 +28,7 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
     protected boolean              enableTsdb                = false;
     protected int                  tsdbSnapshotInterval      = 24;
     protected int                  tsdbSnapshotExpire        = 360;
+    protected int                  tsdbSnapshotDeltaInterval = 60;
     protected String               tsdbSpringXml;
     protected TableMetaTSDB        tableMetaTSDB;
 
@@ -45,6 +48,10 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
     // instance received binlog bytes
     protected final AtomicLong     receivedBinlogBytes       = new AtomicLong(0L);
     private final AtomicLong       eventsPublishBlockingTime = new AtomicLong(0L);
+    protected final LongAdder      tableMetaCacheHits        = new LongAdder();
+    protected final LongAdder      tableMetaCacheMisses      = new LongAdder();
+    protected final LatencyHistogram tableMetaLoadLatency    = new LatencyHistogram();
+    protected final MultiStageCoprocessorMetrics coprocessorMetrics = new MultiStageCoprocessorMetrics();
 
     protected BinlogParser buildParser() {
         LogEventConvert convert = new LogEventConvert();
@@ -180,6 +187,9 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
             transactionBuffer,
             destination, filterDmlInsert, filterDmlUpdate, filterDmlDelete);
         mysqlMultiStageCoprocessor.setEventsPublishBlockingTime(eventsPublishBlockingTime);
+        mysqlMultiStageCoprocessor.setMetrics(coprocessorMetrics);
+        mysqlMultiStageCoprocessor.setAdaptive(parallelAdaptive);
+        mysqlMultiStageCoprocessor.setMinParserThreadCount(parallelMinThreadSize);
         return mysqlMultiStageCoprocessor;
     }
 
@@ -285,6 +295,22 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
         return this.receivedBinlogBytes;
     }
 
+    public LongAdder getTableMetaCacheHits() {
+        return tableMetaCacheHits;
+    }
+
+    public LongAdder getTableMetaCacheMisses() {
+        return tableMetaCacheMisses;
+    }
+
+    public LatencyHistogram getTableMetaLoadLatency() {
+        return tableMetaLoadLatency;
+    }
+
+    public MultiStageCoprocessorMetrics getCoprocessorMetrics() {
+        return coprocessorMetrics;
+    }
+
     public int getTsdbSnapshotInterval() {
         return tsdbSnapshotInterval;
     }
@@ -293,6 +319,14 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser {
         this.tsdbSnapshotInterval = tsdbSnapshotInterval;
     }
 
+    public int getTsdbSnapshotDeltaInterval() {
+        return tsdbSnapshotDeltaInterval;
+    }
+
+    public void setTsdbSnapshotDeltaInterval(int tsdbSnapshotDeltaInterval) {
+        this.tsdbSnapshotDeltaInterval = tsdbSnapshotDeltaInterval;
+    }
+
     public int getTsdbSnapshotExpire() {
         return tsdbSnapshotExpire;
     }
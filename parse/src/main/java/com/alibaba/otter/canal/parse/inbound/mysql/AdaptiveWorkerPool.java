@@ -0,0 +1,273 @@
+package com.alibaba.otter.canal.parse.inbound.mysql;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.Sequencer;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.WorkHandler;
+import com.lmax.disruptor.util.Util;
+
+/**
+ * 可动态调整活跃worker数量的WorkerPool，抢占event的方式和disruptor的WorkProcessor保持一致
+ *
+ * <pre>
+ * 1. 按最大数量启动worker线程，只有前activeWorkers个参与处理，其余的在两个event之间park住
+ * 2. park的worker把自己的sequence置为Long.MAX_VALUE，不再阻塞下游和生产者，workSequence兜底保证下游不会越过已抢占的event
+ * 3. 所有pool共用一个调度线程，根据dml阶段的积压(上游已完成但worker未处理)和sink阶段的积压调整worker数量
+ * 4. 超过minWorkers的部分需要从JVM级别的budget中申请，避免多个instance把cpu打满，minWorkers本身不占用budget
+ * </pre>
+ *
+ * @since 1.1.6
+ */
+public class AdaptiveWorkerPool<T> {
+
+    private static final Logger                         logger          = LoggerFactory.getLogger(AdaptiveWorkerPool.class);
+    private static final long                           ADJUST_INTERVAL = 200;                                               // ms
+    private static final int                            SHRINK_ROUNDS   = 10;                                                // 连续空闲多少轮后缩容
+    private static final Set<AdaptiveWorkerPool<?>>     pools           = ConcurrentHashMap.newKeySet();
+    private static final AtomicInteger                  totalExtra      = new AtomicInteger(0);                              // 所有pool超过minWorkers的worker数量
+    private static volatile int                         budget          = Runtime.getRuntime().availableProcessors();
+    private static ScheduledExecutorService             scheduler;
+
+    private final RingBuffer<T>                         ringBuffer;
+    private final SequenceBarrier                       barrier;
+    private final ExceptionHandler<? super T>           exceptionHandler;
+    private final Sequence                              workSequence    = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+    private final Worker[]                              workers;
+    private final int                                   minWorkers;
+    private final AtomicBoolean                         running         = new AtomicBoolean(false);
+    private volatile int                                activeWorkers;
+    private Sequence                                    upstream;                                                            // dml阶段依赖的上一阶段
+    private Sequence                                    downstream;                                                          // 依赖dml阶段的下一阶段
+    private int                                         idleRounds      = 0;
+
+    @SafeVarargs
+    public AdaptiveWorkerPool(RingBuffer<T> ringBuffer, SequenceBarrier barrier,
+                              ExceptionHandler<? super T> exceptionHandler, int minWorkers,
+                              WorkHandler<? super T>... workHandlers){
+        this.ringBuffer = ringBuffer;
+        this.barrier = barrier;
+        this.exceptionHandler = exceptionHandler;
+        this.minWorkers = Math.max(1, Math.min(minWorkers, workHandlers.length));
+        this.workers = new AdaptiveWorkerPool.Worker[workHandlers.length];
+        for (int i = 0; i < workHandlers.length; i++) {
+            workers[i] = new Worker(i, workHandlers[i]);
+        }
+    }
+
+    /**
+     * JVM级别所有instance超过minWorkers部分的dml worker总数上限，minWorkers不受限制
+     */
+    public static void setBudget(int budget) {
+        AdaptiveWorkerPool.budget = budget;
+    }
+
+    public static int getBudget() {
+        return budget;
+    }
+
+    public static int getTotalExtra() {
+        return totalExtra.get();
+    }
+
+    /**
+     * 包含workSequence，所有worker都park时下游依赖它判断进度
+     */
+    public Sequence[] getWorkerSequences() {
+        Sequence[] sequences = new Sequence[workers.length + 1];
+        for (int i = 0; i < workers.length; i++) {
+            sequences[i] = workers[i].sequence;
+        }
+        sequences[workers.length] = workSequence;
+        return sequences;
+    }
+
+    public void setStageSequences(Sequence upstream, Sequence downstream) {
+        this.upstream = upstream;
+        this.downstream = downstream;
+    }
+
+    public void start(Executor executor) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("AdaptiveWorkerPool has already been started");
+        }
+
+        long cursor = ringBuffer.getCursor();
+        workSequence.set(cursor);
+        for (Worker worker : workers) {
+            worker.sequence.set(cursor);
+        }
+        activeWorkers = minWorkers;
+        for (Worker worker : workers) {
+            executor.execute(worker);
+        }
+        register(this);
+    }
+
+    public void halt() {
+        if (!running.compareAndSet(true, false)) {
+            return;
+        }
+
+        unregister(this);
+        synchronized (this) {
+            totalExtra.addAndGet(minWorkers - activeWorkers);
+            activeWorkers = 0;
+        }
+        barrier.alert();
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+    }
+
+    public int getActiveWorkers() {
+        return activeWorkers;
+    }
+
+    /**
+     * dml阶段积压超过ringBuffer的1/4且sink阶段没有更严重的积压时扩容，连续空闲或瓶颈在sink阶段时缩容
+     */
+    synchronized void adjust() {
+        if (!running.get() || upstream == null || downstream == null) {
+            return;
+        }
+
+        long dml = Util.getMinimumSequence(getWorkerSequences());
+        long dmlLag = upstream.get() - dml;
+        long sinkLag = dml - downstream.get();
+        int bufferSize = ringBuffer.getBufferSize();
+        int active = activeWorkers;
+        if (dmlLag > bufferSize / 4 && sinkLag < dmlLag) {
+            idleRounds = 0;
+            if (active < workers.length && acquire()) {
+                activeWorkers = active + 1;
+                LockSupport.unpark(workers[active].thread);
+            }
+        } else if (dmlLag <= active || sinkLag > bufferSize / 2) {
+            if (++idleRounds >= SHRINK_ROUNDS && active > minWorkers) {
+                idleRounds = 0;
+                // 被缩掉的worker处理完当前event后自行park
+                activeWorkers = active - 1;
+                totalExtra.decrementAndGet();
+            }
+        } else {
+            idleRounds = 0;
+        }
+    }
+
+    private static boolean acquire() {
+        int current;
+        do {
+            current = totalExtra.get();
+            if (current >= budget) {
+                return false;
+            }
+        } while (!totalExtra.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private static synchronized void register(AdaptiveWorkerPool<?> pool) {
+        pools.add(pool);
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("AdaptiveWorkerPool-adjust"));
+            scheduler.scheduleWithFixedDelay(() -> {
+                for (AdaptiveWorkerPool<?> p : pools) {
+                    try {
+                        p.adjust();
+                    } catch (Throwable e) {
+                        logger.warn("adjust dml parser workers failed", e);
+                    }
+                }
+            }, ADJUST_INTERVAL, ADJUST_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static synchronized void unregister(AdaptiveWorkerPool<?> pool) {
+        pools.remove(pool);
+        if (pools.isEmpty() && scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final int                    index;
+        private final WorkHandler<? super T> handler;
+        private final Sequence               sequence = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+        private volatile Thread              thread;
+
+        Worker(int index, WorkHandler<? super T> handler){
+            this.index = index;
+            this.handler = handler;
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            boolean processedSequence = true;
+            long cachedAvailableSequence = Long.MIN_VALUE;
+            long nextSequence = sequence.get();
+            T event = null;
+            while (running.get()) {
+                try {
+                    if (processedSequence) {
+                        if (index >= activeWorkers) {
+                            park();
+                            continue;
+                        }
+
+                        processedSequence = false;
+                        do {
+                            nextSequence = workSequence.get() + 1L;
+                            sequence.set(nextSequence - 1L);
+                        } while (!workSequence.compareAndSet(nextSequence - 1L, nextSequence));
+                    }
+
+                    if (cachedAvailableSequence >= nextSequence) {
+                        event = ringBuffer.get(nextSequence);
+                        handler.onEvent(event);
+                        processedSequence = true;
+                    } else {
+                        cachedAvailableSequence = barrier.waitFor(nextSequence);
+                    }
+                } catch (final TimeoutException e) {
+                    // ignore
+                } catch (final AlertException e) {
+                    if (!running.get()) {
+                        break;
+                    }
+                } catch (final Throwable e) {
+                    exceptionHandler.handleEventException(e, nextSequence, event);
+                    processedSequence = true;
+                }
+            }
+        }
+
+        private void park() {
+            // 已抢占的event都处理完了，不再阻塞下游
+            sequence.set(Long.MAX_VALUE);
+            while (running.get() && index >= activeWorkers) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(ADJUST_INTERVAL));
+            }
+            sequence.set(workSequence.get());
+        }
+    }
+}
@@ -57,10 +57,14 @@ public class LocalBinlogEventParser extends AbstractMysqlEventParser implements
             ((DatabaseTableMeta) tableMetaTSDB).setBlackFilter(eventBlackFilter);
             ((DatabaseTableMeta) tableMetaTSDB).setSnapshotInterval(tsdbSnapshotInterval);
             ((DatabaseTableMeta) tableMetaTSDB).setSnapshotExpire(tsdbSnapshotExpire);
+            ((DatabaseTableMeta) tableMetaTSDB).setSnapshotDeltaInterval(tsdbSnapshotDeltaInterval);
             ((DatabaseTableMeta) tableMetaTSDB).init(destination);
         }
 
         tableMetaCache = new TableMetaCache(metaConnection, tableMetaTSDB);
+        tableMetaCache.setHitCount(tableMetaCacheHits);
+        tableMetaCache.setMissCount(tableMetaCacheMisses);
+        tableMetaCache.setLoadLatency(tableMetaLoadLatency);
         ((LogEventConvert) binlogParser).setTableMetaCache(tableMetaCache);
     }
 
@@ -0,0 +1,88 @@
+package com.alibaba.otter.canal.parse.inbound.mysql;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 并行解析各阶段的运行指标，跟随parser存活，coprocessor因为重连重建时继续累加
+ *
+ * <pre>
+ * 1. busy/events : 各阶段处理event的累计耗时和数量，dml阶段为所有worker线程之和
+ * 2. sinkBlocking : sink阶段投递到transactionBuffer(包含store写满时的等待)的累计耗时
+ * 3. lag : 各阶段落后上一阶段的event数量，之和即为ringBuffer当前的占用
+ * </pre>
+ *
+ * @since 1.1.6
+ */
+public class MultiStageCoprocessorMetrics {
+
+    public static final int                     SIMPLE_PARSER     = 0;
+    public static final int                     DML_PARSER        = 1;
+    public static final int                     SINK_STORE        = 2;
+    public static final String[]                STAGE_NAMES       = { "simple_parser", "dml_parser", "sink_store" };
+
+    private final LongAdder[]                   busyNanos         = new LongAdder[STAGE_NAMES.length];
+    private final LongAdder[]                   events            = new LongAdder[STAGE_NAMES.length];
+    private final LongAdder                     sinkBlockingNanos = new LongAdder();
+    private volatile MysqlMultiStageCoprocessor coprocessor;
+
+    public MultiStageCoprocessorMetrics(){
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            busyNanos[i] = new LongAdder();
+            events[i] = new LongAdder();
+        }
+    }
+
+    public void record(int stage, long nanos) {
+        busyNanos[stage].add(nanos);
+        events[stage].increment();
+    }
+
+    public void recordSinkBlocking(long nanos) {
+        sinkBlockingNanos.add(nanos);
+    }
+
+    void attach(MysqlMultiStageCoprocessor coprocessor) {
+        this.coprocessor = coprocessor;
+    }
+
+    void detach(MysqlMultiStageCoprocessor coprocessor) {
+        if (this.coprocessor == coprocessor) {
+            this.coprocessor = null;
+        }
+    }
+
+    public long getBusyNanos(int stage) {
+        return busyNanos[stage].sum();
+    }
+
+    public long getEvents(int stage) {
+        return events[stage].sum();
+    }
+
+    public long getSinkBlockingNanos() {
+        return sinkBlockingNanos.sum();
+    }
+
+    /**
+     * 当前没有运行中的coprocessor时返回0
+     */
+    public long getStageLag(int stage) {
+        MysqlMultiStageCoprocessor current = coprocessor;
+        return current != null ? current.getStageLag(stage) : 0;
+    }
+
+    public long getRingBufferSize() {
+        MysqlMultiStageCoprocessor current = coprocessor;
+        return current != null ? current.getRingBufferSize() : 0;
+    }
+
+    public long getRingBufferUsed() {
+        MysqlMultiStageCoprocessor current = coprocessor;
+        return current != null ? current.getRingBufferUsed() : 0;
+    }
+
+    public int getDmlParserThreads() {
+        MysqlMultiStageCoprocessor current = coprocessor;
+        return current != null ? current.getParserThreadCount() : 0;
+    }
+}
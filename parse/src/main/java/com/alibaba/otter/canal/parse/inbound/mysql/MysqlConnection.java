@@ -35,9 +35,11 @@ import com.alibaba.otter.canal.parse.inbound.SinkFunction;
 import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.DirectLogFetcher;
 import com.alibaba.otter.canal.parse.support.AuthenticationInfo;
 import com.taobao.tddl.dbsync.binlog.LogBuffer;
+import com.taobao.tddl.dbsync.binlog.LogBufferPool;
 import com.taobao.tddl.dbsync.binlog.LogContext;
 import com.taobao.tddl.dbsync.binlog.LogDecoder;
 import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.RowsLogPrefilter;
 import com.taobao.tddl.dbsync.binlog.event.FormatDescriptionLogEvent;
 // 对 driver 模块的 MysqlConnector 进行了封装，在开始 dump binlog 前，会对当前链接进行一些参数设置
 public class MysqlConnection implements ErosaConnection {
@@ -232,11 +234,15 @@ public class MysqlConnection implements ErosaConnection {
         sendBinlogDump(binlogfilename, binlogPosition);
         ((MysqlMultiStageCoprocessor) coprocessor).setConnection(this);
         ((MysqlMultiStageCoprocessor) coprocessor).setBinlogChecksum(binlogChecksum);
+        LogBufferPool bufferPool = ((MysqlMultiStageCoprocessor) coprocessor).getBufferPool();
+        RowsLogPrefilter prefilter = ((MysqlMultiStageCoprocessor) coprocessor).buildRowsPrefilter(binlogChecksum);
         try (DirectLogFetcher fetcher = new DirectLogFetcher(connector.getReceiveBufferSize())) {
             fetcher.start(connector.getChannel());
             while (fetcher.fetch()) {
                 accumulateReceivedBytes(fetcher.limit());
-                LogBuffer buffer = fetcher.duplicate();
+                // 被过滤表的rows数据直接丢弃，不再拷贝和解析
+                prefilter.filter(fetcher);
+                LogBuffer buffer = bufferPool.copyOf(fetcher);
                 fetcher.consume(fetcher.limit());
                 if (!coprocessor.publish(buffer)) {
                     break;
@@ -257,11 +263,15 @@ public class MysqlConnection implements ErosaConnection {
         sendBinlogDumpGTID(gtidSet);
         ((MysqlMultiStageCoprocessor) coprocessor).setConnection(this);
         ((MysqlMultiStageCoprocessor) coprocessor).setBinlogChecksum(binlogChecksum);
+        LogBufferPool bufferPool = ((MysqlMultiStageCoprocessor) coprocessor).getBufferPool();
+        RowsLogPrefilter prefilter = ((MysqlMultiStageCoprocessor) coprocessor).buildRowsPrefilter(binlogChecksum);
         try (DirectLogFetcher fetcher = new DirectLogFetcher(connector.getReceiveBufferSize())) {
             fetcher.start(connector.getChannel());
             while (fetcher.fetch()) {
                 accumulateReceivedBytes(fetcher.limit());
-                LogBuffer buffer = fetcher.duplicate();
+                // 被过滤表的rows数据直接丢弃，不再拷贝和解析
+                prefilter.filter(fetcher);
+                LogBuffer buffer = bufferPool.copyOf(fetcher);
                 fetcher.consume(fetcher.limit());
                 if (!coprocessor.publish(buffer)) {
                     break;
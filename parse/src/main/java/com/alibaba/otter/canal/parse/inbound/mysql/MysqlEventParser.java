@@ -125,10 +125,14 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
                 ((DatabaseTableMeta) tableMetaTSDB).setBlackFilter(eventBlackFilter);
                 ((DatabaseTableMeta) tableMetaTSDB).setSnapshotInterval(tsdbSnapshotInterval);
                 ((DatabaseTableMeta) tableMetaTSDB).setSnapshotExpire(tsdbSnapshotExpire);
+                ((DatabaseTableMeta) tableMetaTSDB).setSnapshotDeltaInterval(tsdbSnapshotDeltaInterval);
                 ((DatabaseTableMeta) tableMetaTSDB).init(destination);
             }
 
             tableMetaCache = new TableMetaCache(metaConnection, tableMetaTSDB);
+            tableMetaCache.setHitCount(tableMetaCacheHits);
+            tableMetaCache.setMissCount(tableMetaCacheMisses);
+            tableMetaCache.setLoadLatency(tableMetaLoadLatency);
             ((LogEventConvert) binlogParser).setTableMetaCache(tableMetaCache);
         }
     }
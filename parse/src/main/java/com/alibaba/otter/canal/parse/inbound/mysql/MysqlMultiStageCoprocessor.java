@@ -26,12 +26,15 @@ import com.lmax.disruptor.LifecycleAware;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.Sequence;
 import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.util.Util;
 import com.lmax.disruptor.WorkHandler;
 import com.lmax.disruptor.WorkerPool;
 import com.taobao.tddl.dbsync.binlog.LogBuffer;
+import com.taobao.tddl.dbsync.binlog.LogBufferPool;
 import com.taobao.tddl.dbsync.binlog.LogContext;
 import com.taobao.tddl.dbsync.binlog.LogDecoder;
 import com.taobao.tddl.dbsync.binlog.LogEvent;
+import com.taobao.tddl.dbsync.binlog.RowsLogPrefilter;
 import com.taobao.tddl.dbsync.binlog.event.DeleteRowsLogEvent;
 import com.taobao.tddl.dbsync.binlog.event.FormatDescriptionLogEvent;
 import com.taobao.tddl.dbsync.binlog.event.RowsLogEvent;
@@ -54,11 +57,16 @@ import com.taobao.tddl.dbsync.binlog.event.WriteRowsLogEvent;
 public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implements MultiStageCoprocessor {
 
     private static final int                  maxFullTimes    = 10;
+    // 超过64KB的event不走buffer池，池里最多保留32MB
+    private static final int                  maxPooledEventSize = 64 * 1024;
+    private static final long                 maxPooledBytes     = 32 * 1024 * 1024L;
     private LogEventConvert                   logEventConvert;
     private EventTransactionBuffer            transactionBuffer;
     private ErosaConnection                   connection;
 
     private int                               parserThreadCount;
+    private boolean                           adaptive             = false;                  // dml解析线程数是否自适应
+    private int                               minParserThreadCount = 1;
     private int                               ringBufferSize;
     private RingBuffer<MessageEvent>          disruptorMsgBuffer;
     private ExecutorService                   parserExecutor;
@@ -68,9 +76,13 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
     private AtomicLong                        eventsPublishBlockingTime;
     private GTIDSet                           gtidSet;
     private WorkerPool<MessageEvent>          workerPool;
+    private AdaptiveWorkerPool<MessageEvent>  adaptiveWorkerPool;
+    private Sequence[]                        dmlParserSequences;
     private BatchEventProcessor<MessageEvent> simpleParserStage;
     private BatchEventProcessor<MessageEvent> sinkStoreStage;
     private LogContext                        logContext;
+    private LogBufferPool                     bufferPool;
+    private MultiStageCoprocessorMetrics      metrics;
     protected boolean                         filterDmlInsert = false;
     protected boolean                         filterDmlUpdate = false;
     protected boolean                         filterDmlDelete = false;
@@ -86,6 +98,8 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         this.filterDmlInsert = filterDmlInsert;
         this.filterDmlUpdate = filterDmlUpdate;
         this.filterDmlDelete = filterDmlDelete;
+        // ringBuffer里同时存在的event不会超过ringBufferSize个
+        this.bufferPool = new LogBufferPool(ringBufferSize, maxPooledEventSize, maxPooledBytes);
     }
 
     @Override
@@ -117,11 +131,23 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         for (int i = 0; i < tc; i++) {
             workHandlers[i] = new DmlParserStage();
         }
-        workerPool = new WorkerPool<MessageEvent>(disruptorMsgBuffer,
-            dmlParserSequenceBarrier,
-            exceptionHandler,
-            workHandlers);
-        Sequence[] sequence = workerPool.getWorkerSequences();
+        Sequence[] sequence;
+        if (adaptive) {
+            // 按最大线程数启动，根据积压情况在min和max之间调整
+            adaptiveWorkerPool = new AdaptiveWorkerPool<>(disruptorMsgBuffer,
+                dmlParserSequenceBarrier,
+                exceptionHandler,
+                minParserThreadCount,
+                workHandlers);
+            sequence = adaptiveWorkerPool.getWorkerSequences();
+        } else {
+            workerPool = new WorkerPool<MessageEvent>(disruptorMsgBuffer,
+                dmlParserSequenceBarrier,
+                exceptionHandler,
+                workHandlers);
+            sequence = workerPool.getWorkerSequences();
+        }
+        dmlParserSequences = sequence;
         disruptorMsgBuffer.addGatingSequences(sequence);
 
         // stage 4
@@ -133,7 +159,15 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         // start work
         stageExecutor.submit(simpleParserStage);
         stageExecutor.submit(sinkStoreStage);
-        workerPool.start(parserExecutor);
+        if (adaptive) {
+            adaptiveWorkerPool.setStageSequences(simpleParserStage.getSequence(), sinkStoreStage.getSequence());
+            adaptiveWorkerPool.start(parserExecutor);
+        } else {
+            workerPool.start(parserExecutor);
+        }
+        if (metrics != null) {
+            metrics.attach(this);
+        }
     }
 
     public void setBinlogChecksum(int binlogChecksum) {
@@ -144,8 +178,15 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
 
     @Override
     public void stop() {
+        if (metrics != null) {
+            metrics.detach(this);
+        }
         // fix bug #968，对于pool与
-        workerPool.halt();
+        if (adaptive) {
+            adaptiveWorkerPool.halt();
+        } else {
+            workerPool.halt();
+        }
         simpleParserStage.halt();
         sinkStoreStage.halt();
         try {
@@ -262,6 +303,7 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         }
 
         public void onEvent(MessageEvent event, long sequence, boolean endOfBatch) throws Exception {
+            long start = metrics != null ? System.nanoTime() : 0L;
             try {
                 LogEvent logEvent = event.getEvent();
                 if (logEvent == null) {
@@ -307,6 +349,9 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                 // 记录一下DML的表结构
                 event.setNeedDmlParse(needDmlParse);
                 event.setTable(tableMeta);
+                if (metrics != null) {
+                    metrics.record(MultiStageCoprocessorMetrics.SIMPLE_PARSER, System.nanoTime() - start);
+                }
             } catch (Throwable e) {
                 exception = new CanalParseException(e);
                 throw exception;
@@ -328,6 +373,7 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
 
         @Override
         public void onEvent(MessageEvent event) throws Exception {
+            long start = metrics != null ? System.nanoTime() : 0L;
             try {
                 if (event.isNeedDmlParse()) {
                     int eventType = event.getEvent().getHeader().getType();
@@ -343,6 +389,9 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
 
                     event.setEntry(entry);
                 }
+                if (metrics != null) {
+                    metrics.record(MultiStageCoprocessorMetrics.DML_PARSER, System.nanoTime() - start);
+                }
             } catch (Throwable e) {
                 exception = new CanalParseException(e);
                 throw exception;
@@ -363,9 +412,14 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
     private class SinkStoreStage implements EventHandler<MessageEvent>, LifecycleAware {
 
         public void onEvent(MessageEvent event, long sequence, boolean endOfBatch) throws Exception {
+            long start = metrics != null ? System.nanoTime() : 0L;
             try {
                 if (event.getEntry() != null) {
                     transactionBuffer.add(event.getEntry());
+                    if (metrics != null) {
+                        // 投递到transactionBuffer，包含flush时store写满的等待
+                        metrics.recordSinkBlocking(System.nanoTime() - start);
+                    }
                 }
 
                 LogEvent logEvent = event.getEvent();
@@ -375,12 +429,16 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                         logEvent.getHeader().getLogPos());
                 }
 
-                // clear for gc
+                // clear for gc, 网络buffer归还到池里复用
+                bufferPool.release(event.getBuffer());
                 event.setBuffer(null);
                 event.setEvent(null);
                 event.setTable(null);
                 event.setEntry(null);
                 event.setNeedDmlParse(false);
+                if (metrics != null) {
+                    metrics.record(MultiStageCoprocessorMetrics.SINK_STORE, System.nanoTime() - start);
+                }
             } catch (Throwable e) {
                 exception = new CanalParseException(e);
                 throw exception;
@@ -488,6 +546,81 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         this.eventsPublishBlockingTime = eventsPublishBlockingTime;
     }
 
+    /**
+     * 网络接收阶段按表名裁剪不需要的rows event，过滤规则和logEventConvert保持一致
+     */
+    public RowsLogPrefilter buildRowsPrefilter(int binlogChecksum) {
+        return new RowsLogPrefilter(logEventConvert.getCharset(), binlogChecksum, new RowsLogPrefilter.TableFilter() {
+
+            @Override
+            public int getVersion() {
+                return logEventConvert.getFilterVersion();
+            }
+
+            @Override
+            public boolean isFiltered(String schema, String table) {
+                return logEventConvert.isFilteredTable(schema + "." + table);
+            }
+        });
+    }
+
+    /**
+     * 网络接收的event先拷贝到池化的buffer里再投递，sink阶段处理完之后归还
+     */
+    public LogBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public void setMinParserThreadCount(int minParserThreadCount) {
+        this.minParserThreadCount = minParserThreadCount;
+    }
+
+    public void setMetrics(MultiStageCoprocessorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    int getParserThreadCount() {
+        if (adaptive) {
+            return adaptiveWorkerPool.getActiveWorkers();
+        }
+        return parserThreadCount > 0 ? parserThreadCount : 1;
+    }
+
+    long getRingBufferSize() {
+        return ringBufferSize;
+    }
+
+    /**
+     * ringBuffer中已发布但sink阶段还未处理完的event数量
+     */
+    long getRingBufferUsed() {
+        return Math.max(0, disruptorMsgBuffer.getCursor() - sinkStoreStage.getSequence().get());
+    }
+
+    /**
+     * 各阶段落后于上一阶段的event数量，simple parser以网络接收发布的位置为准
+     */
+    long getStageLag(int stage) {
+        long published = disruptorMsgBuffer.getCursor();
+        long simple = simpleParserStage.getSequence().get();
+        long dml = Util.getMinimumSequence(dmlParserSequences, simple);
+        long sink = sinkStoreStage.getSequence().get();
+        switch (stage) {
+            case MultiStageCoprocessorMetrics.SIMPLE_PARSER:
+                return Math.max(0, published - simple);
+            case MultiStageCoprocessorMetrics.DML_PARSER:
+                return Math.max(0, simple - dml);
+            case MultiStageCoprocessorMetrics.SINK_STORE:
+                return Math.max(0, dml - sink);
+            default:
+                throw new IllegalArgumentException("unknown stage : " + stage);
+        }
+    }
+
     public void setGtidSet(GTIDSet gtidSet) {
         this.gtidSet = gtidSet;
     }
@@ -25,6 +25,7 @@ import com.alibaba.otter.canal.parse.inbound.TableMeta;
 import com.alibaba.otter.canal.parse.inbound.TableMeta.FieldMeta;
 import com.alibaba.otter.canal.parse.inbound.mysql.ddl.DdlResult;
 import com.alibaba.otter.canal.parse.inbound.mysql.ddl.DruidDdlParser;
+import com.alibaba.otter.canal.parse.inbound.mysql.ddl.FastDdlParser;
 import com.alibaba.otter.canal.parse.inbound.mysql.ddl.SimpleDdlParser;
 import com.alibaba.otter.canal.protocol.CanalEntry.Column;
 import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
@@ -90,6 +91,8 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
 
     private volatile AviaterRegexFilter nameFilter;                                                          // 运行时引用可能会有变化，比如规则发生变化时
     private volatile AviaterRegexFilter nameBlackFilter;
+    // 表过滤规则的版本，规则变化时递增
+    private volatile int                filterVersion       = 0;
     private Map<String, List<String>>   fieldFilterMap      = new HashMap<>();
     private Map<String, List<String>>   fieldBlackFilterMap = new HashMap<>();
 
@@ -255,7 +258,11 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
             String tableName = null;
             String schemaName = null;
             if (useDruidDdlFilter) {
-                List<DdlResult> results = DruidDdlParser.parse(queryString, event.getDbName());
+                List<DdlResult> results = FastDdlParser.parse(queryString, event.getDbName());
+                if (results == null) {
+                    // 简单的dml/ddl直接扫描关键字，复杂语句才走druid的完整语法解析
+                    results = DruidDdlParser.parse(queryString, event.getDbName());
+                }
                 for (DdlResult result : results) {
                     if (!processFilter(queryString, result)) {
                         // 只要有一个数据不进行过滤
@@ -397,7 +404,10 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
             queryString = new String(event.getRowsQuery().getBytes(ISO_8859_1), charset.name());
             String tableName = null;
             if (useDruidDdlFilter) {
-                List<DdlResult> results = DruidDdlParser.parse(queryString, null);
+                List<DdlResult> results = FastDdlParser.parse(queryString, null);
+                if (results == null) {
+                    results = DruidDdlParser.parse(queryString, null);
+                }
                 if (results.size() > 0) {
                     tableName = results.get(0).getTableName();
                 }
@@ -465,10 +475,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
 
         String fullname = table.getDbName() + "." + table.getTableName();
         // check name filter
-        if (nameFilter != null && !nameFilter.filter(fullname)) {
-            return null;
-        }
-        if (nameBlackFilter != null && nameBlackFilter.filter(fullname)) {
+        if (isFilteredTable(fullname)) {
             return null;
         }
 
@@ -504,6 +511,16 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         return tableMeta;
     }
 
+    /**
+     * 按黑白名单判断表的rows数据是否需要忽略
+     */
+    public boolean isFilteredTable(String fullname) {
+        if (nameFilter != null && !nameFilter.filter(fullname)) {
+            return true;
+        }
+        return nameBlackFilter != null && nameBlackFilter.filter(fullname);
+    }
+
     public Entry parseRowsEvent(RowsLogEvent event) {
         return parseRowsEvent(event, null);
     }
@@ -915,9 +932,10 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
             headerBuilder.setTableName(tableName);
         }
         headerBuilder.setEventLength(logHeader.getEventLen());
-        // enable gtid position
-        if (StringUtils.isNotEmpty(logHeader.getGtidSetStr())) {
-            headerBuilder.setGtid(logHeader.getGtidSetStr());
+        // enable gtid position, 同一个事务内的header共享同一个版本的字符串，每个版本只格式化一次
+        String gtidSetStr = logHeader.getGtidSetStr();
+        if (StringUtils.isNotEmpty(gtidSetStr)) {
+            headerBuilder.setGtid(gtidSetStr);
         }
         // add current gtid
         if (StringUtils.isNotEmpty(logHeader.getCurrentGtid())) {
@@ -1044,13 +1062,23 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         this.charset = charset;
     }
 
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public int getFilterVersion() {
+        return filterVersion;
+    }
+
     public void setNameFilter(AviaterRegexFilter nameFilter) {
         this.nameFilter = nameFilter;
+        this.filterVersion++;
         logger.warn("--> init table filter : " + nameFilter.toString());
     }
 
     public void setNameBlackFilter(AviaterRegexFilter nameBlackFilter) {
         this.nameBlackFilter = nameBlackFilter;
+        this.filterVersion++;
         logger.warn("--> init table black filter : " + nameBlackFilter.toString());
     }
 
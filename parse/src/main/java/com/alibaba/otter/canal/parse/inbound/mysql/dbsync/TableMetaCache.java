@@ -5,9 +5,15 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.commons.lang.StringUtils;
 
+import com.alibaba.otter.canal.common.utils.LatencyHistogram;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.server.FieldPacket;
 import com.alibaba.otter.canal.parse.driver.mysql.packets.server.ResultSetPacket;
 import com.alibaba.otter.canal.parse.exception.CanalParseException;
@@ -26,25 +32,37 @@ import com.google.common.cache.LoadingCache;
 /**
  * 处理table meta解析和缓存。用于缓存表字段信息。当表结构变更后，也会跟着自动跟新。
  *
+ * <pre>
+ * 1. 命中缓存的查询不加锁，不同表之间互不影响
+ * 2. 未命中时按表做single-flight加载，同一张表只会有一个线程去db查询，其余线程等待同一个结果
+ * 3. meta链接只有一个，所有db查询仍然串行执行
+ * </pre>
+ *
  * @author jianghang 2013-1-17 下午10:15:16
  * @version 1.0.0
  */
 public class TableMetaCache {
 
-    public static final String              COLUMN_NAME    = "COLUMN_NAME";
-    public static final String              COLUMN_TYPE    = "COLUMN_TYPE";
-    public static final String              IS_NULLABLE    = "IS_NULLABLE";
-    public static final String              COLUMN_KEY     = "COLUMN_KEY";
-    public static final String              COLUMN_DEFAULT = "COLUMN_DEFAULT";
-    public static final String              EXTRA          = "EXTRA";
-    private MysqlConnection                 connection;
-    private boolean                         isOnRDS        = false;
-    private boolean                         isOnPolarX     = false;
-    private boolean                         isOnTSDB       = false;
-
-    private TableMetaTSDB                   tableMetaTSDB;
+    public static final String                                       COLUMN_NAME    = "COLUMN_NAME";
+    public static final String                                       COLUMN_TYPE    = "COLUMN_TYPE";
+    public static final String                                       IS_NULLABLE    = "IS_NULLABLE";
+    public static final String                                       COLUMN_KEY     = "COLUMN_KEY";
+    public static final String                                       COLUMN_DEFAULT = "COLUMN_DEFAULT";
+    public static final String                                       EXTRA          = "EXTRA";
+    private MysqlConnection                                          connection;
+    private boolean                                                  isOnRDS        = false;
+    private boolean                                                  isOnPolarX     = false;
+    private boolean                                                  isOnTSDB       = false;
+
+    private TableMetaTSDB                                            tableMetaTSDB;
     // 第一层tableId,第二层schema.table,解决tableId重复，对应多张表
-    private LoadingCache<String, TableMeta> tableMetaDB;
+    private LoadingCache<String, TableMeta>                          tableMetaDB;
+    // tsdb模式下正在从db加载的表，保证同一张表只加载一次
+    private final ConcurrentMap<String, CompletableFuture<TableMeta>> loadings       = new ConcurrentHashMap<>();
+    // 统计信息
+    private LongAdder                                                hitCount       = new LongAdder();
+    private LongAdder                                                missCount      = new LongAdder();
+    private LatencyHistogram                                         loadLatency    = new LatencyHistogram();
 
     public TableMetaCache(MysqlConnection con, TableMetaTSDB tableMetaTSDB){
         this.connection = con;
@@ -55,6 +73,7 @@ public class TableMetaCache {
 
                 @Override
                 public TableMeta load(String name) throws Exception {
+                    long start = System.nanoTime();
                     try {
                         return getTableMetaByDB(name);
                     } catch (Throwable e) {
@@ -65,6 +84,8 @@ public class TableMetaCache {
                         } catch (IOException e1) {
                             throw new CanalParseException("fetch failed by table meta:" + name, e1);
                         }
+                    } finally {
+                        loadLatency.observeNanos(System.nanoTime() - start);
                     }
                 }
 
@@ -157,51 +178,101 @@ public class TableMetaCache {
     }
 
     public TableMeta getTableMeta(String schema, String table, boolean useCache) {
-        if (!useCache) {
-            tableMetaDB.invalidate(getFullName(schema, table));
-        }
-
-        return tableMetaDB.getUnchecked(getFullName(schema, table));
+        return getTableMetaFromCache(getFullName(schema, table), useCache);
     }
 
     public TableMeta getTableMeta(String schema, String table, EntryPosition position) {
         return getTableMeta(schema, table, true, position);
     }
 
-    public synchronized TableMeta getTableMeta(String schema, String table, boolean useCache, EntryPosition position) {
-        TableMeta tableMeta = null;
+    public TableMeta getTableMeta(String schema, String table, boolean useCache, EntryPosition position) {
         if (tableMetaTSDB != null) {
-            tableMeta = tableMetaTSDB.find(schema, table);
-            if (tableMeta == null) {
-                // 因为条件变化，可能第一次的tableMeta没取到，需要从db获取一次，并记录到snapshot中
-                String fullName = getFullName(schema, table);
-                ResultSetPacket packet = null;
-                String createDDL = null;
-                try {
-                    try {
-                        packet = connection.query("show create table " + fullName);
-                    } catch (Exception e) {
-                        // 尝试做一次retry操作
-                        connection.reconnect();
-                        packet = connection.query("show create table " + fullName);
-                    }
-                    if (packet.getFieldValues().size() > 0) {
-                        createDDL = packet.getFieldValues().get(1);
-                    }
-                    // 强制覆盖掉内存值
-                    tableMetaTSDB.apply(position, schema, createDDL, "first");
-                    tableMeta = tableMetaTSDB.find(schema, table);
-                } catch (IOException e) {
-                    throw new CanalParseException("fetch failed by table meta:" + fullName, e);
-                }
+            TableMeta tableMeta = tableMetaTSDB.find(schema, table);
+            if (tableMeta != null) {
+                hitCount.increment();
+                return tableMeta;
             }
-            return tableMeta;
+
+            missCount.increment();
+            return loadTableMetaToTSDB(schema, table, position);
+        } else {
+            return getTableMetaFromCache(getFullName(schema, table), useCache);
+        }
+    }
+
+    private TableMeta getTableMetaFromCache(String fullName, boolean useCache) {
+        if (!useCache) {
+            tableMetaDB.invalidate(fullName);
         } else {
-            if (!useCache) {
-                tableMetaDB.invalidate(getFullName(schema, table));
+            TableMeta tableMeta = tableMetaDB.getIfPresent(fullName);
+            if (tableMeta != null) {
+                hitCount.increment();
+                return tableMeta;
             }
+        }
+
+        // guava cache本身保证了同一个key只会加载一次
+        missCount.increment();
+        return tableMetaDB.getUnchecked(fullName);
+    }
 
-            return tableMetaDB.getUnchecked(getFullName(schema, table));
+    /**
+     * 因为条件变化，可能第一次的tableMeta没取到，需要从db获取一次，并记录到snapshot中
+     */
+    private TableMeta loadTableMetaToTSDB(String schema, String table, EntryPosition position) {
+        String fullName = getFullName(schema, table);
+        CompletableFuture<TableMeta> future = new CompletableFuture<>();
+        CompletableFuture<TableMeta> loading = loadings.putIfAbsent(fullName, future);
+        if (loading != null) {
+            // 其他线程正在加载同一张表，等待其结果
+            try {
+                return loading.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new CanalParseException("fetch failed by table meta:" + fullName, e.getCause());
+            }
+        }
+
+        long start = System.nanoTime();
+        try {
+            // double check，可能在putIfAbsent之前刚好加载完成
+            TableMeta tableMeta = tableMetaTSDB.find(schema, table);
+            if (tableMeta == null) {
+                String createDDL = queryCreateTable(fullName);
+                // 强制覆盖掉内存值
+                tableMetaTSDB.apply(position, schema, createDDL, "first");
+                tableMeta = tableMetaTSDB.find(schema, table);
+                loadLatency.observeNanos(System.nanoTime() - start);
+            }
+            future.complete(tableMeta);
+            return tableMeta;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadings.remove(fullName, future);
+        }
+    }
+
+    private synchronized String queryCreateTable(String fullName) {
+        ResultSetPacket packet = null;
+        String createDDL = null;
+        try {
+            try {
+                packet = connection.query("show create table " + fullName);
+            } catch (Exception e) {
+                // 尝试做一次retry操作
+                connection.reconnect();
+                packet = connection.query("show create table " + fullName);
+            }
+            if (packet.getFieldValues().size() > 0) {
+                createDDL = packet.getFieldValues().get(1);
+            }
+            return createDDL;
+        } catch (IOException e) {
+            throw new CanalParseException("fetch failed by table meta:" + fullName, e);
         }
     }
 
@@ -263,6 +334,18 @@ public class TableMetaCache {
             .toString();
     }
 
+    public void setHitCount(LongAdder hitCount) {
+        this.hitCount = hitCount;
+    }
+
+    public void setMissCount(LongAdder missCount) {
+        this.missCount = missCount;
+    }
+
+    public void setLoadLatency(LatencyHistogram loadLatency) {
+        this.loadLatency = loadLatency;
+    }
+
     public boolean isOnTSDB() {
         return isOnTSDB;
     }
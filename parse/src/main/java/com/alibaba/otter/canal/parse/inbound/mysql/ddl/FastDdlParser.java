@@ -0,0 +1,423 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.ddl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+
+/**
+ * 基于关键字扫描的轻量级sql分类，只处理语法简单、结果确定的常见语句，避免每条query都走一次完整的druid语法解析
+ *
+ * <pre>
+ * 解析支持：
+ * a. INSERT [LOW_PRIORITY | DELAYED | HIGH_PRIORITY] [IGNORE] [INTO] tbl_name ...
+ * b. UPDATE [LOW_PRIORITY] [IGNORE] tbl_name [[AS] alias] SET ...
+ * c. DELETE [LOW_PRIORITY] [QUICK] [IGNORE] FROM tbl_name [WHERE | ORDER BY | LIMIT ...]
+ * d. CREATE [TEMPORARY] TABLE [IF NOT EXISTS] tbl_name ...
+ * e. DROP [TEMPORARY] TABLE [IF EXISTS] tbl_name [, tbl_name] ... [RESTRICT | CASCADE]
+ * f. TRUNCATE [TABLE] tbl_name
+ * g. RENAME TABLE tbl_name TO new_tbl_name [, tbl_name2 TO new_tbl_name2] ...
+ * h. CREATE [UNIQUE | FULLTEXT | SPATIAL] INDEX index_name [USING index_type] ON tbl_name ...
+ * i. DROP INDEX index_name ON tbl_name ...
+ *
+ * 表名支持schema.table以及`引号，返回结果和{@link DruidDdlParser}保持一致
+ * 其余情况(ALTER、多条语句、版本注释、DCL、存储过程等)返回null，由调用方交给{@link DruidDdlParser}
+ * </pre>
+ *
+ * @since 1.1.6
+ */
+public class FastDdlParser {
+
+    /**
+     * @return 无法确定时返回null
+     */
+    public static List<DdlResult> parse(String queryString, String schmeaName) {
+        if (queryString == null) {
+            return null;
+        }
+
+        Lexer lexer = new Lexer(queryString);
+        lexer.skip();
+        List<DdlResult> results = null;
+        if (lexer.accept("INSERT")) {
+            results = parseInsert(lexer, schmeaName);
+        } else if (lexer.accept("UPDATE")) {
+            results = parseUpdate(lexer, schmeaName);
+        } else if (lexer.accept("DELETE")) {
+            results = parseDelete(lexer, schmeaName);
+        } else if (lexer.accept("CREATE")) {
+            results = parseCreate(lexer, schmeaName);
+        } else if (lexer.accept("DROP")) {
+            results = parseDrop(lexer, schmeaName);
+        } else if (lexer.accept("TRUNCATE")) {
+            results = parseTruncate(lexer, schmeaName);
+        } else if (lexer.accept("RENAME")) {
+            results = parseRename(lexer, schmeaName);
+        }
+
+        if (results == null || lexer.failed || !lexer.singleStatement()) {
+            return null;
+        }
+        return results;
+    }
+
+    private static List<DdlResult> parseInsert(Lexer lexer, String schmeaName) {
+        if (!lexer.accept("LOW_PRIORITY") && !lexer.accept("DELAYED")) {
+            lexer.accept("HIGH_PRIORITY");
+        }
+        lexer.accept("IGNORE");
+        lexer.accept("INTO");
+        return single(lexer, schmeaName, EventType.INSERT);
+    }
+
+    private static List<DdlResult> parseUpdate(Lexer lexer, String schmeaName) {
+        lexer.accept("LOW_PRIORITY");
+        lexer.accept("IGNORE");
+        List<DdlResult> results = single(lexer, schmeaName, EventType.UPDATE);
+        if (results == null) {
+            return null;
+        }
+
+        if (!lexer.accept("SET")) {
+            // 单表别名，多表关联的update交给druid
+            lexer.accept("AS");
+            if (lexer.name() == null || !lexer.accept("SET")) {
+                return null;
+            }
+        }
+        return results;
+    }
+
+    private static List<DdlResult> parseDelete(Lexer lexer, String schmeaName) {
+        lexer.accept("LOW_PRIORITY");
+        lexer.accept("QUICK");
+        lexer.accept("IGNORE");
+        if (!lexer.accept("FROM")) {
+            // delete a,b from a,b where ...
+            return null;
+        }
+
+        List<DdlResult> results = single(lexer, schmeaName, EventType.DELETE);
+        if (results == null) {
+            return null;
+        }
+
+        if (lexer.atEnd() || lexer.accept("WHERE") || lexer.accept("ORDER") || lexer.accept("LIMIT")) {
+            return results;
+        }
+        return null;
+    }
+
+    private static List<DdlResult> parseCreate(Lexer lexer, String schmeaName) {
+        boolean temporary = lexer.accept("TEMPORARY");
+        if (lexer.accept("TABLE")) {
+            if (lexer.accept("IF") && !(lexer.accept("NOT") && lexer.accept("EXISTS"))) {
+                return null;
+            }
+            return single(lexer, schmeaName, EventType.CREATE);
+        } else if (temporary) {
+            return null;
+        }
+
+        if (!lexer.accept("UNIQUE") && !lexer.accept("FULLTEXT")) {
+            lexer.accept("SPATIAL");
+        }
+        if (!lexer.accept("INDEX") || lexer.name() == null) {
+            return null;
+        }
+        if (lexer.accept("USING") && lexer.name() == null) {
+            return null;
+        }
+        if (!lexer.accept("ON")) {
+            return null;
+        }
+        return single(lexer, schmeaName, EventType.CINDEX);
+    }
+
+    private static List<DdlResult> parseDrop(Lexer lexer, String schmeaName) {
+        boolean temporary = lexer.accept("TEMPORARY");
+        if (lexer.accept("TABLE")) {
+            if (lexer.accept("IF") && !lexer.accept("EXISTS")) {
+                return null;
+            }
+            List<DdlResult> results = list(lexer, schmeaName, EventType.ERASE);
+            if (results == null) {
+                return null;
+            }
+
+            if (!lexer.accept("RESTRICT")) {
+                lexer.accept("CASCADE");
+            }
+            return lexer.atEnd() ? results : null;
+        } else if (temporary) {
+            return null;
+        }
+
+        if (!lexer.accept("INDEX") || lexer.name() == null || !lexer.accept("ON")) {
+            return null;
+        }
+        return single(lexer, schmeaName, EventType.DINDEX);
+    }
+
+    private static List<DdlResult> parseTruncate(Lexer lexer, String schmeaName) {
+        lexer.accept("TABLE");
+        List<DdlResult> results = list(lexer, schmeaName, EventType.TRUNCATE);
+        return (results != null && lexer.atEnd()) ? results : null;
+    }
+
+    private static List<DdlResult> parseRename(Lexer lexer, String schmeaName) {
+        if (!lexer.accept("TABLE")) {
+            // rename user等
+            return null;
+        }
+
+        List<DdlResult> results = new ArrayList<>(1);
+        do {
+            DdlResult result = new DdlResult();
+            if (!lexer.table(result, schmeaName, true) || !lexer.accept("TO")
+                || !lexer.table(result, schmeaName, false)) {
+                return null;
+            }
+            result.setType(EventType.RENAME);
+            results.add(result);
+        } while (lexer.accept(','));
+        return lexer.atEnd() ? results : null;
+    }
+
+    private static List<DdlResult> single(Lexer lexer, String schmeaName, EventType type) {
+        DdlResult result = new DdlResult();
+        if (!lexer.table(result, schmeaName, false)) {
+            return null;
+        }
+
+        result.setType(type);
+        List<DdlResult> results = new ArrayList<>(1);
+        results.add(result);
+        return results;
+    }
+
+    private static List<DdlResult> list(Lexer lexer, String schmeaName, EventType type) {
+        List<DdlResult> results = new ArrayList<>(1);
+        do {
+            DdlResult result = new DdlResult();
+            if (!lexer.table(result, schmeaName, false)) {
+                return null;
+            }
+            result.setType(type);
+            results.add(result);
+        } while (lexer.accept(','));
+        return results;
+    }
+
+    /**
+     * 只在原始字符串上移动下标，除了表名之外不产生新的对象
+     */
+    private static class Lexer {
+
+        private final String sql;
+        private final int    length;
+        private int          pos;
+        private boolean      failed;
+
+        Lexer(String sql){
+            this.sql = sql;
+            this.length = sql.length();
+        }
+
+        /**
+         * 跳过空白和注释，版本注释(/*! ... * /)里可能是有效的sql，直接标记为失败
+         */
+        void skip() {
+            while (pos < length) {
+                char c = sql.charAt(pos);
+                if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (c == '/' && pos + 1 < length && sql.charAt(pos + 1) == '*') {
+                    if (pos + 2 < length && (sql.charAt(pos + 2) == '!' || sql.charAt(pos + 2) == 'M')) {
+                        failed = true;
+                        return;
+                    }
+                    int end = sql.indexOf("*/", pos + 2);
+                    if (end < 0) {
+                        failed = true;
+                        return;
+                    }
+                    pos = end + 2;
+                } else if (c == '#' || isDashComment(pos)) {
+                    skipLine();
+                } else {
+                    return;
+                }
+            }
+        }
+
+        boolean accept(String keyword) {
+            if (failed) {
+                return false;
+            }
+
+            int len = keyword.length();
+            if (!sql.regionMatches(true, pos, keyword, 0, len)
+                || (pos + len < length && isIdentifierPart(sql.charAt(pos + len)))) {
+                return false;
+            }
+            pos += len;
+            skip();
+            return true;
+        }
+
+        boolean accept(char c) {
+            if (failed || pos >= length || sql.charAt(pos) != c) {
+                return false;
+            }
+            pos++;
+            skip();
+            return true;
+        }
+
+        boolean atEnd() {
+            return !failed && (pos >= length || sql.charAt(pos) == ';');
+        }
+
+        /**
+         * 读取[schema.]table，结果和DruidDdlParser.processName保持一致
+         */
+        boolean table(DdlResult result, String schema, boolean isOri) {
+            String table = name0();
+            if (table == null) {
+                return false;
+            }
+            if (pos < length && sql.charAt(pos) == '.') {
+                pos++;
+                schema = table;
+                table = name0();
+                if (table == null) {
+                    return false;
+                }
+            }
+
+            skip();
+            if (failed || (pos < length && sql.charAt(pos) == '.')) {
+                // a.b.c或者带空格的a . b
+                return false;
+            }
+
+            if (isOri) {
+                result.setOriSchemaName(schema);
+                result.setOriTableName(table);
+            } else {
+                result.setSchemaName(schema);
+                result.setTableName(table);
+            }
+            return true;
+        }
+
+        String name() {
+            if (failed) {
+                return null;
+            }
+
+            String name = name0();
+            if (name != null) {
+                skip();
+            }
+            return name;
+        }
+
+        /**
+         * 只识别普通标识符和`引号，双引号以及带``转义的名字交给druid
+         */
+        private String name0() {
+            if (pos >= length) {
+                return null;
+            }
+
+            char c = sql.charAt(pos);
+            if (c == '`') {
+                int end = sql.indexOf('`', pos + 1);
+                if (end <= pos + 1 || (end + 1 < length && sql.charAt(end + 1) == '`')) {
+                    return null;
+                }
+                String name = sql.substring(pos + 1, end);
+                pos = end + 1;
+                return name;
+            } else if (isIdentifierPart(c) && !(c >= '0' && c <= '9')) {
+                int end = pos + 1;
+                while (end < length && isIdentifierPart(sql.charAt(end))) {
+                    end++;
+                }
+                String name = sql.substring(pos, end);
+                pos = end;
+                return name;
+            }
+            return null;
+        }
+
+        /**
+         * 检查剩余部分不存在第二条语句，跳过字符串和注释里的分号
+         */
+        boolean singleStatement() {
+            while (pos < length) {
+                char c = sql.charAt(pos);
+                if (c == '\'' || c == '"' || c == '`') {
+                    pos = skipQuoted(c);
+                    if (pos < 0) {
+                        return false;
+                    }
+                } else if (c == ';') {
+                    pos++;
+                    skip();
+                    if (failed || (pos < length && sql.charAt(pos) != ';')) {
+                        return false;
+                    }
+                } else if (c == '/' && pos + 1 < length && sql.charAt(pos + 1) == '*') {
+                    int end = sql.indexOf("*/", pos + 2);
+                    if (end < 0) {
+                        return false;
+                    }
+                    pos = end + 2;
+                } else if (c == '#' || isDashComment(pos)) {
+                    skipLine();
+                } else {
+                    pos++;
+                }
+            }
+            return true;
+        }
+
+        private int skipQuoted(char quote) {
+            int i = pos + 1;
+            while (i < length) {
+                char c = sql.charAt(i);
+                if (c == '\\' && quote != '`') {
+                    i += 2;
+                } else if (c == quote) {
+                    if (i + 1 < length && sql.charAt(i + 1) == quote) {
+                        i += 2;
+                    } else {
+                        return i + 1;
+                    }
+                } else {
+                    i++;
+                }
+            }
+            return -1;
+        }
+
+        private boolean isDashComment(int i) {
+            // mysql的--注释后面必须跟空白字符
+            return sql.charAt(i) == '-' && i + 1 < length && sql.charAt(i + 1) == '-'
+                   && (i + 2 >= length || Character.isWhitespace(sql.charAt(i + 2)));
+        }
+
+        private void skipLine() {
+            int end = sql.indexOf('\n', pos);
+            pos = end < 0 ? length : end + 1;
+        }
+
+        private static boolean isIdentifierPart(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_'
+                   || c == '$' || c >= 0x80;
+        }
+    }
+}
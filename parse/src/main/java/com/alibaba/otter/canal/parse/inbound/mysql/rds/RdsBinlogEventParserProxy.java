@@ -64,6 +64,8 @@ public class RdsBinlogEventParserProxy extends MysqlEventParser {
             rdsLocalBinlogEventParser.setEventFilter(this.eventFilter);
             rdsLocalBinlogEventParser.setMasterPosition(this.masterPosition);
             rdsLocalBinlogEventParser.setTransactionSize(this.transactionSize);
+            rdsLocalBinlogEventParser.setLargeTransactionSize(this.largeTransactionSize);
+            rdsLocalBinlogEventParser.setLargeTransactionSpoolDir(this.largeTransactionSpoolDir);
             rdsLocalBinlogEventParser.setUrl(this.rdsOpenApiUrl);
             rdsLocalBinlogEventParser.setAccesskey(this.accesskey);
             rdsLocalBinlogEventParser.setSecretkey(this.secretkey);
@@ -74,6 +76,8 @@ public class RdsBinlogEventParserProxy extends MysqlEventParser {
             rdsLocalBinlogEventParser.setParallel(this.parallel);
             rdsLocalBinlogEventParser.setParallelBufferSize(this.parallelBufferSize);
             rdsLocalBinlogEventParser.setParallelThreadSize(this.parallelThreadSize);
+            rdsLocalBinlogEventParser.setParallelAdaptive(this.parallelAdaptive);
+            rdsLocalBinlogEventParser.setParallelMinThreadSize(this.parallelMinThreadSize);
             rdsLocalBinlogEventParser.setFinishListener(() -> executorService.execute(() -> {
                 rdsLocalBinlogEventParser.stop();
                 // empty the dump error count,or will go into local binlog mode again,with error
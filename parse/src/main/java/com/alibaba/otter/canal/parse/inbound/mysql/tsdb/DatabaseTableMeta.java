@@ -2,6 +2,7 @@ package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,11 +18,11 @@ import java.util.regex.Pattern;
 import org.apache.commons.beanutils.BeanUtils;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
-import com.alibaba.druid.sql.repository.Schema;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.otter.canal.filter.CanalEventFilter;
@@ -47,32 +48,37 @@ import com.alibaba.otter.canal.protocol.position.EntryPosition;
  */
 public class DatabaseTableMeta implements TableMetaTSDB {
 
-    public static final EntryPosition       INIT_POSITION       = new EntryPosition("0", 0L, -2L, -1L);
-    private static Logger                   logger              = LoggerFactory.getLogger(DatabaseTableMeta.class);
-    private static Pattern                  pattern             = Pattern.compile("Duplicate entry '.*' for key '*'");
-    private static Pattern                  h2Pattern           = Pattern.compile("Unique index or primary key violation");
-    private static ScheduledExecutorService scheduler           = Executors.newSingleThreadScheduledExecutor(r -> {
-                                                                    Thread thread = new Thread(r,
-                                                                        "[scheduler-table-meta-snapshot]");
-                                                                    thread.setDaemon(true);
-                                                                    return thread;
-                                                                });
-    private ReadWriteLock                   lock                = new ReentrantReadWriteLock();
-    private AtomicBoolean                   initialized         = new AtomicBoolean(false);
+    public static final EntryPosition       INIT_POSITION         = new EntryPosition("0", 0L, -2L, -1L);
+    public static final String              DELTA_SNAPSHOT        = "delta";
+    private static Logger                   logger                = LoggerFactory.getLogger(DatabaseTableMeta.class);
+    private static Pattern                  pattern               = Pattern.compile("Duplicate entry '.*' for key '*'");
+    private static Pattern                  h2Pattern             = Pattern.compile("Unique index or primary key violation");
+    private static ScheduledExecutorService scheduler             = Executors.newSingleThreadScheduledExecutor(r -> {
+                                                                      Thread thread = new Thread(r,
+                                                                          "[scheduler-table-meta-snapshot]");
+                                                                      thread.setDaemon(true);
+                                                                      return thread;
+                                                                  });
+    private ReadWriteLock                   lock                  = new ReentrantReadWriteLock();
+    private AtomicBoolean                   initialized           = new AtomicBoolean(false);
     private String                          destination;
     private MemoryTableMeta                 memoryTableMeta;
-    private volatile MysqlConnection        connection;                                                                    // 查询meta信息的链接
+    private volatile MysqlConnection        connection;                                                                      // 查询meta信息的链接
     private CanalEventFilter                filter;
     private CanalEventFilter                blackFilter;
-    private Map<String, List<String>>       fieldFilterMap      = new HashMap<>();
-    private Map<String, List<String>>       fieldBlackFilterMap = new HashMap<>();
+    private Map<String, List<String>>       fieldFilterMap        = new HashMap<>();
+    private Map<String, List<String>>       fieldBlackFilterMap   = new HashMap<>();
     private EntryPosition                   lastPosition;
     private boolean                         hasNewDdl;
+    private boolean                         hasNewDeltaDdl;
     private MetaHistoryDAO                  metaHistoryDAO;
     private MetaSnapshotDAO                 metaSnapshotDAO;
-    private int                             snapshotInterval    = 24;
-    private int                             snapshotExpire      = 360;
+    private int                             snapshotInterval      = 24;
+    private int                             snapshotExpire        = 360;
+    private int                             snapshotDeltaInterval = 60;
     private ScheduledFuture<?>              scheduleSnapshotFuture;
+    private ScheduledFuture<?>              scheduleDeltaSnapshotFuture;
+    private int                             lowerCaseNames        = -1;                                                      // lower_case_table_names，-1代表还未查询
 
     public DatabaseTableMeta(){
 
@@ -82,7 +88,7 @@ public class DatabaseTableMeta implements TableMetaTSDB {
     public boolean init(final String destination) {
         if (initialized.compareAndSet(false, true)) {
             this.destination = destination;
-            this.memoryTableMeta = new MemoryTableMeta();
+            this.memoryTableMeta = newMemoryTableMeta();
 
             // 24小时生成一份snapshot
             if (snapshotInterval > 0) {
@@ -105,6 +111,18 @@ public class DatabaseTableMeta implements TableMetaTSDB {
                     }
                 }, snapshotInterval, snapshotInterval, TimeUnit.HOURS);
             }
+
+            // 两次全量snapshot之间，按分钟级别生成增量snapshot，只包含变更过的表
+            if (snapshotInterval > 0 && snapshotDeltaInterval > 0) {
+                scheduleDeltaSnapshotFuture = scheduler.scheduleWithFixedDelay(() -> {
+                    try {
+                        MDC.put("destination", destination);
+                        applyDeltaSnapshotToDB(lastPosition);
+                    } catch (Throwable e) {
+                        logger.error("scheudle applyDeltaSnapshotToDB faield", e);
+                    }
+                }, snapshotDeltaInterval, snapshotDeltaInterval, TimeUnit.MINUTES);
+            }
         }
         return true;
     }
@@ -127,6 +145,10 @@ public class DatabaseTableMeta implements TableMetaTSDB {
         if (scheduleSnapshotFuture != null) {
             scheduleSnapshotFuture.cancel(false);
         }
+
+        if (scheduleDeltaSnapshotFuture != null) {
+            scheduleDeltaSnapshotFuture.cancel(false);
+        }
     }
 
     @Override
@@ -147,6 +169,7 @@ public class DatabaseTableMeta implements TableMetaTSDB {
             if (memoryTableMeta.apply(position, schema, ddl, extra)) {
                 this.lastPosition = position;
                 this.hasNewDdl = true;
+                this.hasNewDeltaDdl = true;
                 // 同步每次变更给远程做历史记录
                 return applyHistoryToDB(position, schema, ddl, extra);
             } else {
@@ -160,7 +183,7 @@ public class DatabaseTableMeta implements TableMetaTSDB {
     @Override
     public boolean rollback(EntryPosition position) {
         // 每次rollback需要重新构建一次memory data
-        this.memoryTableMeta = new MemoryTableMeta();
+        this.memoryTableMeta = newMemoryTableMeta();
         boolean flag = false;
         EntryPosition snapshotPosition = buildMemFromSnapshot(position);
         if (snapshotPosition != null) {
@@ -279,7 +302,7 @@ public class DatabaseTableMeta implements TableMetaTSDB {
      */
     private boolean applySnapshotToDB(EntryPosition position, boolean init) {
         // 获取一份快照
-        Map<String, String> schemaDdls = null;
+        List<TableMeta> tables = null;
         lock.readLock().lock();
         try {
             if (!init && !hasNewDdl) {
@@ -287,28 +310,76 @@ public class DatabaseTableMeta implements TableMetaTSDB {
                 return false;
             }
             this.hasNewDdl = false;
-            schemaDdls = memoryTableMeta.snapshot();
+            this.hasNewDeltaDdl = false;
+            // 全量快照之后重新记录增量变更
+            memoryTableMeta.clearChangedTables();
+            tables = memoryTableMeta.snapshotTables();
         } finally {
             lock.readLock().unlock();
         }
 
-        MemoryTableMeta tmpMemoryTableMeta = new MemoryTableMeta();
-        for (Map.Entry<String, String> entry : schemaDdls.entrySet()) {
-            tmpMemoryTableMeta.apply(position, entry.getKey(), entry.getValue(), null);
+        boolean result = false;
+        try {
+            result = applySnapshotToDB(position, tables, Collections.emptyList(), null);
+        } finally {
+            if (!result) {
+                // 全量快照没有写入成功，后续的增量快照无法基于它构建，下一次增量时重新生成全量
+                memoryTableMeta.markAllChanged();
+            }
         }
+        return result;
+    }
+
+    /**
+     * 发布增量数据到console上，只包含上一次全量快照之后变更过的表
+     */
+    private boolean applyDeltaSnapshotToDB(EntryPosition position) {
+        List<TableMeta> tables = new ArrayList<>();
+        List<List<String>> droppedTables = new ArrayList<>();
+        List<List<String>> changedTables = null;
+        lock.readLock().lock();
+        try {
+            if (position == null || !hasNewDeltaDdl) {
+                return false;
+            }
+
+            changedTables = memoryTableMeta.getChangedTables();
+            if (changedTables != null) {
+                this.hasNewDeltaDdl = false;
+                for (List<String> name : changedTables) {
+                    TableMeta tableMeta = memoryTableMeta.snapshotTable(name.get(0), name.get(1));
+                    if (tableMeta != null) {
+                        tables.add(tableMeta);
+                    } else {
+                        droppedTables.add(name);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (changedTables == null) {
+            // 存在无法识别影响范围的DDL，直接生成全量快照
+            return applySnapshotToDB(position, true);
+        } else if (changedTables.isEmpty()) {
+            return false;
+        }
+        return applySnapshotToDB(position, tables, droppedTables, DELTA_SNAPSHOT);
+    }
 
-        // 基于临时内存对象进行对比
+    private boolean applySnapshotToDB(EntryPosition position, List<TableMeta> tables, List<List<String>> droppedTables,
+                                      String extra) {
+        // 基于解析后的表结构进行对比
         boolean compareAll = true;
-        for (Schema schema : tmpMemoryTableMeta.getRepository().getSchemas()) {
-            for (String table : schema.showTables()) {
-                String fullName = schema.getName() + "." + table;
-                if (blackFilter == null || !blackFilter.filter(fullName)) {
-                    if (filter == null || filter.filter(fullName)) {
-                        // issue : https://github.com/alibaba/canal/issues/1168
-                        // 在生成snapshot时重新过滤一遍
-                        if (!compareTableMetaDbAndMemory(connection, tmpMemoryTableMeta, schema.getName(), table)) {
-                            compareAll = false;
-                        }
+        for (TableMeta tableMeta : tables) {
+            String fullName = tableMeta.getFullName();
+            if (blackFilter == null || !blackFilter.filter(fullName)) {
+                if (filter == null || filter.filter(fullName)) {
+                    // issue : https://github.com/alibaba/canal/issues/1168
+                    // 在生成snapshot时重新过滤一遍
+                    if (!compareTableMetaDbAndMemory(connection, tableMeta)) {
+                        compareAll = false;
                     }
                 }
             }
@@ -321,7 +392,8 @@ public class DatabaseTableMeta implements TableMetaTSDB {
             content.put("binlogOffest", String.valueOf(position.getPosition()));
             content.put("binlogMasterId", String.valueOf(position.getServerId()));
             content.put("binlogTimestamp", String.valueOf(position.getTimestamp()));
-            content.put("data", JSON.toJSONString(schemaDdls));
+            content.put("data", TableMetaSnapshotCodec.encode(tables, droppedTables));
+            content.put("extra", extra);
             if (content.isEmpty()) {
                 throw new RuntimeException("apply failed caused by content is empty in applySnapshotToDB");
             }
@@ -334,6 +406,10 @@ public class DatabaseTableMeta implements TableMetaTSDB {
                 if (isUkDuplicateException(e)) {
                     // 忽略掉重复的位点
                     logger.info("dup apply snapshot use position : " + position + " , just ignore");
+                    if (extra == null) {
+                        // 同一位点已经存在增量快照，本次的全量快照没有真正写入，后续增量需要重新基于全量生成
+                        memoryTableMeta.markAllChanged();
+                    }
                 } else {
                     throw new CanalParseException("apply failed caused by : " + e.getMessage(), e);
                 }
@@ -345,9 +421,9 @@ public class DatabaseTableMeta implements TableMetaTSDB {
         return false;
     }
 
-    private boolean compareTableMetaDbAndMemory(MysqlConnection connection, MemoryTableMeta memoryTableMeta,
-                                                final String schema, final String table) {
-        TableMeta tableMetaFromMem = memoryTableMeta.find(schema, table);
+    private boolean compareTableMetaDbAndMemory(MysqlConnection connection, TableMeta tableMetaFromMem) {
+        final String schema = tableMetaFromMem.getSchema();
+        final String table = tableMetaFromMem.getTable();
 
         TableMeta tableMetaFromDB = new TableMeta();
         tableMetaFromDB.setSchema(schema);
@@ -402,17 +478,21 @@ public class DatabaseTableMeta implements TableMetaTSDB {
                 binlogOffest == null ? 0l : binlogOffest,
                 binlogTimestamp == null ? 0l : binlogTimestamp,
                 Long.valueOf(binlogMasterId == null ? "-2" : binlogMasterId));
-            // data存储为Map<String,String>，每个分库一套建表
-            String sqlData = snapshotDO.getData();
-            JSONObject jsonObj = JSON.parseObject(sqlData);
-            for (Map.Entry entry : jsonObj.entrySet()) {
-                // 记录到内存
-                if (!memoryTableMeta.apply(snapshotPosition,
-                    ObjectUtils.toString(entry.getKey()),
-                    ObjectUtils.toString(entry.getValue()),
-                    null)) {
+            if (TableMetaSnapshotCodec.isBinary(snapshotDO.getData()) && DELTA_SNAPSHOT.equals(snapshotDO.getExtra())) {
+                // 增量快照需要先加载其之前的全量快照
+                MetaSnapshotDO fullSnapshotDO = metaSnapshotDAO.findFullByTimestamp(destination,
+                    snapshotPosition.getTimestamp() + 1);
+                if (fullSnapshotDO == null) {
+                    throw new CanalParseException("can't find full snapshot before delta snapshot : " + snapshotDO);
+                }
+                if (!applySnapshotOnMemory(snapshotPosition, fullSnapshotDO.getData(), false)) {
+                    return null;
+                }
+                if (!applySnapshotOnMemory(snapshotPosition, snapshotDO.getData(), true)) {
                     return null;
                 }
+            } else if (!applySnapshotOnMemory(snapshotPosition, snapshotDO.getData(), false)) {
+                return null;
             }
 
             return snapshotPosition;
@@ -421,6 +501,51 @@ public class DatabaseTableMeta implements TableMetaTSDB {
         }
     }
 
+    private boolean applySnapshotOnMemory(EntryPosition snapshotPosition, String sqlData, boolean delta) {
+        if (TableMetaSnapshotCodec.isBinary(sqlData)) {
+            // 二进制格式直接加载解析后的表结构
+            memoryTableMeta.applySnapshot(TableMetaSnapshotCodec.decode(sqlData), delta);
+            return true;
+        }
+
+        // data存储为Map<String,String>，每个分库一套建表
+        JSONObject jsonObj = JSON.parseObject(sqlData);
+        for (Map.Entry entry : jsonObj.entrySet()) {
+            // 记录到内存
+            if (!memoryTableMeta.apply(snapshotPosition,
+                ObjectUtils.toString(entry.getKey()),
+                ObjectUtils.toString(entry.getValue()),
+                null)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private MemoryTableMeta newMemoryTableMeta() {
+        MemoryTableMeta memoryTableMeta = new MemoryTableMeta();
+        memoryTableMeta.setTrackChanges(snapshotInterval > 0 && snapshotDeltaInterval > 0);
+        memoryTableMeta.setLowerCaseNames(loadLowerCaseNames());
+        return memoryTableMeta;
+    }
+
+    /**
+     * 查询一次lower_case_table_names，查询失败时按大小写敏感处理
+     */
+    private int loadLowerCaseNames() {
+        if (lowerCaseNames < 0 && connection != null) {
+            try {
+                ResultSetPacket packet = connection.query("show variables like 'lower_case_table_names'");
+                List<String> fields = packet.getFieldValues();
+                lowerCaseNames = fields.size() > 1 ? NumberUtils.toInt(fields.get(1), 0) : 0;
+            } catch (Throwable e) {
+                logger.warn("load lower_case_table_names failed, treat table names as case sensitive", e);
+                return 0;
+            }
+        }
+        return Math.max(lowerCaseNames, 0);
+    }
+
     private boolean applyHistoryOnMemory(EntryPosition position, EntryPosition rollbackPosition) {
         try {
             List<MetaHistoryDO> metaHistoryDOList = metaHistoryDAO.findByTimestamp(destination,
@@ -678,6 +803,14 @@ public class DatabaseTableMeta implements TableMetaTSDB {
         this.snapshotExpire = snapshotExpire;
     }
 
+    public int getSnapshotDeltaInterval() {
+        return snapshotDeltaInterval;
+    }
+
+    public void setSnapshotDeltaInterval(int snapshotDeltaInterval) {
+        this.snapshotDeltaInterval = snapshotDeltaInterval;
+    }
+
     public MysqlConnection getConnection() {
         return connection;
     }
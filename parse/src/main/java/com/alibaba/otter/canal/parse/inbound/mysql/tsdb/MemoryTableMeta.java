@@ -1,10 +1,13 @@
 package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -37,7 +40,9 @@ import com.alibaba.druid.sql.repository.SchemaRepository;
 import com.alibaba.druid.util.JdbcConstants;
 import com.alibaba.otter.canal.parse.inbound.TableMeta;
 import com.alibaba.otter.canal.parse.inbound.TableMeta.FieldMeta;
+import com.alibaba.otter.canal.parse.inbound.mysql.ddl.DdlResult;
 import com.alibaba.otter.canal.parse.inbound.mysql.ddl.DruidDdlParser;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
 import com.alibaba.otter.canal.protocol.position.EntryPosition;
 
 /**
@@ -48,9 +53,19 @@ import com.alibaba.otter.canal.protocol.position.EntryPosition;
  */
 public class MemoryTableMeta implements TableMetaTSDB {
 
-    private Logger                       logger     = LoggerFactory.getLogger(MemoryTableMeta.class);
-    private Map<List<String>, TableMeta> tableMetas = new ConcurrentHashMap<>();
-    private SchemaRepository             repository = new SchemaRepository(JdbcConstants.MYSQL);
+    private static Pattern                  referencePattern = Pattern.compile("\\s(like|select)\\s",
+                                                                 Pattern.CASE_INSENSITIVE);
+    private Logger                          logger           = LoggerFactory.getLogger(MemoryTableMeta.class);
+    private Map<List<String>, TableMeta>    tableMetas       = new ConcurrentHashMap<>();
+    private SchemaRepository                repository       = new SchemaRepository(JdbcConstants.MYSQL);
+    // 从二进制快照加载、还未交给druid解析的表结构，key见tableKey，只有DDL涉及到时才会按建表语句解析进repository
+    private Map<List<String>, TableMeta>    snapshotMetas    = new ConcurrentHashMap<>();
+    // 记录上一次全量快照之后变更过的表，key见tableKey，value为原始的schema/table
+    private Map<List<String>, List<String>> changedTables    = new HashMap<>();
+    private boolean                         changedAll       = false;
+    private volatile boolean                trackChanges     = false;
+    // 对应mysql的lower_case_table_names，为0时库表名大小写敏感
+    private volatile int                    lowerCaseNames   = 0;
 
     public MemoryTableMeta(){
     }
@@ -63,24 +78,30 @@ public class MemoryTableMeta implements TableMetaTSDB {
     @Override
     public void destory() {
         tableMetas.clear();
+        snapshotMetas.clear();
     }
 
     public boolean apply(EntryPosition position, String schema, String ddl, String extra) {
         tableMetas.clear();
         synchronized (this) {
+            // druid暂时flush privileges语法解析有问题
+            boolean supported = !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "flush")
+                                && !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "grant")
+                                && !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "revoke")
+                                && !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "create user")
+                                && !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "alter user")
+                                && !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "drop user")
+                                && !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "create database");
+            if (supported && (trackChanges || !snapshotMetas.isEmpty())) {
+                prepareAffectedTables(schema, ddl);
+            }
+
             if (StringUtils.isNotEmpty(schema)) {
                 repository.setDefaultSchema(structureSchema(schema));
             }
 
             try {
-                // druid暂时flush privileges语法解析有问题
-                if (!StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "flush")
-                    && !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "grant")
-                    && !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "revoke")
-                    && !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "create user")
-                    && !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "alter user")
-                    && !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "drop user")
-                    && !StringUtils.startsWithIgnoreCase(StringUtils.trim(ddl), "create database")) {
+                if (supported) {
                     repository.console(ddl);
                 }
             } catch (Throwable e) {
@@ -104,6 +125,13 @@ public class MemoryTableMeta implements TableMetaTSDB {
         if (tableMeta == null) {
             synchronized (this) {
                 tableMeta = tableMetas.get(keys);
+                if (tableMeta == null && !snapshotMetas.isEmpty() && schema != null && table != null) {
+                    TableMeta snapshotMeta = snapshotMetas.get(tableKey(schema, table));
+                    if (snapshotMeta != null) {
+                        tableMeta = new TableMeta(schema, table, snapshotMeta.getFields());
+                        tableMetas.put(keys, tableMeta);
+                    }
+                }
                 if (tableMeta == null) {
                     Schema schemaRep = repository.findSchema(schema);
                     if (schemaRep == null) {
@@ -154,9 +182,229 @@ public class MemoryTableMeta implements TableMetaTSDB {
             schemaDdls.put(schema.getName(), data.toString());
         }
 
+        for (TableMeta tableMeta : snapshotMetas.values()) {
+            String data = schemaDdls.get(tableMeta.getSchema());
+            schemaDdls.put(tableMeta.getSchema(),
+                (data == null ? "" : data) + tableMeta.getDdl() + "; \n");
+        }
         return schemaDdls;
     }
 
+    /**
+     * 导出所有表解析后的结构(包含建表DDL)，用于生成二进制快照
+     */
+    public synchronized List<TableMeta> snapshotTables() {
+        List<TableMeta> tables = new ArrayList<>(snapshotMetas.values());
+        for (Schema schema : repository.getSchemas()) {
+            for (String table : schema.showTables()) {
+                TableMeta tableMeta = snapshotTable(DruidDdlParser.unescapeName(schema.getName()), table);
+                if (tableMeta != null) {
+                    tables.add(tableMeta);
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * 导出单张表解析后的结构(包含建表DDL)，表不存在时返回null
+     */
+    public synchronized TableMeta snapshotTable(String schema, String table) {
+        TableMeta snapshotMeta = snapshotMetas.get(tableKey(schema, table));
+        if (snapshotMeta != null) {
+            return snapshotMeta;
+        }
+
+        Schema schemaRep = repository.findSchema(schema);
+        if (schemaRep == null) {
+            return null;
+        }
+        SchemaObject data = schemaRep.findTable(table);
+        if (data == null || data.getStatement() == null) {
+            return null;
+        }
+        TableMeta tableMeta = find(schema, table);
+        if (tableMeta == null) {
+            return null;
+        }
+
+        StringBuffer ddl = new StringBuffer(1024);
+        data.getStatement().output(ddl);
+        TableMeta result = new TableMeta(schema, table, tableMeta.getFields());
+        result.setDdl(ddl.toString());
+        return result;
+    }
+
+    /**
+     * 加载二进制快照，表结构直接进入内存，不需要druid解析
+     *
+     * @param delta 是否为增量快照，增量快照中的表会继续记录为变更，保证下一次增量快照仍然是基于同一份全量快照的累积结果
+     */
+    public void applySnapshot(TableMetaSnapshotCodec.Snapshot snapshot, boolean delta) {
+        tableMetas.clear();
+        synchronized (this) {
+            for (List<String> name : snapshot.getDroppedTables()) {
+                removeTable(name.get(0), name.get(1));
+                if (delta && trackChanges) {
+                    changedTables.put(tableKey(name.get(0), name.get(1)), name);
+                }
+            }
+
+            for (TableMeta tableMeta : snapshot.getTables()) {
+                removeTable(tableMeta.getSchema(), tableMeta.getTable());
+                List<String> key = tableKey(tableMeta.getSchema(), tableMeta.getTable());
+                snapshotMetas.put(key, tableMeta);
+                if (delta && trackChanges) {
+                    changedTables.put(key, Arrays.asList(tableMeta.getSchema(), tableMeta.getTable()));
+                }
+            }
+        }
+    }
+
+    /**
+     * 上一次全量快照之后变更过的表，返回null代表存在无法识别影响范围的DDL，需要生成全量快照
+     */
+    public synchronized List<List<String>> getChangedTables() {
+        if (changedAll) {
+            return null;
+        }
+        return new ArrayList<>(changedTables.values());
+    }
+
+    public synchronized void clearChangedTables() {
+        changedTables.clear();
+        changedAll = false;
+    }
+
+    public synchronized void markAllChanged() {
+        changedAll = true;
+    }
+
+    public void setTrackChanges(boolean trackChanges) {
+        this.trackChanges = trackChanges;
+    }
+
+    public void setLowerCaseNames(int lowerCaseNames) {
+        this.lowerCaseNames = lowerCaseNames;
+    }
+
+    /**
+     * 解析DDL涉及的表，把涉及到的快照表结构提前解析进repository，同时记录变更
+     */
+    private void prepareAffectedTables(String schema, String ddl) {
+        List<List<String>> affected = new ArrayList<>();
+        List<String> affectedSchemas = new ArrayList<>();
+        boolean unknown = false;
+        List<DdlResult> results;
+        try {
+            results = DruidDdlParser.parse(ddl, schema);
+        } catch (Throwable e) {
+            logger.warn("parse faield : " + ddl, e);
+            results = new ArrayList<>();
+            unknown = true;
+        }
+        for (DdlResult result : results) {
+            for (DdlResult item = result; item != null; item = item.getRenameTableResult()) {
+                if (item.getType() == EventType.CREATE && referencePattern.matcher(ddl).find()) {
+                    // create table like / create table as select 会引用其他表
+                    unknown = true;
+                }
+                if (item.getOriTableName() != null) {
+                    unknown |= !addAffected(affected, item.getOriSchemaName(), item.getOriTableName());
+                }
+                if (item.getTableName() != null) {
+                    unknown |= !addAffected(affected, item.getSchemaName(), item.getTableName());
+                } else if (item.getSchemaName() != null) {
+                    // drop database之类的库级别变更
+                    affectedSchemas.add(item.getSchemaName());
+                } else {
+                    unknown = true;
+                }
+            }
+        }
+
+        if (unknown) {
+            materializeSchema(null);
+            if (trackChanges) {
+                changedAll = true;
+            }
+            return;
+        }
+
+        for (String affectedSchema : affectedSchemas) {
+            materializeSchema(affectedSchema);
+            Schema schemaRep = repository.findSchema(affectedSchema);
+            if (schemaRep != null) {
+                for (String table : schemaRep.showTables()) {
+                    addAffected(affected, affectedSchema, table);
+                }
+            }
+        }
+
+        for (List<String> name : affected) {
+            TableMeta snapshotMeta = snapshotMetas.remove(tableKey(name.get(0), name.get(1)));
+            if (snapshotMeta != null) {
+                materialize(snapshotMeta);
+            }
+            if (trackChanges) {
+                changedTables.put(tableKey(name.get(0), name.get(1)), name);
+            }
+        }
+    }
+
+    private boolean addAffected(List<List<String>> affected, String schema, String table) {
+        if (schema == null) {
+            return false;
+        }
+        affected.add(Arrays.asList(schema, table));
+        return true;
+    }
+
+    /**
+     * 将快照中的表结构解析进repository，schema为null代表全部
+     */
+    private void materializeSchema(String schema) {
+        Iterator<TableMeta> iterator = snapshotMetas.values().iterator();
+        while (iterator.hasNext()) {
+            TableMeta snapshotMeta = iterator.next();
+            if (schema == null || StringUtils.equals(foldCase(schema), foldCase(snapshotMeta.getSchema()))) {
+                iterator.remove();
+                materialize(snapshotMeta);
+            }
+        }
+    }
+
+    private void materialize(TableMeta snapshotMeta) {
+        Schema defaultSchema = repository.getDefaultSchema();
+        try {
+            repository.setDefaultSchema(structureSchema(snapshotMeta.getSchema()));
+            repository.console(snapshotMeta.getDdl());
+        } catch (Throwable e) {
+            logger.warn("parse faield : " + snapshotMeta.getDdl(), e);
+        } finally {
+            repository.setDefaultSchema(defaultSchema);
+        }
+    }
+
+    private void removeTable(String schema, String table) {
+        snapshotMetas.remove(tableKey(schema, table));
+        Schema schemaRep = repository.findSchema(schema);
+        if (schemaRep != null && schemaRep.findTable(table) != null) {
+            repository.console("drop table " + structureSchema(schema) + ".`" + table + "`");
+        }
+    }
+
+    /**
+     * 库表名的key，只有lower_case_table_names不为0时才忽略大小写
+     */
+    private List<String> tableKey(String schema, String table) {
+        return Arrays.asList(foldCase(schema), foldCase(table));
+    }
+
+    private String foldCase(String name) {
+        return lowerCaseNames == 0 ? name : StringUtils.lowerCase(name);
+    }
+
     private String structureSchema(String schema) {
         if (schema.startsWith("`") && schema.endsWith("`")) {
             return schema;
@@ -0,0 +1,166 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.alibaba.otter.canal.parse.inbound.TableMeta;
+import com.alibaba.otter.canal.parse.inbound.TableMeta.FieldMeta;
+
+/**
+ * 表结构快照的二进制编码，直接保存解析后的TableMeta/FieldMeta，恢复时不需要再走一遍druid的DDL解析
+ *
+ * <pre>
+ * 格式: prefix + base64(deflate(version, tables, dropped tables))
+ * 1. 每张表记录schema/table/建表DDL以及所有字段，建表DDL只在后续有DDL变更该表时才会交给druid解析
+ * 2. dropped tables只在增量快照中出现，记录相对于全量快照已经被删除的表
+ * 3. 存储在meta_snapshot.data字段中，和原有的json格式通过prefix区分，h2/mysql的表结构都不需要调整
+ * </pre>
+ */
+public class TableMetaSnapshotCodec {
+
+    public static final String PREFIX       = "bin:";
+    private static final byte  VERSION      = 1;
+    private static final int   NULLABLE     = 1;
+    private static final int   KEY          = 1 << 1;
+    private static final int   UNIQUE       = 1 << 2;
+
+    public static boolean isBinary(String data) {
+        return data != null && data.startsWith(PREFIX);
+    }
+
+    public static String encode(Collection<TableMeta> tables, Collection<List<String>> droppedTables) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeByte(VERSION);
+            out.writeInt(tables.size());
+            for (TableMeta table : tables) {
+                writeString(out, table.getSchema());
+                writeString(out, table.getTable());
+                writeString(out, table.getDdl());
+                List<FieldMeta> fields = table.getFields();
+                out.writeInt(fields.size());
+                for (FieldMeta field : fields) {
+                    writeString(out, field.getColumnName());
+                    writeString(out, field.getColumnType());
+                    writeString(out, field.getDefaultValue());
+                    writeString(out, field.getExtra());
+                    int flags = 0;
+                    flags |= field.isNullable() ? NULLABLE : 0;
+                    flags |= field.isKey() ? KEY : 0;
+                    flags |= field.isUnique() ? UNIQUE : 0;
+                    out.writeByte(flags);
+                }
+            }
+
+            out.writeInt(droppedTables.size());
+            for (List<String> name : droppedTables) {
+                writeString(out, name.get(0));
+                writeString(out, name.get(1));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("encode table meta snapshot failed", e);
+        }
+
+        return PREFIX + Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    public static Snapshot decode(String data) {
+        if (!isBinary(data)) {
+            throw new IllegalArgumentException("not a binary table meta snapshot");
+        }
+
+        byte[] bytes = Base64.getDecoder().decode(data.substring(PREFIX.length()));
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("unsupported table meta snapshot version : " + version);
+            }
+
+            int tableSize = in.readInt();
+            List<TableMeta> tables = new ArrayList<>(tableSize);
+            for (int i = 0; i < tableSize; i++) {
+                String schema = readString(in);
+                String table = readString(in);
+                String ddl = readString(in);
+                int fieldSize = in.readInt();
+                List<FieldMeta> fields = new ArrayList<>(fieldSize);
+                for (int j = 0; j < fieldSize; j++) {
+                    FieldMeta field = new FieldMeta();
+                    field.setColumnName(readString(in));
+                    field.setColumnType(readString(in));
+                    field.setDefaultValue(readString(in));
+                    field.setExtra(readString(in));
+                    int flags = in.readByte();
+                    field.setNullable((flags & NULLABLE) != 0);
+                    field.setKey((flags & KEY) != 0);
+                    field.setUnique((flags & UNIQUE) != 0);
+                    fields.add(field);
+                }
+
+                TableMeta tableMeta = new TableMeta(schema, table, fields);
+                tableMeta.setDdl(ddl);
+                tables.add(tableMeta);
+            }
+
+            int droppedSize = in.readInt();
+            List<List<String>> droppedTables = new ArrayList<>(droppedSize);
+            for (int i = 0; i < droppedSize; i++) {
+                droppedTables.add(Arrays.asList(readString(in), readString(in)));
+            }
+            return new Snapshot(tables, droppedTables);
+        } catch (IOException e) {
+            throw new IllegalStateException("decode table meta snapshot failed", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        // writeUTF有64k的长度限制，超长的建表语句需要自行处理
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static class Snapshot {
+
+        private final List<TableMeta>    tables;
+        private final List<List<String>> droppedTables;
+
+        public Snapshot(List<TableMeta> tables, List<List<String>> droppedTables){
+            this.tables = tables;
+            this.droppedTables = droppedTables;
+        }
+
+        public List<TableMeta> getTables() {
+            return tables;
+        }
+
+        public List<List<String>> getDroppedTables() {
+            return droppedTables;
+        }
+    }
+}
@@ -28,6 +28,16 @@ public class MetaSnapshotDAO extends MetaBaseDAO {
         return getSqlSession().getMapper(MetaSnapshotMapper.class).findByTimestamp(params);
     }
 
+    /**
+     * 查找timestamp之前最近的一份全量快照，忽略增量快照
+     */
+    public MetaSnapshotDO findFullByTimestamp(String destination, Long timestamp) {
+        HashMap params = Maps.newHashMapWithExpectedSize(2);
+        params.put("timestamp", timestamp == null ? 0L : timestamp);
+        params.put("destination", destination);
+        return getSqlSession().getMapper(MetaSnapshotMapper.class).findFullByTimestamp(params);
+    }
+
     public Integer deleteByName(String destination) {
         HashMap params = Maps.newHashMapWithExpectedSize(2);
         params.put("destination", destination);
@@ -35,11 +45,31 @@ public class MetaSnapshotDAO extends MetaBaseDAO {
     }
 
     /**
-     * 删除interval秒之前的数据
+     * 查找timestamp之后(包含)最早的一份增量快照
+     */
+    public MetaSnapshotDO findFirstDeltaByTimestamp(String destination, Long timestamp) {
+        HashMap params = Maps.newHashMapWithExpectedSize(2);
+        params.put("timestamp", timestamp == null ? 0L : timestamp);
+        params.put("destination", destination);
+        return getSqlSession().getMapper(MetaSnapshotMapper.class).findFirstDeltaByTimestamp(params);
+    }
+
+    /**
+     * 删除interval秒之前的数据，保留的增量快照所依赖的全量快照不会被删除
      */
     public Integer deleteByTimestamp(String destination, int interval) {
         HashMap params = Maps.newHashMapWithExpectedSize(2);
-        long timestamp = System.currentTimeMillis() - interval * 1000;
+        long timestamp = System.currentTimeMillis() - interval * 1000L;
+        MetaSnapshotDO deltaSnapshotDO = findFirstDeltaByTimestamp(destination, timestamp);
+        if (deltaSnapshotDO != null && deltaSnapshotDO.getBinlogTimestamp() != null) {
+            // 增量快照加载时依赖其之前最近的一份全量快照，删除范围收缩到这份全量快照之前
+            MetaSnapshotDO fullSnapshotDO = findFullByTimestamp(destination,
+                deltaSnapshotDO.getBinlogTimestamp() + 1);
+            if (fullSnapshotDO != null && fullSnapshotDO.getBinlogTimestamp() != null
+                && fullSnapshotDO.getBinlogTimestamp() < timestamp) {
+                timestamp = fullSnapshotDO.getBinlogTimestamp();
+            }
+        }
         params.put("timestamp", timestamp);
         params.put("destination", destination);
         return getSqlSession().getMapper(MetaSnapshotMapper.class).deleteByTimestamp(params);
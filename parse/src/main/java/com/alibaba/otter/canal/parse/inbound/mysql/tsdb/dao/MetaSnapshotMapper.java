@@ -6,6 +6,10 @@ public interface MetaSnapshotMapper {
 
     MetaSnapshotDO findByTimestamp(Map<String, Object> map);
 
+    MetaSnapshotDO findFullByTimestamp(Map<String, Object> map);
+
+    MetaSnapshotDO findFirstDeltaByTimestamp(Map<String, Object> map);
+
     long insert(MetaSnapshotDO metaSnapshotDO);
 
     long update(MetaSnapshotDO metaSnapshotDO);
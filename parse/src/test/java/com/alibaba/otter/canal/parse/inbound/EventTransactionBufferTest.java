@@ -1,8 +1,15 @@
 package com.alibaba.otter.canal.parse.inbound;
 
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -107,6 +114,123 @@ public class EventTransactionBufferTest {
         buffer.stop();
     }
 
+    @Test
+    public void testLargeTransactionSpool() throws Exception {
+        final int bufferSize = 16;
+        final int transactionSize = 100;
+        File spoolDir = Files.createTempDirectory("canal_spool").toFile();
+        final EventTransactionBuffer buffer = new EventTransactionBuffer();
+        final List<Integer> flushSizes = new ArrayList<>();
+        final List<Boolean> flushLarge = new ArrayList<>();
+        final List<Long> offsets = new ArrayList<>();
+        buffer.setBufferSize(bufferSize);
+        buffer.setLargeTransactionSize(20);
+        buffer.setSpoolDir(spoolDir.getPath());
+        buffer.setFlushCallback(transaction -> {
+            flushSizes.add(transaction.size());
+            flushLarge.add(buffer.isLargeTransaction());
+            for (Entry data : transaction) {
+                offsets.add(data.getHeader().getLogfileOffset());
+            }
+        });
+        buffer.start();
+
+        for (int i = 0; i < transactionSize; i++) {
+            if (i == 0) {
+                buffer.add(buildEntry("1", 1L + i, 40L + i, EntryType.TRANSACTIONBEGIN));
+            } else if (i == transactionSize - 1) {
+                buffer.add(buildEntry("1", 1L + i, 40L + i, EntryType.TRANSACTIONEND));
+            } else {
+                buffer.add(buildEntry("1", 1L + i, 40L + i));
+            }
+
+            if (i == transactionSize - 2) {
+                // 超过阈值之前按buffer大小直接输出，之后全部落盘等待事务结束
+                Assert.assertEquals(1, flushSizes.size());
+                Assert.assertTrue(buffer.isLargeTransaction());
+                Assert.assertEquals(1, spoolDir.list().length);
+            }
+        }
+
+        Assert.assertEquals(transactionSize, offsets.size());
+        for (int i = 0; i < transactionSize; i++) {
+            Assert.assertEquals(1L + i, offsets.get(i).longValue());
+        }
+        Assert.assertEquals(bufferSize, flushSizes.get(0).intValue());
+        Assert.assertFalse(flushLarge.get(0));
+        for (int i = 1; i < flushSizes.size(); i++) {
+            Assert.assertTrue(flushSizes.get(i) <= bufferSize);
+            Assert.assertTrue(flushLarge.get(i));
+        }
+        Assert.assertFalse(buffer.isLargeTransaction());
+        Assert.assertEquals(0, spoolDir.list().length);
+
+        buffer.stop();
+        spoolDir.delete();
+    }
+
+    @Test
+    public void testCleanStaleSpool() throws Exception {
+        File spoolDir = Files.createTempDirectory("canal_spool").toFile();
+        File stale = new File(spoolDir, "canal_large_transaction_1.spool");
+        File inUse = new File(spoolDir, "canal_large_transaction_2.spool");
+        File other = new File(spoolDir, "other.spool");
+        Assert.assertTrue(stale.createNewFile() && inUse.createNewFile() && other.createNewFile());
+
+        EventTransactionBuffer buffer = new EventTransactionBuffer(transaction -> {
+        });
+        buffer.setSpoolDir(spoolDir.getPath());
+        try (FileChannel channel = FileChannel.open(inUse.toPath(), StandardOpenOption.WRITE)) {
+            channel.lock();
+            // 只清理没有被锁住的遗留文件
+            buffer.start();
+            Assert.assertFalse(stale.exists());
+            Assert.assertTrue(inUse.exists());
+            Assert.assertTrue(other.exists());
+        } finally {
+            buffer.stop();
+        }
+
+        inUse.delete();
+        other.delete();
+        spoolDir.delete();
+    }
+
+    @Test
+    public void testSkipOwnSpool() throws Exception {
+        File spoolDir = Files.createTempDirectory("canal_spool").toFile();
+        EventTransactionBuffer spooling = new EventTransactionBuffer(transaction -> {
+        });
+        spooling.setBufferSize(4);
+        spooling.setLargeTransactionSize(2);
+        spooling.setSpoolDir(spoolDir.getPath());
+        spooling.start();
+        spooling.add(buildEntry("1", 1L, 40L, EntryType.TRANSACTIONBEGIN));
+        for (int i = 1; i < 10; i++) {
+            spooling.add(buildEntry("1", 1L + i, 40L + i));
+        }
+        File[] files = spoolDir.listFiles();
+        Assert.assertEquals(1, files.length);
+
+        // 同一进程内另一个parser启动时不能删除正在使用的落盘文件，也不能释放它的文件锁
+        EventTransactionBuffer other = new EventTransactionBuffer(transaction -> {
+        });
+        other.setSpoolDir(spoolDir.getPath());
+        other.start();
+        Assert.assertTrue(files[0].exists());
+        try (FileChannel channel = FileChannel.open(files[0].toPath(), StandardOpenOption.WRITE)) {
+            channel.tryLock();
+            Assert.fail("spool file lock released");
+        } catch (OverlappingFileLockException e) {
+            // 仍然被spooling持有
+        }
+
+        other.stop();
+        spooling.stop();
+        Assert.assertEquals(0, spoolDir.list().length);
+        spoolDir.delete();
+    }
+
     private static Entry buildEntry(String binlogFile, long offset, long timestamp) {
         Header.Builder headerBuilder = Header.newBuilder();
         headerBuilder.setLogfileName(binlogFile);
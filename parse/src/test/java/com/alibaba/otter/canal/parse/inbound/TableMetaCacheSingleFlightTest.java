@@ -0,0 +1,73 @@
+package com.alibaba.otter.canal.parse.inbound;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.driver.mysql.packets.server.ResultSetPacket;
+import com.alibaba.otter.canal.parse.inbound.mysql.MysqlConnection;
+import com.alibaba.otter.canal.parse.inbound.mysql.dbsync.TableMetaCache;
+import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.DatabaseTableMeta;
+import com.alibaba.otter.canal.parse.inbound.mysql.tsdb.MemoryTableMeta;
+
+/**
+ * 测试下并发查询同一张表时只会加载一次
+ */
+public class TableMetaCacheSingleFlightTest {
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        final AtomicInteger queries = new AtomicInteger();
+        MysqlConnection connection = new MysqlConnection() {
+
+            @Override
+            public ResultSetPacket query(String cmd) throws IOException {
+                ResultSetPacket packet = new ResultSetPacket();
+                packet.setFieldValues(new ArrayList<>());
+                if (cmd.startsWith("show create table")) {
+                    queries.incrementAndGet();
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    packet.setFieldValues(Arrays.asList("t1", "create table t1 (id int primary key, name varchar(32))"));
+                }
+                return packet;
+            }
+        };
+
+        final TableMetaCache cache = new TableMetaCache(connection, new MemoryTableMeta());
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch latch = new CountDownLatch(1);
+        List<Future<TableMeta>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                latch.await();
+                return cache.getTableMeta("test", "t1", true, DatabaseTableMeta.INIT_POSITION);
+            }));
+        }
+        latch.countDown();
+        for (Future<TableMeta> future : futures) {
+            TableMeta tableMeta = future.get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(2, tableMeta.getFields().size());
+        }
+        executor.shutdownNow();
+
+        Assert.assertEquals(1, queries.get());
+        // 已加载的表直接命中
+        cache.getTableMeta("test", "t1", true, DatabaseTableMeta.INIT_POSITION);
+        Assert.assertEquals(1, queries.get());
+    }
+}
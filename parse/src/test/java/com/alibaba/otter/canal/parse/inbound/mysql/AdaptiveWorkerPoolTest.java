@@ -0,0 +1,127 @@
+package com.alibaba.otter.canal.parse.inbound.mysql;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.FatalExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.WorkHandler;
+import com.lmax.disruptor.util.Util;
+
+public class AdaptiveWorkerPoolTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testScaleAndConsumeAll() throws Exception {
+        final int count = 5000;
+        RingBuffer<long[]> ringBuffer = RingBuffer.createSingleProducer(() -> new long[1],
+            64,
+            new BlockingWaitStrategy());
+        final AtomicLong sum = new AtomicLong(0);
+        final AtomicInteger processed = new AtomicInteger(0);
+        WorkHandler<long[]>[] handlers = new WorkHandler[4];
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i] = event -> {
+                LockSupport.parkNanos(100 * 1000L);
+                sum.addAndGet(event[0]);
+                processed.incrementAndGet();
+            };
+        }
+
+        AdaptiveWorkerPool.setBudget(Integer.MAX_VALUE);
+        AdaptiveWorkerPool<long[]> pool = new AdaptiveWorkerPool<>(ringBuffer,
+            ringBuffer.newBarrier(),
+            new FatalExceptionHandler(),
+            1,
+            handlers);
+        ringBuffer.addGatingSequences(pool.getWorkerSequences());
+        // 模拟上游为网络发布，下游sink没有积压
+        Sequence upstream = new Sequence(-1);
+        Sequence downstream = new Sequence(-1);
+        pool.setStageSequences(upstream, downstream);
+        ExecutorService executor = Executors.newFixedThreadPool(handlers.length);
+        pool.start(executor);
+        Assert.assertEquals(1, pool.getActiveWorkers());
+
+        int maxActive = 1;
+        for (int i = 1; i <= count; i++) {
+            long next = ringBuffer.next();
+            ringBuffer.get(next)[0] = i;
+            ringBuffer.publish(next);
+            upstream.set(next);
+            if (i % 16 == 0) {
+                downstream.set(Util.getMinimumSequence(pool.getWorkerSequences()));
+                pool.adjust();
+                maxActive = Math.max(maxActive, pool.getActiveWorkers());
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (processed.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, processed.get());
+        Assert.assertEquals((long) count * (count + 1) / 2, sum.get());
+        Assert.assertTrue(maxActive > 1);
+
+        // 空闲后逐步缩回min
+        for (int i = 0; i < 100; i++) {
+            downstream.set(Util.getMinimumSequence(pool.getWorkerSequences()));
+            pool.adjust();
+        }
+        Assert.assertEquals(1, pool.getActiveWorkers());
+
+        pool.halt();
+        executor.shutdownNow();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBudgetExcludesMinWorkers() throws Exception {
+        RingBuffer<long[]> ringBuffer = RingBuffer.createSingleProducer(() -> new long[1],
+            64,
+            new BlockingWaitStrategy());
+        WorkHandler<long[]>[] handlers = new WorkHandler[4];
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i] = event -> {
+            };
+        }
+
+        // minWorkers超过budget也不影响扩容额度
+        AdaptiveWorkerPool.setBudget(1);
+        AdaptiveWorkerPool<long[]> pool = new AdaptiveWorkerPool<>(ringBuffer,
+            ringBuffer.newBarrier(),
+            new FatalExceptionHandler(),
+            2,
+            handlers);
+        ringBuffer.addGatingSequences(pool.getWorkerSequences());
+        // 模拟dml阶段积压：上游领先worker一半的ringBuffer
+        Sequence upstream = new Sequence(32);
+        Sequence downstream = new Sequence(-1);
+        pool.setStageSequences(upstream, downstream);
+        ExecutorService executor = Executors.newFixedThreadPool(handlers.length);
+        pool.start(executor);
+        Assert.assertEquals(0, AdaptiveWorkerPool.getTotalExtra());
+
+        pool.adjust();
+        pool.adjust();
+        Assert.assertEquals(3, pool.getActiveWorkers());
+        Assert.assertEquals(1, AdaptiveWorkerPool.getTotalExtra());
+
+        pool.halt();
+        Assert.assertEquals(0, AdaptiveWorkerPool.getTotalExtra());
+        executor.shutdownNow();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        AdaptiveWorkerPool.setBudget(Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,152 @@
+package com.alibaba.otter.canal.parse.inbound.mysql;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.inbound.mysql.ddl.DdlResult;
+import com.alibaba.otter.canal.parse.inbound.mysql.ddl.DruidDdlParser;
+import com.alibaba.otter.canal.parse.inbound.mysql.ddl.FastDdlParser;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+
+public class FastDdlParserTest {
+
+    // DruidDdlParserTest里的用例
+    private static final String[] DDL_CORPUS = {
+            "CREATE TABLE retl_mark ( `ID` int(11) )",
+            "CREATE TABLE IF NOT EXISTS retl.retl_mark ( `ID` int(11) )",
+            "CREATE TABLE IF NOT EXISTS `retl_mark` ( `ID` int(11) )",
+            "CREATE TABLE  `retl`.`retl_mark` (\n  `ID` int(10) unsigned NOT NULL )",
+            "CREATE TABLE  `retl`.`retl_mark`(\n  `ID` int(10) unsigned NOT NULL )",
+            "CREATE table `bak591`.`j_order_log_back_201309` like j_order_log",
+            "CREATE DEFINER=sco*erce@% PROCEDURE SC_CPN_CODES_SAVE_ACTION(IN cosmosPassportId CHAR(32)) BEGIN SET @orderId = orderId; START TRANSACTION; DELETE FROM sc_ord_coupon WHERE ORDER_ID= @orderId; COMMIT; END",
+            "CREATE TABLE performance_schema.cond_instances(`ID` int(10) unsigned NOT NULL ) ",
+            "DROP TABLE retl_mark", "DROP TABLE IF EXISTS test.retl_mark;",
+            "DROP TABLE IF EXISTS \n \"test\".`retl_mark`;", "DROP TABLE IF EXISTS \n retl.retl_mark , retl_test",
+            "DROP /*!40005 TEMPORARY */ TABLE IF EXISTS `temp_bond_keys`.`temp_bond_key_id`;",
+            "alter table retl_mark drop index emp_name", "alter table retl.retl_mark drop index emp_name",
+            "alter table \n retl.`retl_mark` drop index emp_name;",
+            "alter table retl.retl_mark drop index emp_name , add index emp_name(id)", "truncate table retl_mark",
+            "truncate table retl.retl_mark", "truncate \n  retl.`retl_mark` ", "truncate \n  retl.retl_mark , retl_test ",
+            "rename table retl_mark to retl_mark2", "rename table retl.retl_mark to retl2.retl_mark2",
+            "rename \n table \n `retl`.`retl_mark` to `retl2`.`retl_mark2`;",
+            "rename \n table \n `retl`.`retl_mark` to `retl2`.`retl_mark2` , `retl1`.`retl_mark1` to `retl3`.`retl_mark3`;",
+            "CREATE UNIQUE INDEX index_1 ON retl_mark(id,x)",
+            "create index idx_qca_cid_mcid on q_contract_account (contract_id,main_contract_id)",
+            "DROP INDEX index_str ON retl_mark", "create database db1", "drop database db1",
+            "insert into retl_mark values (1, 'a;b')", "INSERT IGNORE INTO `retl`.`retl_mark`(id) SELECT id FROM t",
+            "insert retl_mark set id = 1", "update retl.retl_mark set x = 1 where id = 2",
+            "update retl_mark a set a.x = 1", "update a, b set a.id = b.id",
+            "update a join b on a.id = b.id set a.x = 1", "delete from retl_mark where id = 1",
+            "delete a, b from a, b where a.id = b.id", "/* app */ delete low_priority from `retl`.`retl_mark`",
+            "insert into a values (1); insert into b values (2)", "grant select on *.* to 'canal'@'%'" };
+
+    @Test
+    public void testCorpus() {
+        for (String queryString : DDL_CORPUS) {
+            List<DdlResult> fast = FastDdlParser.parse(queryString, "retl");
+            if (fast == null) {
+                continue;
+            }
+
+            // 能识别的语句，结果必须和druid完全一致
+            List<DdlResult> druid = DruidDdlParser.parse(queryString, "retl");
+            Assert.assertEquals(queryString, druid.size(), fast.size());
+            for (int i = 0; i < fast.size(); i++) {
+                assertEquals(queryString, druid.get(i), fast.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testDml() {
+        DdlResult result = parseOne("insert into retl_mark values (1, 'a;b')", "retl");
+        Assert.assertEquals(EventType.INSERT, result.getType());
+        Assert.assertEquals("retl", result.getSchemaName());
+        Assert.assertEquals("retl_mark", result.getTableName());
+
+        result = parseOne("INSERT IGNORE INTO `retl`.`retl_mark`(id) SELECT id FROM t", null);
+        Assert.assertEquals(EventType.INSERT, result.getType());
+        Assert.assertEquals("retl", result.getSchemaName());
+        Assert.assertEquals("retl_mark", result.getTableName());
+
+        result = parseOne("update retl_mark a set a.x = 1", null);
+        Assert.assertEquals(EventType.UPDATE, result.getType());
+        Assert.assertNull(result.getSchemaName());
+        Assert.assertEquals("retl_mark", result.getTableName());
+
+        result = parseOne("/* app */ delete low_priority from `retl`.`retl_mark`", null);
+        Assert.assertEquals(EventType.DELETE, result.getType());
+        Assert.assertEquals("retl_mark", result.getTableName());
+
+        // 多表、多语句、关联的dml交给druid
+        Assert.assertNull(FastDdlParser.parse("update a, b set a.id = b.id", null));
+        Assert.assertNull(FastDdlParser.parse("update a join b on a.id = b.id set a.x = 1", null));
+        Assert.assertNull(FastDdlParser.parse("delete a, b from a, b where a.id = b.id", null));
+        Assert.assertNull(FastDdlParser.parse("insert into a values (1); insert into b values (2)", null));
+        Assert.assertNotNull(FastDdlParser.parse("insert into a values ('x'';\\';') ;", null));
+    }
+
+    @Test
+    public void testDdl() {
+        DdlResult result = parseOne("CREATE TABLE IF NOT EXISTS `retl_mark` ( `ID` int(11) )", "retl");
+        Assert.assertEquals(EventType.CREATE, result.getType());
+        Assert.assertEquals("retl", result.getSchemaName());
+        Assert.assertEquals("retl_mark", result.getTableName());
+
+        List<DdlResult> results = FastDdlParser.parse("DROP TABLE IF EXISTS \n retl.retl_mark , retl_test /* generated by server */",
+            "test");
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(EventType.ERASE, results.get(0).getType());
+        Assert.assertEquals("retl", results.get(0).getSchemaName());
+        Assert.assertEquals("retl_mark", results.get(0).getTableName());
+        Assert.assertEquals("test", results.get(1).getSchemaName());
+        Assert.assertEquals("retl_test", results.get(1).getTableName());
+
+        results = FastDdlParser.parse("rename \n table \n `retl`.`retl_mark` to `retl2`.`retl_mark2` , retl_mark1 to `retl3`.`retl_mark3`;",
+            "retl");
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(EventType.RENAME, results.get(1).getType());
+        Assert.assertEquals("retl", results.get(1).getOriSchemaName());
+        Assert.assertEquals("retl_mark1", results.get(1).getOriTableName());
+        Assert.assertEquals("retl3", results.get(1).getSchemaName());
+        Assert.assertEquals("retl_mark3", results.get(1).getTableName());
+
+        result = parseOne("truncate \n  retl.`retl_mark` ", null);
+        Assert.assertEquals(EventType.TRUNCATE, result.getType());
+        Assert.assertEquals("retl", result.getSchemaName());
+
+        result = parseOne("CREATE UNIQUE INDEX index_1 ON retl_mark(id,x)", "retl");
+        Assert.assertEquals(EventType.CINDEX, result.getType());
+        Assert.assertEquals("retl_mark", result.getTableName());
+
+        result = parseOne("DROP INDEX index_str ON retl_mark", "retl");
+        Assert.assertEquals(EventType.DINDEX, result.getType());
+        Assert.assertEquals("retl_mark", result.getTableName());
+
+        // alter按item区分类型、版本注释、双引号、存储过程等交给druid
+        Assert.assertNull(FastDdlParser.parse("alter table retl_mark drop index emp_name", "retl"));
+        Assert.assertNull(FastDdlParser.parse("DROP /*!40005 TEMPORARY */ TABLE IF EXISTS `a`.`b`;", "retl"));
+        Assert.assertNull(FastDdlParser.parse("DROP TABLE IF EXISTS \n \"test\".`retl_mark`;", "retl"));
+        Assert.assertNull(FastDdlParser.parse("CREATE DEFINER=x@% PROCEDURE p() BEGIN END", "retl"));
+        Assert.assertNull(FastDdlParser.parse("create database db1", "retl"));
+        Assert.assertNull(FastDdlParser.parse("grant select on *.* to 'canal'@'%'", "retl"));
+        Assert.assertNull(FastDdlParser.parse("drop table a.b.c", "retl"));
+    }
+
+    private static DdlResult parseOne(String queryString, String schemaName) {
+        List<DdlResult> results = FastDdlParser.parse(queryString, schemaName);
+        Assert.assertNotNull(queryString, results);
+        Assert.assertEquals(queryString, 1, results.size());
+        return results.get(0);
+    }
+
+    private static void assertEquals(String queryString, DdlResult expected, DdlResult actual) {
+        Assert.assertEquals(queryString, expected.getType(), actual.getType());
+        Assert.assertEquals(queryString, expected.getSchemaName(), actual.getSchemaName());
+        Assert.assertEquals(queryString, expected.getTableName(), actual.getTableName());
+        Assert.assertEquals(queryString, expected.getOriSchemaName(), actual.getOriSchemaName());
+        Assert.assertEquals(queryString, expected.getOriTableName(), actual.getOriTableName());
+    }
+}
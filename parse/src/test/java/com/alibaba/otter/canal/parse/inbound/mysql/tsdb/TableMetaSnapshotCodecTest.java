@@ -0,0 +1,97 @@
+package com.alibaba.otter.canal.parse.inbound.mysql.tsdb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.parse.inbound.TableMeta;
+
+/**
+ * 测试下二进制表结构快照以及增量快照的加载
+ */
+public class TableMetaSnapshotCodecTest {
+
+    @Test
+    public void testFullAndDelta() {
+        MemoryTableMeta source = new MemoryTableMeta();
+        source.apply(null, "test", "create table t1 (id bigint not null, name varchar(32) default 'a', "
+                                   + "primary key(id), unique key uk_name(name))", null);
+        source.apply(null, "test", "create table t2 (id int unsigned zerofill, remark text)", null);
+
+        String full = TableMetaSnapshotCodec.encode(source.snapshotTables(), Collections.emptyList());
+        Assert.assertTrue(TableMetaSnapshotCodec.isBinary(full));
+
+        MemoryTableMeta restored = new MemoryTableMeta();
+        restored.setTrackChanges(true);
+        restored.applySnapshot(TableMetaSnapshotCodec.decode(full), false);
+        for (String table : new String[] { "t1", "t2" }) {
+            TableMeta expect = source.find("test", table);
+            TableMeta actual = restored.find("test", table);
+            Assert.assertTrue(DatabaseTableMeta.compareTableMeta(expect, actual));
+            Assert.assertEquals(expect.toString(), actual.toString());
+        }
+        Assert.assertTrue(restored.getChangedTables().isEmpty());
+
+        // 快照中的表在DDL变更时再解析进repository
+        restored.apply(null, "test", "alter table t1 add column c3 int", null);
+        restored.apply(null, "test", "drop table t2", null);
+        Assert.assertEquals(3, restored.find("test", "t1").getFields().size());
+        Assert.assertTrue(restored.find("test", "t1").getFieldMetaByName("id").isKey());
+        Assert.assertNull(restored.find("test", "t2"));
+        Assert.assertEquals(2, restored.getChangedTables().size());
+
+        List<TableMeta> tables = new ArrayList<>();
+        List<List<String>> droppedTables = new ArrayList<>();
+        for (List<String> name : restored.getChangedTables()) {
+            TableMeta tableMeta = restored.snapshotTable(name.get(0), name.get(1));
+            if (tableMeta != null) {
+                tables.add(tableMeta);
+            } else {
+                droppedTables.add(name);
+            }
+        }
+        String delta = TableMetaSnapshotCodec.encode(tables, droppedTables);
+
+        MemoryTableMeta rebuild = new MemoryTableMeta();
+        rebuild.setTrackChanges(true);
+        rebuild.applySnapshot(TableMetaSnapshotCodec.decode(full), false);
+        rebuild.applySnapshot(TableMetaSnapshotCodec.decode(delta), true);
+        Assert.assertEquals(restored.find("test", "t1").toString(), rebuild.find("test", "t1").toString());
+        Assert.assertNull(rebuild.find("test", "t2"));
+        // 增量快照中的表需要继续记录为变更
+        Assert.assertEquals(2, rebuild.getChangedTables().size());
+    }
+
+    @Test
+    public void testUnknownDdl() {
+        MemoryTableMeta memoryTableMeta = new MemoryTableMeta();
+        memoryTableMeta.setTrackChanges(true);
+        memoryTableMeta.apply(null, "test", "create table t1 (id int)", null);
+        memoryTableMeta.apply(null, "test", "create table t2 like t1", null);
+        Assert.assertNull(memoryTableMeta.getChangedTables());
+        Assert.assertEquals(1, memoryTableMeta.find("test", "t2").getFields().size());
+
+        memoryTableMeta.clearChangedTables();
+        Assert.assertTrue(memoryTableMeta.getChangedTables().isEmpty());
+    }
+
+    @Test
+    public void testTableNameCase() {
+        // lower_case_table_names=0时大小写不同的表分别记录变更
+        MemoryTableMeta sensitive = new MemoryTableMeta();
+        sensitive.setTrackChanges(true);
+        sensitive.apply(null, "test", "alter table t1 add column c2 int", null);
+        sensitive.apply(null, "test", "alter table T1 add column c3 int", null);
+        Assert.assertEquals(2, sensitive.getChangedTables().size());
+
+        MemoryTableMeta insensitive = new MemoryTableMeta();
+        insensitive.setLowerCaseNames(1);
+        insensitive.setTrackChanges(true);
+        insensitive.apply(null, "test", "alter table t1 add column c2 int", null);
+        insensitive.apply(null, "test", "alter table T1 add column c3 int", null);
+        Assert.assertEquals(1, insensitive.getChangedTables().size());
+    }
+}
@@ -24,6 +24,7 @@ public class CanalInstanceExports {
     private final Collector          metaCollector;
     private final Collector          sinkCollector;
     private final Collector          parserCollector;
+    private final Collector          latencyCollector;
 
     private CanalInstanceExports() {
         this.storeCollector = StoreCollector.instance();
@@ -31,6 +32,7 @@ public class CanalInstanceExports {
         this.metaCollector = MetaCollector.instance();
         this.sinkCollector = SinkCollector.instance();
         this.parserCollector = ParserCollector.instance();
+        this.latencyCollector = LatencyCollector.instance();
     }
 
     private static class SingletonHolder {
@@ -47,6 +49,7 @@ public class CanalInstanceExports {
         metaCollector.register();
         sinkCollector.register();
         parserCollector.register();
+        latencyCollector.register();
     }
 
     public void terminate() {
@@ -55,6 +58,7 @@ public class CanalInstanceExports {
         CollectorRegistry.defaultRegistry.unregister(metaCollector);
         CollectorRegistry.defaultRegistry.unregister(sinkCollector);
         CollectorRegistry.defaultRegistry.unregister(parserCollector);
+        CollectorRegistry.defaultRegistry.unregister(latencyCollector);
     }
 
     void register(CanalInstance instance) {
@@ -63,6 +67,7 @@ public class CanalInstanceExports {
         requiredInstanceRegistry(metaCollector).register(instance);
         requiredInstanceRegistry(sinkCollector).register(instance);
         requiredInstanceRegistry(parserCollector).register(instance);
+        requiredInstanceRegistry(latencyCollector).register(instance);
         logger.info("Successfully register metrics for instance {}.", instance.getDestination());
     }
 
@@ -72,6 +77,7 @@ public class CanalInstanceExports {
         requiredInstanceRegistry(metaCollector).unregister(instance);
         requiredInstanceRegistry(sinkCollector).unregister(instance);
         requiredInstanceRegistry(parserCollector).unregister(instance);
+        requiredInstanceRegistry(latencyCollector).unregister(instance);
         logger.info("Successfully unregister metrics for instance {}.", instance.getDestination());
     }
 
@@ -2,6 +2,9 @@ package com.alibaba.otter.canal.prometheus;
 
 import com.alibaba.otter.canal.instance.core.CanalInstance;
 import com.alibaba.otter.canal.prometheus.impl.PrometheusClientInstanceProfiler;
+import com.alibaba.otter.canal.prometheus.impl.PrometheusInstanceStartupProfiler;
+import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbeddedProfiler;
+import com.alibaba.otter.canal.server.embedded.InstanceStartupProfiler;
 import com.alibaba.otter.canal.server.netty.ClientInstanceProfiler;
 import com.alibaba.otter.canal.spi.CanalMetricsService;
 import io.prometheus.client.exporter.HTTPServer;
@@ -19,16 +22,18 @@ import static com.alibaba.otter.canal.server.netty.CanalServerWithNettyProfiler.
  */
 public class PrometheusService implements CanalMetricsService {
 
-    private static final Logger          logger          = LoggerFactory.getLogger(PrometheusService.class);
-    private final CanalInstanceExports   instanceExports;
-    private volatile boolean             running         = false;
-    private int                          port;
-    private HTTPServer                   server;
-    private final ClientInstanceProfiler clientProfiler;
+    private static final Logger           logger          = LoggerFactory.getLogger(PrometheusService.class);
+    private final CanalInstanceExports    instanceExports;
+    private volatile boolean              running         = false;
+    private int                           port;
+    private HTTPServer                    server;
+    private final ClientInstanceProfiler  clientProfiler;
+    private final InstanceStartupProfiler startupProfiler;
 
     private PrometheusService() {
         this.instanceExports = CanalInstanceExports.instance();
         this.clientProfiler = PrometheusClientInstanceProfiler.instance();
+        this.startupProfiler = PrometheusInstanceStartupProfiler.instance();
     }
 
     private static class SingletonHolder {
@@ -57,6 +62,10 @@ public class PrometheusService implements CanalMetricsService {
                 clientProfiler.start();
             }
             profiler().setInstanceProfiler(clientProfiler);
+            if (!startupProfiler.isStart()) {
+                startupProfiler.start();
+            }
+            CanalServerWithEmbeddedProfiler.profiler().setStartupProfiler(startupProfiler);
         } catch (Throwable t) {
             logger.warn("Unable to initialize server exports.", t);
         }
@@ -73,6 +82,10 @@ public class PrometheusService implements CanalMetricsService {
                 clientProfiler.stop();
             }
             profiler().setInstanceProfiler(NOP);
+            if (startupProfiler.isStart()) {
+                startupProfiler.stop();
+            }
+            CanalServerWithEmbeddedProfiler.profiler().setStartupProfiler(CanalServerWithEmbeddedProfiler.NOP);
             if (server != null) {
                 server.stop();
             }
@@ -0,0 +1,111 @@
+package com.alibaba.otter.canal.prometheus.impl;
+
+import static com.alibaba.otter.canal.prometheus.CanalInstanceExports.DEST;
+import io.prometheus.client.Collector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.common.utils.LatencyHistogram;
+import com.alibaba.otter.canal.instance.core.CanalInstance;
+import com.alibaba.otter.canal.prometheus.InstanceRegistry;
+import com.alibaba.otter.canal.store.CanalEventStore;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+
+/**
+ * 采样event在decode -> store -> delivery -> ack 各阶段的耗时分布
+ */
+public class LatencyCollector extends Collector implements InstanceRegistry {
+
+    private static final Logger                               logger        = LoggerFactory.getLogger(LatencyCollector.class);
+    private static final String                               LATENCY       = "canal_instance_event_latency";
+    private static final String                               LATENCY_HELP  = "Sampled event latency of each stage in milliseconds";
+    private static final String                               STAGE_LABEL   = "stage";
+    private static final List<String>                         LABELS        = Arrays.asList(DEST, STAGE_LABEL);
+    private static final List<String>                         BUCKET_LABELS = Arrays.asList(DEST, STAGE_LABEL, "le");
+    private final ConcurrentMap<String, LatencyMetricsHolder> instances     = new ConcurrentHashMap<>();
+
+    private LatencyCollector(){
+    }
+
+    private static class SingletonHolder {
+
+        private static final LatencyCollector SINGLETON = new LatencyCollector();
+    }
+
+    public static LatencyCollector instance() {
+        return SingletonHolder.SINGLETON;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples.Sample> samples = new ArrayList<>();
+        for (LatencyMetricsHolder lmh : instances.values()) {
+            addSamples(samples, lmh.destination, "decode", lmh.decodeLatency);
+            addSamples(samples, lmh.destination, "store", lmh.putLatency);
+            addSamples(samples, lmh.destination, "delivery", lmh.getLatency);
+            addSamples(samples, lmh.destination, "ack", lmh.ackLatency);
+        }
+        return Collections.singletonList(new MetricFamilySamples(LATENCY, Type.HISTOGRAM, LATENCY_HELP, samples));
+    }
+
+    private void addSamples(List<MetricFamilySamples.Sample> samples, String destination, String stage,
+                            LatencyHistogram histogram) {
+        double[] buckets = histogram.getBuckets();
+        long[] counts = histogram.getCounts();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            String le = i < buckets.length ? doubleToGoString(buckets[i]) : "+Inf";
+            samples.add(new MetricFamilySamples.Sample(LATENCY + "_bucket",
+                BUCKET_LABELS,
+                Arrays.asList(destination, stage, le),
+                cumulative));
+        }
+        List<String> labelValues = Arrays.asList(destination, stage);
+        samples.add(new MetricFamilySamples.Sample(LATENCY + "_count", LABELS, labelValues, cumulative));
+        samples.add(new MetricFamilySamples.Sample(LATENCY + "_sum", LABELS, labelValues, histogram.getSumMillis()));
+    }
+
+    @Override
+    public void register(CanalInstance instance) {
+        final String destination = instance.getDestination();
+        CanalEventStore store = instance.getEventStore();
+        if (!(store instanceof MemoryEventStoreWithBuffer)) {
+            throw new IllegalArgumentException("EventStore must be MemoryEventStoreWithBuffer");
+        }
+        MemoryEventStoreWithBuffer memStore = (MemoryEventStoreWithBuffer) store;
+        LatencyMetricsHolder holder = new LatencyMetricsHolder();
+        holder.destination = destination;
+        holder.decodeLatency = memStore.getDecodeLatency();
+        holder.putLatency = memStore.getPutLatency();
+        holder.getLatency = memStore.getGetLatency();
+        holder.ackLatency = memStore.getAckLatency();
+        LatencyMetricsHolder old = instances.put(destination, holder);
+        if (old != null) {
+            logger.warn("Remove stale LatencyCollector for instance {}.", destination);
+        }
+    }
+
+    @Override
+    public void unregister(CanalInstance instance) {
+        final String destination = instance.getDestination();
+        instances.remove(destination);
+    }
+
+    private static class LatencyMetricsHolder {
+
+        private String           destination;
+        private LatencyHistogram decodeLatency;
+        private LatencyHistogram putLatency;
+        private LatencyHistogram getLatency;
+        private LatencyHistogram ackLatency;
+    }
+}
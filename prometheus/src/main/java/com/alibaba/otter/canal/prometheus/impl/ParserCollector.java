@@ -4,6 +4,7 @@ import static com.alibaba.otter.canal.prometheus.CanalInstanceExports.DEST;
 
 import com.alibaba.otter.canal.parse.inbound.group.GroupEventParser;
 import com.alibaba.otter.canal.parse.inbound.mysql.AbstractMysqlEventParser;
+import com.alibaba.otter.canal.parse.inbound.mysql.MultiStageCoprocessorMetrics;
 import io.prometheus.client.Collector;
 import io.prometheus.client.CounterMetricFamily;
 import io.prometheus.client.GaugeMetricFamily;
@@ -14,10 +15,12 @@ import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.alibaba.otter.canal.common.utils.LatencyHistogram;
 import com.alibaba.otter.canal.instance.core.CanalInstance;
 import com.alibaba.otter.canal.parse.CanalEventParser;
 import com.alibaba.otter.canal.prometheus.InstanceRegistry;
@@ -38,6 +41,29 @@ public class ParserCollector extends Collector implements InstanceRegistry {
     private static final String                              PUBLISH_BLOCKING_HELP = "Publish blocking time of dump thread in milliseconds";
     private static final String                              RECEIVED_BINLOG_HELP  = "Received binlog bytes";
     private static final String                              MODE_HELP             = "Parser mode(parallel/serial) of instance";
+    private static final String                              META_HITS             = "canal_instance_table_meta_cache_hits";
+    private static final String                              META_MISSES           = "canal_instance_table_meta_cache_misses";
+    private static final String                              META_LOAD             = "canal_instance_table_meta_load_latency";
+    private static final String                              META_HITS_HELP        = "Table meta cache hits";
+    private static final String                              META_MISSES_HELP      = "Table meta cache misses";
+    private static final String                              META_LOAD_HELP        = "Table meta load latency from db in milliseconds";
+    private static final String                              STAGE_BUSY            = "canal_instance_parser_stage_busy_time";
+    private static final String                              STAGE_EVENTS          = "canal_instance_parser_stage_events";
+    private static final String                              STAGE_LAG             = "canal_instance_parser_stage_lag";
+    private static final String                              RING_SIZE             = "canal_instance_parser_ring_buffer_size";
+    private static final String                              RING_USED             = "canal_instance_parser_ring_buffer_used";
+    private static final String                              DML_THREADS           = "canal_instance_parser_dml_threads";
+    private static final String                              SINK_BLOCKING         = "canal_instance_parser_sink_blocking_time";
+    private static final String                              STAGE_LABEL           = "stage";
+    private static final String                              STAGE_BUSY_HELP       = "Busy time of parallel parser stage in milliseconds, dml_parser is summed over all workers";
+    private static final String                              STAGE_EVENTS_HELP     = "Events processed by parallel parser stage";
+    private static final String                              STAGE_LAG_HELP        = "Events waiting in ring buffer for parallel parser stage";
+    private static final String                              RING_SIZE_HELP        = "Ring buffer size of parallel parser";
+    private static final String                              RING_USED_HELP        = "Published but not yet sunk events in ring buffer of parallel parser";
+    private static final String                              DML_THREADS_HELP      = "Dml parser worker threads of parallel parser";
+    private static final String                              SINK_BLOCKING_HELP    = "Time sink stage spent delivering into transaction buffer(include store full waiting) in milliseconds";
+    private final List<String>                               bucketLabels          = Arrays.asList(DEST, PARSER_LABEL, "le");
+    private final List<String>                               stageLabels           = Arrays.asList(DEST, PARSER_LABEL, STAGE_LABEL);
     private final List<String>                               modeLabels            = Arrays.asList(DEST, MODE_LABEL);
     private final List<String>                               parserLabels          = Arrays.asList(DEST, PARSER_LABEL);
     private final ConcurrentMap<String, ParserMetricsHolder> instances             = new ConcurrentHashMap<>();
@@ -61,15 +87,25 @@ public class ParserCollector extends Collector implements InstanceRegistry {
                 MODE_HELP, modeLabels);
         CounterMetricFamily blockingCounter = new CounterMetricFamily(PUBLISH_BLOCKING,
                 PUBLISH_BLOCKING_HELP, parserLabels);
+        CounterMetricFamily hitsCounter = new CounterMetricFamily(META_HITS,
+                META_HITS_HELP, parserLabels);
+        CounterMetricFamily missesCounter = new CounterMetricFamily(META_MISSES,
+                META_MISSES_HELP, parserLabels);
+        List<MetricFamilySamples.Sample> loadSamples = new ArrayList<>();
+        CoprocessorFamilies coprocessor = new CoprocessorFamilies();
         for (ParserMetricsHolder emh : instances.values()) {
             if (emh instanceof GroupParserMetricsHolder) {
                 GroupParserMetricsHolder group = (GroupParserMetricsHolder) emh;
                 for (ParserMetricsHolder semh :  group.holders) {
                     singleCollect(bytesCounter, blockingCounter, modeGauge, semh);
+                    metaCollect(hitsCounter, missesCounter, loadSamples, semh);
+                    coprocessorCollect(coprocessor, semh);
                 }
             }
             else {
                 singleCollect(bytesCounter, blockingCounter, modeGauge, emh);
+                metaCollect(hitsCounter, missesCounter, loadSamples, emh);
+                coprocessorCollect(coprocessor, emh);
             }
         }
         mfs.add(bytesCounter);
@@ -77,9 +113,59 @@ public class ParserCollector extends Collector implements InstanceRegistry {
         if (!blockingCounter.samples.isEmpty()) {
             mfs.add(blockingCounter);
         }
+        mfs.add(hitsCounter);
+        mfs.add(missesCounter);
+        mfs.add(new MetricFamilySamples(META_LOAD, Type.HISTOGRAM, META_LOAD_HELP, loadSamples));
+        if (!coprocessor.ringSize.samples.isEmpty()) {
+            mfs.add(coprocessor.busy);
+            mfs.add(coprocessor.events);
+            mfs.add(coprocessor.lag);
+            mfs.add(coprocessor.ringSize);
+            mfs.add(coprocessor.ringUsed);
+            mfs.add(coprocessor.dmlThreads);
+            mfs.add(coprocessor.sinkBlocking);
+        }
         return mfs;
     }
 
+    private void coprocessorCollect(CoprocessorFamilies families, ParserMetricsHolder holder) {
+        if (!holder.isParallel || holder.coprocessorMetrics == null) {
+            return;
+        }
+
+        MultiStageCoprocessorMetrics metrics = holder.coprocessorMetrics;
+        for (int stage = 0; stage < MultiStageCoprocessorMetrics.STAGE_NAMES.length; stage++) {
+            List<String> labelValues = new ArrayList<>(holder.parserLabelValues);
+            labelValues.add(MultiStageCoprocessorMetrics.STAGE_NAMES[stage]);
+            families.busy.addMetric(labelValues, metrics.getBusyNanos(stage) / (double) NANO_PER_MILLI);
+            families.events.addMetric(labelValues, metrics.getEvents(stage));
+            families.lag.addMetric(labelValues, metrics.getStageLag(stage));
+        }
+        families.ringSize.addMetric(holder.parserLabelValues, metrics.getRingBufferSize());
+        families.ringUsed.addMetric(holder.parserLabelValues, metrics.getRingBufferUsed());
+        families.dmlThreads.addMetric(holder.parserLabelValues, metrics.getDmlParserThreads());
+        families.sinkBlocking.addMetric(holder.parserLabelValues,
+            metrics.getSinkBlockingNanos() / (double) NANO_PER_MILLI);
+    }
+
+    private void metaCollect(CounterMetricFamily hitsCounter, CounterMetricFamily missesCounter,
+                             List<MetricFamilySamples.Sample> loadSamples, ParserMetricsHolder holder) {
+        hitsCounter.addMetric(holder.parserLabelValues, holder.tableMetaCacheHits.doubleValue());
+        missesCounter.addMetric(holder.parserLabelValues, holder.tableMetaCacheMisses.doubleValue());
+        LatencyHistogram histogram = holder.tableMetaLoadLatency;
+        double[] buckets = histogram.getBuckets();
+        long[] counts = histogram.getCounts();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            List<String> labelValues = new ArrayList<>(holder.parserLabelValues);
+            labelValues.add(i < buckets.length ? doubleToGoString(buckets[i]) : "+Inf");
+            loadSamples.add(new MetricFamilySamples.Sample(META_LOAD + "_bucket", bucketLabels, labelValues, cumulative));
+        }
+        loadSamples.add(new MetricFamilySamples.Sample(META_LOAD + "_count", parserLabels, holder.parserLabelValues, cumulative));
+        loadSamples.add(new MetricFamilySamples.Sample(META_LOAD + "_sum", parserLabels, holder.parserLabelValues, histogram.getSumMillis()));
+    }
+
     private void singleCollect(CounterMetricFamily bytesCounter, CounterMetricFamily blockingCounter, GaugeMetricFamily modeGauge, ParserMetricsHolder holder) {
         if (holder.isParallel) {
             blockingCounter.addMetric(holder.parserLabelValues, (holder.eventsPublishBlockingTime.doubleValue() / NANO_PER_MILLI));
@@ -114,6 +200,10 @@ public class ParserCollector extends Collector implements InstanceRegistry {
         holder.eventsPublishBlockingTime = parser.getEventsPublishBlockingTime();
         holder.receivedBinlogBytes = parser.getReceivedBinlogBytes();
         holder.isParallel = parser.isParallel();
+        holder.tableMetaCacheHits = parser.getTableMetaCacheHits();
+        holder.tableMetaCacheMisses = parser.getTableMetaCacheMisses();
+        holder.tableMetaLoadLatency = parser.getTableMetaLoadLatency();
+        holder.coprocessorMetrics = parser.getCoprocessorMetrics();
         Preconditions.checkNotNull(holder.eventsPublishBlockingTime);
         Preconditions.checkNotNull(holder.receivedBinlogBytes);
         return holder;
@@ -142,13 +232,29 @@ public class ParserCollector extends Collector implements InstanceRegistry {
     }
 
     private static class ParserMetricsHolder {
-        private List<String> parserLabelValues;
-        private List<String> modeLabelValues;
+        private List<String>     parserLabelValues;
+        private List<String>     modeLabelValues;
         // metrics for single parser
-        private AtomicLong   receivedBinlogBytes;
-        private AtomicLong   eventsPublishBlockingTime;
+        private AtomicLong       receivedBinlogBytes;
+        private AtomicLong       eventsPublishBlockingTime;
         // parser mode
-        private boolean      isParallel;
+        private boolean          isParallel;
+        // table meta cache
+        private LongAdder        tableMetaCacheHits;
+        private LongAdder        tableMetaCacheMisses;
+        private LatencyHistogram tableMetaLoadLatency;
+        // parallel parser stages
+        private MultiStageCoprocessorMetrics coprocessorMetrics;
+    }
+
+    private class CoprocessorFamilies {
+        private final CounterMetricFamily busy         = new CounterMetricFamily(STAGE_BUSY, STAGE_BUSY_HELP, stageLabels);
+        private final CounterMetricFamily events       = new CounterMetricFamily(STAGE_EVENTS, STAGE_EVENTS_HELP, stageLabels);
+        private final GaugeMetricFamily   lag          = new GaugeMetricFamily(STAGE_LAG, STAGE_LAG_HELP, stageLabels);
+        private final GaugeMetricFamily   ringSize     = new GaugeMetricFamily(RING_SIZE, RING_SIZE_HELP, parserLabels);
+        private final GaugeMetricFamily   ringUsed     = new GaugeMetricFamily(RING_USED, RING_USED_HELP, parserLabels);
+        private final GaugeMetricFamily   dmlThreads   = new GaugeMetricFamily(DML_THREADS, DML_THREADS_HELP, parserLabels);
+        private final CounterMetricFamily sinkBlocking = new CounterMetricFamily(SINK_BLOCKING, SINK_BLOCKING_HELP, parserLabels);
     }
 
     private static class GroupParserMetricsHolder extends ParserMetricsHolder {
@@ -0,0 +1,60 @@
+package com.alibaba.otter.canal.prometheus.impl;
+
+import com.alibaba.otter.canal.server.embedded.InstanceStartupProfiler;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Gauge;
+
+import static com.alibaba.otter.canal.prometheus.CanalInstanceExports.DEST;
+
+/**
+ * instance最近一次启动各阶段的耗时
+ */
+public class PrometheusInstanceStartupProfiler implements InstanceStartupProfiler {
+
+    private static final long   NANO_PER_MILLI = 1000 * 1000L;
+    private static final String STARTUP_PHASE  = "canal_instance_startup_phase_time";
+    private final Gauge         phaseGauge;
+    private volatile boolean    running        = false;
+
+    private static class SingletonHolder {
+        private static final PrometheusInstanceStartupProfiler SINGLETON = new PrometheusInstanceStartupProfiler();
+    }
+
+    public static PrometheusInstanceStartupProfiler instance() {
+        return SingletonHolder.SINGLETON;
+    }
+
+    private PrometheusInstanceStartupProfiler() {
+        this.phaseGauge = Gauge.build()
+                .labelNames(new String[]{DEST, "phase"})
+                .name(STARTUP_PHASE)
+                .help("Time cost of each startup phase of the last instance start in milliseconds.")
+                .create();
+    }
+
+    @Override
+    public void profiling(String destination, StartupPhase phase, long costNanos) {
+        phaseGauge.labels(destination, phase.name()).set(((double) costNanos) / NANO_PER_MILLI);
+    }
+
+    @Override
+    public void start() {
+        if (phaseGauge != null) {
+            phaseGauge.register();
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (phaseGauge != null) {
+            CollectorRegistry.defaultRegistry.unregister(phaseGauge);
+        }
+    }
+
+    @Override
+    public boolean isStart() {
+        return running;
+    }
+}
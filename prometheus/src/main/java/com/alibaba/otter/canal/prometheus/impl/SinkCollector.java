@@ -1,10 +1,13 @@
 package com.alibaba.otter.canal.prometheus.impl;
 
+import static com.alibaba.otter.canal.prometheus.CanalInstanceExports.DEST;
 import static com.alibaba.otter.canal.prometheus.CanalInstanceExports.DEST_LABELS_LIST;
 import io.prometheus.client.Collector;
 import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
@@ -18,6 +21,8 @@ import com.alibaba.otter.canal.instance.core.CanalInstance;
 import com.alibaba.otter.canal.prometheus.InstanceRegistry;
 import com.alibaba.otter.canal.sink.CanalEventSink;
 import com.alibaba.otter.canal.sink.entry.EntryEventSink;
+import com.alibaba.otter.canal.sink.entry.HotTableTracker;
+import com.alibaba.otter.canal.sink.entry.HotTableTracker.HotTable;
 import com.google.common.base.Preconditions;
 
 /**
@@ -29,6 +34,16 @@ public class SinkCollector extends Collector implements InstanceRegistry {
     private static final long                              NANO_PER_MILLI       = 1000 * 1000L;
     private static final String                            SINK_BLOCKING_TIME   = "canal_instance_sink_blocking_time";
     private static final String                            SINK_BLOCK_TIME_HELP = "Total sink blocking time in milliseconds";
+    private static final String                            HOT_TABLE_ROWS       = "canal_instance_hot_table_rows";
+    private static final String                            HOT_TABLE_ROWS_HELP  = "Top tables by rows in the last window";
+    private static final String                            HOT_TABLE_BYTES      = "canal_instance_hot_table_bytes";
+    private static final String                            HOT_TABLE_BYTES_HELP = "Top tables by binlog bytes in the last window";
+    private static final String                            HOT_ROWS_RANK        = "canal_instance_hot_table_rows_rank";
+    private static final String                            HOT_ROWS_RANK_HELP   = "Rank of the table by rows in the last window, 1 is the hottest";
+    private static final String                            HOT_BYTES_RANK       = "canal_instance_hot_table_bytes_rank";
+    private static final String                            HOT_BYTES_RANK_HELP  = "Rank of the table by binlog bytes in the last window, 1 is the hottest";
+    // rank作为值而不是label，排名变化不会产生新的时间序列
+    private static final List<String>                      HOT_TABLE_LABELS     = Arrays.asList(DEST, "table");
     private final ConcurrentMap<String, SinkMetricsHolder> instances            = new ConcurrentHashMap<>();
 
     private SinkCollector(){
@@ -49,13 +64,42 @@ public class SinkCollector extends Collector implements InstanceRegistry {
         CounterMetricFamily blockingCounter = new CounterMetricFamily(SINK_BLOCKING_TIME,
             SINK_BLOCK_TIME_HELP,
             DEST_LABELS_LIST);
+        GaugeMetricFamily hotRows = new GaugeMetricFamily(HOT_TABLE_ROWS, HOT_TABLE_ROWS_HELP, HOT_TABLE_LABELS);
+        GaugeMetricFamily hotBytes = new GaugeMetricFamily(HOT_TABLE_BYTES, HOT_TABLE_BYTES_HELP, HOT_TABLE_LABELS);
+        GaugeMetricFamily rowsRank = new GaugeMetricFamily(HOT_ROWS_RANK, HOT_ROWS_RANK_HELP, HOT_TABLE_LABELS);
+        GaugeMetricFamily bytesRank = new GaugeMetricFamily(HOT_BYTES_RANK, HOT_BYTES_RANK_HELP, HOT_TABLE_LABELS);
+        boolean hasHotTable = false;
         for (SinkMetricsHolder smh : instances.values()) {
             blockingCounter.addMetric(smh.destLabelValues, (smh.eventsSinkBlockingTime.doubleValue() / NANO_PER_MILLI));
+            // tracker在sink start时才创建，这里每次采集时获取
+            HotTableTracker tracker = smh.sink.getHotTableTracker();
+            if (tracker != null) {
+                hasHotTable = true;
+                HotTableTracker.Snapshot snapshot = tracker.getSnapshot();
+                addHotTables(hotRows, rowsRank, smh.destination, snapshot.getTopByRows());
+                addHotTables(hotBytes, bytesRank, smh.destination, snapshot.getTopByBytes());
+            }
         }
         mfs.add(blockingCounter);
+        if (hasHotTable) {
+            mfs.add(hotRows);
+            mfs.add(hotBytes);
+            mfs.add(rowsRank);
+            mfs.add(bytesRank);
+        }
         return mfs;
     }
 
+    private void addHotTables(GaugeMetricFamily gauge, GaugeMetricFamily rank, String destination,
+                              List<HotTable> tables) {
+        for (int i = 0; i < tables.size(); i++) {
+            HotTable table = tables.get(i);
+            List<String> labels = Arrays.asList(destination, table.getName());
+            gauge.addMetric(labels, table.getCount());
+            rank.addMetric(labels, i + 1);
+        }
+    }
+
     @Override
     public void register(CanalInstance instance) {
         final String destination = instance.getDestination();
@@ -67,6 +111,8 @@ public class SinkCollector extends Collector implements InstanceRegistry {
         }
         EntryEventSink entrySink = (EntryEventSink) sink;
         holder.eventsSinkBlockingTime = entrySink.getEventsSinkBlockingTime();
+        holder.sink = entrySink;
+        holder.destination = destination;
         Preconditions.checkNotNull(holder.eventsSinkBlockingTime);
         SinkMetricsHolder old = instances.put(destination, holder);
         if (old != null) {
@@ -82,7 +128,9 @@ public class SinkCollector extends Collector implements InstanceRegistry {
 
     private static class SinkMetricsHolder {
 
-        private AtomicLong   eventsSinkBlockingTime;
-        private List<String> destLabelValues;
+        private AtomicLong     eventsSinkBlockingTime;
+        private List<String>   destLabelValues;
+        private String         destination;
+        private EntryEventSink sink;
     }
 }
@@ -23,6 +23,8 @@ public class Message implements Serializable {
     // https://github.com/alibaba/canal/issues/726
     private boolean                raw              = true;
     private List<ByteString>       rawEntries       = new ArrayList<>();
+    // 是否包含落盘后回放的大事务数据，只在server内部使用，不会发送给客户端
+    private transient boolean      largeTransaction;
 
     public Message(long id, List<Entry> entries){
         this.id = id;
@@ -84,6 +86,14 @@ public class Message implements Serializable {
         this.raw = raw;
     }
 
+    public boolean isLargeTransaction() {
+        return largeTransaction;
+    }
+
+    public void setLargeTransaction(boolean largeTransaction) {
+        this.largeTransaction = largeTransaction;
+    }
+
     public String toString() {
         return ToStringBuilder.reflectionToString(this, CanalToStringStyle.DEFAULT_STYLE);
     }
@@ -88,6 +88,14 @@ public interface CanalAdmin {
      */
     boolean restartInstance(String destination);
 
+    /**
+     * 获取实例最近一个统计窗口内的热点表(按行数/字节数的top-K)
+     *
+     * @param destination 实例名
+     * @return json格式的热点表信息，未开启统计时为空
+     */
+    String hotTables(String destination);
+
     /**
      * 获取Canal Server日志列表
      *
@@ -86,6 +86,9 @@ public class SessionHandler extends SimpleChannelHandler {
                         case "restart":
                             message = canalAdmin.restartInstance(destination) ? "1" : "0";
                             break;
+                        case "hotTables":
+                            message = canalAdmin.hotTables(destination);
+                            break;
                         default:
                             byte[] errorBytes = AdminNettyUtils.errorPacket(301,
                                 MessageFormatter.format("InstanceAdmin action={} is unknown", action).getMessage());
@@ -1,14 +1,18 @@
 package com.alibaba.otter.canal.server;
 
+import com.alibaba.otter.canal.common.utils.AdaptiveBatchSizer;
 import com.alibaba.otter.canal.connector.core.config.MQProperties;
 import com.alibaba.otter.canal.connector.core.producer.MQDestination;
 import com.alibaba.otter.canal.connector.core.spi.CanalMQProducer;
 import com.alibaba.otter.canal.connector.core.util.Callback;
 import com.alibaba.otter.canal.instance.core.CanalInstance;
 import com.alibaba.otter.canal.instance.core.CanalMQConfig;
+import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.ClientIdentity;
 import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.google.protobuf.ByteString;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -163,7 +167,26 @@ public class CanalMQStarter {
 
                 Integer getTimeout = mqProperties.getFetchTimeout();
                 Integer getBatchSize = mqProperties.getBatchSize();
+                AdaptiveBatchSizer batchSizer = null;
+                if (mqProperties.isAdaptiveBatch()) {
+                    batchSizer = new AdaptiveBatchSizer(getBatchSize,
+                        mqProperties.getAdaptiveMinBatchSize(),
+                        mqProperties.getAdaptiveMaxBatchSize(),
+                        mqProperties.getAdaptiveTargetLatency(),
+                        mqProperties.getAdaptiveMaxBatchBytes());
+                    if (canalInstance.getEventStore() instanceof MemoryEventStoreWithBuffer) {
+                        MemoryEventStoreWithBuffer eventStore = (MemoryEventStoreWithBuffer) canalInstance.getEventStore();
+                        if (eventStore.getBatchMode().isMemSize()) {
+                            // MEMSIZE模式下batchSize为bufferMemUnit的个数
+                            batchSizer.setMemUnit(eventStore.getBufferMemUnit());
+                        }
+                    }
+                }
                 while (running && destinationRunning.get()) {
+                    if (batchSizer != null) {
+                        getBatchSize = batchSizer.getBatchSize();
+                    }
+                    long getBegin = System.currentTimeMillis();
                     Message message;
                     if (getTimeout != null && getTimeout > 0) {
                         message = canalServer.getWithoutAck(clientIdentity,
@@ -175,8 +198,10 @@ public class CanalMQStarter {
                     }
 
                     final long batchId = message.getId();
+                    long sendBegin = System.currentTimeMillis();
+                    int size = 0;
                     try {
-                        int size = message.isRaw() ? message.getRawEntries().size() : message.getEntries().size();
+                        size = message.isRaw() ? message.getRawEntries().size() : message.getEntries().size();
                         if (batchId != -1 && size != 0) {
                             canalMQProducer.send(canalDestination, message, new Callback() {
 
@@ -201,6 +226,21 @@ public class CanalMQStarter {
                     } catch (Exception e) {
                         logger.error(e.getMessage(), e);
                     }
+                    if (batchSizer != null && message.isLargeTransaction()) {
+                        // 大事务回放时store里短时间堆满同一个事务的数据，耗时和字节数不代表正常流量，保持当前batchSize不做调整
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("## destination: {} batchId: {} in large transaction, keep batchSize {}",
+                                destination,
+                                batchId,
+                                getBatchSize);
+                        }
+                    } else if (batchSizer != null) {
+                        batchSizer.record(getBatchSize,
+                            size,
+                            size == 0 ? 0 : getMemSize(message),
+                            sendBegin - getBegin,
+                            size == 0 ? 0 : System.currentTimeMillis() - sendBegin);
+                    }
                 }
             } catch (Exception e) {
                 logger.error("process error!", e);
@@ -208,6 +248,23 @@ public class CanalMQStarter {
         }
     }
 
+    /**
+     * 和store的memsize口径一致，raw模式下为序列化后的字节数
+     */
+    private static long getMemSize(Message message) {
+        long memSize = 0;
+        if (message.isRaw()) {
+            for (ByteString rawEntry : message.getRawEntries()) {
+                memSize += rawEntry.size();
+            }
+        } else {
+            for (CanalEntry.Entry entry : message.getEntries()) {
+                memSize += entry.getSerializedSize();
+            }
+        }
+        return memSize;
+    }
+
     private class CanalMQRunnable implements Runnable {
 
         private String destination;
@@ -6,6 +6,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
@@ -25,18 +26,22 @@ import com.alibaba.otter.canal.protocol.position.Position;
 import com.alibaba.otter.canal.protocol.position.PositionRange;
 import com.alibaba.otter.canal.server.CanalServer;
 import com.alibaba.otter.canal.server.CanalService;
+import com.alibaba.otter.canal.server.embedded.InstanceStartupProfiler.StartupPhase;
 import com.alibaba.otter.canal.server.exception.CanalServerException;
 import com.alibaba.otter.canal.spi.CanalMetricsProvider;
 import com.alibaba.otter.canal.spi.CanalMetricsService;
 import com.alibaba.otter.canal.spi.NopCanalMetricsService;
 import com.alibaba.otter.canal.store.CanalEventStore;
 import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.memory.SubscriberEvictedException;
 import com.alibaba.otter.canal.store.model.Event;
 import com.alibaba.otter.canal.store.model.Events;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.MigrateMap;
 
+import static com.alibaba.otter.canal.server.embedded.CanalServerWithEmbeddedProfiler.profiler;
+
 /**
  * 嵌入式版本实现
  * 在独立部署 canal server 时，Canal 客户端发送的所有请求都交给 CanalServerWithNetty 处理解析，解析完成之后委派给了交给 CanalServerWithEmbedded 进行处理。因此 CanalServerWithNetty 就是一个马甲而已。CanalServerWithEmbedded 才是核心。
@@ -46,14 +51,15 @@ import com.google.common.collect.MigrateMap;
  */
 public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements CanalServer, CanalService {
 
-    private static final Logger        logger  = LoggerFactory.getLogger(CanalServerWithEmbedded.class);
-    private Map<String, CanalInstance> canalInstances; // key 为 destination，value 为对应的 CanalInstance，根据客户端请求携带的 destination 参数将其转发到对应的 CanalInstance 上去处理
+    private static final Logger         logger      = LoggerFactory.getLogger(CanalServerWithEmbedded.class);
+    private Map<String, CanalInstance>  canalInstances; // key 为 destination，value 为对应的 CanalInstance，根据客户端请求携带的 destination 参数将其转发到对应的 CanalInstance 上去处理
+    private Map<ClientIdentity, Object> clientLocks = new ConcurrentHashMap<>(); // 多订阅者模式下每个client独立的get/ack锁
     // private Map<ClientIdentity, Position> lastRollbackPostions;
-    private CanalInstanceGenerator     canalInstanceGenerator;
-    private int                        metricsPort;
-    private CanalMetricsService        metrics = NopCanalMetricsService.NOP;
-    private String                     user;
-    private String                     passwd;
+    private CanalInstanceGenerator      canalInstanceGenerator;
+    private int                         metricsPort;
+    private CanalMetricsService         metrics     = NopCanalMetricsService.NOP;
+    private String                      user;
+    private String                      passwd;
 
     private static class SingletonHolder {
 
@@ -125,6 +131,7 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
     }
 
     public void start(final String destination) {
+        long generateStart = System.nanoTime();
         final CanalInstance canalInstance = canalInstances.get(destination);
         if (!canalInstance.isStart()) {
             try {
@@ -132,7 +139,10 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
                 if (metrics.isRunning()) {
                     metrics.register(canalInstance);
                 }
+                long start = System.nanoTime();
+                profiler().profiling(destination, StartupPhase.GENERATE, start - generateStart);
                 canalInstance.start();
+                profiler().profiling(destination, StartupPhase.START, System.nanoTime() - start);
                 logger.info("start CanalInstances[{}] successfully", destination);
             } finally {
                 MDC.remove("destination");
@@ -198,6 +208,10 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
     public void unsubscribe(ClientIdentity clientIdentity) throws CanalServerException {
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
         canalInstance.getMetaManager().unsubscribe(clientIdentity); // 执行一下meta订阅
+        if (isMultiSubscriber(canalInstance.getEventStore())) {
+            ((MemoryEventStoreWithBuffer) canalInstance.getEventStore()).unsubscribe(clientIdentity);
+        }
+        clientLocks.remove(clientIdentity);
 
         logger.info("unsubscribe successfully, {}", clientIdentity);
     }
@@ -241,7 +255,7 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         checkStart(clientIdentity.getDestination());
         checkSubscribe(clientIdentity);
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
-        synchronized (canalInstance) {
+        synchronized (getLock(canalInstance, clientIdentity)) {
             // 获取到流式数据中的最后一批获取的位置
             PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().getLastestBatch(clientIdentity);
 
@@ -253,7 +267,7 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
 
             Events<Event> events = null;
             Position start = canalInstance.getMetaManager().getCursor(clientIdentity);
-            events = getEvents(canalInstance.getEventStore(), start, batchSize, timeout, unit);
+            events = getEvents(canalInstance, clientIdentity, start, batchSize, timeout, unit);
 
             if (CollectionUtils.isEmpty(events.getEvents())) {
                 logger.debug("get successfully, clientId:{} batchSize:{} but result is null",
@@ -280,7 +294,9 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
                 }
                 // 直接提交ack
                 ack(clientIdentity, batchId);
-                return new Message(batchId, raw, entrys);
+                Message message = new Message(batchId, raw, entrys);
+                message.setLargeTransaction(events.isLargeTransaction());
+                return message;
             }
         }
     }
@@ -319,20 +335,25 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         checkSubscribe(clientIdentity);
         // 1. 根据 destination 找到要从哪一个 CanalInstance 中获取 binlog 消息
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
-        synchronized (canalInstance) {
+        synchronized (getLock(canalInstance, clientIdentity)) {
             // 获取到流式数据中的最后一批获取的位置。2. 从 CanalMetaManager 中获取最后一个没有 ack 的 binlog 批次的位置信息。
             PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().getLastestBatch(clientIdentity);
             // 3. 从 CanalEventStore 中获取 binlog
             Events<Event> events = null;
             if (positionRanges != null) { // 存在流数据。3.1 如果从 CanalMetaManager 获取到了位置信息，从当前位置继续获取 binlog
-                events = getEvents(canalInstance.getEventStore(), positionRanges.getStart(), batchSize, timeout, unit);
+                events = getEvents(canalInstance,
+                    clientIdentity,
+                    positionRanges.getStart(),
+                    batchSize,
+                    timeout,
+                    unit);
             } else {// ack后第一次获取。3.2 如果没有获取到 binlog 位置信息，从当前 store 中的第一条开始获取
                 Position start = canalInstance.getMetaManager().getCursor(clientIdentity);
                 if (start == null) { // 第一次，还没有过ack记录，则获取当前store中的第一条
                     start = canalInstance.getEventStore().getFirstPosition();
                 }
                 // 从CanalEventStore 中获取 binlog 消息
-                events = getEvents(canalInstance.getEventStore(), start, batchSize, timeout, unit);
+                events = getEvents(canalInstance, clientIdentity, start, batchSize, timeout, unit);
             }
             // 4. 记录批次信息到 CanalMetaManager 中
             if (CollectionUtils.isEmpty(events.getEvents())) { // 4.1 如果获取到的 binlog 消息为空，构造一个空的 Message 对象，将 batchId 设置为 -1 返回给客户端
@@ -360,12 +381,61 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
                         batchId,
                         events.getPositionRange());
                 }
-                return new Message(batchId, raw, entrys); // 构造 Message 返回
+                Message message = new Message(batchId, raw, entrys); // 构造 Message 返回
+                message.setLargeTransaction(events.isLargeTransaction());
+                return message;
             }
 
         }
     }
 
+    /**
+     * 判断当前是否有足够batchSize的数据可以获取，和阻塞get的唤醒条件一致，不会阻塞也不持有instance的锁
+     */
+    public boolean hasEnoughEvents(ClientIdentity clientIdentity, int batchSize) throws CanalServerException {
+        checkStart(clientIdentity.getDestination());
+        checkSubscribe(clientIdentity);
+        CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
+        CanalEventStore eventStore = canalInstance.getEventStore();
+        if (!(eventStore instanceof MemoryEventStoreWithBuffer)) {
+            return true;
+        }
+
+        MemoryEventStoreWithBuffer memoryEventStore = (MemoryEventStoreWithBuffer) eventStore;
+        if (memoryEventStore.isMultiSubscriber()) {
+            return memoryEventStore.hasUnGetEvents(clientIdentity, batchSize);
+        }
+        // 和getWithoutAck保持一致的起始位置
+        PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().getLastestBatch(clientIdentity);
+        Position start = null;
+        if (positionRanges != null) {
+            start = positionRanges.getStart();
+        } else {
+            start = canalInstance.getMetaManager().getCursor(clientIdentity);
+            if (start == null) {
+                start = eventStore.getFirstPosition();
+            }
+        }
+        return memoryEventStore.hasUnGetEvents(start, batchSize);
+    }
+
+    /**
+     * 注册store的put通知，不支持通知的store返回false
+     */
+    public boolean registerPutListener(String destination, Runnable listener) {
+        CanalInstance canalInstance = canalInstances.get(destination);
+        if (canalInstance == null || !(canalInstance.getEventStore() instanceof MemoryEventStoreWithBuffer)) {
+            return false;
+        }
+
+        MemoryEventStoreWithBuffer memoryEventStore = (MemoryEventStoreWithBuffer) canalInstance.getEventStore();
+        // instance重启后store会重建，每次注册时都检查一下
+        if (memoryEventStore.getPutListener() != listener) {
+            memoryEventStore.setPutListener(listener);
+        }
+        return true;
+    }
+
     /**
      * 查询当前未被ack的batch列表，batchId会按照从小到大进行返回
      */
@@ -430,7 +500,13 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         }
         // 3. 从 CanalEventStore 中，将这个批次的 binlog 内容移除
         // 可定时清理数据
-        canalInstance.getEventStore().ack(positionRanges.getEnd(), positionRanges.getEndSeq());
+        if (isMultiSubscriber(canalInstance.getEventStore())) {
+            ((MemoryEventStoreWithBuffer) canalInstance.getEventStore()).ack(clientIdentity,
+                positionRanges.getEnd(),
+                positionRanges.getEndSeq());
+        } else {
+            canalInstance.getEventStore().ack(positionRanges.getEnd(), positionRanges.getEndSeq());
+        }
     }
 
     /**
@@ -446,11 +522,11 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             return;
         }
 
-        synchronized (canalInstance) {
+        synchronized (getLock(canalInstance, clientIdentity)) {
             // 清除batch信息
             canalInstance.getMetaManager().clearAllBatchs(clientIdentity);
             // rollback eventStore中的状态信息
-            canalInstance.getEventStore().rollback();
+            rollbackEventStore(canalInstance.getEventStore(), clientIdentity);
             logger.info("rollback successfully, clientId:{}", new Object[] { clientIdentity.getClientId() });
         }
     }
@@ -468,7 +544,7 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         if (!hasSubscribe) {
             return;
         }
-        synchronized (canalInstance) {
+        synchronized (getLock(canalInstance, clientIdentity)) {
             // 清除batch信息
             PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().removeBatch(clientIdentity,
                 batchId);
@@ -481,8 +557,8 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             // lastRollbackPostions.put(clientIdentity,
             // positionRanges.getEnd());// 记录一下最后rollback的位置
             // TODO 后续rollback到指定的batchId位置
-            canalInstance.getEventStore().rollback();// rollback
-                                                     // eventStore中的状态信息
+            rollbackEventStore(canalInstance.getEventStore(), clientIdentity);// rollback
+                                                                              // eventStore中的状态信息
             logger.info("rollback successfully, clientId:{} batchId:{} position:{}",
                 clientIdentity.getClientId(),
                 batchId,
@@ -499,8 +575,29 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
     /**
      * 根据不同的参数，选择不同的方式获取数据
      */
-    private Events<Event> getEvents(CanalEventStore eventStore, Position start, int batchSize, Long timeout,
-                                    TimeUnit unit) {
+    private Events<Event> getEvents(CanalInstance canalInstance, ClientIdentity clientIdentity, Position start,
+                                    int batchSize, Long timeout, TimeUnit unit) {
+        CanalEventStore eventStore = canalInstance.getEventStore();
+        if (isMultiSubscriber(eventStore)) {
+            // 多订阅者模式下按clientIdentity各自的位点获取
+            MemoryEventStoreWithBuffer memoryEventStore = (MemoryEventStoreWithBuffer) eventStore;
+            try {
+                if (timeout == null) {
+                    return memoryEventStore.tryGet(clientIdentity, batchSize);
+                } else if (timeout <= 0) {
+                    return memoryEventStore.get(clientIdentity, batchSize);
+                } else {
+                    return memoryEventStore.get(clientIdentity, batchSize, timeout, unit);
+                }
+            } catch (SubscriberEvictedException e) {
+                // 被淘汰之前get到的批次已经不在store中，一起清理掉，客户端重新get即可
+                canalInstance.getMetaManager().clearAllBatchs(clientIdentity);
+                throw new CanalServerException(e);
+            } catch (Exception e) {
+                throw new CanalServerException(e);
+            }
+        }
+
         if (timeout == null) {
             return eventStore.tryGet(start, batchSize);
         } else {
@@ -516,6 +613,14 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         }
     }
 
+    private void rollbackEventStore(CanalEventStore eventStore, ClientIdentity clientIdentity) {
+        if (isMultiSubscriber(eventStore)) {
+            ((MemoryEventStoreWithBuffer) eventStore).rollback(clientIdentity);
+        } else {
+            eventStore.rollback();
+        }
+    }
+
     private void checkSubscribe(ClientIdentity clientIdentity) {
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
         boolean hasSubscribe = canalInstance.getMetaManager().hasSubscribe(clientIdentity);
@@ -555,6 +660,21 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         this.metrics = provider.getService();
     }
 
+    /**
+     * 多订阅者模式下每个client的位点相互独立，只需要按client加锁，避免阻塞get相互等待
+     */
+    private Object getLock(CanalInstance canalInstance, ClientIdentity clientIdentity) {
+        if (isMultiSubscriber(canalInstance.getEventStore())) {
+            return clientLocks.computeIfAbsent(clientIdentity, key -> new Object());
+        }
+        return canalInstance;
+    }
+
+    private boolean isMultiSubscriber(CanalEventStore eventStore) {
+        return eventStore instanceof MemoryEventStoreWithBuffer
+               && ((MemoryEventStoreWithBuffer) eventStore).isMultiSubscriber();
+    }
+
     private boolean isRaw(CanalEventStore eventStore) {
         if (eventStore instanceof MemoryEventStoreWithBuffer) {
             return ((MemoryEventStoreWithBuffer) eventStore).isRaw();
@@ -0,0 +1,39 @@
+package com.alibaba.otter.canal.server.embedded;
+
+import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
+import com.alibaba.otter.canal.server.embedded.InstanceStartupProfiler.StartupPhase;
+
+/**
+ * instance启动耗时的profiler入口，默认为NOP，由metrics实现进行替换
+ */
+public class CanalServerWithEmbeddedProfiler {
+
+    public static final InstanceStartupProfiler NOP = new DefaultInstanceStartupProfiler();
+    private volatile InstanceStartupProfiler    startupProfiler;
+
+    private static class SingletonHolder {
+        private static CanalServerWithEmbeddedProfiler SINGLETON = new CanalServerWithEmbeddedProfiler();
+    }
+
+    private CanalServerWithEmbeddedProfiler() {
+        this.startupProfiler = NOP;
+    }
+
+    public static CanalServerWithEmbeddedProfiler profiler() {
+        return SingletonHolder.SINGLETON;
+    }
+
+    public void profiling(String destination, StartupPhase phase, long costNanos) {
+        startupProfiler.profiling(destination, phase, costNanos);
+    }
+
+    public void setStartupProfiler(InstanceStartupProfiler startupProfiler) {
+        this.startupProfiler = startupProfiler;
+    }
+
+    private static class DefaultInstanceStartupProfiler extends AbstractCanalLifeCycle implements InstanceStartupProfiler {
+        @Override
+        public void profiling(String destination, StartupPhase phase, long costNanos) {}
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.alibaba.otter.canal.server.embedded;
+
+import com.alibaba.otter.canal.common.CanalLifeCycle;
+
+/**
+ * instance启动过程各阶段耗时的统计
+ */
+public interface InstanceStartupProfiler extends CanalLifeCycle {
+
+    void profiling(String destination, StartupPhase phase, long costNanos);
+
+    enum StartupPhase {
+        /** 并行启动时在队列中等待调度的时间 */
+        QUEUE,
+        /** 生成CanalInstance(spring context/manager配置加载) */
+        GENERATE,
+        /** CanalInstance.start()，包含parser/sink/store等组件的启动 */
+        START,
+        /** MQ worker的启动 */
+        MQ,
+        /** 从提交启动到完成的总耗时 */
+        TOTAL
+    }
+}
@@ -0,0 +1,202 @@
+package com.alibaba.otter.canal.server.netty;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.otter.canal.common.AbstractCanalLifeCycle;
+import com.alibaba.otter.canal.common.utils.NamedThreadFactory;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
+
+/**
+ * 异步long-poll get的调度，避免带timeout的get阻塞netty的I/O线程
+ *
+ * <pre>
+ * 1. 带timeout的get按destination注册为pending get，不再在I/O线程上等待store的notEmpty
+ * 2. store每次put后通知对应的destination，由少量的工作线程检查哪些pending get已经满足batchSize并完成
+ * 3. 超时后按照原有的语义，有多少取多少
+ * 4. 完成时只调用非阻塞的tryGet，不会长时间持有instance的锁，空闲的client不占用线程
+ * 5. 连接关闭时通过close future移除对应的pending get
+ * </pre>
+ */
+public class CanalLongPollScheduler extends AbstractCanalLifeCycle {
+
+    private static final Logger                      logger       = LoggerFactory.getLogger(CanalLongPollScheduler.class);
+    private final CanalServerWithEmbedded            embeddedServer;
+    private final ConcurrentMap<String, Destination> destinations = new ConcurrentHashMap<>();
+    private int                                      threads      = 2;
+    private ExecutorService                          executor;
+
+    public CanalLongPollScheduler(CanalServerWithEmbedded embeddedServer){
+        this.embeddedServer = embeddedServer;
+    }
+
+    public void start() {
+        super.start();
+        executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("canal-long-poll", true));
+    }
+
+    public void stop() {
+        super.stop();
+        executor.shutdownNow();
+        destinations.clear();
+    }
+
+    /**
+     * 注册一个pending get，store不支持put通知时返回false，由调用方走原有的同步get
+     *
+     * @param timeout 小于等于0代表一直等待到有足够的数据
+     * @param completer 执行非阻塞的get并回写结果
+     */
+    public boolean register(Channel channel, ClientIdentity clientIdentity, int batchSize, long timeout,
+                            TimeUnit unit, Runnable completer) {
+        Destination destination = destinations.computeIfAbsent(clientIdentity.getDestination(), Destination::new);
+        if (!embeddedServer.registerPutListener(destination.name, destination.listener)) {
+            return false;
+        }
+
+        PendingGet pending = new PendingGet(channel, clientIdentity, batchSize, completer);
+        destination.pendings.add(pending);
+        // 连接断开时直接移除，不依赖下一次put或者超时，timeout <= 0时pending get可能一直没有机会被清理
+        pending.closeListener = future -> {
+            pending.cancel();
+            destination.pendings.remove(pending);
+        };
+        channel.getCloseFuture().addListener(pending.closeListener);
+        if (timeout > 0) {
+            pending.timeout = NettyUtils.hashedWheelTimer.newTimeout(t -> executor.execute(() -> {
+                if (!pending.channel.isConnected()) {
+                    pending.cancel();
+                    destination.pendings.remove(pending);
+                } else if (pending.tryComplete()) {
+                    // 超时后有多少取多少
+                    destination.pendings.remove(pending);
+                }
+            }), timeout, unit);
+        }
+        // 注册之后再检查一次，避免错过注册之前的put通知
+        destination.signal();
+        return true;
+    }
+
+    public int getPendingCount() {
+        int count = 0;
+        for (Destination destination : destinations.values()) {
+            count += destination.pendings.size();
+        }
+        return count;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    private class Destination {
+
+        private final String            name;
+        private final Queue<PendingGet> pendings  = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean     scheduled = new AtomicBoolean(false);
+        private final Runnable          listener  = this::signal;
+
+        Destination(String name){
+            this.name = name;
+        }
+
+        /**
+         * 在store的put中调用，只做合并后的调度，不能阻塞
+         */
+        void signal() {
+            if (!pendings.isEmpty() && scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (Throwable e) {
+                    scheduled.set(false);
+                    logger.warn("schedule long poll get failed for destination:{}", name, e);
+                }
+            }
+        }
+
+        void drain() {
+            scheduled.set(false);
+            for (Iterator<PendingGet> it = pendings.iterator(); it.hasNext();) {
+                PendingGet pending = it.next();
+                if (pending.done.get() || !pending.channel.isConnected()) {
+                    // 连接已经断开，不再获取数据，避免产生无人ack的batch
+                    pending.cancel();
+                    it.remove();
+                    continue;
+                }
+
+                boolean ready;
+                try {
+                    ready = embeddedServer.hasEnoughEvents(pending.clientIdentity, pending.batchSize);
+                } catch (Throwable e) {
+                    // 交给get返回具体的异常
+                    ready = true;
+                }
+                if (ready && pending.tryComplete()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static class PendingGet {
+
+        private final Channel                  channel;
+        private final ClientIdentity           clientIdentity;
+        private final int                      batchSize;
+        private final Runnable                 completer;
+        private final AtomicBoolean            done = new AtomicBoolean(false);
+        private volatile Timeout               timeout;
+        private volatile ChannelFutureListener closeListener;
+
+        PendingGet(Channel channel, ClientIdentity clientIdentity, int batchSize, Runnable completer){
+            this.channel = channel;
+            this.clientIdentity = clientIdentity;
+            this.batchSize = batchSize;
+            this.completer = completer;
+        }
+
+        boolean tryComplete() {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            release();
+            completer.run();
+            return true;
+        }
+
+        void cancel() {
+            done.set(true);
+            release();
+        }
+
+        /**
+         * 取消超时，同时从close future上移除监听，长连接上反复get时监听不会一直累积
+         */
+        private void release() {
+            Timeout t = timeout;
+            if (t != null) {
+                t.cancel();
+            }
+            ChannelFutureListener listener = closeListener;
+            if (listener != null) {
+                channel.getCloseFuture().removeListener(listener);
+            }
+        }
+    }
+}
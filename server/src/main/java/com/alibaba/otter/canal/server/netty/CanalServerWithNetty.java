@@ -31,12 +31,14 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
     private CanalServerWithEmbedded embeddedServer;      // 嵌入式server。因为 CanalServerWithNetty 需要将请求委派给 CanalServerWithEmbeded 处理，因此其维护了 embeddedServer 对象。
     private String                  ip; // netty 监听的网络 ip 和端口，client 通过这个 ip 和端口与 server 通信
     private int                     port;
-    private Channel                 serverChannel = null;
-    private ServerBootstrap         bootstrap     = null;
-    private ChannelGroup            childGroups   = null; // socket channel
-                                                          // container, used to
-                                                          // close sockets
-                                                          // explicitly.
+    private Channel                 serverChannel   = null;
+    private ServerBootstrap         bootstrap       = null;
+    private ChannelGroup            childGroups     = null; // socket channel
+                                                            // container, used to
+                                                            // close sockets
+                                                            // explicitly.
+    private int                     longPollThreads = 2;    // 异步long-poll get的工作线程数，0代表在I/O线程上同步等待
+    private CanalLongPollScheduler  longPollScheduler;
 
     private static class SingletonHolder {
 
@@ -59,6 +61,12 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
             embeddedServer.start();
         }
 
+        if (longPollThreads > 0) {
+            longPollScheduler = new CanalLongPollScheduler(embeddedServer);
+            longPollScheduler.setThreads(longPollThreads);
+            longPollScheduler.start();
+        }
+
         this.bootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newCachedThreadPool(),
             Executors.newCachedThreadPool()));
         /*
@@ -83,7 +91,7 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
             pipelines.addLast(ClientAuthenticationHandler.class.getName(),
                 new ClientAuthenticationHandler(embeddedServer)); // client 身份验证
             // SessionHandler 用于真正的处理客户端请求
-            SessionHandler sessionHandler = new SessionHandler(embeddedServer);
+            SessionHandler sessionHandler = new SessionHandler(embeddedServer, longPollScheduler);
             pipelines.addLast(SessionHandler.class.getName(), sessionHandler);
             return pipelines;
         });
@@ -113,6 +121,10 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
             this.bootstrap.releaseExternalResources();
         }
 
+        if (longPollScheduler != null && longPollScheduler.isStart()) {
+            longPollScheduler.stop();
+        }
+
         if (embeddedServer.isStart()) {
             embeddedServer.stop();
         }
@@ -126,6 +138,10 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
         this.port = port;
     }
 
+    public void setLongPollThreads(int longPollThreads) {
+        this.longPollThreads = longPollThreads;
+    }
+
     public void setEmbeddedServer(CanalServerWithEmbedded embeddedServer) {
         this.embeddedServer = embeddedServer;
     }
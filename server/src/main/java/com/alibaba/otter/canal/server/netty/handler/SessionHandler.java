@@ -1,11 +1,13 @@
 package com.alibaba.otter.canal.server.netty.handler;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.ExceptionEvent;
@@ -32,6 +34,7 @@ import com.alibaba.otter.canal.protocol.CanalPacket.Unsub;
 import com.alibaba.otter.canal.protocol.ClientIdentity;
 import com.alibaba.otter.canal.protocol.Message;
 import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
+import com.alibaba.otter.canal.server.netty.CanalLongPollScheduler;
 import com.alibaba.otter.canal.server.netty.NettyUtils;
 import com.alibaba.otter.canal.server.netty.listener.ChannelFutureAggregator;
 import com.google.protobuf.ByteString;
@@ -42,6 +45,7 @@ public class SessionHandler extends SimpleChannelHandler {
 
     private static final Logger     logger = LoggerFactory.getLogger(SessionHandler.class);
     private CanalServerWithEmbedded embeddedServer; // CanalServerWithNetty 要将请求委派给 CanalServerWithEmbedded 处理，显然 SessionHandler 也要维护 embeddedServer 实例
+    private CanalLongPollScheduler  longPollScheduler;                                         // 带timeout的get异步处理，为null时在I/O线程上同步等待
 
     public SessionHandler(){
     }
@@ -49,6 +53,11 @@ public class SessionHandler extends SimpleChannelHandler {
     public SessionHandler(CanalServerWithEmbedded embeddedServer){
         this.embeddedServer = embeddedServer;
     }
+
+    public SessionHandler(CanalServerWithEmbedded embeddedServer, CanalLongPollScheduler longPollScheduler){
+        this.embeddedServer = embeddedServer;
+        this.longPollScheduler = longPollScheduler;
+    }
     // messageReceived 方法表示收到客户端请求
     @SuppressWarnings({ "deprecation" })
     public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
@@ -147,6 +156,19 @@ public class SessionHandler extends SimpleChannelHandler {
                             message = embeddedServer.getWithoutAck(clientIdentity, get.getFetchSize());
                         } else {
                             TimeUnit unit = convertTimeUnit(get.getUnit());
+                            final Channel channel = ctx.getChannel();
+                            final ClientIdentity pendingIdentity = clientIdentity;
+                            final PacketType type = packet.getType();
+                            if (longPollScheduler != null && longPollScheduler.isStart()
+                                && longPollScheduler.register(channel,
+                                    pendingIdentity,
+                                    get.getFetchSize(),
+                                    get.getTimeout(),
+                                    unit,
+                                    () -> completeGet(channel, pendingIdentity, get, type, start))) {
+                                // 交给long-poll调度，不阻塞I/O线程
+                                break;
+                            }
                             message = embeddedServer.getWithoutAck(clientIdentity,
                                 get.getFetchSize(),
                                 get.getTimeout(),
@@ -154,86 +176,7 @@ public class SessionHandler extends SimpleChannelHandler {
                         }
                         // }
 
-                        if (message.getId() != -1 && message.isRaw()) {
-                            List<ByteString> rowEntries = message.getRawEntries();
-                            // message size
-                            int messageSize = 0;
-                            messageSize += com.google.protobuf.CodedOutputStream.computeInt64Size(1, message.getId());
-
-                            int dataSize = 0;
-                            for (ByteString rowEntry : rowEntries) {
-                                dataSize += CodedOutputStream.computeBytesSizeNoTag(rowEntry);
-                            }
-                            messageSize += dataSize;
-                            messageSize += 1 * rowEntries.size();
-                            // packet size
-                            int size = 0;
-                            size += com.google.protobuf.CodedOutputStream.computeEnumSize(3,
-                                PacketType.MESSAGES.getNumber());
-                            size += com.google.protobuf.CodedOutputStream.computeTagSize(5)
-                                    + com.google.protobuf.CodedOutputStream.computeRawVarint32Size(messageSize)
-                                    + messageSize;
-                            // recyle bytes
-                            // ByteBuffer byteBuffer = (ByteBuffer)
-                            // ctx.getAttachment();
-                            // if (byteBuffer != null && size <=
-                            // byteBuffer.capacity()) {
-                            // byteBuffer.clear();
-                            // } else {
-                            // byteBuffer =
-                            // ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
-                            // ctx.setAttachment(byteBuffer);
-                            // }
-                            // CodedOutputStream output =
-                            // CodedOutputStream.newInstance(byteBuffer);
-                            byte[] body = new byte[size];
-                            CodedOutputStream output = CodedOutputStream.newInstance(body);
-                            output.writeEnum(3, PacketType.MESSAGES.getNumber());
-
-                            output.writeTag(5, WireFormat.WIRETYPE_LENGTH_DELIMITED);
-                            output.writeRawVarint32(messageSize);
-                            // message
-                            output.writeInt64(1, message.getId());
-                            for (ByteString rowEntry : rowEntries) {
-                                output.writeBytes(2, rowEntry);
-                            }
-                            output.checkNoSpaceLeft();
-                            NettyUtils.write(ctx.getChannel(), body, new ChannelFutureAggregator(get.getDestination(),
-                                get,
-                                packet.getType(),
-                                body.length,
-                                System.nanoTime() - start,
-                                message.getId() == -1));
-
-                            // output.flush();
-                            // byteBuffer.flip();
-                            // NettyUtils.write(ctx.getChannel(), byteBuffer,
-                            // null);
-                        } else {
-                            Packet.Builder packetBuilder = CanalPacket.Packet.newBuilder();
-                            packetBuilder.setType(PacketType.MESSAGES).setVersion(NettyUtils.VERSION);
-
-                            Messages.Builder messageBuilder = CanalPacket.Messages.newBuilder();
-                            messageBuilder.setBatchId(message.getId());
-                            if (message.getId() != -1) {
-                                if (message.isRaw() && !CollectionUtils.isEmpty(message.getRawEntries())) {
-                                    messageBuilder.addAllMessages(message.getRawEntries());
-                                } else if (!CollectionUtils.isEmpty(message.getEntries())) {
-                                    for (Entry entry : message.getEntries()) {
-                                        messageBuilder.addMessages(entry.toByteString());
-                                    }
-                                }
-                            }
-                            byte[] body = packetBuilder.setBody(messageBuilder.build().toByteString())
-                                .build()
-                                .toByteArray();
-                            NettyUtils.write(ctx.getChannel(), body, new ChannelFutureAggregator(get.getDestination(),
-                                get,
-                                packet.getType(),
-                                body.length,
-                                System.nanoTime() - start,
-                                message.getId() == -1));// 输出数据
-                        }
+                        writeMessage(ctx.getChannel(), message, get, packet.getType(), start);
                     } else {
                         byte[] errorBytes = NettyUtils.errorPacket(401,
                             MessageFormatter.format("destination or clientId is null", get.toString()).getMessage());
@@ -338,6 +281,114 @@ public class SessionHandler extends SimpleChannelHandler {
         }
     }
 
+    /**
+     * 异步long-poll get的完成，在long-poll的工作线程上执行非阻塞的get并回写结果
+     */
+    private void completeGet(Channel channel, ClientIdentity clientIdentity, Get get, PacketType type, long start) {
+        try {
+            MDC.put("destination", clientIdentity.getDestination());
+            Message message = embeddedServer.getWithoutAck(clientIdentity, get.getFetchSize());
+            writeMessage(channel, message, get, type, start);
+        } catch (Throwable exception) {
+            byte[] errorBytes = NettyUtils.errorPacket(400,
+                MessageFormatter.format("something goes wrong with channel:{}, exception={}",
+                    channel,
+                    ExceptionUtils.getStackTrace(exception)).getMessage());
+            NettyUtils.write(channel, errorBytes, new ChannelFutureAggregator(get.getDestination(),
+                get,
+                type,
+                errorBytes.length,
+                System.nanoTime() - start,
+                (short) 400));
+        } finally {
+            MDC.remove("destination");
+        }
+    }
+
+    private void writeMessage(Channel channel, Message message, Get get, PacketType type, long start)
+                                                                                                     throws IOException {
+        if (message.getId() != -1 && message.isRaw()) {
+            List<ByteString> rowEntries = message.getRawEntries();
+            // message size
+            int messageSize = 0;
+            messageSize += com.google.protobuf.CodedOutputStream.computeInt64Size(1, message.getId());
+
+            int dataSize = 0;
+            for (ByteString rowEntry : rowEntries) {
+                dataSize += CodedOutputStream.computeBytesSizeNoTag(rowEntry);
+            }
+            messageSize += dataSize;
+            messageSize += 1 * rowEntries.size();
+            // packet size
+            int size = 0;
+            size += com.google.protobuf.CodedOutputStream.computeEnumSize(3,
+                PacketType.MESSAGES.getNumber());
+            size += com.google.protobuf.CodedOutputStream.computeTagSize(5)
+                    + com.google.protobuf.CodedOutputStream.computeRawVarint32Size(messageSize)
+                    + messageSize;
+            // recyle bytes
+            // ByteBuffer byteBuffer = (ByteBuffer)
+            // ctx.getAttachment();
+            // if (byteBuffer != null && size <=
+            // byteBuffer.capacity()) {
+            // byteBuffer.clear();
+            // } else {
+            // byteBuffer =
+            // ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+            // ctx.setAttachment(byteBuffer);
+            // }
+            // CodedOutputStream output =
+            // CodedOutputStream.newInstance(byteBuffer);
+            byte[] body = new byte[size];
+            CodedOutputStream output = CodedOutputStream.newInstance(body);
+            output.writeEnum(3, PacketType.MESSAGES.getNumber());
+
+            output.writeTag(5, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeRawVarint32(messageSize);
+            // message
+            output.writeInt64(1, message.getId());
+            for (ByteString rowEntry : rowEntries) {
+                output.writeBytes(2, rowEntry);
+            }
+            output.checkNoSpaceLeft();
+            NettyUtils.write(channel, body, new ChannelFutureAggregator(get.getDestination(),
+                get,
+                type,
+                body.length,
+                System.nanoTime() - start,
+                message.getId() == -1));
+
+            // output.flush();
+            // byteBuffer.flip();
+            // NettyUtils.write(channel, byteBuffer,
+            // null);
+        } else {
+            Packet.Builder packetBuilder = CanalPacket.Packet.newBuilder();
+            packetBuilder.setType(PacketType.MESSAGES).setVersion(NettyUtils.VERSION);
+
+            Messages.Builder messageBuilder = CanalPacket.Messages.newBuilder();
+            messageBuilder.setBatchId(message.getId());
+            if (message.getId() != -1) {
+                if (message.isRaw() && !CollectionUtils.isEmpty(message.getRawEntries())) {
+                    messageBuilder.addAllMessages(message.getRawEntries());
+                } else if (!CollectionUtils.isEmpty(message.getEntries())) {
+                    for (Entry entry : message.getEntries()) {
+                        messageBuilder.addMessages(entry.toByteString());
+                    }
+                }
+            }
+            byte[] body = packetBuilder.setBody(messageBuilder.build().toByteString())
+                .build()
+                .toByteArray();
+            NettyUtils.write(channel, body, new ChannelFutureAggregator(get.getDestination(),
+                get,
+                type,
+                body.length,
+                System.nanoTime() - start,
+                message.getId() == -1));// 输出数据
+        }
+    }
+
     public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
         logger.error("something goes wrong with channel:{}, exception={}",
             ctx.getChannel(),
@@ -390,4 +441,8 @@ public class SessionHandler extends SimpleChannelHandler {
         this.embeddedServer = embeddedServer;
     }
 
+    public void setLongPollScheduler(CanalLongPollScheduler longPollScheduler) {
+        this.longPollScheduler = longPollScheduler;
+    }
+
 }
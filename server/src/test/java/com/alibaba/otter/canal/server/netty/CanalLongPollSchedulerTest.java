@@ -0,0 +1,109 @@
+package com.alibaba.otter.canal.server.netty;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.DefaultChannelFuture;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.server.embedded.CanalServerWithEmbedded;
+
+/**
+ * 测试下异步long-poll get由put通知或者超时完成
+ */
+public class CanalLongPollSchedulerTest {
+
+    private volatile boolean       ready;
+    private volatile Runnable      putListener;
+    private CanalLongPollScheduler scheduler;
+    private ClientIdentity         clientIdentity = new ClientIdentity("example", (short) 1001);
+    private ChannelFuture          closeFuture    = new DefaultChannelFuture(null, false);
+    private Channel                channel        = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(),
+                                                      new Class[] { Channel.class },
+                                                      (proxy, method, args) -> {
+                                                          switch (method.getName()) {
+                                                              case "isConnected":
+                                                                  return !closeFuture.isDone();
+                                                              case "getCloseFuture":
+                                                                  return closeFuture;
+                                                              default:
+                                                                  return null;
+                                                          }
+                                                      });
+
+    @Before
+    public void setUp() {
+        CanalServerWithEmbedded embeddedServer = new CanalServerWithEmbedded() {
+
+            @Override
+            public boolean hasEnoughEvents(ClientIdentity clientIdentity, int batchSize) {
+                return ready;
+            }
+
+            @Override
+            public boolean registerPutListener(String destination, Runnable listener) {
+                putListener = listener;
+                return true;
+            }
+        };
+        scheduler = new CanalLongPollScheduler(embeddedServer);
+        scheduler.setThreads(1);
+        scheduler.start();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.stop();
+    }
+
+    @Test
+    public void testCompleteOnPut() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        Assert.assertTrue(scheduler.register(channel, clientIdentity, 100, 10, TimeUnit.SECONDS, latch::countDown));
+        Assert.assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(1, scheduler.getPendingCount());
+
+        ready = true;
+        putListener.run();
+        Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        Assert.assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void testCompleteOnTimeout() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.currentTimeMillis();
+        Assert.assertTrue(scheduler.register(channel, clientIdentity, 100, 300, TimeUnit.MILLISECONDS, latch::countDown));
+        Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 250);
+        // 超时完成之后，put通知不会重复完成
+        ready = true;
+        putListener.run();
+        Thread.sleep(100);
+        Assert.assertEquals(0, latch.getCount());
+        Assert.assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void testRemoveOnClose() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        // 不带超时的pending get，连接关闭后不需要等下一次put通知
+        Assert.assertTrue(scheduler.register(channel, clientIdentity, 100, 0, TimeUnit.SECONDS, latch::countDown));
+        Assert.assertEquals(1, scheduler.getPendingCount());
+
+        closeFuture.setSuccess();
+        Assert.assertEquals(0, scheduler.getPendingCount());
+        ready = true;
+        putListener.run();
+        Thread.sleep(100);
+        Assert.assertEquals(1, latch.getCount());
+    }
+}
@@ -3,13 +3,12 @@ package com.alibaba.otter.canal.sink.entry;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.LockSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
-import org.springframework.util.CollectionUtils;
 
 import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
@@ -26,13 +25,21 @@ import com.alibaba.otter.canal.store.model.Event;
 /**
  * mysql binlog数据对象输出
  * 
+ * <pre>
+ * 1. 每个sink线程复用一个{@linkplain EventBatch}，过滤后的entry和构造出的event都放在其中，同一个连接共用一个LogIdentity
+ * 2. 空事务等不需要输出的数据只根据entry做判断，不再构造event
+ * 3. heartbeat在before之后直接剔除，没有注册handler时不做handler的回调
+ * 4. store满时在store的notFull上等待ack释放空间，不再yield/park后盲目重试
+ * </pre>
+ * 
  * @author jianghang 2012-7-4 下午03:23:16
  * @version 1.0.0
  */
 public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry>> implements CanalEventSink<List<CanalEntry.Entry>> {
 
     private static final Logger    logger                        = LoggerFactory.getLogger(EntryEventSink.class);
-    private static final int       maxFullTimes                  = 10;
+    private static final long      fullWaitMillis                = 100;                                          // store满时单次等待的时间
+    private static final int       maxReuseSize                  = 4096;                                         // 超过该大小的batch用完后不再复用，避免长期占用内存
     private CanalEventStore<Event> eventStore;
     protected boolean              filterTransactionEntry        = false;                                        // 是否需要尽可能过滤事务头/尾
     protected boolean              filterEmtryTransactionEntry   = true;                                         // 是否需要过滤空的事务头/尾
@@ -45,9 +52,17 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
     protected AtomicLong           lastEmptyTransactionCount     = new AtomicLong(0L);
     protected AtomicLong           eventsSinkBlockingTime        = new AtomicLong(0L);
     protected boolean              raw;
+    protected int                  latencyTraceSampleRate        = 0;                                            // 每N个event采样一个做延迟统计，0代表关闭
+    protected AtomicLong           latencyTraceSequence          = new AtomicLong(0L);
+    protected int                  hotTableTopK                  = 0;                                            // 热点表统计的top-K，0代表关闭
+    protected long                 hotTableWindowSeconds         = 60;                                           // 热点表统计的窗口
+    protected HotTableTracker      hotTableTracker;
+
+    // group模式下多个parser线程会同时sink，batch按线程复用
+    private final ThreadLocal<EventBatch> batches = ThreadLocal.withInitial(EventBatch::new);
 
     public EntryEventSink(){
-        addHandler(new HeartBeatEntryEventHandler());
+        // heartbeat的剔除直接在doSink中处理，不再注册HeartBeatEntryEventHandler
     }
 
     public void start() {
@@ -58,6 +73,10 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
             this.raw = ((MemoryEventStoreWithBuffer) eventStore).isRaw();
         }
 
+        if (hotTableTopK > 0) {
+            hotTableTracker = new HotTableTracker(hotTableTopK, hotTableWindowSeconds * 1000);
+        }
+
         for (CanalEventDownStreamHandler handler : getHandlers()) {
             if (!handler.isStart()) {
                 handler.start();
@@ -88,9 +107,18 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
 
     private boolean sinkData(List<CanalEntry.Entry> entrys, InetSocketAddress remoteAddress)
                                                                                             throws InterruptedException {
+        EventBatch batch = batches.get();
+        try {
+            return sinkData(batch, entrys, remoteAddress);
+        } finally {
+            batch.reset();
+        }
+    }
+
+    private boolean sinkData(EventBatch batch, List<CanalEntry.Entry> entrys, InetSocketAddress remoteAddress) {
         boolean hasRowData = false;
         boolean hasHeartBeat = false;
-        List<Event> events = new ArrayList<>();
+        List<CanalEntry.Entry> accepted = batch.entries;
         for (CanalEntry.Entry entry : entrys) {
             if (!doFilter(entry)) {
                 continue;
@@ -115,23 +143,22 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
 
             hasRowData |= (entry.getEntryType() == EntryType.ROWDATA);
             hasHeartBeat |= (entry.getEntryType() == EntryType.HEARTBEAT);
-            Event event = new Event(new LogIdentity(remoteAddress, -1L), entry, raw);
-            events.add(event);
+            accepted.add(entry);
         }
 
         if (hasRowData || hasHeartBeat) {
             // 存在row记录 或者 存在heartbeat记录，直接跳给后续处理
-            return doSink(events);
+            return doSink(buildEvents(batch, remoteAddress));
         } else {
             // 需要过滤的数据
-            if (filterEmtryTransactionEntry && !CollectionUtils.isEmpty(events)) {
-                long currentTimestamp = events.get(0).getExecuteTime();
+            if (filterEmtryTransactionEntry && !accepted.isEmpty()) {
+                long currentTimestamp = accepted.get(0).getHeader().getExecuteTime();
                 // 基于一定的策略控制，放过空的事务头和尾，便于及时更新数据库位点，表明工作正常
                 if (Math.abs(currentTimestamp - lastEmptyTransactionTimestamp) > emptyTransactionInterval
                     || lastEmptyTransactionCount.incrementAndGet() > emptyTransctionThresold) {
                     lastEmptyTransactionCount.set(0L);
                     lastEmptyTransactionTimestamp = currentTimestamp;
-                    return doSink(events);
+                    return doSink(buildEvents(batch, remoteAddress));
                 }
             }
 
@@ -140,6 +167,30 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
         }
     }
 
+    private List<Event> buildEvents(EventBatch batch, InetSocketAddress remoteAddress) {
+        LogIdentity logIdentity = batch.logIdentity(remoteAddress);
+        List<Event> events = batch.events;
+        long now = hotTableTracker != null ? System.currentTimeMillis() : 0L;
+        for (CanalEntry.Entry entry : batch.entries) {
+            Event event = new Event(logIdentity, entry, raw);
+            event.setLargeTransaction(batch.largeTransaction);
+            if (latencyTraceSampleRate > 0 && latencyTraceSequence.incrementAndGet() % latencyTraceSampleRate == 0) {
+                // 打上解析完成的时间点，后续store的put/get/ack阶段基于此计算耗时
+                event.setTraceTime(System.currentTimeMillis());
+                event.setTraceNanos(System.nanoTime());
+            }
+            if (hotTableTracker != null && entry.getEntryType() == EntryType.ROWDATA) {
+                hotTableTracker.record(entry.getHeader().getSchemaName(),
+                    entry.getHeader().getTableName(),
+                    event.getRowsCount(),
+                    entry.getHeader().getEventLength(),
+                    now);
+            }
+            events.add(event);
+        }
+        return events;
+    }
+
     protected boolean doFilter(CanalEntry.Entry entry) {
         if (filter != null && entry.getEntryType() == EntryType.ROWDATA) {
             String name = getSchemaNameAndTableName(entry);
@@ -158,49 +209,82 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
     }
 
     protected boolean doSink(List<Event> events) {
-        for (CanalEventDownStreamHandler<List<Event>> handler : getHandlers()) {
-            events = handler.before(events);
-        }
-        long blockingStart = 0L;
-        int fullTimes = 0;
-        do {
-            if (eventStore.tryPut(events)) {
-                if (fullTimes > 0) {
-                    eventsSinkBlockingTime.addAndGet(System.nanoTime() - blockingStart);
-                }
-                for (CanalEventDownStreamHandler<List<Event>> handler : getHandlers()) {
-                    events = handler.after(events);
-                }
-                return true;
-            } else {
-                if (fullTimes == 0) {
-                    blockingStart = System.nanoTime();
-                }
-                applyWait(++fullTimes);
-                if (fullTimes % 100 == 0) {
-                    long nextStart = System.nanoTime();
-                    eventsSinkBlockingTime.addAndGet(nextStart - blockingStart);
-                    blockingStart = nextStart;
+        boolean dispatch = !handlers.isEmpty();
+        if (dispatch) {
+            for (CanalEventDownStreamHandler<List<Event>> handler : getHandlers()) {
+                events = handler.before(events);
+            }
+        }
+        events = removeHeartBeat(events);
+
+        if (!eventStore.tryPut(events)) {
+            // store已满，等待ack释放空间后由store唤醒
+            long blockingStart = System.nanoTime();
+            try {
+                boolean success = false;
+                while (!success) {
+                    if (!running) {
+                        return false;
+                    }
+
+                    if (dispatch) {
+                        for (CanalEventDownStreamHandler<List<Event>> handler : getHandlers()) {
+                            events = handler.retry(events);
+                        }
+                    }
+                    success = eventStore.put(events, fullWaitMillis, TimeUnit.MILLISECONDS);
+                    long now = System.nanoTime();
+                    eventsSinkBlockingTime.addAndGet(now - blockingStart);
+                    blockingStart = now;
                 }
+            } catch (InterruptedException e) {
+                return false;
             }
+        }
 
+        if (dispatch) {
             for (CanalEventDownStreamHandler<List<Event>> handler : getHandlers()) {
-                events = handler.retry(events);
+                events = handler.after(events);
             }
-
-        } while (running && !Thread.interrupted());
-        return false;
+        }
+        return true;
     }
 
-    // 处理无数据的情况，避免空循环挂死
-    private void applyWait(int fullTimes) {
-        int newFullTimes = fullTimes > maxFullTimes ? maxFullTimes : fullTimes;
-        if (fullTimes <= 3) { // 3次以内
-            Thread.yield();
-        } else { // 超过3次，最多只sleep 10ms
-            LockSupport.parkNanos(1000 * 1000L * newFullTimes);
+    /**
+     * 目前heartbeat和其他事件是分离的，保险一点还是做一下检查处理，复用的batch直接原地剔除
+     */
+    private List<Event> removeHeartBeat(List<Event> events) {
+        int size = events.size();
+        int index = 0;
+        while (index < size && events.get(index).getEntryType() != EntryType.HEARTBEAT) {
+            index++;
+        }
+        if (index == size) {
+            return events;
         }
 
+        List<Event> result = events;
+        if (events != batches.get().events) {
+            result = new ArrayList<>(events.subList(0, index));
+        }
+        int next = index;
+        for (int i = index + 1; i < size; i++) {
+            Event event = events.get(i);
+            if (event.getEntryType() != EntryType.HEARTBEAT) {
+                if (result == events) {
+                    events.set(next, event);
+                } else {
+                    result.add(event);
+                }
+                next++;
+            }
+        }
+        if (result == events) {
+            for (int i = size - 1; i >= next; i--) {
+                events.remove(i);
+            }
+        }
+        return result;
     }
 
     private String getSchemaNameAndTableName(CanalEntry.Entry entry) {
@@ -227,8 +311,66 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
         this.emptyTransctionThresold = emptyTransctionThresold;
     }
 
+    public void setLatencyTraceSampleRate(int latencyTraceSampleRate) {
+        this.latencyTraceSampleRate = latencyTraceSampleRate;
+    }
+
+    public void setHotTableTopK(int hotTableTopK) {
+        this.hotTableTopK = hotTableTopK;
+    }
+
+    public void setHotTableWindowSeconds(long hotTableWindowSeconds) {
+        this.hotTableWindowSeconds = hotTableWindowSeconds;
+    }
+
+    public HotTableTracker getHotTableTracker() {
+        return hotTableTracker;
+    }
+
     public AtomicLong getEventsSinkBlockingTime() {
         return eventsSinkBlockingTime;
     }
 
+    /**
+     * 由parser线程在输出落盘的大事务前后设置，期间该线程sink的event都会带上大事务的标记，group模式下各parser互不影响
+     */
+    public void setLargeTransaction(boolean largeTransaction) {
+        batches.get().largeTransaction = largeTransaction;
+    }
+
+    /**
+     * sink线程复用的entry/event列表，以及当前连接对应的LogIdentity
+     */
+    private static class EventBatch {
+
+        private ArrayList<CanalEntry.Entry> entries = new ArrayList<>();
+        private ArrayList<Event>            events  = new ArrayList<>();
+        private InetSocketAddress           address;
+        private LogIdentity                 identity;
+        private boolean                     largeTransaction; // 跨多次sink保持，reset时不清理
+
+        LogIdentity logIdentity(InetSocketAddress remoteAddress) {
+            // 重连或者主备切换之后地址发生变化
+            if (identity == null || address != remoteAddress) {
+                address = remoteAddress;
+                identity = new LogIdentity(remoteAddress, -1L);
+            }
+            return identity;
+        }
+
+        void reset() {
+            if (entries.size() > maxReuseSize) {
+                entries = new ArrayList<>();
+            } else {
+                entries.clear();
+            }
+
+            if (events.size() > maxReuseSize) {
+                events = new ArrayList<>();
+            } else {
+                events.clear();
+            }
+        }
+    }
+
 }
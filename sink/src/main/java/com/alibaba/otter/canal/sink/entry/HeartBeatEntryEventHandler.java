@@ -10,6 +10,10 @@ import com.alibaba.otter.canal.store.model.Event;
 /**
  * 处理一下一下heartbeat数据
  * 
+ * <pre>
+ * {@linkplain EntryEventSink}已经在doSink中直接剔除heartbeat，不再默认注册该handler，保留给自定义的sink使用
+ * </pre>
+ * 
  * @author jianghang 2013-10-8 下午6:03:53
  * @since 1.0.12
  */
@@ -0,0 +1,191 @@
+package com.alibaba.otter.canal.sink.entry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 基于Space-Saving算法的热点表统计，按schema.table分别统计行数和binlog字节数的top-K
+ *
+ * <pre>
+ * 1. 每个统计维度只保留固定capacity个计数槽位，内存有界，record过程不产生对象分配
+ * 2. 槽位查找为对capacity个int hash的线性比较，未命中时替换计数最小的槽位(Space-Saving)，单次代价上界为O(capacity)
+ * 3. 按windowMillis做滚动窗口，对外只暴露最近一个完整窗口的结果
+ * </pre>
+ */
+public class HotTableTracker {
+
+    private final int          topK;
+    private final long         windowMillis;
+    private final SpaceSaving  rows;
+    private final SpaceSaving  bytes;
+    private long               windowStart;
+    private volatile Snapshot  lastSnapshot = new Snapshot(Collections.emptyList(), Collections.emptyList(), 0, 0);
+
+    public HotTableTracker(int topK, long windowMillis){
+        if (topK <= 0 || windowMillis <= 0) {
+            throw new IllegalArgumentException("topK and windowMillis must be positive");
+        }
+        this.topK = topK;
+        this.windowMillis = windowMillis;
+        // 计数槽位放大为topK的4倍，降低Space-Saving的误差
+        this.rows = new SpaceSaving(topK * 4);
+        this.bytes = new SpaceSaving(topK * 4);
+        this.windowStart = System.currentTimeMillis();
+    }
+
+    public synchronized void record(String schema, String table, long rowCount, long byteCount, long now) {
+        if (now - windowStart >= windowMillis) {
+            rotate(now);
+        }
+        int hash = 31 * schema.hashCode() + table.hashCode();
+        rows.offer(hash, schema, table, rowCount);
+        bytes.offer(hash, schema, table, byteCount);
+    }
+
+    private void rotate(long now) {
+        lastSnapshot = new Snapshot(rows.top(topK), bytes.top(topK), windowStart, now);
+        rows.clear();
+        bytes.clear();
+        windowStart = now;
+    }
+
+    /**
+     * 最近一个完整窗口的统计结果，如果当前窗口已经过期则先滚动一次
+     */
+    public synchronized Snapshot getSnapshot() {
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= windowMillis) {
+            rotate(now);
+        }
+        return lastSnapshot;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public static class Snapshot {
+
+        private final List<HotTable> topByRows;
+        private final List<HotTable> topByBytes;
+        private final long           windowStart;
+        private final long           windowEnd;
+
+        Snapshot(List<HotTable> topByRows, List<HotTable> topByBytes, long windowStart, long windowEnd){
+            this.topByRows = topByRows;
+            this.topByBytes = topByBytes;
+            this.windowStart = windowStart;
+            this.windowEnd = windowEnd;
+        }
+
+        public List<HotTable> getTopByRows() {
+            return topByRows;
+        }
+
+        public List<HotTable> getTopByBytes() {
+            return topByBytes;
+        }
+
+        public long getWindowStart() {
+            return windowStart;
+        }
+
+        public long getWindowEnd() {
+            return windowEnd;
+        }
+    }
+
+    public static class HotTable {
+
+        private final String name;
+        private final long   count;
+        private final long   error; // Space-Saving的最大高估值，count - error为真实值的下界
+
+        HotTable(String name, long count, long error){
+            this.name = name;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+
+    private static class SpaceSaving {
+
+        private final int[]    hashes;
+        private final String[] schemas;
+        private final String[] tables;
+        private final long[]   counts;
+        private final long[]   errors;
+        private int            size;
+
+        SpaceSaving(int capacity){
+            hashes = new int[capacity];
+            schemas = new String[capacity];
+            tables = new String[capacity];
+            counts = new long[capacity];
+            errors = new long[capacity];
+        }
+
+        void offer(int hash, String schema, String table, long weight) {
+            int min = 0;
+            for (int i = 0; i < size; i++) {
+                if (hashes[i] == hash && tables[i].equals(table) && schemas[i].equals(schema)) {
+                    counts[i] += weight;
+                    return;
+                }
+                if (counts[i] < counts[min]) {
+                    min = i;
+                }
+            }
+
+            if (size < counts.length) {
+                set(size++, hash, schema, table, weight, 0);
+            } else {
+                // 替换计数最小的槽位，继承其计数作为误差
+                long minCount = counts[min];
+                set(min, hash, schema, table, minCount + weight, minCount);
+            }
+        }
+
+        private void set(int i, int hash, String schema, String table, long count, long error) {
+            hashes[i] = hash;
+            schemas[i] = schema;
+            tables[i] = table;
+            counts[i] = count;
+            errors[i] = error;
+        }
+
+        List<HotTable> top(int k) {
+            List<HotTable> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(new HotTable(schemas[i] + "." + tables[i], counts[i], errors[i]));
+            }
+            result.sort((t1, t2) -> Long.compare(t2.getCount(), t1.getCount()));
+            return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                schemas[i] = null;
+                tables[i] = null;
+            }
+            size = 0;
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.alibaba.otter.canal.sink.entry.group;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Condition;
@@ -16,6 +15,8 @@ import com.alibaba.otter.canal.store.model.Event;
  * 大致设计：
  *  1. 多个队列都提交一个timestamp，判断出最小的一个timestamp做为通过的条件，然后唤醒<=该最小时间的线程通过
  *  2. 只有当多个队列都提交了一个timestamp，缺少任何一个提交，都会阻塞其他队列通过。(解决当一个库启动过慢或者发生主备切换时出现延迟等问题)
+ *  3. 每个队列的线程在await时占用一个slot，clear时释放，slot的timestamp用long数组维护一棵锦标赛树，tree[1]即为最小时间
+ *  4. 每个slot有独立的condition，最小时间推进时只唤醒timestamp<=最小时间的线程，避免signalAll唤醒所有队列
  * 
  * 存在一个假定，认为提交的timestamp是一个顺序递增，但是在两种case下会出现时间回退
  * a. 大事务时，事务头的时间会晚于事务当中数据的时间，相当于出现一个时间回退
@@ -28,15 +29,34 @@ import com.alibaba.otter.canal.store.model.Event;
  */
 public class TimelineBarrier implements GroupBarrier<Event> {
 
-    protected int                 groupSize;
-    protected ReentrantLock       lock           = new ReentrantLock();
-    protected Condition           condition      = lock.newCondition();
-    protected volatile long       threshold;
-    protected BlockingQueue<Long> lastTimestamps = new PriorityBlockingQueue<>(); // 当前通道最后一次single的时间戳
+    private static final long        EMPTY       = Long.MAX_VALUE;
+
+    protected int                    groupSize;
+    protected ReentrantLock          lock        = new ReentrantLock();
+    protected volatile long          threshold;
+    // 当前线程占用的slot，-1代表没有占用
+    private final ThreadLocal<int[]> currentSlot = ThreadLocal.withInitial(() -> new int[] { -1 });
+    private int                      capacity;                                                      // slot数量，2的幂
+    private int                      size;                                                          // 已占用的slot数量
+    private long[]                   tree;                                                          // 叶子节点为各slot最后一次single的时间戳
+    private boolean[]                waiting;
+    private Condition[]              conditions;
+    private int[]                    freeSlots;
+    private int                      freeCount;
 
     public TimelineBarrier(int groupSize){
         this.groupSize = groupSize;
         threshold = Long.MIN_VALUE;
+
+        int initCapacity = 1;
+        while (initCapacity < groupSize) {
+            initCapacity <<= 1;
+        }
+        this.tree = new long[0];
+        this.waiting = new boolean[0];
+        this.conditions = new Condition[0];
+        this.freeSlots = new int[0];
+        resize(initCapacity);
     }
 
     /**
@@ -46,11 +66,16 @@ public class TimelineBarrier implements GroupBarrier<Event> {
      */
     public void await(Event event) throws InterruptedException {
         long timestamp = getTimestamp(event);
+        lock.lockInterruptibly();
         try {
-            lock.lockInterruptibly();
-            single(timestamp);
+            int slot = single(timestamp);
             while (isPermit(event, timestamp) == false) {
-                condition.await();
+                waiting[slot] = true;
+                try {
+                    conditions[slot].await();
+                } finally {
+                    waiting[slot] = false;
+                }
             }
         } finally {
             lock.unlock();
@@ -65,11 +90,21 @@ public class TimelineBarrier implements GroupBarrier<Event> {
      */
     public void await(Event event, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
         long timestamp = getTimestamp(event);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
         try {
-            lock.lockInterruptibly();
-            single(timestamp);
+            int slot = single(timestamp);
             while (isPermit(event, timestamp) == false) {
-                condition.await(timeout, unit);
+                if (nanos <= 0) {
+                    throw new TimeoutException();
+                }
+
+                waiting[slot] = true;
+                try {
+                    nanos = conditions[slot].awaitNanos(nanos);
+                } finally {
+                    waiting[slot] = false;
+                }
             }
         } finally {
             lock.unlock();
@@ -80,7 +115,18 @@ public class TimelineBarrier implements GroupBarrier<Event> {
         // 出现中断有两种可能：
         // 1.出现主备切换，需要剔除到Timeline中的时间占位(这样合并时就会小于groupSize，不满足调度条件，直到主备切换完成后才能重新开启合并处理)
         // 2.出现关闭操作，退出即可
-        lastTimestamps.remove(getTimestamp(event));
+        int[] holder = currentSlot.get();
+        if (holder[0] < 0) {
+            return; // 没有single成功过，比如lock时被中断
+        }
+
+        lock.lock();
+        try {
+            release(holder[0]);
+        } finally {
+            lock.unlock();
+        }
+        holder[0] = -1;
     }
 
     public void interrupt() {
@@ -99,46 +145,104 @@ public class TimelineBarrier implements GroupBarrier<Event> {
     }
 
     /**
-     * 通知一下
+     * 通知一下，调用时持有lock
      */
     protected void notify(long minTimestamp) {
-        // 通知阻塞的线程恢复, 这里采用single all操作，当group中的几个时间都相同时，一次性触发通过多个
-        condition.signalAll();
+        // 通知阻塞的线程恢复，只唤醒timestamp<=minTimestamp的线程，当group中的几个时间都相同时，一次性触发通过多个
+        for (int i = 0; i < capacity; i++) {
+            if (waiting[i] && tree[capacity + i] <= minTimestamp) {
+                conditions[i].signal();
+            }
+        }
     }
 
     /**
      * 通知下一个minTimestamp数据出队列
-     * 
-     * @throws InterruptedException
      */
-    private void single(long timestamp) throws InterruptedException {
-        lastTimestamps.add(timestamp);
-
-        if (timestamp < state()) {
-            // 针对mysql事务中会出现时间跳跃
-            // 例子：
-            // 2012-08-08 16:24:26 事务头
-            // 2012-08-08 16:24:24 变更记录
-            // 2012-08-08 16:24:25 变更记录
-            // 2012-08-08 16:24:26　事务尾
-
-            // 针对这种case，一旦发现timestamp有回退的情况，直接更新threshold，强制阻塞其他的操作，等待最小数据优先处理完成
-            threshold = timestamp; // 更新为最小值
-        }
-
-        if (lastTimestamps.size() >= groupSize) {// 判断队列是否需要触发
+    private int single(long timestamp) {
+        int slot = acquire();
+        update(slot, timestamp);
+
+        // 针对mysql事务中会出现时间跳跃
+        // 例子：
+        // 2012-08-08 16:24:26 事务头
+        // 2012-08-08 16:24:24 变更记录
+        // 2012-08-08 16:24:25 变更记录
+        // 2012-08-08 16:24:26　事务尾
+
+        // 针对这种case，timestamp回退时最小值也会跟着回退，强制阻塞其他的操作，等待最小数据优先处理完成
+        if (size >= groupSize) {// 判断队列是否需要触发
             // 触发下一个出队列的数据
-            Long minTimestamp = this.lastTimestamps.peek();
-            if (minTimestamp != null) {
-                threshold = minTimestamp;
-                notify(minTimestamp);
-            }
+            long minTimestamp = tree[1];
+            threshold = minTimestamp;
+            notify(minTimestamp);
         } else {
             threshold = Long.MIN_VALUE;// 如果不满足队列长度，需要阻塞等待
         }
+        return slot;
+    }
+
+    /**
+     * 同一个线程连续await而没有clear时复用之前的slot
+     */
+    private int acquire() {
+        int[] holder = currentSlot.get();
+        if (holder[0] < 0) {
+            if (freeCount == 0) {
+                resize(capacity << 1);
+            }
+            holder[0] = freeSlots[--freeCount];
+            size++;
+        }
+        return holder[0];
+    }
+
+    private void release(int slot) {
+        update(slot, EMPTY);
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    private void update(int slot, long timestamp) {
+        int index = capacity + slot;
+        tree[index] = timestamp;
+        while (index > 1) {
+            index >>= 1;
+            tree[index] = Math.min(tree[index << 1], tree[(index << 1) + 1]);
+        }
+    }
+
+    /**
+     * 超过groupSize的线程同时await时(比如主备切换时新旧线程交替)扩容，已有slot的下标保持不变
+     */
+    private void resize(int newCapacity) {
+        long[] newTree = new long[newCapacity << 1];
+        Arrays.fill(newTree, EMPTY);
+        System.arraycopy(tree, capacity, newTree, newCapacity, capacity);
+        for (int i = newCapacity - 1; i >= 1; i--) {
+            newTree[i] = Math.min(newTree[i << 1], newTree[(i << 1) + 1]);
+        }
+
+        boolean[] newWaiting = new boolean[newCapacity];
+        System.arraycopy(waiting, 0, newWaiting, 0, capacity);
+        Condition[] newConditions = new Condition[newCapacity];
+        System.arraycopy(conditions, 0, newConditions, 0, capacity);
+        int[] newFreeSlots = new int[newCapacity];
+        System.arraycopy(freeSlots, 0, newFreeSlots, 0, freeCount);
+        // 倒序入栈，优先分配下标小的slot
+        for (int i = newCapacity - 1; i >= capacity; i--) {
+            newConditions[i] = lock.newCondition();
+            newFreeSlots[freeCount++] = i;
+        }
+
+        this.tree = newTree;
+        this.waiting = newWaiting;
+        this.conditions = newConditions;
+        this.freeSlots = newFreeSlots;
+        this.capacity = newCapacity;
     }
 
-    private Long getTimestamp(Event event) {
+    private long getTimestamp(Event event) {
         return event.getExecuteTime();
     }
 
@@ -0,0 +1,81 @@
+package com.alibaba.otter.canal.sink;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Ignore;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.sink.entry.EntryEventSink;
+import com.alibaba.otter.canal.sink.stub.DummyEventStore;
+import com.alibaba.otter.canal.store.model.Event;
+
+/**
+ * 小事务场景下sink的吞吐和每个事务的内存分配，分别为只有一条变更的事务、空事务和heartbeat
+ */
+@Ignore
+public class EntryEventSinkPerformanceTest {
+
+    private static final int               COUNT   = 5000000;
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 3306);
+
+    public static void main(String args[]) throws Exception {
+        EntryEventSink eventSink = new EntryEventSink();
+        eventSink.setEventStore(new DummyEventStore() {
+
+            public boolean tryPut(List<Event> datas) {
+                return true;
+            }
+        });
+        eventSink.start();
+
+        long timestamp = System.currentTimeMillis();
+        List<Entry> small = Arrays.asList(buildEntry(EntryType.TRANSACTIONBEGIN, timestamp),
+            buildEntry(EntryType.ROWDATA, timestamp),
+            buildEntry(EntryType.TRANSACTIONEND, timestamp));
+        List<Entry> empty = Arrays.asList(buildEntry(EntryType.TRANSACTIONBEGIN, timestamp),
+            buildEntry(EntryType.TRANSACTIONEND, timestamp));
+        List<Entry> heartbeat = Arrays.asList(buildEntry(EntryType.HEARTBEAT, timestamp));
+        for (int i = 0; i < 5; i++) {
+            run("small", eventSink, small);
+            run("empty", eventSink, empty);
+            run("heartbeat", eventSink, heartbeat);
+        }
+        eventSink.stop();
+    }
+
+    private static void run(String name, EntryEventSink eventSink, List<Entry> entries) throws Exception {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < COUNT; i++) {
+            eventSink.sink(entries, ADDRESS, "test");
+        }
+        long end = System.currentTimeMillis();
+        allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocated;
+        System.out.println(name + " : " + (end - start) + "ms , tps : " + (COUNT * 1000L / Math.max(1, end - start))
+                           + " , bytes/tx : " + (allocated / COUNT));
+    }
+
+    private static Entry buildEntry(EntryType entryType, long timestamp) {
+        Header.Builder headerBuilder = Header.newBuilder();
+        headerBuilder.setLogfileName("mysql-bin.000001");
+        headerBuilder.setLogfileOffset(4);
+        headerBuilder.setExecuteTime(timestamp);
+        headerBuilder.setSchemaName("test");
+        headerBuilder.setTableName("perf");
+        Entry.Builder entryBuilder = Entry.newBuilder();
+        entryBuilder.setEntryType(entryType);
+        entryBuilder.setHeader(headerBuilder.build());
+        if (entryType == EntryType.ROWDATA) {
+            entryBuilder.setStoreValue(RowChange.newBuilder().build().toByteString());
+        }
+        return entryBuilder.build();
+    }
+}
@@ -0,0 +1,143 @@
+package com.alibaba.otter.canal.sink;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.sink.entry.EntryEventSink;
+import com.alibaba.otter.canal.sink.stub.DummyEventStore;
+import com.alibaba.otter.canal.store.model.Event;
+
+public class EntryEventSinkTest {
+
+    private final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 3306);
+
+    @Test
+    public void testHeartBeatAndSharedIdentity() throws Exception {
+        RecordingEventStore eventStore = new RecordingEventStore();
+        EntryEventSink eventSink = new EntryEventSink();
+        eventSink.setEventStore(eventStore);
+        final List<EntryType> seen = new ArrayList<>();
+        eventSink.addHandler(new AbstractCanalEventDownStreamHandler<List<Event>>() {
+
+            public List<Event> before(List<Event> events) {
+                events.forEach(event -> seen.add(event.getEntryType()));
+                return events;
+            }
+        });
+        eventSink.start();
+
+        // handler能看到heartbeat，但是heartbeat不会写入store
+        eventSink.sink(Arrays.asList(buildEntry(EntryType.HEARTBEAT, 1L),
+            buildEntry(EntryType.ROWDATA, 2L),
+            buildEntry(EntryType.HEARTBEAT, 3L),
+            buildEntry(EntryType.ROWDATA, 4L)), address, "test");
+        Assert.assertEquals(Arrays.asList(EntryType.HEARTBEAT,
+            EntryType.ROWDATA,
+            EntryType.HEARTBEAT,
+            EntryType.ROWDATA), seen);
+        Assert.assertEquals(2, eventStore.events.size());
+        Assert.assertEquals(2L, eventStore.events.get(0).getExecuteTime());
+        Assert.assertEquals(4L, eventStore.events.get(1).getExecuteTime());
+
+        eventSink.sink(Arrays.asList(buildEntry(EntryType.ROWDATA, 5L)), address, "test");
+        Assert.assertEquals(3, eventStore.events.size());
+        Assert.assertSame(eventStore.events.get(0).getLogIdentity(), eventStore.events.get(2).getLogIdentity());
+        Assert.assertEquals(address, eventStore.events.get(2).getLogIdentity().getSourceAddress());
+        eventSink.stop();
+    }
+
+    @Test
+    public void testEmptyTransaction() throws Exception {
+        RecordingEventStore eventStore = new RecordingEventStore();
+        EntryEventSink eventSink = new EntryEventSink();
+        eventSink.setEventStore(eventStore);
+        eventSink.setEmptyTransactionInterval(1000);
+        eventSink.start();
+
+        // 第一个空事务放过，之后间隔内的空事务被忽略
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(eventSink.sink(Arrays.asList(buildEntry(EntryType.TRANSACTIONBEGIN, 10000L + i),
+                buildEntry(EntryType.TRANSACTIONEND, 10000L + i)), address, "test"));
+        }
+        Assert.assertEquals(2, eventStore.events.size());
+
+        eventSink.sink(Arrays.asList(buildEntry(EntryType.TRANSACTIONBEGIN, 20000L),
+            buildEntry(EntryType.TRANSACTIONEND, 20000L)), address, "test");
+        Assert.assertEquals(4, eventStore.events.size());
+        eventSink.stop();
+    }
+
+    @Test
+    public void testWaitStoreNotFull() throws Exception {
+        RecordingEventStore eventStore = new RecordingEventStore();
+        eventStore.full = new CountDownLatch(1);
+        final EntryEventSink eventSink = new EntryEventSink();
+        eventSink.setEventStore(eventStore);
+        eventSink.start();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> future = executor.submit(() -> eventSink.sink(Arrays.asList(buildEntry(EntryType.ROWDATA,
+                1L)), address, "test"));
+            Thread.sleep(300L);
+            Assert.assertFalse(future.isDone());
+            Assert.assertTrue(eventStore.waits > 0);
+
+            // 模拟ack释放空间
+            eventStore.full.countDown();
+            Assert.assertTrue(future.get(1, TimeUnit.SECONDS));
+            Assert.assertEquals(1, eventStore.events.size());
+            Assert.assertTrue(eventSink.getEventsSinkBlockingTime().get() > 0);
+        } finally {
+            executor.shutdownNow();
+            eventSink.stop();
+        }
+    }
+
+    private static Entry buildEntry(EntryType entryType, long timestamp) {
+        Header.Builder headerBuilder = Header.newBuilder();
+        headerBuilder.setLogfileName("mysql-bin.000001");
+        headerBuilder.setLogfileOffset(timestamp);
+        headerBuilder.setExecuteTime(timestamp);
+        Entry.Builder entryBuilder = Entry.newBuilder();
+        entryBuilder.setEntryType(entryType);
+        entryBuilder.setHeader(headerBuilder.build());
+        return entryBuilder.build();
+    }
+
+    private static class RecordingEventStore extends DummyEventStore {
+
+        private final List<Event>       events = new ArrayList<>();
+        private volatile CountDownLatch full;
+        private volatile int            waits;
+
+        public boolean put(List<Event> datas, long timeout, TimeUnit unit) throws InterruptedException {
+            waits++;
+            if (full.await(timeout, unit)) {
+                return tryPut(datas);
+            }
+            return false;
+        }
+
+        public boolean tryPut(List<Event> datas) {
+            if (full != null && full.getCount() > 0) {
+                return false;
+            }
+            events.addAll(datas);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.alibaba.otter.canal.sink;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.sink.entry.HotTableTracker;
+import com.alibaba.otter.canal.sink.entry.HotTableTracker.HotTable;
+
+public class HotTableTrackerTest {
+
+    @Test
+    public void testTopTables() {
+        HotTableTracker tracker = new HotTableTracker(2, 1000);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++) {
+            tracker.record("test", "hot", 10, 100, now);
+            tracker.record("test", "warm", 5, 1000, now);
+            // 大量只出现一次的表，不应该挤掉真正的热点表
+            tracker.record("test", "cold_" + i, 1, 10, now);
+        }
+
+        // 触发窗口滚动
+        tracker.record("test", "hot", 1, 1, now + 1000);
+        HotTableTracker.Snapshot snapshot = tracker.getSnapshot();
+        List<HotTable> byRows = snapshot.getTopByRows();
+        Assert.assertEquals(2, byRows.size());
+        Assert.assertEquals("test.hot", byRows.get(0).getName());
+        Assert.assertEquals("test.warm", byRows.get(1).getName());
+        Assert.assertTrue(byRows.get(0).getCount() - byRows.get(0).getError() <= 10000);
+        Assert.assertTrue(byRows.get(0).getCount() >= 10000);
+
+        List<HotTable> byBytes = snapshot.getTopByBytes();
+        Assert.assertEquals("test.warm", byBytes.get(0).getName());
+        Assert.assertEquals("test.hot", byBytes.get(1).getName());
+    }
+}
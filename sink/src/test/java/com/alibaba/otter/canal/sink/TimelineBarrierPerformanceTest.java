@@ -0,0 +1,129 @@
+package com.alibaba.otter.canal.sink;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Ignore;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.sink.entry.group.GroupBarrier;
+import com.alibaba.otter.canal.sink.entry.group.TimelineBarrier;
+import com.alibaba.otter.canal.store.model.Event;
+
+/**
+ * 对比多源归并的开销，legacy为原先PriorityBlockingQueue + signalAll的实现
+ */
+@Ignore
+public class TimelineBarrierPerformanceTest {
+
+    private static final int COUNT = 20000; // 每个源的event数量
+
+    public static void main(String args[]) throws Exception {
+        int[] groupSizes = { 4, 16, 64 };
+        for (int i = 0; i < 3; i++) {
+            for (int groupSize : groupSizes) {
+                run("legacy", groupSize, new LegacyTimelineBarrier(groupSize));
+                run("slots", groupSize, new TimelineBarrier(groupSize));
+            }
+        }
+    }
+
+    private static void run(String name, int groupSize, GroupBarrier<Event> barrier) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(groupSize);
+        CountDownLatch latch = new CountDownLatch(groupSize);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < groupSize; i++) {
+            executor.submit(() -> {
+                Event event = new Event();
+                event.setEntryType(EntryType.ROWDATA);
+                long timestamp = 0;
+                try {
+                    for (int j = 0; j < COUNT; j++) {
+                        timestamp += ThreadLocalRandom.current().nextInt(1, 10);
+                        event.setExecuteTime(timestamp);
+                        barrier.await(event);
+                        barrier.clear(event);
+                    }
+                    // 提交一个最大时间，保证其他源能够全部通过
+                    event.setExecuteTime(Long.MAX_VALUE - 1);
+                    barrier.await(event, 0, TimeUnit.MILLISECONDS);
+                } catch (Exception e) {
+                    // ignore
+                } finally {
+                    latch.countDown();
+                }
+                return null;
+            });
+        }
+
+        latch.await();
+        long end = System.currentTimeMillis();
+        executor.shutdownNow();
+        long total = (long) COUNT * groupSize;
+        System.out.println(name + " groupSize : " + groupSize + " , " + (end - start) + "ms , tps : "
+                           + (total * 1000L / Math.max(1, end - start)));
+    }
+
+    private static class LegacyTimelineBarrier implements GroupBarrier<Event> {
+
+        private int                 groupSize;
+        private ReentrantLock       lock           = new ReentrantLock();
+        private Condition           condition      = lock.newCondition();
+        private volatile long       threshold      = Long.MIN_VALUE;
+        private BlockingQueue<Long> lastTimestamps = new PriorityBlockingQueue<>();
+
+        LegacyTimelineBarrier(int groupSize){
+            this.groupSize = groupSize;
+        }
+
+        public void await(Event event) throws InterruptedException {
+            long timestamp = event.getExecuteTime();
+            lock.lockInterruptibly();
+            try {
+                single(timestamp);
+                while (timestamp > threshold) {
+                    condition.await();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void await(Event event, long timeout, TimeUnit unit) throws InterruptedException {
+            long timestamp = event.getExecuteTime();
+            lock.lockInterruptibly();
+            try {
+                single(timestamp);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void clear(Event event) {
+            lastTimestamps.remove(event.getExecuteTime());
+        }
+
+        public void interrupt() {
+        }
+
+        private void single(long timestamp) {
+            lastTimestamps.add(timestamp);
+            if (lastTimestamps.size() >= groupSize) {
+                Long minTimestamp = lastTimestamps.peek();
+                if (minTimestamp != null) {
+                    threshold = minTimestamp;
+                    condition.signalAll();
+                }
+            } else {
+                threshold = Long.MIN_VALUE;
+            }
+        }
+    }
+}
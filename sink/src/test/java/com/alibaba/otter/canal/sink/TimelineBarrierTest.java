@@ -0,0 +1,153 @@
+package com.alibaba.otter.canal.sink;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.sink.entry.group.TimelineBarrier;
+import com.alibaba.otter.canal.sink.entry.group.TimelineTransactionBarrier;
+import com.alibaba.otter.canal.store.model.Event;
+
+public class TimelineBarrierTest {
+
+    @Test
+    public void testMinTimestampFirst() throws Exception {
+        final TimelineBarrier barrier = new TimelineBarrier(2);
+        // 每个队列固定一个线程，和parser的sink线程一致
+        ExecutorService source1 = Executors.newSingleThreadExecutor();
+        ExecutorService source2 = Executors.newSingleThreadExecutor();
+        try {
+            final Event late = buildEvent(EntryType.ROWDATA, 10L);
+            Future<?> lateFuture = source1.submit(() -> {
+                barrier.await(late);
+                return null;
+            });
+            // 只有一个队列提交时不允许通过
+            assertBlocked(lateFuture);
+
+            final Event early = buildEvent(EntryType.ROWDATA, 5L);
+            source2.submit(() -> {
+                barrier.await(early);
+                return null;
+            }).get(1, TimeUnit.SECONDS);
+            Assert.assertEquals(5L, barrier.state());
+            assertBlocked(lateFuture);
+
+            // early所在队列提交更大的时间之后，late才能通过
+            Future<?> nextFuture = source2.submit(() -> {
+                barrier.clear(early);
+                barrier.await(buildEvent(EntryType.ROWDATA, 20L));
+                return null;
+            });
+            lateFuture.get(1, TimeUnit.SECONDS);
+            Assert.assertEquals(10L, barrier.state());
+            assertBlocked(nextFuture);
+        } finally {
+            source1.shutdownNow();
+            source2.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGrowBeyondGroupSize() throws Exception {
+        final TimelineBarrier barrier = new TimelineBarrier(2);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // 通过之后不clear，占用的slot超过groupSize
+            long[] timestamps = { 103L, 104L, 105L, 102L };
+            Future<?>[] futures = new Future<?>[timestamps.length];
+            for (int i = 0; i < timestamps.length; i++) {
+                final long timestamp = timestamps[i];
+                futures[i] = executor.submit(() -> {
+                    barrier.await(buildEvent(EntryType.ROWDATA, timestamp));
+                    return null;
+                });
+                Thread.sleep(100L);
+            }
+
+            futures[0].get(1, TimeUnit.SECONDS);
+            futures[3].get(1, TimeUnit.SECONDS);
+            Assert.assertEquals(102L, barrier.state());
+            Assert.assertFalse(futures[1].isDone());
+            Assert.assertFalse(futures[2].isDone());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        TimelineBarrier barrier = new TimelineBarrier(2);
+        Event event = buildEvent(EntryType.ROWDATA, 1L);
+        try {
+            barrier.await(event, 50, TimeUnit.MILLISECONDS);
+            Assert.fail();
+        } catch (TimeoutException e) {
+            // expected
+        } finally {
+            barrier.clear(event);
+        }
+    }
+
+    @Test
+    public void testTransaction() throws Exception {
+        final TimelineTransactionBarrier barrier = new TimelineTransactionBarrier(2);
+        ExecutorService source1 = Executors.newSingleThreadExecutor();
+        ExecutorService source2 = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> otherFuture = source2.submit(() -> {
+                barrier.await(buildEvent(EntryType.TRANSACTIONBEGIN, 5L));
+                return null;
+            });
+
+            // 时间最小的队列先进入事务
+            source1.submit(() -> {
+                Event begin = buildEvent(EntryType.TRANSACTIONBEGIN, 1L);
+                barrier.await(begin);
+                barrier.clear(begin);
+                // 事务中的数据不再受时间限制
+                Event row = buildEvent(EntryType.ROWDATA, 8L);
+                barrier.await(row);
+                barrier.clear(row);
+                return null;
+            }).get(1, TimeUnit.SECONDS);
+            assertBlocked(otherFuture);
+
+            // 事务结束后，另一个队列才能进入事务
+            Future<?> nextFuture = source1.submit(() -> {
+                Event end = buildEvent(EntryType.TRANSACTIONEND, 8L);
+                barrier.await(end);
+                barrier.clear(end);
+                barrier.await(buildEvent(EntryType.TRANSACTIONBEGIN, 9L));
+                return null;
+            });
+            otherFuture.get(1, TimeUnit.SECONDS);
+            assertBlocked(nextFuture);
+        } finally {
+            source1.shutdownNow();
+            source2.shutdownNow();
+        }
+    }
+
+    private static void assertBlocked(Future<?> future) throws Exception {
+        try {
+            future.get(100, TimeUnit.MILLISECONDS);
+            Assert.fail();
+        } catch (TimeoutException e) {
+            // expected
+        }
+    }
+
+    private static Event buildEvent(EntryType entryType, long timestamp) {
+        Event event = new Event();
+        event.setEntryType(entryType);
+        event.setExecuteTime(timestamp);
+        return event;
+    }
+}
@@ -1,7 +1,11 @@
 package com.alibaba.otter.canal.store.memory;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
@@ -9,8 +13,11 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang.StringUtils;
 
+import com.alibaba.otter.canal.common.utils.LatencyHistogram;
+import com.alibaba.otter.canal.filter.aviater.AviaterRegexFilter;
 import com.alibaba.otter.canal.protocol.CanalEntry;
 import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
 import com.alibaba.otter.canal.protocol.position.LogPosition;
 import com.alibaba.otter.canal.protocol.position.Position;
 import com.alibaba.otter.canal.protocol.position.PositionRange;
@@ -22,6 +29,7 @@ import com.alibaba.otter.canal.store.helper.CanalEventUtils;
 import com.alibaba.otter.canal.store.model.BatchMode;
 import com.alibaba.otter.canal.store.model.Event;
 import com.alibaba.otter.canal.store.model.Events;
+import com.alibaba.otter.canal.store.model.SlowSubscriberPolicy;
 
 /**
  * 基于内存buffer构建内存memory store
@@ -30,6 +38,10 @@ import com.alibaba.otter.canal.store.model.Events;
  * 变更记录：
  * 1. 新增BatchMode类型，支持按内存大小获取批次数据，内存大小更加可控.
  *   a. put操作，会首先根据bufferSize进行控制，然后再进行bufferSize * bufferMemUnit进行控制. 因存储的内容是以Event，如果纯依赖于memsize进行控制，会导致RingBuffer出现动态伸缩
+ * 2. 新增多订阅者模式(multiSubscriber)，多个ClientIdentity共享同一个RingBuffer，各自维护独立的get/ack位点
+ *   a. store上的getSequence/ackSequence退化为所有订阅者中最小的ack位点，RingBuffer按这个位置回收
+ *   b. client的filter在get时生效，被过滤的event只推进位点不返回
+ *   c. 慢订阅者卡住put时，按slowSubscriberPolicy选择阻塞/溢出/淘汰
  * </pre>
  * 
  * @author jianghang 2012-6-20 上午09:46:31
@@ -63,6 +75,12 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     private AtomicLong        getTableRows  = new AtomicLong(0);
     private AtomicLong        ackTableRows  = new AtomicLong(0);
 
+    // 采样event(由sink打上traceTime)在各阶段的耗时分布
+    private LatencyHistogram  decodeLatency = new LatencyHistogram();                    // binlog executeTime -> 解析完成
+    private LatencyHistogram  putLatency    = new LatencyHistogram();                    // 解析完成 -> 写入store
+    private LatencyHistogram  getLatency    = new LatencyHistogram();                    // 写入store -> 被client/MQ获取
+    private LatencyHistogram  ackLatency    = new LatencyHistogram();                    // 被获取 -> ack
+
     // 阻塞put/get操作控制信号
     private ReentrantLock     lock          = new ReentrantLock();
     private Condition         notFull       = lock.newCondition();
@@ -72,6 +90,15 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     private boolean           ddlIsolation  = false;
     private boolean           raw           = true;                                      // 针对entry是否开启raw模式
 
+    // 多订阅者模式，cursors由lock保护
+    private boolean                               multiSubscriber      = false;
+    private SlowSubscriberPolicy                  slowSubscriberPolicy = SlowSubscriberPolicy.BLOCK;
+    private int                                   spillBufferSize      = 64 * 1024;       // SPILL策略下单个订阅者最多转移的event数量
+    private File                                  spillDir;                               // SPILL策略下转移event的本地目录，默认为java.io.tmpdir
+    private Map<ClientIdentity, SubscriberCursor> cursors              = new LinkedHashMap<>();
+
+    private volatile Runnable                     putListener;                             // put之后的通知，用于异步long-poll get，在lock内调用不能阻塞
+
     public MemoryEventStoreWithBuffer(){
 
     }
@@ -94,6 +121,15 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         super.stop();
 
         cleanAll();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            for (SubscriberCursor cursor : cursors.values()) {
+                cursor.spilled.close();
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     public void put(List<Event> data) throws InterruptedException, CanalStoreException {
@@ -207,10 +243,19 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         }
         profiling(data, OP.PUT);
         // tell other threads that store is not empty
-        notEmpty.signal(); // 4. 调用 notEmpty.signal() 方法，通知队列中有数据了，如果之前有 client 获取数据处于阻塞状态，将会被唤醒
+        if (multiSubscriber) {
+            notEmpty.signalAll(); // 多个订阅者可能同时在等待
+        } else {
+            notEmpty.signal(); // 4. 调用 notEmpty.signal() 方法，通知队列中有数据了，如果之前有 client 获取数据处于阻塞状态，将会被唤醒
+        }
+        Runnable listener = putListener;
+        if (listener != null) {
+            listener.run();
+        }
     }
     // 获取数据。canal client 连接到 canal server 后，最终获取到的 binlog 都是从这个队列中取得。
     public Events<Event> get(Position start, int batchSize) throws InterruptedException, CanalStoreException {
+        checkSingleSubscriber();
         final ReentrantLock lock = this.lock;
         lock.lockInterruptibly();
         try {
@@ -230,6 +275,7 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
 
     public Events<Event> get(Position start, int batchSize, long timeout, TimeUnit unit) throws InterruptedException,
                                                                                         CanalStoreException {
+        checkSingleSubscriber();
         long nanos = unit.toNanos(timeout);
         final ReentrantLock lock = this.lock;
         lock.lockInterruptibly();
@@ -258,6 +304,7 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     }
 
     public Events<Event> tryGet(Position start, int batchSize) throws CanalStoreException {
+        checkSingleSubscriber();
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
@@ -328,13 +375,32 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
             }
 
         }
-        // 3. 构造 PositionRange，表示本次获取的 Event 的开始和结束位置
+        // 3. 构造 PositionRange，表示本次获取的 Event 的开始和结束位置，并记录一下是否存在可以被 ack 的点
+        buildPositionRange(result, end);
+        // 5. 累加 getMemSize 值，getMemSize 值
+        if (getSequence.compareAndSet(current, end)) { // 5.1 通过AtomLong的compareAndSet尝试增加getSequence值。如果成功，累加getMemSize
+            getMemSize.addAndGet(memsize);
+            notFull.signal(); // 如果之前有put操作因为队列满了而被阻塞，这里发送信号，通知队列已经有空位置
+            profiling(result.getEvents(), OP.GET);
+            return result;
+        } else { // 如果失败，直接返回空事件列表
+            return new Events<>();
+        }
+    }
+    private void buildPositionRange(Events<Event> result, long end) {
+        List<Event> entrys = result.getEvents();
         PositionRange<LogPosition> range = new PositionRange<>();
         result.setPositionRange(range);
         // 3.1 把 entrys 列表中的第一个 event 的位置，当做 PositionRange 的开始位置
         range.setStart(CanalEventUtils.createPosition(entrys.get(0)));
-        range.setEnd(CanalEventUtils.createPosition(entrys.get(result.getEvents().size() - 1))); // 3.2 把 entrys 列表中的最后一个 event 的位置，当做 PositionRange 的结束位置
+        range.setEnd(CanalEventUtils.createPosition(entrys.get(entrys.size() - 1))); // 3.2 把 entrys 列表中的最后一个 event 的位置，当做 PositionRange 的结束位置
         range.setEndSeq(end);
+        for (Event event : entrys) {
+            if (event.isLargeTransaction()) {
+                result.setLargeTransaction(true);
+                break;
+            }
+        }
         // 记录一下是否存在可以被ack的点
         // 4. 记录一下是否存在可以被 ack 的点，逆序迭代获取到的 Event 列表
         for (int i = entrys.size() - 1; i >= 0; i--) {
@@ -347,16 +413,15 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
                 break;
             } //4.1.3 如果没有这三种类型事件，意味着没有可被ack的点
         }
-        // 5. 累加 getMemSize 值，getMemSize 值
-        if (getSequence.compareAndSet(current, end)) { // 5.1 通过AtomLong的compareAndSet尝试增加getSequence值。如果成功，累加getMemSize
-            getMemSize.addAndGet(memsize);
-            notFull.signal(); // 如果之前有put操作因为队列满了而被阻塞，这里发送信号，通知队列已经有空位置
-            profiling(result.getEvents(), OP.GET);
-            return result;
-        } else { // 如果失败，直接返回空事件列表
-            return new Events<>();
-        }
     }
+
+    /**
+     * 判断是否有足够batchSize的数据可以获取，和阻塞get的唤醒条件一致，不加锁只做近似判断
+     */
+    public boolean hasUnGetEvents(Position start, int batchSize) {
+        return checkUnGetSlotAt((LogPosition) start, batchSize);
+    }
+
     // 第一条数据通过ackSequence当前值对应的Event来确定，因为更早的Event在ack后都已经被删除了
     public LogPosition getFirstPosition() throws CanalStoreException {
         final ReentrantLock lock = this.lock;
@@ -411,15 +476,21 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     }
     // 确认消费成功。canal client 获取到 binlog 事件消费后，需要进行 Ack。你可以认为 Ack 操作实际上就是将消费成功的事件从队列中删除，如果一直不 Ack 的话，队列满了之后，Put 操作就无法添加新的数据了。
     public void ack(Position position) throws CanalStoreException {
+        checkSingleSubscriber();
         cleanUntil(position, -1L);
     }
 
     public void ack(Position position, Long seqId) throws CanalStoreException {
+        checkSingleSubscriber();
         cleanUntil(position, seqId);
     }
 
     @Override
     public void cleanUntil(Position position) throws CanalStoreException {
+        if (multiSubscriber) {
+            // 多订阅者模式下按订阅者的ack位点回收，忽略外部的清理
+            return;
+        }
         cleanUntil(position, -1L);
     }
     // 在 stop 时，cleanAll 方法会被执行。而每次 ack 时，cleanUntil 方法会被执行
@@ -435,6 +506,7 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
             // ack没有list，但有已存在的foreach，还是节省一下list的开销
             long localExecTime = 0L;
             int deltaRows = 0;
+            Event traced = null; // 最近一条被采样的event
             if (seqId > 0) {
                 maxSequence = seqId;
             }
@@ -444,6 +516,9 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
                     localExecTime = event.getExecuteTime();
                 }
                 deltaRows += event.getRowsCount();
+                if (event.getTraceTime() > 0) {
+                    traced = event;
+                }
                 memsize += calculateSize(event); // 计算当前要 ack 的 event 占用字节数
                 if ((seqId < 0 || next == seqId) && CanalEventUtils.checkPosition(event, (LogPosition) position)) { // 找到对应的 position，更新 ack seq
                     // 找到对应的position，更新ack seq
@@ -469,6 +544,10 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
                         if (localExecTime > 0) {
                             ackExecTime.lazySet(localExecTime);
                         }
+                        if (traced != null) {
+                            // ack成功之后每次只记录一个样本，优先使用匹配到的event
+                            ackLatency.observeNanos(System.nanoTime() - traced.getTraceNanos());
+                        }
                         return;
                     }
                 }
@@ -482,6 +561,7 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     }
     // 所谓rollback，就是client已经get到的数据，没能消费成功，因此需要进行回滚。回滚操作特别简单，只需要将getSequence的位置重置为ackSequence，将getMemSize设置为ackMemSize即可
     public void rollback() throws CanalStoreException {
+        checkSingleSubscriber();
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
@@ -503,6 +583,9 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
             putMemSize.set(0);
             getMemSize.set(0);
             ackMemSize.set(0);
+            for (SubscriberCursor cursor : cursors.values()) {
+                cursor.reset(INIT_SEQUENCE, 0);
+            }
             entries = null;
             // for (int i = 0; i < entries.length; i++) {
             // entries[i] = null;
@@ -512,6 +595,421 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         }
     }
 
+    // =================== multi subscriber =================
+
+    /**
+     * 注册订阅者，重复订阅时只更新filter。新的订阅者从RingBuffer中最早可用的位置开始消费
+     */
+    public void subscribe(ClientIdentity clientIdentity) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            SubscriberCursor cursor = cursors.get(clientIdentity);
+            if (cursor == null) {
+                cursor = new SubscriberCursor(clientIdentity, spillDir);
+                cursor.reset(ackSequence.get(), ackMemSize.get());
+                cursors.put(clientIdentity, cursor);
+            }
+            if (StringUtils.isNotEmpty(clientIdentity.getFilter())) {
+                cursor.filter = new AviaterRegexFilter(clientIdentity.getFilter());
+            } else {
+                cursor.filter = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void unsubscribe(ClientIdentity clientIdentity) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            SubscriberCursor cursor = cursors.remove(clientIdentity);
+            if (cursor != null) {
+                cursor.spilled.close();
+                reclaim();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Events<Event> get(ClientIdentity clientIdentity, int batchSize) throws InterruptedException,
+                                                                          CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            for (;;) {
+                SubscriberCursor cursor = getCursor(clientIdentity);
+                if (checkUnGetSlotAt(cursor, batchSize)) {
+                    Events<Event> result = doGet(cursor, batchSize);
+                    if (!result.getEvents().isEmpty()) {
+                        return result;
+                    }
+                    // 全部被filter过滤，继续等待
+                    continue;
+                }
+
+                try {
+                    notEmpty.await();
+                } catch (InterruptedException ie) {
+                    notEmpty.signal(); // propagate to non-interrupted thread
+                    throw ie;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Events<Event> get(ClientIdentity clientIdentity, int batchSize, long timeout, TimeUnit unit)
+                                                                                                       throws InterruptedException,
+                                                                                                       CanalStoreException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            for (;;) {
+                SubscriberCursor cursor = getCursor(clientIdentity);
+                if (checkUnGetSlotAt(cursor, batchSize)) {
+                    Events<Event> result = doGet(cursor, batchSize);
+                    if (!result.getEvents().isEmpty()) {
+                        return result;
+                    }
+                    continue;
+                }
+
+                if (nanos <= 0) {
+                    // 如果时间到了，有多少取多少
+                    return doGet(cursor, batchSize);
+                }
+
+                try {
+                    nanos = notEmpty.awaitNanos(nanos);
+                } catch (InterruptedException ie) {
+                    notEmpty.signal(); // propagate to non-interrupted thread
+                    throw ie;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Events<Event> tryGet(ClientIdentity clientIdentity, int batchSize) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return doGet(getCursor(clientIdentity), batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void ack(ClientIdentity clientIdentity, Position position, Long seqId) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            SubscriberCursor cursor = cursors.get(clientIdentity);
+            if (cursor == null || cursor.evicted) {
+                // 已经被淘汰的订阅者，之前批次的ack直接忽略
+                return;
+            }
+
+            long sequence = INIT_SEQUENCE;
+            if (seqId > 0) {
+                if (seqId <= cursor.ackSequence) {
+                    return;
+                }
+                if (seqId <= cursor.getSequence
+                    && CanalEventUtils.checkPosition(eventAt(cursor, seqId), (LogPosition) position)) {
+                    sequence = seqId;
+                }
+            } else {
+                for (long next = cursor.ackSequence + 1; next <= cursor.getSequence; next++) {
+                    if (CanalEventUtils.checkPosition(eventAt(cursor, next), (LogPosition) position)) {
+                        sequence = next;
+                        break;
+                    }
+                }
+            }
+
+            if (sequence == INIT_SEQUENCE) {
+                throw new CanalStoreException("no match ack position" + position.toString());
+            }
+            ackCursor(cursor, sequence);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void rollback(ClientIdentity clientIdentity) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            SubscriberCursor cursor = cursors.get(clientIdentity);
+            if (cursor != null) {
+                cursor.getSequence = cursor.ackSequence;
+                cursor.getMemSize = cursor.ackMemSize;
+                cursor.deliveredSequence = cursor.ackSequence;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean hasUnGetEvents(ClientIdentity clientIdentity, int batchSize) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            SubscriberCursor cursor = cursors.get(clientIdentity);
+            // 被淘汰的订阅者需要尽快通过get拿到异常
+            return cursor == null || cursor.evicted || checkUnGetSlotAt(cursor, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private SubscriberCursor getCursor(ClientIdentity clientIdentity) {
+        SubscriberCursor cursor = cursors.get(clientIdentity);
+        if (cursor == null) {
+            // 没有经过subscribe的client(比如store重建)，按最早可用的位置注册
+            subscribe(clientIdentity);
+            cursor = cursors.get(clientIdentity);
+        } else if (cursor.evicted) {
+            // 通知一次客户端，之后从最早可用的位置重新开始
+            cursor.evicted = false;
+            cursor.reset(ackSequence.get(), ackMemSize.get());
+            throw new SubscriberEvictedException(String.format("clientId:%s is evicted by slow subscriber policy, restart from %s",
+                clientIdentity.getClientId(),
+                getFirstPosition()));
+        }
+        return cursor;
+    }
+
+    private boolean checkUnGetSlotAt(SubscriberCursor cursor, int batchSize) {
+        if (batchMode.isItemSize()) {
+            long current = cursor.getSequence;
+            long maxAbleSequence = putSequence.get();
+            return current < maxAbleSequence && current + batchSize <= maxAbleSequence;
+        } else {
+            return putMemSize.get() - cursor.getMemSize >= batchSize * bufferMemUnit;
+        }
+    }
+
+    private Events<Event> doGet(SubscriberCursor cursor, int batchSize) {
+        long current = cursor.getSequence;
+        long maxAbleSequence = putSequence.get();
+        if (current >= maxAbleSequence) {
+            return new Events<>();
+        }
+
+        Events<Event> result = new Events<>();
+        List<Event> entrys = result.getEvents();
+        long end = current;
+        long delivered = current;
+        long memsize = 0;
+        long maxMemSize = batchSize * bufferMemUnit;
+        long last = batchMode.isItemSize() ? Math.min(current + batchSize, maxAbleSequence) : maxAbleSequence;
+        for (long next = current + 1; next <= last; next++) {
+            if (batchMode.isMemSize() && memsize > maxMemSize) {
+                break;
+            }
+
+            Event event = eventAt(cursor, next);
+            if (ddlIsolation && isDdl(event.getEventType()) && !entrys.isEmpty()) {
+                // ddl单独返回，不包含当前记录
+                break;
+            }
+
+            memsize += calculateSize(event);
+            end = next;
+            // 被过滤的event只推进位点
+            if (accept(cursor, event)) {
+                entrys.add(event);
+                delivered = next;
+            }
+            if (ddlIsolation && isDdl(event.getEventType())) {
+                break;
+            }
+        }
+
+        cursor.getSequence = end;
+        cursor.getMemSize += memsize;
+        if (entrys.isEmpty()) {
+            if (cursor.ackSequence >= cursor.deliveredSequence) {
+                // 没有未ack的批次，直接确认被过滤掉的event
+                ackCursor(cursor, end);
+            }
+            return result;
+        }
+
+        // ack时按最后一条返回的event校验位置
+        cursor.deliveredSequence = delivered;
+        buildPositionRange(result, delivered);
+        profiling(entrys, OP.GET);
+        return result;
+    }
+
+    private void ackCursor(SubscriberCursor cursor, long sequence) {
+        if (sequence >= cursor.deliveredSequence) {
+            // 之后的event都被过滤了，一起确认掉
+            sequence = cursor.getSequence;
+        }
+
+        long memsize = 0;
+        long localExecTime = 0L;
+        int deltaRows = 0;
+        Event traced = null;
+        for (long next = cursor.ackSequence + 1; next <= sequence; next++) {
+            Event event = eventAt(cursor, next);
+            if (localExecTime == 0 && event.getExecuteTime() > 0) {
+                localExecTime = event.getExecuteTime();
+            }
+            deltaRows += event.getRowsCount();
+            if (event.getTraceTime() > 0 && next <= cursor.deliveredSequence) {
+                // 被过滤的event没有经过get，不计入ack延迟
+                traced = event;
+            }
+            memsize += calculateSize(event);
+        }
+        if (traced != null) {
+            // 每次ack只记录一个样本
+            ackLatency.observeNanos(System.nanoTime() - traced.getTraceNanos());
+        }
+
+        int spilled = (int) Math.min(cursor.spilled.size(), sequence - cursor.ackSequence);
+        cursor.spilled.removeFirst(spilled);
+        cursor.ackSequence = sequence;
+        cursor.ackMemSize += memsize;
+        ackTableRows.addAndGet(deltaRows);
+        if (localExecTime > 0) {
+            ackExecTime.lazySet(localExecTime);
+        }
+        reclaim();
+    }
+
+    /**
+     * 按所有订阅者中最小的保留位置回收RingBuffer，store上的get/ack位点都设置为该位置
+     */
+    private void reclaim() {
+        long min = Long.MAX_VALUE;
+        for (SubscriberCursor cursor : cursors.values()) {
+            if (!cursor.evicted) {
+                min = Math.min(min, cursor.retainedSequence());
+            }
+        }
+
+        long current = ackSequence.get();
+        if (min == Long.MAX_VALUE || min <= current) {
+            // 没有订阅者时不回收，和单订阅者模式一样等待client
+            return;
+        }
+
+        long memsize = 0;
+        for (long next = current + 1; next <= min; next++) {
+            memsize += calculateSize(entries[getIndex(next)]);
+        }
+        ackMemSize.addAndGet(memsize);
+        getMemSize.set(ackMemSize.get());
+        ackSequence.set(min);
+        getSequence.set(min);
+        notFull.signalAll();
+    }
+
+    /**
+     * RingBuffer写满时，按slowSubscriberPolicy处理落后的订阅者，最快的订阅者不做处理
+     */
+    private void relieveSlowSubscribers(long sequence) {
+        long maxSequence = putSequence.get();
+        long target = sequence - bufferSize;
+        if (batchMode.isMemSize()) {
+            // 找到满足内存限制需要回收到的位置
+            long memsize = putMemSize.get() - ackMemSize.get();
+            long next = ackSequence.get();
+            while (memsize >= bufferSize * bufferMemUnit && next < maxSequence) {
+                next++;
+                memsize -= calculateSize(entries[getIndex(next)]);
+            }
+            target = Math.max(target, next);
+        }
+
+        SubscriberCursor fastest = null;
+        for (SubscriberCursor cursor : cursors.values()) {
+            if (!cursor.evicted && (fastest == null || cursor.retainedSequence() > fastest.retainedSequence())) {
+                fastest = cursor;
+            }
+        }
+        if (fastest == null) {
+            return;
+        }
+
+        // 所有订阅者都跟不上时，处理慢订阅者也腾不出空间，仍然阻塞
+        target = Math.min(Math.min(target, maxSequence), fastest.retainedSequence());
+        for (SubscriberCursor cursor : cursors.values()) {
+            long retained = cursor.retainedSequence();
+            if (cursor == fastest || cursor.evicted || retained >= target) {
+                continue;
+            }
+
+            if (slowSubscriberPolicy.isEvict()) {
+                cursor.evicted = true;
+                cursor.spilled.clear();
+            } else if (slowSubscriberPolicy.isSpill() && cursor.spilled.size() + (target - retained) <= spillBufferSize) {
+                // 编码后合并写入，减少持有lock时的磁盘操作
+                List<Event> events = new ArrayList<>((int) (target - retained));
+                for (long next = retained + 1; next <= target; next++) {
+                    events.add(entries[getIndex(next)]);
+                }
+                cursor.spilled.addAll(events);
+            }
+        }
+        reclaim();
+    }
+
+    private Event eventAt(SubscriberCursor cursor, long sequence) {
+        long offset = sequence - cursor.ackSequence - 1;
+        if (offset < cursor.spilled.size()) {
+            return cursor.spilled.get((int) offset);
+        }
+        return entries[getIndex(sequence)];
+    }
+
+    private boolean accept(SubscriberCursor cursor, Event event) {
+        if (cursor.filter == null || StringUtils.isEmpty(event.getTableName())) {
+            return true;
+        }
+        return cursor.filter.filter(event.getSchemaName() + "." + event.getTableName());
+    }
+
+    private void checkSingleSubscriber() {
+        if (multiSubscriber) {
+            throw new CanalStoreException("multi subscriber store should get/ack/rollback with ClientIdentity");
+        }
+    }
+
+    /**
+     * 当前所有订阅者的get/ack位点，方便排查慢订阅者
+     */
+    public List<String> listSubscriberCursors() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            List<String> result = new ArrayList<>(cursors.size());
+            for (SubscriberCursor cursor : cursors.values()) {
+                result.add(String.format("clientId:%s get:%d ack:%d spilled:%d evicted:%s",
+                    cursor.clientIdentity.getClientId(),
+                    cursor.getSequence,
+                    cursor.ackSequence,
+                    cursor.spilled.size(),
+                    cursor.evicted));
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     // =================== helper method =================
     // 返回 getSequence 和 ackSequence 二者的较小值
     private long getMinimumGetOrAck() {
@@ -524,6 +1022,13 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
      * 查询是否有空位。注意方法参数传入的 sequence 值是：当前 putSequence 值 + 新插入的 event 的记录数
      */
     private boolean checkFreeSlotAt(final long sequence) {
+        if (multiSubscriber && !slowSubscriberPolicy.isBlock() && !checkFreeSlotAtInternal(sequence)) {
+            relieveSlowSubscribers(sequence);
+        }
+        return checkFreeSlotAtInternal(sequence);
+    }
+
+    private boolean checkFreeSlotAtInternal(final long sequence) {
         final long wrapPoint = sequence - bufferSize;  // 1. 检查是否足够的 slot。减去 bufferSize 不能大于 ack 位置，或者换一种说法，减去 bufferSize 不能大于 ack 位置。1.1 首先用 sequence 值减去 bufferSize
         final long minPoint = getMinimumGetOrAck(); // 1.2 获取 get 位置 ack 位置的较小值，事实上，ack 位置总是应该小于等于 get 位置，因此这里总是应该返回的是 ack 位置。
         if (wrapPoint > minPoint) { // 刚好追上一轮。 // 1.3 将 1.1 与 1.2 步得到的值进行比较，如果前者大，说明二者差值已经超过了 bufferSize，不能插入数据，返回 false
@@ -591,12 +1096,19 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     private void profiling(List<Event> events, OP op) {
         long localExecTime = 0L;
         int deltaRows = 0;
+        long traceNanos = 0L;
         if (events != null && !events.isEmpty()) {
             for (Event e : events) {
                 if (localExecTime == 0 && e.getExecuteTime() > 0) {
                     localExecTime = e.getExecuteTime();
                 }
                 deltaRows += e.getRowsCount();
+                if (e.getTraceTime() > 0) {
+                    if (traceNanos == 0L) {
+                        traceNanos = System.nanoTime();
+                    }
+                    trace(e, op, traceNanos);
+                }
             }
         }
         switch (op) {
@@ -623,6 +1135,22 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         }
     }
 
+    private void trace(Event event, OP op, long now) {
+        switch (op) {
+            case PUT:
+                decodeLatency.observeMillis(event.getTraceTime() - event.getExecuteTime());
+                putLatency.observeNanos(now - event.getTraceNanos());
+                break;
+            case GET:
+                // rollback后重复get时，按上一次get的时间点计算
+                getLatency.observeNanos(now - event.getTraceNanos());
+                break;
+            default:
+                return;
+        }
+        event.setTraceNanos(now);
+    }
+
     private enum OP {
         PUT, GET, ACK
     }
@@ -636,6 +1164,10 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         this.bufferSize = bufferSize;
     }
 
+    public int getBufferMemUnit() {
+        return bufferMemUnit;
+    }
+
     public void setBufferMemUnit(int bufferMemUnit) {
         this.bufferMemUnit = bufferMemUnit;
     }
@@ -656,6 +1188,38 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         this.raw = raw;
     }
 
+    public boolean isMultiSubscriber() {
+        return multiSubscriber;
+    }
+
+    public void setMultiSubscriber(boolean multiSubscriber) {
+        this.multiSubscriber = multiSubscriber;
+    }
+
+    public SlowSubscriberPolicy getSlowSubscriberPolicy() {
+        return slowSubscriberPolicy;
+    }
+
+    public void setSlowSubscriberPolicy(SlowSubscriberPolicy slowSubscriberPolicy) {
+        this.slowSubscriberPolicy = slowSubscriberPolicy;
+    }
+
+    public void setSpillBufferSize(int spillBufferSize) {
+        this.spillBufferSize = spillBufferSize;
+    }
+
+    public void setSpillDir(String spillDir) {
+        this.spillDir = StringUtils.isEmpty(spillDir) ? null : new File(spillDir);
+    }
+
+    public Runnable getPutListener() {
+        return putListener;
+    }
+
+    public void setPutListener(Runnable putListener) {
+        this.putListener = putListener;
+    }
+
     public AtomicLong getPutSequence() {
         return putSequence;
     }
@@ -700,4 +1264,20 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         return ackTableRows;
     }
 
+    public LatencyHistogram getDecodeLatency() {
+        return decodeLatency;
+    }
+
+    public LatencyHistogram getPutLatency() {
+        return putLatency;
+    }
+
+    public LatencyHistogram getGetLatency() {
+        return getLatency;
+    }
+
+    public LatencyHistogram getAckLatency() {
+        return ackLatency;
+    }
+
 }
@@ -0,0 +1,49 @@
+package com.alibaba.otter.canal.store.memory;
+
+import java.io.File;
+
+import com.alibaba.otter.canal.filter.CanalEventFilter;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+
+/**
+ * 多订阅者模式下单个ClientIdentity的消费位点，所有字段都由{@linkplain MemoryEventStoreWithBuffer}的lock保护
+ *
+ * <pre>
+ * 1. getSequence/ackSequence/getMemSize/ackMemSize和store上的含义一致，只是每个订阅者独立维护
+ * 2. ack追上deliveredSequence后，直接推进到getSequence，避免被过滤的event一直占用RingBuffer
+ * 3. spilled保存SPILL策略下从RingBuffer中转移到本地文件的event，对应的sequence固定为(ackSequence, ackSequence + spilled.size()]
+ * </pre>
+ */
+class SubscriberCursor {
+
+    final ClientIdentity      clientIdentity;
+    CanalEventFilter<String>  filter;
+    long                      getSequence;
+    long                      ackSequence;
+    long                      deliveredSequence;       // 最后一个非空批次的结束位置，之后的event都被filter过滤
+    long                      getMemSize;
+    long                      ackMemSize;
+    final SubscriberSpillFile spilled;
+    boolean                   evicted;
+
+    SubscriberCursor(ClientIdentity clientIdentity, File spillDir){
+        this.clientIdentity = clientIdentity;
+        this.spilled = new SubscriberSpillFile(spillDir);
+    }
+
+    /**
+     * 该订阅者还需要RingBuffer保留的最小位置，已经转移到spilled中的event不再占用RingBuffer
+     */
+    long retainedSequence() {
+        return ackSequence + spilled.size();
+    }
+
+    void reset(long sequence, long memSize) {
+        getSequence = sequence;
+        ackSequence = sequence;
+        deliveredSequence = sequence;
+        getMemSize = memSize;
+        ackMemSize = memSize;
+        spilled.clear();
+    }
+}
@@ -0,0 +1,15 @@
+package com.alibaba.otter.canal.store.memory;
+
+import com.alibaba.otter.canal.store.CanalStoreException;
+
+/**
+ * 多订阅者模式下订阅者被EVICT策略淘汰，之前get到的批次都已经失效
+ */
+public class SubscriberEvictedException extends CanalStoreException {
+
+    private static final long serialVersionUID = 4526178417379561387L;
+
+    public SubscriberEvictedException(String errorCode){
+        super(errorCode);
+    }
+}
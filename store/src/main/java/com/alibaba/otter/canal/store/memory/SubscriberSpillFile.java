@@ -0,0 +1,269 @@
+package com.alibaba.otter.canal.store.memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.alibaba.otter.canal.protocol.CanalEntry;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.model.Event;
+import com.google.protobuf.ByteString;
+
+/**
+ * SPILL策略下单个订阅者从RingBuffer中转移出来的event，写入本地临时文件，内存中只保留每条event的文件偏移
+ *
+ * <pre>
+ * 1. event按照转移的顺序追加写入，每个段文件固定保存segmentEvents条，一次转移的event编码后合并成一次写入
+ * 2. 只保存CanalEntry的protobuf字节和LogIdentity，读取时按Event原有的构造方式还原
+ * 3. ack之后从头部移除，段文件内的event全部被移除后删除该文件，订阅者一直没有追平时占用的磁盘也不会无限增长
+ * 4. 读取时从目标位置开始顺序解码一段event缓存起来，回滚后重新get或者按filter重新扫描时不需要再读文件
+ * </pre>
+ */
+class SubscriberSpillFile {
+
+    private static final int    SEGMENT_EVENTS = 4096;                      // 每个段文件保存的event数量
+    private static final int    READ_AHEAD     = 256;                       // 每次顺序解码的event数量
+    private static final int    FLUSH_BYTES    = 1024 * 1024;               // 编码的数据超过该大小时先写入一次
+    private static final int    RAW            = 1;
+    private static final int    LARGE          = 1 << 1;
+    private static final int    SLAVE_ID       = 1 << 2;
+    private static final int    ADDRESS        = 1 << 3;
+
+    private final File          dir;
+    private final int           segmentEvents;
+    private final List<Segment> segments       = new ArrayList<>();
+    private final WriteBuffer   buffer         = new WriteBuffer();
+    private long                head;                                       // 第一条未被移除的event的全局下标
+    private long                tail;                                       // 下一条写入的event的全局下标
+    private Event[]             window         = new Event[0];              // 已经解码的event
+    private long                windowStart;
+
+    SubscriberSpillFile(File dir){
+        this(dir, SEGMENT_EVENTS);
+    }
+
+    SubscriberSpillFile(File dir, int segmentEvents){
+        this.dir = dir;
+        this.segmentEvents = segmentEvents;
+    }
+
+    int size() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * 当前保留的段文件数量
+     */
+    int segmentCount() {
+        return segments.size();
+    }
+
+    void add(Event event) {
+        addAll(Collections.singletonList(event));
+    }
+
+    void addAll(List<Event> events) {
+        int index = 0;
+        while (index < events.size()) {
+            Segment segment = writableSegment();
+            int count = Math.min(events.size() - index, segmentEvents - segment.count);
+            try {
+                buffer.reset();
+                DataOutputStream output = new DataOutputStream(buffer);
+                for (int i = 0; i < count; i++) {
+                    segment.offsets[segment.count + i] = segment.length + buffer.size();
+                    encode(events.get(index + i), output);
+                    if (buffer.size() >= FLUSH_BYTES) {
+                        output.flush();
+                        write(segment);
+                    }
+                }
+                output.flush();
+                write(segment);
+            } catch (IOException e) {
+                throw new CanalStoreException("spill event to " + segment.path + " failed", e);
+            }
+            segment.count += count;
+            tail += count;
+            index += count;
+        }
+    }
+
+    private void write(Segment segment) throws IOException {
+        ByteBuffer bytes = buffer.wrap();
+        while (bytes.hasRemaining()) {
+            segment.length += segment.file.getChannel().write(bytes, segment.length);
+        }
+        buffer.reset();
+    }
+
+    Event get(int index) {
+        long sequence = head + index;
+        if (sequence < windowStart || sequence >= windowStart + window.length) {
+            readAhead(sequence);
+        }
+        return window[(int) (sequence - windowStart)];
+    }
+
+    /**
+     * 移除头部count条event
+     */
+    void removeFirst(int count) {
+        head += count;
+        while (!segments.isEmpty()) {
+            Segment segment = segments.get(0);
+            if (segment.first + segment.count > head) {
+                break;
+            }
+            // 段内的event全部被移除，最后一个段只有在完全追平时才会满足
+            segment.delete();
+            segments.remove(0);
+        }
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            segment.delete();
+        }
+        segments.clear();
+        head = 0;
+        tail = 0;
+        window = new Event[0];
+        windowStart = 0;
+    }
+
+    void close() {
+        clear();
+    }
+
+    private Segment writableSegment() {
+        Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (last != null && last.count < segmentEvents) {
+            return last;
+        }
+
+        try {
+            File path = File.createTempFile("canal-spill-", ".tmp", dir);
+            path.deleteOnExit();
+            Segment segment = new Segment(tail, path, new RandomAccessFile(path, "rw"), segmentEvents);
+            segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new CanalStoreException("create spill file in " + dir + " failed", e);
+        }
+    }
+
+    /**
+     * 从sequence开始在同一个段文件内一次读取并解码最多READ_AHEAD条event
+     */
+    private void readAhead(long sequence) {
+        Segment segment = segments.get((int) ((sequence - segments.get(0).first) / segmentEvents));
+        int from = (int) (sequence - segment.first);
+        int to = Math.min(from + READ_AHEAD, segment.count);
+        long start = segment.offsets[from];
+        long end = to < segment.count ? segment.offsets[to] : segment.length;
+        try {
+            ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+            while (bytes.hasRemaining()) {
+                if (segment.file.getChannel().read(bytes, start + bytes.position()) < 0) {
+                    throw new IOException("unexpected end of file");
+                }
+            }
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.array()));
+            Event[] events = new Event[to - from];
+            for (int i = 0; i < events.length; i++) {
+                events[i] = decode(input);
+            }
+            window = events;
+            windowStart = sequence;
+        } catch (IOException e) {
+            throw new CanalStoreException("read spilled event from " + segment.path + " failed", e);
+        }
+    }
+
+    private static void encode(Event event, DataOutputStream output) throws IOException {
+        LogIdentity identity = event.getLogIdentity();
+        Long slaveId = identity == null ? null : identity.getSlaveId();
+        InetSocketAddress address = identity == null ? null : identity.getSourceAddress();
+        ByteString entry = event.getRawEntry();
+        int flags = (entry != null ? RAW : 0) | (event.isLargeTransaction() ? LARGE : 0)
+                    | (slaveId != null ? SLAVE_ID : 0) | (address != null ? ADDRESS : 0);
+        if (entry == null) {
+            entry = event.getEntry().toByteString();
+        }
+
+        output.writeByte(flags);
+        if (slaveId != null) {
+            output.writeLong(slaveId);
+        }
+        if (address != null) {
+            output.writeUTF(address.getHostString());
+            output.writeInt(address.getPort());
+        }
+        output.writeInt(entry.size());
+        entry.writeTo(output);
+    }
+
+    private static Event decode(DataInputStream input) throws IOException {
+        int flags = input.readByte();
+        Long slaveId = (flags & SLAVE_ID) != 0 ? input.readLong() : null;
+        InetSocketAddress address = (flags & ADDRESS) != 0 ? new InetSocketAddress(input.readUTF(), input.readInt()) : null;
+        byte[] entry = new byte[input.readInt()];
+        input.readFully(entry);
+
+        LogIdentity identity = slaveId == null && address == null ? null : new LogIdentity(address, slaveId);
+        Event event = new Event(identity, CanalEntry.Entry.parseFrom(entry), (flags & RAW) != 0);
+        event.setLargeTransaction((flags & LARGE) != 0);
+        return event;
+    }
+
+    private static class Segment {
+
+        private final long             first;  // 第一条event的全局下标
+        private final File             path;
+        private final RandomAccessFile file;
+        private final long[]           offsets;
+        private int                    count;
+        private long                   length;
+
+        Segment(long first, File path, RandomAccessFile file, int segmentEvents){
+            this.first = first;
+            this.path = path;
+            this.file = file;
+            this.offsets = new long[segmentEvents];
+        }
+
+        void delete() {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            path.delete();
+        }
+    }
+
+    /**
+     * 复用内部数组，避免每次写入都复制一遍
+     */
+    private static class WriteBuffer extends ByteArrayOutputStream {
+
+        WriteBuffer(){
+            super(64 * 1024);
+        }
+
+        ByteBuffer wrap() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
@@ -33,6 +33,12 @@ public class Event implements Serializable {
     private String            gtid;
     private long              rawLength;
     private int               rowsCount;
+    private String            schemaName;                             // 多订阅者模式下按client filter过滤使用
+    private String            tableName;
+    private boolean           largeTransaction;                       // 是否属于落盘后回放的大事务，消费端可据此调整batch
+    // ==== 延迟采样，traceTime为0代表当前event未被采样
+    private transient long    traceTime;                              // 解析完成的时间(ms)，用于计算和executeTime的差值
+    private transient long    traceNanos;                             // 最近一个阶段(decode/put/get)的时间点(ns)
 
     // ==== https://github.com/alibaba/canal/issues/1019
     private CanalEntry.Entry  entry; // 封装了 binlog 事件的数据
@@ -53,6 +59,8 @@ public class Event implements Serializable {
         this.serverId = entry.getHeader().getServerId();
         this.gtid = entry.getHeader().getGtid();
         this.eventType = entry.getHeader().getEventType();
+        this.schemaName = entry.getHeader().getSchemaName();
+        this.tableName = entry.getHeader().getTableName();
         if (entryType == EntryType.ROWDATA) {
             List<CanalEntry.Pair> props = entry.getHeader().getPropsList();
             if (props != null) {
@@ -164,6 +172,46 @@ public class Event implements Serializable {
         this.rowsCount = rowsCount;
     }
 
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    public void setSchemaName(String schemaName) {
+        this.schemaName = schemaName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public boolean isLargeTransaction() {
+        return largeTransaction;
+    }
+
+    public void setLargeTransaction(boolean largeTransaction) {
+        this.largeTransaction = largeTransaction;
+    }
+
+    public long getTraceTime() {
+        return traceTime;
+    }
+
+    public void setTraceTime(long traceTime) {
+        this.traceTime = traceTime;
+    }
+
+    public long getTraceNanos() {
+        return traceNanos;
+    }
+
+    public void setTraceNanos(long traceNanos) {
+        this.traceNanos = traceNanos;
+    }
+
     public CanalEntry.Entry getEntry() {
         return entry;
     }
@@ -21,6 +21,7 @@ public class Events<EVENT> implements Serializable {
 
     private PositionRange     positionRange    = new PositionRange();
     private List<EVENT>       events           = new ArrayList<>();
+    private boolean           largeTransaction; // 是否包含落盘后回放的大事务数据
 
     public List<EVENT> getEvents() {
         return events;
@@ -38,6 +39,14 @@ public class Events<EVENT> implements Serializable {
         this.positionRange = positionRange;
     }
 
+    public boolean isLargeTransaction() {
+        return largeTransaction;
+    }
+
+    public void setLargeTransaction(boolean largeTransaction) {
+        this.largeTransaction = largeTransaction;
+    }
+
     public String toString() {
         return ToStringBuilder.reflectionToString(this, CanalToStringStyle.DEFAULT_STYLE);
     }
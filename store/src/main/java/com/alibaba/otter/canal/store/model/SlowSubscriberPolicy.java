@@ -0,0 +1,25 @@
+package com.alibaba.otter.canal.store.model;
+
+/**
+ * 多订阅者模式下，RingBuffer写满且被慢订阅者卡住时的处理策略
+ */
+public enum SlowSubscriberPolicy {
+    /** 阻塞put，等待所有订阅者ack，和单订阅者模式的行为一致 */
+    BLOCK,
+    /** 将慢订阅者未ack的event转移到其私有的溢出队列，溢出队列也满了之后再阻塞 */
+    SPILL,
+    /** 丢弃慢订阅者的未ack数据，下一次get时通知客户端并从最早的可用位置重新开始 */
+    EVICT;
+
+    public boolean isBlock() {
+        return this == SlowSubscriberPolicy.BLOCK;
+    }
+
+    public boolean isSpill() {
+        return this == SlowSubscriberPolicy.SPILL;
+    }
+
+    public boolean isEvict() {
+        return this == SlowSubscriberPolicy.EVICT;
+    }
+}
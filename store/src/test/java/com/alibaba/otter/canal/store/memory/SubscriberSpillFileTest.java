@@ -0,0 +1,76 @@
+package com.alibaba.otter.canal.store.memory;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.store.model.Event;
+
+public class SubscriberSpillFileTest {
+
+    @Test
+    public void testSegmentReclaim() throws Exception {
+        File dir = Files.createTempDirectory("canal-spill-test").toFile();
+        SubscriberSpillFile spilled = new SubscriberSpillFile(dir, 4);
+        long next = 1;
+        long expect = 1;
+        // 订阅者一直落后一条，已经ack的段文件仍然需要删除
+        for (int round = 0; round < 10; round++) {
+            List<Event> events = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                events.add(buildEvent(next++, round % 2 == 0));
+            }
+            spilled.addAll(events);
+            while (spilled.size() > 1) {
+                Event event = spilled.get(0);
+                Assert.assertEquals(expect++, event.getPosition());
+                spilled.removeFirst(1);
+            }
+            Assert.assertTrue(spilled.segmentCount() <= 2);
+            Assert.assertTrue(dir.listFiles().length <= 2);
+        }
+
+        // 重复读取以及raw/非raw的event都能还原
+        Event event = spilled.get(0);
+        Assert.assertEquals(expect, event.getPosition());
+        Assert.assertEquals(expect, spilled.get(0).getPosition());
+        Assert.assertEquals(EntryType.ROWDATA, event.getEntryType());
+        Assert.assertEquals("test", event.getSchemaName());
+        Assert.assertEquals(1234L, event.getLogIdentity().getSlaveId().longValue());
+        Assert.assertEquals(3306, event.getLogIdentity().getSourceAddress().getPort());
+        Assert.assertTrue(event.isLargeTransaction());
+
+        spilled.removeFirst(1);
+        Assert.assertEquals(0, spilled.segmentCount());
+        Assert.assertEquals(0, dir.listFiles().length);
+        spilled.close();
+        dir.delete();
+    }
+
+    private Event buildEvent(long offset, boolean raw) {
+        Header.Builder headerBuilder = Header.newBuilder();
+        headerBuilder.setLogfileName("1");
+        headerBuilder.setLogfileOffset(offset);
+        headerBuilder.setExecuteTime(offset);
+        headerBuilder.setEventLength(1024);
+        headerBuilder.setSchemaName("test");
+        headerBuilder.setTableName("t");
+        Entry.Builder entryBuilder = Entry.newBuilder();
+        entryBuilder.setEntryType(EntryType.ROWDATA);
+        entryBuilder.setHeader(headerBuilder.build());
+        Event event = new Event(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L),
+            entryBuilder.build(),
+            raw);
+        event.setLargeTransaction(offset % 3 == 0);
+        return event;
+    }
+}
@@ -0,0 +1,79 @@
+package com.alibaba.otter.canal.store.memory.buffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.common.utils.LatencyHistogram;
+import com.alibaba.otter.canal.protocol.position.Position;
+import com.alibaba.otter.canal.store.CanalStoreException;
+import com.alibaba.otter.canal.store.helper.CanalEventUtils;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+
+/**
+ * 测试下采样event的各阶段耗时统计
+ */
+public class MemoryEventStoreLatencyTraceTest extends MemoryEventStoreBase {
+
+    @Test
+    public void testTraceSampledEvents() {
+        int bufferSize = 16;
+        MemoryEventStoreWithBuffer eventStore = new MemoryEventStoreWithBuffer();
+        eventStore.setBufferSize(bufferSize);
+        eventStore.start();
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < bufferSize / 2; i++) {
+            Event event = buildEvent("1", 1L + i, now - 100L);
+            if (i % 2 == 0) {
+                event.setTraceTime(now);
+                event.setTraceNanos(System.nanoTime());
+            }
+            Assert.assertTrue(eventStore.tryPut(event));
+        }
+
+        Position first = eventStore.getFirstPosition();
+        Events<Event> events = eventStore.tryGet(first, bufferSize);
+        Assert.assertEquals(bufferSize / 2, events.getEvents().size());
+        try {
+            // 匹配不到位置的ack不记录样本
+            eventStore.ack(CanalEventUtils.createPosition(buildEvent("1", 100L, now)));
+            Assert.fail("no match ack position");
+        } catch (CanalStoreException e) {
+            Assert.assertEquals(0, count(eventStore.getAckLatency()));
+        }
+        eventStore.ack(events.getPositionRange().getEnd());
+
+        int sampled = bufferSize / 4;
+        Assert.assertEquals(sampled, count(eventStore.getDecodeLatency()));
+        Assert.assertEquals(sampled, count(eventStore.getPutLatency()));
+        Assert.assertEquals(sampled, count(eventStore.getGetLatency()));
+        // 每次ack只记录一个样本
+        Assert.assertEquals(1, count(eventStore.getAckLatency()));
+        // executeTime比解析时间早100ms
+        Assert.assertEquals(sampled * 100d, eventStore.getDecodeLatency().getSumMillis(), 0.001d);
+        eventStore.stop();
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram(new double[] { 1, 10 });
+        histogram.observeMillis(0);
+        histogram.observeMillis(1);
+        histogram.observeMillis(5);
+        histogram.observeMillis(100);
+        histogram.observeNanos(-1);
+
+        Assert.assertArrayEquals(new long[] { 3, 1, 1 }, histogram.getCounts());
+        Assert.assertEquals(106d, histogram.getSumMillis(), 0.001d);
+    }
+
+    private long count(LatencyHistogram histogram) {
+        long count = 0;
+        for (long c : histogram.getCounts()) {
+            count += c;
+        }
+        return count;
+    }
+}
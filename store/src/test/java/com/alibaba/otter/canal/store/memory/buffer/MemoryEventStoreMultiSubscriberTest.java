@@ -0,0 +1,185 @@
+package com.alibaba.otter.canal.store.memory.buffer;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.ClientIdentity;
+import com.alibaba.otter.canal.protocol.position.LogIdentity;
+import com.alibaba.otter.canal.store.memory.MemoryEventStoreWithBuffer;
+import com.alibaba.otter.canal.store.memory.SubscriberEvictedException;
+import com.alibaba.otter.canal.store.model.Event;
+import com.alibaba.otter.canal.store.model.Events;
+import com.alibaba.otter.canal.store.model.SlowSubscriberPolicy;
+
+/**
+ * 测试下多订阅者模式的独立位点、filter以及慢订阅者策略
+ */
+public class MemoryEventStoreMultiSubscriberTest extends MemoryEventStoreBase {
+
+    private ClientIdentity fast = new ClientIdentity("example", (short) 1001);
+    private ClientIdentity slow = new ClientIdentity("example", (short) 1002);
+
+    @Test
+    public void testIndependentCursor() {
+        MemoryEventStoreWithBuffer eventStore = buildStore(SlowSubscriberPolicy.BLOCK);
+        eventStore.subscribe(fast);
+        eventStore.subscribe(slow);
+
+        for (int i = 0; i < 16; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+        // 两个订阅者都没有ack，store已满
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L, 17L)));
+
+        Events<Event> fastEvents = eventStore.tryGet(fast, 16);
+        Assert.assertEquals(16, fastEvents.getEvents().size());
+        eventStore.ack(fast, fastEvents.getPositionRange().getEnd(), fastEvents.getPositionRange().getEndSeq());
+        // 按最小的ack位点回收
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L, 17L)));
+
+        Events<Event> slowEvents = eventStore.tryGet(slow, 8);
+        Assert.assertEquals(8, slowEvents.getEvents().size());
+        Assert.assertEquals(1L, slowEvents.getEvents().get(0).getExecuteTime());
+        eventStore.rollback(slow);
+        slowEvents = eventStore.tryGet(slow, 8);
+        Assert.assertEquals(1L, slowEvents.getEvents().get(0).getExecuteTime());
+        eventStore.ack(slow, slowEvents.getPositionRange().getEnd(), slowEvents.getPositionRange().getEndSeq());
+        Assert.assertEquals(7L, eventStore.getAckSequence().get());
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 17L)));
+
+        fastEvents = eventStore.tryGet(fast, 16);
+        Assert.assertEquals(1, fastEvents.getEvents().size());
+        Assert.assertEquals(17L, fastEvents.getEvents().get(0).getExecuteTime());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testFilter() {
+        MemoryEventStoreWithBuffer eventStore = buildStore(SlowSubscriberPolicy.BLOCK);
+        ClientIdentity filtered = new ClientIdentity("example", (short) 1003, "test\\.t1");
+        eventStore.subscribe(fast);
+        eventStore.subscribe(filtered);
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildRowEvent(i * 2 + 1L, "t1")));
+            Assert.assertTrue(eventStore.tryPut(buildRowEvent(i * 2 + 2L, "t2")));
+        }
+
+        Assert.assertEquals(8, eventStore.tryGet(fast, 16).getEvents().size());
+        Events<Event> events = eventStore.tryGet(filtered, 16);
+        Assert.assertEquals(4, events.getEvents().size());
+        for (Event event : events.getEvents()) {
+            Assert.assertEquals("t1", event.getTableName());
+        }
+        // 最后一条t2被过滤，ack时一起确认
+        eventStore.ack(filtered, events.getPositionRange().getEnd(), events.getPositionRange().getEndSeq());
+        Assert.assertEquals(0, eventStore.tryGet(filtered, 16).getEvents().size());
+
+        // 只有被过滤的数据时，直接推进位点
+        Assert.assertTrue(eventStore.tryPut(buildRowEvent(9L, "t2")));
+        Assert.assertEquals(0, eventStore.tryGet(filtered, 16).getEvents().size());
+        Assert.assertTrue(eventStore.listSubscriberCursors().get(1).contains("ack:8"));
+        eventStore.stop();
+    }
+
+    @Test
+    public void testEvict() {
+        MemoryEventStoreWithBuffer eventStore = buildStore(SlowSubscriberPolicy.EVICT);
+        eventStore.subscribe(fast);
+        eventStore.subscribe(slow);
+
+        for (int i = 0; i < 16; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+        }
+        Events<Event> fastEvents = eventStore.tryGet(fast, 16);
+        eventStore.ack(fast, fastEvents.getPositionRange().getEnd(), fastEvents.getPositionRange().getEndSeq());
+        // 慢订阅者被淘汰，不再阻塞put
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 17L)));
+
+        try {
+            eventStore.tryGet(slow, 16);
+            Assert.fail();
+        } catch (SubscriberEvictedException e) {
+            // expected
+        }
+        // 之后从最早可用的位置重新开始
+        Events<Event> slowEvents = eventStore.tryGet(slow, 16);
+        Assert.assertEquals(1, slowEvents.getEvents().size());
+        Assert.assertEquals(17L, slowEvents.getEvents().get(0).getExecuteTime());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        File spillDir = Files.createTempDirectory("canal-spill-test").toFile();
+        MemoryEventStoreWithBuffer eventStore = buildStore(SlowSubscriberPolicy.SPILL);
+        eventStore.setSpillBufferSize(20);
+        eventStore.setSpillDir(spillDir.getPath());
+        eventStore.subscribe(fast);
+        eventStore.subscribe(slow);
+
+        for (int i = 0; i < 32; i++) {
+            Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L + i)));
+            Events<Event> fastEvents = eventStore.tryGet(fast, 16);
+            eventStore.ack(fast, fastEvents.getPositionRange().getEnd(), fastEvents.getPositionRange().getEndSeq());
+        }
+        // 溢出队列已满，继续阻塞
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 33L)));
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 34L)));
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 35L)));
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 36L)));
+        Assert.assertFalse(eventStore.tryPut(buildEvent("1", 1L, 37L)));
+        // 转移的event写入本地文件，不再占用内存
+        Assert.assertEquals(1, spillDir.listFiles().length);
+        Assert.assertTrue(spillDir.listFiles()[0].length() > 0);
+
+        // 慢订阅者仍然可以按顺序拿到所有数据
+        long expect = 1L;
+        for (;;) {
+            Events<Event> slowEvents = eventStore.tryGet(slow, 7);
+            if (slowEvents.getEvents().isEmpty()) {
+                break;
+            }
+            for (Event event : slowEvents.getEvents()) {
+                Assert.assertEquals(expect++, event.getExecuteTime());
+            }
+            eventStore.ack(slow, slowEvents.getPositionRange().getEnd(), slowEvents.getPositionRange().getEndSeq());
+        }
+        Assert.assertEquals(37L, expect);
+        // 全部ack之后段文件被删除
+        Assert.assertEquals(0, spillDir.listFiles().length);
+        eventStore.stop();
+        Assert.assertEquals(0, spillDir.listFiles().length);
+        spillDir.delete();
+    }
+
+    private MemoryEventStoreWithBuffer buildStore(SlowSubscriberPolicy policy) {
+        MemoryEventStoreWithBuffer eventStore = new MemoryEventStoreWithBuffer();
+        eventStore.setBufferSize(16);
+        eventStore.setMultiSubscriber(true);
+        eventStore.setSlowSubscriberPolicy(policy);
+        eventStore.start();
+        return eventStore;
+    }
+
+    private Event buildRowEvent(long offset, String table) {
+        Header.Builder headerBuilder = Header.newBuilder();
+        headerBuilder.setLogfileName("1");
+        headerBuilder.setLogfileOffset(offset);
+        headerBuilder.setExecuteTime(offset);
+        headerBuilder.setEventLength(1024);
+        headerBuilder.setSchemaName("test");
+        headerBuilder.setTableName(table);
+        Entry.Builder entryBuilder = Entry.newBuilder();
+        entryBuilder.setEntryType(EntryType.ROWDATA);
+        entryBuilder.setHeader(headerBuilder.build());
+        return new Event(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L), entryBuilder.build());
+    }
+}
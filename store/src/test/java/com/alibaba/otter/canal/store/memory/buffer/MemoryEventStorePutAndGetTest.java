@@ -3,6 +3,7 @@ package com.alibaba.otter.canal.store.memory.buffer;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -168,4 +169,47 @@ public class MemoryEventStorePutAndGetTest extends MemoryEventStoreBase {
         }
         eventStore.stop();
     }
+
+    @Test
+    public void testPutListener() {
+        int bufferSize = 16;
+        MemoryEventStoreWithBuffer eventStore = new MemoryEventStoreWithBuffer();
+        eventStore.setBufferSize(bufferSize);
+        eventStore.start();
+        final AtomicInteger notified = new AtomicInteger();
+        eventStore.setPutListener(notified::incrementAndGet);
+
+        Assert.assertFalse(eventStore.hasUnGetEvents((Position) null, 2));
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L)));
+        Assert.assertEquals(1, notified.get());
+        // 和阻塞get的唤醒条件一致，不足batchSize时继续等待
+        Assert.assertFalse(eventStore.hasUnGetEvents((Position) null, 2));
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 2L)));
+        Assert.assertEquals(2, notified.get());
+        Assert.assertTrue(eventStore.hasUnGetEvents((Position) null, 2));
+
+        Events<Event> events = eventStore.tryGet((Position) null, 2);
+        Assert.assertEquals(2, events.getEvents().size());
+        Assert.assertFalse(eventStore.hasUnGetEvents(events.getPositionRange().getEnd(), 1));
+        eventStore.stop();
+    }
+
+    @Test
+    public void testLargeTransactionGet() {
+        MemoryEventStoreWithBuffer eventStore = new MemoryEventStoreWithBuffer();
+        eventStore.setBufferSize(16);
+        eventStore.start();
+
+        Assert.assertTrue(eventStore.tryPut(buildEvent("1", 1L, 1L)));
+        Event large = buildEvent("1", 2L, 2L);
+        large.setLargeTransaction(true);
+        Assert.assertTrue(eventStore.tryPut(large));
+
+        // 批次内只要有一条属于大事务，整个批次就标记为大事务
+        Events<Event> events = eventStore.tryGet((Position) null, 1);
+        Assert.assertFalse(events.isLargeTransaction());
+        events = eventStore.tryGet(events.getPositionRange().getEnd(), 1);
+        Assert.assertTrue(events.isLargeTransaction());
+        eventStore.stop();
+    }
 }